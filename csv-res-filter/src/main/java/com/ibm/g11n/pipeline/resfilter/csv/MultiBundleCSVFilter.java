@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -47,7 +47,32 @@ public class MultiBundleCSVFilter extends MultiBundleResourceFilter {
     @Override
     public Map<String, LanguageBundle> parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
-        Map<String, LanguageBundleBuilder> builders = new HashMap<String, LanguageBundleBuilder>();
+        final Map<String, LanguageBundleBuilder> builders = new TreeMap<String, LanguageBundleBuilder>();
+        parse(inStream, new ResourceStringConsumer() {
+            @Override
+            public void accept(String bundleId, ResourceString resString) {
+                LanguageBundleBuilder bundleBuilder = builders.get(bundleId);
+                if (bundleBuilder == null) {
+                    bundleBuilder = new LanguageBundleBuilder(false);
+                    builders.put(bundleId, bundleBuilder);
+                }
+                bundleBuilder.addResourceString(resString);
+            }
+        }, options);
+
+        Map<String, LanguageBundle> result = new TreeMap<String, LanguageBundle>();
+        for (Entry<String, LanguageBundleBuilder> bundleEntry : builders.entrySet()) {
+            result.put(bundleEntry.getKey(), bundleEntry.getValue().build());
+        }
+
+        return result;
+    }
+
+    @Override
+    public void parse(InputStream inStream, ResourceStringConsumer consumer, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        // last sequence number used for each bundle
+        Map<String, int[]> seqNums = new HashMap<String, int[]>();
         CSVParser parser = CSVParser.parse(inStream, StandardCharsets.UTF_8,
                 CSVFormat.RFC4180.withHeader("module", "key", "value").withSkipHeaderRecord(true));
 
@@ -56,22 +81,13 @@ public class MultiBundleCSVFilter extends MultiBundleResourceFilter {
             String key = record.get(1);
             String value = record.get(2);
 
-            LanguageBundleBuilder bundleBuilder = builders.get(bundle);
-            if (bundleBuilder == null) {
-                bundleBuilder = new LanguageBundleBuilder(true);
-                builders.put(bundle, bundleBuilder);
+            int[] seqNum = seqNums.get(bundle);
+            if (seqNum == null) {
+                seqNum = new int[1];
+                seqNums.put(bundle, seqNum);
             }
-            bundleBuilder.addResourceString(key, value);
+            consumer.accept(bundle, ResourceString.with(key, value).sequenceNumber(++seqNum[0]).build());
         }
-
-        Map<String, LanguageBundle> result = new TreeMap<String, LanguageBundle>();
-        for (Entry<String, LanguageBundleBuilder> bundleEntry : builders.entrySet()) {
-            String bundleName = bundleEntry.getKey();
-            LanguageBundle bundleData = bundleEntry.getValue().build();
-            result.put(bundleName, bundleData);
-        }
-
-        return result;
     }
 
     @Override
@@ -94,19 +110,33 @@ public class MultiBundleCSVFilter extends MultiBundleResourceFilter {
     }
 
     @Override
-    public void merge(InputStream baseStream, OutputStream outStream, Map<String, LanguageBundle> languageBundles,
+    public void merge(InputStream baseStream, OutputStream outStream, final Map<String, LanguageBundle> languageBundles,
             FilterOptions options) throws IOException, ResourceFilterException {
-        // create key-value map for each bundle
-        Map<String, Map<String, String>> kvMaps = new HashMap<String, Map<String, String>>();
-        for (Entry<String, LanguageBundle> bundleEntry: languageBundles.entrySet()) {
-            LanguageBundle languageBundle = bundleEntry.getValue();
-            Map<String, String> kvMap = new HashMap<String, String>();
-            for (ResourceString resString : languageBundle.getResourceStrings()) {
-                kvMap.put(resString.getKey(), resString.getValue());
+        // key-value map for each bundle, created when the bundle
+        // appears in the base CSV for the first time
+        final Map<String, Map<String, String>> kvMaps = new HashMap<String, Map<String, String>>();
+        merge(baseStream, outStream, new TranslationLookup() {
+            @Override
+            public String lookup(String bundleId, String key) {
+                Map<String, String> kvMap = kvMaps.get(bundleId);
+                if (kvMap == null) {
+                    kvMap = new HashMap<String, String>();
+                    LanguageBundle languageBundle = languageBundles.get(bundleId);
+                    if (languageBundle != null) {
+                        for (ResourceString resString : languageBundle.getResourceStrings()) {
+                            kvMap.put(resString.getKey(), resString.getValue());
+                        }
+                    }
+                    kvMaps.put(bundleId, kvMap);
+                }
+                return kvMap.get(key);
             }
-            kvMaps.put(bundleEntry.getKey(), kvMap);
-        }
+        }, options);
+    }
 
+    @Override
+    public void merge(InputStream baseStream, OutputStream outStream, TranslationLookup lookup,
+            FilterOptions options) throws IOException, ResourceFilterException {
         CSVParser parser = CSVParser.parse(baseStream, StandardCharsets.UTF_8,
                 CSVFormat.RFC4180.withHeader("module", "key", "value").withSkipHeaderRecord(true));
         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
@@ -115,12 +145,9 @@ public class MultiBundleCSVFilter extends MultiBundleResourceFilter {
             String module = record.get(0);
             String key = record.get(1);
             String value = record.get(2);
-            Map<String, String> moduleKVMap = kvMaps.get(module);
-            if (moduleKVMap != null) {
-                String trValue = moduleKVMap.get(key);
-                if (trValue != null) {
-                    value = trValue;
-                }
+            String trValue = lookup.lookup(module, key);
+            if (trValue != null) {
+                value = trValue;
             }
             printer.printRecord(module, key, value);
         }
@@ -24,6 +24,8 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -37,6 +39,8 @@ import org.junit.Test;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter.ResourceStringConsumer;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter.TranslationLookup;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
@@ -108,6 +112,33 @@ public class TestMultiBundleCSVFilter {
         }
     }
 
+    @Test
+    public void testParseConsumer() {
+        String[] expected = {
+                "foods,apple,Apple,1",
+                "greetings,msg_hello,Hello,1",
+                "greetings,msg_bye,Bye,2",
+                "foods,orange,Orange,2"
+        };
+
+        final List<String> actual = new ArrayList<>();
+        MultiBundleResourceFilter filter = ResourceFilterFactory.getMultiBundleResourceFilter(MultiBundleCSVFilter.ID);
+        try (InputStream inStream = this.getClass().getResourceAsStream("/test-multi.csv")) {
+            filter.parse(inStream, new ResourceStringConsumer() {
+                @Override
+                public void accept(String bundleId, ResourceString resString) {
+                    actual.add(bundleId + "," + resString.getKey() + "," + resString.getValue()
+                            + "," + resString.getSequenceNumber());
+                }
+            }, new FilterOptions(Locale.ENGLISH));
+            assertEquals("Resource strings in input order", Arrays.asList(expected), actual);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        } catch (ResourceFilterException e) {
+            fail(e.getMessage());
+        }
+    }
+
     @Test
     public void testWrite() {
         TestResourceStringData[] testDataJapanese = {
@@ -189,4 +220,35 @@ public class TestMultiBundleCSVFilter {
             fail(e.getMessage());
         }
     }
+
+    @Test
+    public void testMergeLookup() {
+        String[] baseLines = {
+                "module,key,value",
+                "Japanese Foods,ramen,Ramen",
+                "Italian Foods,pizza,Pizza"
+        };
+
+        String[] expectedLines = {
+                "module,key,value",
+                "Japanese Foods,ramen,Japanese Foods/ramen",
+                "Italian Foods,pizza,Pizza"
+        };
+
+        MultiBundleResourceFilter filter = ResourceFilterFactory.getMultiBundleResourceFilter(MultiBundleCSVFilter.ID);
+        try (InputStream baseStream = TestUtils.creteInputStream(baseLines);
+                ByteArrayOutputStream outStream = new ByteArrayOutputStream()) {
+            filter.merge(baseStream, outStream, new TranslationLookup() {
+                @Override
+                public String lookup(String bundleId, String key) {
+                    return bundleId.startsWith("Japanese") ? bundleId + "/" + key : null;
+                }
+            }, new FilterOptions(Locale.JAPANESE));
+            TestUtils.compareLines(expectedLines, outStream.toByteArray());
+        } catch (IOException e) {
+            fail(e.getMessage());
+        } catch (ResourceFilterException e) {
+            fail(e.getMessage());
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2017, 2018
+ * Copyright IBM Corp. 2017, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -91,6 +91,7 @@ public abstract class GPBaseTask extends Task{
     private List<BundleSet> bundleSets= new ArrayList<BundleSet>();
 
     private volatile ServiceClient gpClient = null;
+    private volatile String serviceInstanceKey = null;
 
     /**
      * Set of targetlanugages defined as implicit default
@@ -148,6 +149,7 @@ public abstract class GPBaseTask extends Task{
                 }
 
                 getProject().log("Using GP service credentials " + creds, Project.MSG_DEBUG);
+                serviceInstanceKey = creds.getUrl() + "#" + creds.getInstanceId();
                 gpClient = ServiceClient.getInstance(
                         ServiceAccount.getInstance(
                                 creds.getUrl(), creds.getInstanceId(),
@@ -157,6 +159,19 @@ public abstract class GPBaseTask extends Task{
         return gpClient;
     }
 
+    /**
+     * Returns a string identifying the Globalization Pipeline service
+     * instance used by this task, composed from the service URL and
+     * the instance ID.
+     *
+     * @return The string identifying the service instance.
+     * @throws BuildException on a failure.
+     */
+    protected String getServiceInstanceKey() {
+        getServiceClient();
+        return serviceInstanceKey;
+    }
+
     protected static class SourceBundleFile {
         private String type;
         private String bundleId;
@@ -260,6 +275,21 @@ public abstract class GPBaseTask extends Task{
         return buf.toString();
     }
 
+    /**
+     * Returns the machine translation languages configured in the
+     * Globalization Pipeline service instance.
+     *
+     * @return A map of target languages indexed by source languages.
+     * @throws BuildException on a failure.
+     */
+    protected Map<String, Set<String>> getConfiguredMTLanguages() throws BuildException {
+        try {
+            return getServiceClient().getConfiguredMTLanguages();
+        } catch (ServiceException e) {
+            throw new BuildException("Globalization Pipeline service error", e);
+        }
+    }
+
     protected Set<String> resolveTargetLanguages(BundleSet bundleSet) throws BuildException {
         Set<String> targetLanguages = bundleSet.getTargetLanguages();
         String srcLang = bundleSet.getSourceLanguage();
@@ -275,14 +305,10 @@ public abstract class GPBaseTask extends Task{
             }
         }
         if (targetLanguages.isEmpty()) {
-            ServiceClient client = getServiceClient();
             // targetLanguages is not specified. Default to all available languages.
-            try {
-                Map<String, Set<String>> activeMTLangs = client.getConfiguredMTLanguages();
-                targetLanguages = activeMTLangs.get(srcLang);
-            } catch (ServiceException e) {
+            targetLanguages = getConfiguredMTLanguages().get(srcLang);
+            if (targetLanguages == null) {
                 targetLanguages = Collections.emptySet();
-                throw new BuildException("Globalization Pipeline service error", e);
             }
 
             getProject().log("The configuration parameter 'targetLanguages' is not specified."
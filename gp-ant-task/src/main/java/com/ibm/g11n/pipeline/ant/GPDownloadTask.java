@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2017, 2018
+ * Copyright IBM Corp. 2017, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,32 +16,30 @@
 package com.ibm.g11n.pipeline.ant;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 
 import com.ibm.g11n.pipeline.client.BundleData;
-import com.ibm.g11n.pipeline.client.ResourceEntryData;
 import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
-import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
-import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.sync.DownloadState;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.ExportJob;
+import com.ibm.g11n.pipeline.sync.Snapshot;
+import com.ibm.g11n.pipeline.sync.SourceIndex;
+import com.ibm.g11n.pipeline.sync.SyncEngine;
+import com.ibm.g11n.pipeline.sync.SyncException;
 
 /**
  * Fetches translated string resource bundles from an instance of
@@ -71,6 +69,111 @@ public class GPDownloadTask extends GPBaseTask {
         this.overwrite = overwrite;
     }
 
+    /**
+     * The file storing fingerprints of the translated contents written by the
+     * last download. When specified, bundle files are not written again if the
+     * translated contents are not changed since the last download.
+     */
+    private File stateFile;
+
+    public void setStateFile(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    private DownloadState downloadState;
+
+    /**
+     * The maximum number of concurrent requests to Globalization Pipeline service
+     * while downloading bundles. The default value is 1.
+     */
+    private int downloadThreads = 1;
+
+    public void setDownloadThreads(int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
+    /**
+     * The file storing the index of source bundle files. When specified,
+     * digests of source bundle files used for merging translated strings
+     * are computed again only for modified files.
+     */
+    private File sourceIndexFile;
+
+    public void setSourceIndexFile(File sourceIndexFile) {
+        this.sourceIndexFile = sourceIndexFile;
+    }
+
+    private SourceIndex sourceIndex;
+
+    /**
+     * The snapshot file created by the snapshot task. When {@link #offline} is
+     * true, translated bundle files are produced only from the snapshot.
+     * Otherwise, the snapshot is used only when {@link #useSnapshotOnline} is true.
+     */
+    private File snapshotFile;
+
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Whether to produce translated bundle files only from the snapshot
+     * without accessing the service. The default value is false.
+     */
+    private boolean offline = false;
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * The maximum age of the snapshot in minutes used when {@link #offline}
+     * is false. The default value is 60.
+     */
+    private int snapshotMaxAge = 60;
+
+    public void setSnapshotMaxAge(int snapshotMaxAge) {
+        this.snapshotMaxAge = snapshotMaxAge;
+    }
+
+    /**
+     * Whether to use the snapshot when {@link #offline} is false. When true,
+     * the snapshot is used for bundles not updated since the snapshot was
+     * created, as long as the snapshot is not older than {@link #snapshotMaxAge}.
+     * The update time of a bundle does not change when its resource entries are
+     * updated, so translations in the snapshot may be stale. The default value
+     * is false.
+     */
+    private boolean useSnapshotOnline = false;
+
+    public void setUseSnapshotOnline(boolean useSnapshotOnline) {
+        this.useSnapshotOnline = useSnapshotOnline;
+    }
+
+    private Snapshot snapshot;
+
+    /**
+     * The maximum number of resource strings of a bundle held in memory while
+     * producing a bundle file. When a bundle has more resource strings, they
+     * are kept in temporary files in {@link #spillDirectory}. The default value
+     * is 0, which keeps all resource strings in memory.
+     */
+    private int spillThreshold = 0;
+
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * The directory for the temporary files used when {@link #spillThreshold}
+     * is specified. When not specified, the default temporary directory is used.
+     */
+    private File spillDirectory;
+
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
     /**
      * The execution task - downloading bundle(s) from the globalization
      * pipeline service instance 
@@ -79,14 +182,73 @@ public class GPDownloadTask extends GPBaseTask {
     public void execute() throws BuildException {
         getProject().log("Entering GPDownloadTask#execute()", Project.MSG_DEBUG);
 
-        ServiceClient client = getServiceClient();
+        loadSnapshot();
+
+        ServiceClient client = offline ? null : getServiceClient();
+        String serviceKey = offline ? snapshot.getService() : getServiceInstanceKey();
 
         Set<String> availBundleIds = null;
+        if (offline) {
+            availBundleIds = snapshot.getBundleIds();
+        } else {
+            try {
+                availBundleIds = client.getBundleIds();
+            } catch (ServiceException e) {
+                throw new BuildException("Failed to get available bundle IDs.", e);
+            }
+        }
+
+        if (stateFile != null) {
+            try {
+                downloadState = DownloadState.load(stateFile, serviceKey);
+            } catch (IOException e) {
+                getProject().log("Failed to read the download state - all bundle files will be written: "
+                        + e.getMessage(), Project.MSG_WARN);
+            }
+        }
+
+        sourceIndex = null;
+        if (sourceIndexFile != null) {
+            try {
+                sourceIndex = SourceIndex.load(sourceIndexFile);
+            } catch (IOException e) {
+                getProject().log("Failed to read the source bundle file index: " + e.getMessage(),
+                        Project.MSG_WARN);
+            }
+        }
+        if (sourceIndex == null) {
+            sourceIndex = SourceIndex.empty(sourceIndexFile);
+        }
+
+        int numThreads = Math.max(1, downloadThreads);
+        getProject().log("Download threads: " + numThreads, Project.MSG_DEBUG);
+        SyncEngine engine = new SyncEngine(numThreads);
+
         try {
-            availBundleIds = client.getBundleIds();
-        } catch (ServiceException e) {
-            throw new BuildException("Failed to get available bundle IDs.", e);
+            downloadBundleSets(engine, client, availBundleIds);
+        } finally {
+            engine.close();
+            if (sourceIndexFile != null) {
+                try {
+                    sourceIndex.save();
+                } catch (IOException e) {
+                    getProject().log("Failed to write the source bundle file index: " + e.getMessage(),
+                            Project.MSG_WARN);
+                }
+            }
+            if (downloadState != null) {
+                try {
+                    downloadState.save();
+                } catch (IOException e) {
+                    getProject().log("Failed to write the download state: " + e.getMessage(),
+                            Project.MSG_WARN);
+                }
+            }
         }
+    }
+
+    private void downloadBundleSets(SyncEngine engine, ServiceClient client, Set<String> availBundleIds)
+            throws BuildException {
         List<BundleSet> bundleSets = null;
         try {
             bundleSets = getBundleSets();
@@ -117,6 +279,7 @@ public class GPDownloadTask extends GPBaseTask {
             if (outDir.exists()) {
                 outDir.mkdirs();
             }
+            List<DownloadJob> exportJobs = new ArrayList<DownloadJob>();
             for (SourceBundleFile bf : sourceBundleFiles) {
                 String bundleId = bf.getBundleId();
 
@@ -125,17 +288,32 @@ public class GPDownloadTask extends GPBaseTask {
                     continue;
                 }
 
-                BundleData bdlData = null;
-                try {
-                    bdlData = client.getBundleInfo(bundleId);
-                } catch (ServiceException e) {
-                    throw new BuildException("Failed to get bundle data for " + bundleId, e);
-                }
+                String bdlSrcLang;
+                Set<String> bdlLangs;
+                Snapshot.BundleSnapshot bdlSnapshot = snapshot == null ? null : snapshot.getBundle(bundleId);
+                if (offline) {
+                    bdlSrcLang = bdlSnapshot.getSourceLanguage();
+                    bdlLangs = bdlSnapshot.getLanguages();
+                } else {
+                    BundleData bdlData = null;
+                    try {
+                        bdlData = client.getBundleInfo(bundleId);
+                    } catch (ServiceException e) {
+                        throw new BuildException("Failed to get bundle data for " + bundleId, e);
+                    }
 
-                String bdlSrcLang = bdlData.getSourceLanguage();
-                Set<String> bdlLangs = new HashSet<String>();
-                bdlLangs.add(bdlSrcLang);
-                bdlLangs.addAll(bdlData.getTargetLanguages());
+                    bdlSrcLang = bdlData.getSourceLanguage();
+                    bdlLangs = new HashSet<String>();
+                    bdlLangs.add(bdlSrcLang);
+                    bdlLangs.addAll(bdlData.getTargetLanguages());
+
+                    if (bdlSnapshot != null && !bdlSnapshot.isSameBundle(bdlData)) {
+                        getProject().log("The bundle:" + bundleId
+                                + " was updated after the snapshot was created - fetching from the service",
+                                Project.MSG_INFO);
+                        bdlSnapshot = null;
+                    }
+                }
 
                 if (!srcLang.equals(bdlSrcLang)) {
                     getProject().log("The source language of the bundle:" + bundleId
@@ -145,8 +323,8 @@ public class GPDownloadTask extends GPBaseTask {
 
                 if (outputSrcLang) {
                     if (bdlLangs.contains(srcLang)) {
-                        exportLanguageResource(client, bf, srcLang, outDir,
-                                outContentOpt, bundleLayout, langIdStyle, langMap, srcLang);
+                        exportJobs.add(createExportJob(client, bdlSnapshot, bf, srcLang, outDir,
+                                outContentOpt, bundleLayout, langIdStyle, langMap, srcLang));
                     } else {
                         getProject().log("The specified source language (" + srcLang
                                 + ") does not exist in the bundle:" + bundleId, Project.MSG_WARN);
@@ -155,20 +333,163 @@ public class GPDownloadTask extends GPBaseTask {
 
                 for (String tgtLang: tgtLangs) {
                     if (bdlLangs.contains(tgtLang)) {
-                        exportLanguageResource(client, bf, tgtLang, outDir,
-                                outContentOpt, bundleLayout, langIdStyle, langMap, srcLang);
+                        exportJobs.add(createExportJob(client, bdlSnapshot, bf, tgtLang, outDir,
+                                outContentOpt, bundleLayout, langIdStyle, langMap, srcLang));
                     } else {
                         getProject().log("The specified target language (" + tgtLang
                                 + ") does not exist in the bundle:" + bundleId, Project.MSG_WARN);
                     }
                 }
             }
+            runJobs(engine, exportJobs);
+        }
+    }
+
+    /**
+     * Runs the jobs in the sync engine. Logs of the jobs are written in the order
+     * of the jobs, as soon as all preceding jobs are completed. When a job fails,
+     * the remaining jobs are skipped and this method throws the failure.
+     */
+    private void runJobs(SyncEngine engine, List<DownloadJob> jobs) throws BuildException {
+        try {
+            engine.run(jobs);
+        } catch (SyncException e) {
+            if (e.getJob() instanceof DownloadJob) {
+                ((DownloadJob) e.getJob()).flushLog();
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof BuildException) {
+                throw (BuildException) cause;
+            }
+            throw new BuildException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Interrupted while downloading bundles", e);
+        }
+    }
+
+    /**
+     * Exports a bundle in a language to a bundle file. Log messages are buffered,
+     * and written out when the job is completed.
+     */
+    private final class DownloadJob extends ExportJob {
+        private final ServiceClient client;
+        private final Snapshot.BundleSnapshot bundleSnapshot;
+        private final OutputContentOption outContentOpt;
+        private final File sourceFile;
+        private final boolean merge;
+        private final List<String> messages = new ArrayList<String>();
+        private String fingerprint;
+
+        DownloadJob(ServiceClient client, Snapshot.BundleSnapshot bundleSnapshot, SourceBundleFile bf,
+                String language, File outputFile, OutputContentOption outContentOpt,
+                String embeddedLanguageId) throws BuildException {
+            super(bf.getBundleId(), language, bf.getType(), outputFile);
+            this.client = client;
+            this.bundleSnapshot = bundleSnapshot;
+            this.outContentOpt = outContentOpt;
+            this.sourceFile = bf.getFile();
+            embeddedLanguageCode(embeddedLanguageId);
+            spillThreshold(spillThreshold).spillDirectory(spillDirectory);
+
+            boolean merge = false;
+            switch (outContentOpt) {
+            case MERGE_TO_SOURCE:
+                withFallback(true);
+                merge = true;
+                break;
+
+            case TRANSLATED_WITH_FALLBACK:
+                withFallback(true);
+                break;
+
+            case TRANSLATED_ONLY:
+                break;
+
+            case MERGE_REVIEWED_TO_SOURCE:
+                reviewedOnly(true).withFallback(true);
+                merge = true;
+                break;
+
+            case REVIEWED_WITH_FALLBACK:
+                reviewedOnly(true).withFallback(true);
+                break;
+
+            case REVIEWED_ONLY:
+                reviewedOnly(true);
+                break;
+
+            default:
+                throw new BuildException("Unsupported output content option - " + outContentOpt);
+            }
+            this.merge = merge;
+            if (merge) {
+                mergeSource(sourceFile);
+            }
+        }
+
+        @Override
+        protected Map<String, EntryData> fetch() throws BuildException {
+            File outputFile = getOutputFile();
+            messages.add("Exporting bundle:" + getBundleId() + " language:" + getLanguage() + " to "
+                    + outputFile.getAbsolutePath());
+
+            if (outputFile.exists()) {
+                if (overwrite) {
+                    messages.add("The output bundle file:" + outputFile.getAbsolutePath()
+                    + " already exists - overwriting");
+                } else {
+                    messages.add("The output bundle file:" + outputFile.getAbsolutePath()
+                    + " already exists - skipping");
+                    // When overwrite is false, do nothing
+                    return null;
+                }
+            }
+            return getResourceEntries(client, bundleSnapshot, getBundleId(), getLanguage());
+        }
+
+        @Override
+        protected LanguageBundle assemble(Map<String, EntryData> entries) throws Exception {
+            LanguageBundle bundle = super.assemble(entries);
+            if (downloadState != null) {
+                fingerprint = DownloadState.fingerprint(bundle, getType(), outContentOpt.name(),
+                        merge ? getSourceDigest(sourceFile) : null);
+                if (downloadState.isUpToDate(getOutputFile(), fingerprint)) {
+                    messages.add("The translated contents for " + getOutputFile().getAbsolutePath()
+                    + " are not changed since the last download - skipping");
+                    bundle.close();
+                    return null;
+                }
+            }
+            return bundle;
+        }
+
+        @Override
+        protected void write(byte[] content) throws Exception {
+            super.write(content);
+            if (fingerprint != null) {
+                downloadState.update(getOutputFile(), fingerprint);
+            }
+        }
+
+        @Override
+        protected void completed() {
+            flushLog();
+        }
+
+        void flushLog() {
+            for (String message : messages) {
+                getProject().log(message, Project.MSG_INFO);
+            }
+            messages.clear();
         }
     }
 
     /**
-     * This function defines various ways in which the downloadable bundle files can be organized
+     * This function defines various ways in which the downloadable bundle files can be organized,
+     * and returns a job exporting the bundle in the language to the output file.
      * @param client
+     * @param bundleSnapshot
      * @param bf
      * @param language
      * @param outBaseDir
@@ -177,10 +498,11 @@ public class GPDownloadTask extends GPBaseTask {
      * @param langIdStyle
      * @param langMap
      * @param srcLang
+     * @return the export job
      * @throws BuildException
      */
-    private void exportLanguageResource(ServiceClient client, SourceBundleFile bf, String language,
-            File outBaseDir, OutputContentOption outContntOpt, BundleLayout bundleLayout,
+    private DownloadJob createExportJob(ServiceClient client, Snapshot.BundleSnapshot bundleSnapshot,
+            SourceBundleFile bf, String language, File outBaseDir, OutputContentOption outContntOpt, BundleLayout bundleLayout,
             LanguageIdStyle langIdStyle, Map<String, String> langMap, String srcLang)
                     throws BuildException {
         String srcFileName = bf.getFile().getName();
@@ -244,58 +566,16 @@ public class GPDownloadTask extends GPBaseTask {
             throw new BuildException("Failed to resolve output directory");
         }
 
-        getProject().log("Exporting bundle:" + bf.getBundleId() + " language:" + language + " to "
-                + outputFile.getAbsolutePath(), Project.MSG_INFO);
-
-        if (outputFile.exists()) {
-            if (overwrite) {
-                getProject().log("The output bundle file:" + outputFile.getAbsolutePath()
-                + " already exists - overwriting", Project.MSG_INFO);
-            } else {
-                getProject().log("The output bundle file:" + outputFile.getAbsolutePath()
-                + " already exists - skipping", Project.MSG_INFO);
-                // When overwrite is false, do nothing
-                return;
-            }
-        }
-
-        if (!outputFile.getParentFile().exists()) {
-            outputFile.getParentFile().mkdirs();
-        }
-
-        LanguageBundle bundle;
-        String embeddedLangId = getEmbeddedLanguageId(language, langMap);
-
-        switch (outContntOpt) {
-        case MERGE_TO_SOURCE:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, true);
-            mergeTranslation(bundle, language, bf.getType(), bf.getFile(), outputFile);
-            break;
-
-        case TRANSLATED_WITH_FALLBACK:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, true);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
-
-        case TRANSLATED_ONLY:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, false);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
-
-        case MERGE_REVIEWED_TO_SOURCE:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, true);
-            mergeTranslation(bundle, language, bf.getType(), bf.getFile(), outputFile);
-            break;
-
-        case REVIEWED_WITH_FALLBACK:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, true);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+        return new DownloadJob(client, bundleSnapshot, bf, language, outputFile, outContntOpt,
+                getEmbeddedLanguageId(language, langMap));
+    }
 
-        case REVIEWED_ONLY:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, false);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+    private String getSourceDigest(File srcFile) throws BuildException {
+        try {
+            return sourceIndex.getDigest(srcFile);
+        } catch (IOException e) {
+            throw new BuildException("I/O error while reading the source bundle "
+                    + srcFile.getAbsolutePath(), e);
         }
     }
 
@@ -330,84 +610,94 @@ public class GPDownloadTask extends GPBaseTask {
         return languageId;
     }
 
-    private void mergeTranslation(LanguageBundle bundle, String language, String type,
-            File srcFile, File outFile) throws BuildException {
-        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-        if (filter == null) {
-            throw new BuildException("Unknown resource filter type - " + type);
+    /**
+     * Returns the resource entries of the bundle in the language, from the
+     * snapshot of the bundle if available, otherwise from the service.
+     */
+    private Map<String, EntryData> getResourceEntries(ServiceClient client,
+            Snapshot.BundleSnapshot bundleSnapshot, String bundleId, String language)
+            throws BuildException {
+        if (bundleSnapshot != null) {
+            Map<String, EntryData> entries = bundleSnapshot.getEntries(language);
+            if (entries != null) {
+                return entries;
+            }
         }
-        try (FileOutputStream fos = new FileOutputStream(outFile);
-                FileInputStream fis = new FileInputStream(srcFile)) {
-            filter.merge(fis, fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-        } catch (IOException e) {
-            throw new BuildException("I/O error while merging the translated strings to "
-                    + outFile.getAbsolutePath(), e);
-        } catch (ResourceFilterException e) {
-            throw new BuildException("Resource filter error while merging the translated strings to "
-                    + outFile.getAbsolutePath(), e);
+        if (client == null) {
+            throw new BuildException("The snapshot does not contain the bundle:" + bundleId
+                    + " language:" + language);
+        }
+        try {
+            return EntryData.fromResourceEntries(client.getResourceEntries(bundleId, language));
+        } catch (ServiceException e) {
+            throw new BuildException("Globalization Pipeline service error", e);
         }
     }
 
-    private void exportTranslation(LanguageBundle bundle, String language, String type,
-            File outFile) throws BuildException {
-        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-        if (filter == null) {
-            throw new BuildException("Unknown resource filter type - " + type);
+    /**
+     * Loads the snapshot specified by {@link #snapshotFile}. When {@link #offline}
+     * is false, the snapshot is used only when {@link #useSnapshotOnline} is true,
+     * and a snapshot created for another service instance or older than
+     * {@link #snapshotMaxAge} is not used.
+     */
+    private void loadSnapshot() throws BuildException {
+        snapshot = null;
+        if (snapshotFile == null) {
+            if (offline) {
+                throw new BuildException("The snapshot file must be specified in offline mode.");
+            }
+            return;
         }
-        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-            filter.write(fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-        } catch (IOException e) {
-            throw new BuildException("I/O error while writing the translated strings to "
-                    + outFile.getAbsolutePath(), e);
-        } catch (ResourceFilterException e) {
-            throw new BuildException("Resource filter error while writing the translated strings to "
-                    + outFile.getAbsolutePath(), e);
+        if (!offline && !useSnapshotOnline) {
+            return;
+        }
+        if (!snapshotFile.isFile()) {
+            if (offline) {
+                throw new BuildException("The snapshot file " + snapshotFile.getAbsolutePath()
+                        + " does not exist. Run the snapshot task while online.");
+            }
+            getProject().log("The snapshot file " + snapshotFile.getAbsolutePath()
+                    + " does not exist - fetching bundles from the service", Project.MSG_WARN);
+            return;
         }
-    }
 
-    private LanguageBundle getBundle(ServiceClient client, String bundleId, String language, String embeddedLanguageId,
-            boolean reviewedOnly, boolean withFallback) throws BuildException {
+        Snapshot s;
         try {
-            LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
-            bundleBuilder.embeddedLanguageCode(embeddedLanguageId);
-
-            Map<String, ResourceEntryData> resEntries = client.getResourceEntries(bundleId, language);
-            for (Entry<String, ResourceEntryData> entry : resEntries.entrySet()) {
-                String key = entry.getKey();
-                ResourceEntryData data = entry.getValue();
-                String resVal = data.getValue();
-                String srcVal = data.getSourceValue();
-                Integer seqNum = data.getSequenceNumber();
-                List<String> notes = data.getNotes();
-                Map<String, String> metadata = data.getMetadata();
-
-                if (reviewedOnly) {
-                    if (!data.isReviewed()) {
-                        resVal = null;
-                    }
-                }
+            s = Snapshot.read(snapshotFile);
+        } catch (IOException e) {
+            if (offline) {
+                throw new BuildException("Failed to read the snapshot file "
+                        + snapshotFile.getAbsolutePath(), e);
+            }
+            getProject().log("Failed to read the snapshot file - fetching bundles from the service: "
+                    + e.getMessage(), Project.MSG_WARN);
+            return;
+        }
 
-                if (resVal == null && withFallback) {
-                    resVal = data.getSourceValue();
-                }
+        long ageMinutes = (System.currentTimeMillis() - s.getCreatedAt()) / 60000L;
+        if (offline) {
+            getProject().log("Using the snapshot " + snapshotFile.getAbsolutePath()
+                    + " created " + ageMinutes + " minutes ago", Project.MSG_INFO);
+        } else if (!getServiceInstanceKey().equals(s.getService())) {
+            getProject().log("The snapshot file " + snapshotFile.getAbsolutePath()
+                    + " was created for another service instance - not used", Project.MSG_WARN);
+            return;
+        } else if (ageMinutes >= snapshotMaxAge) {
+            getProject().log("The snapshot file " + snapshotFile.getAbsolutePath() + " was created "
+                    + ageMinutes + " minutes ago - fetching bundles from the service", Project.MSG_INFO);
+            return;
+        }
+        snapshot = s;
+    }
 
-                if (resVal != null) {
-                    ResourceString.Builder resb = ResourceString.with(key, resVal).sourceValue(srcVal);
-                    if (seqNum != null) {
-                        resb.sequenceNumber(seqNum.intValue());
-                    }
-                    if (notes != null) {
-                        resb.notes(notes);
-                    }
-                    if (metadata != null) {
-                        resb.metadata(metadata);
-                    }
-                    bundleBuilder.addResourceString(resb);
-                }
+    @Override
+    protected Map<String, Set<String>> getConfiguredMTLanguages() throws BuildException {
+        if (offline) {
+            if (snapshot.getMTLanguages() == null) {
+                return Collections.emptyMap();
             }
-            return bundleBuilder.build();
-        } catch (ServiceException e) {
-            throw new BuildException("Globalization Pipeline service error", e);
+            return snapshot.getMTLanguages();
         }
+        return super.getConfiguredMTLanguages();
     }
 }
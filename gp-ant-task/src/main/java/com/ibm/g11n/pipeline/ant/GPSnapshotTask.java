@@ -0,0 +1,111 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.ant;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.Snapshot;
+
+/**
+ * Fetches all languages of the bundles used by the configured bundle sets
+ * from an instance of Globalization Pipeline service, and writes them out
+ * to a compressed snapshot file. The download task can produce translated
+ * bundle files from the snapshot without accessing the service.
+ *
+ * @author yoshito_umaoka
+ */
+public class GPSnapshotTask extends GPBaseTask {
+    /**
+     * The snapshot file to be written.
+     */
+    private File snapshotFile;
+
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * The execution task - saving bundle(s) in the globalization
+     * pipeline service instance to the snapshot file
+     */
+    @Override
+    public void execute() throws BuildException {
+        getProject().log("Entering GPSnapshotTask#execute()", Project.MSG_DEBUG);
+
+        if (snapshotFile == null) {
+            throw new BuildException("Snapshot file not specified!");
+        }
+
+        List<BundleSet> bundleSets = null;
+        try {
+            bundleSets = getBundleSets();
+        } catch (FileNotFoundException e) {
+            throw new BuildException("Source directory not found/specified!", e);
+        }
+
+        ServiceClient client = getServiceClient();
+
+        Snapshot snapshot = new Snapshot(getServiceInstanceKey(), System.currentTimeMillis());
+
+        try {
+            Set<String> availBundleIds = client.getBundleIds();
+            Set<String> bundleIds = new TreeSet<String>();
+            for (BundleSet bundleSet : bundleSets) {
+                for (SourceBundleFile bf : getSourceBundleFiles(bundleSet)) {
+                    if (availBundleIds.contains(bf.getBundleId())) {
+                        bundleIds.add(bf.getBundleId());
+                    } else {
+                        getProject().log("The bundle:" + bf.getBundleId() + " does not exist.",
+                                Project.MSG_WARN);
+                    }
+                }
+            }
+            snapshot.setMTLanguages(client.getConfiguredMTLanguages());
+
+            for (String bundleId : bundleIds) {
+                Snapshot.BundleSnapshot bdlSnapshot = new Snapshot.BundleSnapshot(client.getBundleInfo(bundleId));
+                for (String lang : bdlSnapshot.getLanguages()) {
+                    getProject().log("Fetching bundle:" + bundleId + " language:" + lang, Project.MSG_INFO);
+                    bdlSnapshot.putEntries(lang,
+                            EntryData.fromResourceEntries(client.getResourceEntries(bundleId, lang)));
+                }
+                snapshot.putBundle(bundleId, bdlSnapshot);
+            }
+        } catch (ServiceException e) {
+            throw new BuildException("Globalization Pipeline service error", e);
+        }
+
+        getProject().log("Writing " + snapshot.getBundleIds().size() + " bundles to the snapshot file "
+                + snapshotFile.getAbsolutePath(), Project.MSG_INFO);
+        try {
+            snapshot.write(snapshotFile);
+        } catch (IOException e) {
+            throw new BuildException("Failed to write the snapshot file "
+                    + snapshotFile.getAbsolutePath(), e);
+        }
+    }
+}
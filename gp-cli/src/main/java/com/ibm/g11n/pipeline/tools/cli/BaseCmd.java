@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2015,2016
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,15 +15,20 @@
  */
 package com.ibm.g11n.pipeline.tools.cli;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.beust.jcommander.Parameter;
 import com.google.gson.Gson;
 import com.ibm.g11n.pipeline.client.ServiceAccount;
 import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.sync.StateFiles;
 
 /**
  * The root class of Globalization Pipeline command.
@@ -56,8 +61,54 @@ abstract class BaseCmd {
             description = "Password")
     protected String password;
 
+    /**
+     * The maximum number of service clients kept for reuse.
+     */
+    private static final int MAX_CLIENTS = 16;
+
+    /**
+     * Service clients indexed by the digest of credentials. A client is reused
+     * by commands executed in the same JVM, such as commands executed by the
+     * daemon. The least recently used client is discarded when the number of
+     * clients exceeds {@link #MAX_CLIENTS}.
+     */
+    private static final Map<String, ServiceClient> CLIENTS =
+            new LinkedHashMap<String, ServiceClient>(MAX_CLIENTS, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ServiceClient> eldest) {
+            return size() > MAX_CLIENTS;
+        }
+    };
+
+    /**
+     * The working directory used for resolving relative file paths, or null
+     * to use the current directory of the JVM.
+     */
+    private File workingDir;
+
     protected abstract void _execute();
 
+    void setWorkingDirectory(File workingDir) {
+        this.workingDir = workingDir;
+    }
+
+    /**
+     * Returns a file for the path specified by a command line option. A relative
+     * path is resolved against the working directory of the command.
+     *
+     * @param path  The file path
+     * @return  The file
+     */
+    protected File getFile(String path) {
+        File f = new File(path);
+        if (workingDir == null || f.isAbsolute()) {
+            return f;
+        }
+        return new File(workingDir, path);
+    }
+
     static class JsonCredentials {
         String url;
         String instanceId;
@@ -69,7 +120,7 @@ abstract class BaseCmd {
         if (jsonCreds != null) {
             JsonCredentials creds;
             try (InputStreamReader reader = new InputStreamReader(
-                    new FileInputStream(jsonCreds), StandardCharsets.UTF_8)) {
+                    new FileInputStream(getFile(jsonCreds)), StandardCharsets.UTF_8)) {
                 Gson gson = new Gson();
                 creds = gson.fromJson(reader, JsonCredentials.class);
             } catch (IOException e) {
@@ -93,17 +144,41 @@ abstract class BaseCmd {
             }
         }
 
-        ServiceAccount account = ServiceAccount.getInstance(
-                gpUrl, instanceId, userId, password);
-        return ServiceClient.getInstance(account);
+        String key = clientKey(gpUrl, instanceId, userId, password);
+        synchronized (CLIENTS) {
+            ServiceClient client = CLIENTS.get(key);
+            if (client == null) {
+                ServiceAccount account = ServiceAccount.getInstance(
+                        gpUrl, instanceId, userId, password);
+                client = ServiceClient.getInstance(account);
+                CLIENTS.put(key, client);
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Returns the key of the service client for the credentials. The key is
+     * a digest, so the password is not kept in memory as a map key.
+     */
+    private static String clientKey(String url, String instanceId, String userId, String password) {
+        MessageDigest md = StateFiles.newDigest();
+        String creds = url + '\n' + instanceId + '\n' + userId + '\n' + password;
+        return StateFiles.toHex(md.digest(creds.getBytes(StandardCharsets.UTF_8)));
     }
 
-    public void execute() {
+    /**
+     * Executes the command.
+     *
+     * @return  The exit status - 0 on success, or 1 on failure.
+     */
+    public int execute() {
         try {
             _execute();
+            return 0;
         } catch (Exception e) {
             e.printStackTrace();
-            System.exit(1);
+            return 1;
         }
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A relative path template of resource bundle files, such as
+ * <code>{LANG}/{BUNDLE}.json</code>.
+ * <p>
+ * <code>{BUNDLE}</code> is the bundle ID, <code>{LANG}</code> is the language
+ * ID, and <code>*</code> matches any characters other than the path separator.
+ * When a path is matched, path separators in <code>{BUNDLE}</code> are replaced
+ * with '.', and '_' in <code>{LANG}</code> is replaced with '-'.
+ *
+ * @author yoshito_umaoka
+ */
+final class BundlePathTemplate {
+    static final String BUNDLE = "{BUNDLE}";
+    static final String LANG = "{LANG}";
+
+    private static final String LANG_REGEX = "[a-zA-Z]{2,3}(?:[-_][a-zA-Z0-9]{1,8})*";
+    private static final Pattern LANG_PATTERN = Pattern.compile(LANG_REGEX);
+
+    private final String template;
+    private final Pattern pattern;
+    private final int bundleGroup;
+    private final int langGroup;
+
+    /**
+     * Constructs a path template.
+     *
+     * @param template  The template string, using '/' as the path separator.
+     * @throws IllegalArgumentException if the template does not contain {BUNDLE}.
+     */
+    BundlePathTemplate(String template) {
+        if (!template.contains(BUNDLE)) {
+            throw new IllegalArgumentException("The path template " + template
+                    + " does not contain " + BUNDLE);
+        }
+        this.template = template;
+
+        StringBuilder regex = new StringBuilder();
+        int group = 0;
+        int bGroup = 0;
+        int lGroup = 0;
+        int idx = 0;
+        while (idx < template.length()) {
+            if (template.startsWith(BUNDLE, idx)) {
+                if (bGroup == 0) {
+                    regex.append("(.+?)");
+                    bGroup = ++group;
+                } else {
+                    regex.append("\\").append(bGroup);
+                }
+                idx += BUNDLE.length();
+            } else if (template.startsWith(LANG, idx)) {
+                if (lGroup == 0) {
+                    regex.append('(').append(LANG_REGEX).append(')');
+                    lGroup = ++group;
+                } else {
+                    regex.append("\\").append(lGroup);
+                }
+                idx += LANG.length();
+            } else {
+                char c = template.charAt(idx++);
+                if (c == '*') {
+                    regex.append("[^/]*");
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+        }
+        this.pattern = Pattern.compile(regex.toString());
+        this.bundleGroup = bGroup;
+        this.langGroup = lGroup;
+    }
+
+    /**
+     * Returns true if this template contains {LANG}.
+     */
+    boolean hasLanguage() {
+        return langGroup != 0;
+    }
+
+    /**
+     * Matches a relative path against this template.
+     *
+     * @param relPath   The relative path using '/' as the path separator.
+     * @return  A 2-element array of the bundle ID and the language ID (null when
+     *          this template does not contain {LANG}), or null if the path
+     *          does not match.
+     */
+    String[] match(String relPath) {
+        Matcher m = pattern.matcher(relPath);
+        if (!m.matches()) {
+            return null;
+        }
+        String bundleId = m.group(bundleGroup).replace('/', '.');
+        String language = langGroup == 0 ? null : m.group(langGroup).replace('_', '-');
+        return new String[] {bundleId, language};
+    }
+
+    /**
+     * Expands this template with the bundle ID and the language ID.
+     *
+     * @param bundleId  The bundle ID.
+     * @param language  The language ID.
+     * @return  The relative path using '/' as the path separator.
+     */
+    String expand(String bundleId, String language) {
+        return template.replace(BUNDLE, bundleId).replace(LANG, language);
+    }
+
+    /**
+     * Returns true if the string looks like a language ID used in
+     * bundle file paths, such as "fr", "pt_BR" or "zh-Hant".
+     */
+    static boolean isLanguageId(String str) {
+        return LANG_PATTERN.matcher(str).matches();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
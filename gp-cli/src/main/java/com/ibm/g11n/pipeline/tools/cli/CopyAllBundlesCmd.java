@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2016
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,7 +15,16 @@
  */
 package com.ibm.g11n.pipeline.tools.cli;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
@@ -49,23 +58,119 @@ class CopyAllBundlesCmd extends BaseCmd {
             required = true)
     private String destPassword;
 
+    @Parameter(
+            names = { "--threads"},
+            description = "The number of bundles copied concurrently")
+    private int threads = 1;
+
+    @Parameter(
+            names = { "--language-threads"},
+            description = "The number of languages transferred concurrently")
+    private int languageThreads = 4;
+
+    @Parameter(
+            names = { "--checkpoint"},
+            description = "The checkpoint file recording copied bundles and languages."
+                    + " When the file exists, bundles and languages already copied are skipped.")
+    private String checkpointFile;
+
+    @Parameter(
+            names = { "--retries"},
+            description = "The maximum number of retries for a request failed by a transient service error")
+    private int retries = 3;
+
     @Override
     protected void _execute() {
+        ServiceAccount destAccount = ServiceAccount.getInstance(destUrl, destInstanceId,
+                destUserId, destPassword);
+        final ServiceClient destClient = ServiceClient.getInstance(destAccount);
+        final ServiceClient srcClient = getClient();
+        final ServiceRetry retry = new ServiceRetry(retries);
+
+        CopyCheckpoint checkpoint = null;
+        ExecutorService pool = null;
+        ExecutorService langPool = null;
         try {
-            ServiceAccount destAccount = ServiceAccount.getInstance(destUrl, destInstanceId,
-                    destUserId, destPassword);
-            ServiceClient destClient = ServiceClient.getInstance(destAccount);
-            ServiceClient srcClient = getClient();
+            if (checkpointFile != null) {
+                checkpoint = CopyCheckpoint.open(getFile(checkpointFile));
+            }
 
             // First, get a list of bundles
-            Set<String> bundleIds = srcClient.getBundleIds();
-            for (String bundleId : bundleIds) {
-                // Process each bundle
-                System.out.println(".. copying bundle: " + bundleId);
-                CopyBundleCmd.copyBundle(srcClient, bundleId, destClient, bundleId);
+            Set<String> bundleIds = retry.call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return srcClient.getBundleIds();
+                }
+            });
+
+            pool = Executors.newFixedThreadPool(Math.max(1, threads));
+            // Shared by all bundles. Language transfers never wait for another
+            // task in this pool, so sharing the pool does not cause a deadlock.
+            langPool = Executors.newFixedThreadPool(Math.max(1, languageThreads));
+            final ExecutorService lp = langPool;
+            List<String> submitted = new ArrayList<>();
+            List<Future<Void>> results = new ArrayList<>();
+            for (final String bundleId : bundleIds) {
+                if (checkpoint != null && checkpoint.isCompleted(bundleId)) {
+                    System.out.println(".. skipping bundle: " + bundleId + " (already copied)");
+                    continue;
+                }
+                final CopyCheckpoint cp = checkpoint;
+                submitted.add(bundleId);
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws ServiceException, IOException {
+                        // Process each bundle
+                        System.out.println(".. copying bundle: " + bundleId);
+                        CopyBundleCmd.copyBundle(srcClient, bundleId, destClient, bundleId, cp, retry, lp);
+                        if (cp != null) {
+                            cp.markCompleted(bundleId);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            // A failed bundle does not stop copying other bundles, so
+            // a rerun with the checkpoint has less bundles to copy.
+            TreeMap<String, Throwable> failures = new TreeMap<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(submitted.get(i), cause);
+                    System.out.println(".. failed to copy bundle: " + submitted.get(i)
+                            + " - " + cause.getMessage());
+                }
+            }
+            if (!failures.isEmpty()) {
+                StringBuilder msg = new StringBuilder();
+                msg.append(failures.size()).append(" bundle(s) were not copied: ").append(failures.keySet());
+                if (checkpoint != null) {
+                    msg.append(". Run the command again with the same checkpoint file to resume.");
+                }
+                throw new RuntimeException(msg.toString(), failures.firstEntry().getValue());
             }
-        } catch (ServiceException e) {
+        } catch (ServiceException | IOException e) {
             throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            if (langPool != null) {
+                langPool.shutdownNow();
+            }
+            if (checkpoint != null) {
+                try {
+                    checkpoint.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
         }
 
         System.out.println("All bundles were successfully copied to the specified service instance.");
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2016
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package com.ibm.g11n.pipeline.tools.cli;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -22,6 +23,13 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
@@ -68,9 +76,14 @@ final class CopyBundleCmd extends BundleCmd {
             required = true)
     private String destBundleId;
 
+    @Parameter(
+            names = { "--threads"},
+            description = "The number of languages transferred concurrently")
+    private int threads = 4;
 
     @Override
     protected void _execute() {
+        ExecutorService langPool = Executors.newFixedThreadPool(Math.max(1, threads));
         try {
             ServiceClient srcClient = getClient();
             ServiceClient destClient = null;
@@ -83,57 +96,144 @@ final class CopyBundleCmd extends BundleCmd {
                 destClient = ServiceClient.getInstance(account);
             }
 
-            copyBundle(srcClient, bundleId, destClient, destBundleId);
-        } catch (ServiceException e) {
+            copyBundle(srcClient, bundleId, destClient, destBundleId, null, new ServiceRetry(0), langPool);
+        } catch (ServiceException | IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            langPool.shutdownNow();
         }
 
         System.out.println("Bundle:" + bundleId
                 + " was successfull copied to the specified destination.");
     }
 
-    static void copyBundle(ServiceClient srcClient, String srcBundleId,
-            ServiceClient destClient, String destBundleId) throws ServiceException {
+    /**
+     * Copies a bundle. When a checkpoint is specified, steps recorded in the
+     * checkpoint are skipped, and each completed step is recorded in the
+     * checkpoint. Service requests failed by a transient error are retried
+     * with the specified retry policy.
+     * <p>
+     * Target languages are fetched on the language pool while the source
+     * language is copied, and uploaded on the pool once the source language
+     * exists at the destination.
+     *
+     * @param srcClient     GP service client for the source bundle
+     * @param srcBundleId   Source bundle ID
+     * @param destClient    GP service client for the destination bundle
+     * @param destBundleId  Destination bundle ID
+     * @param checkpoint    Checkpoint, or null
+     * @param retry         Retry policy for service requests
+     * @param langPool      Thread pool transferring target languages
+     * @throws ServiceException
+     * @throws IOException if the checkpoint cannot be written
+     */
+    static void copyBundle(final ServiceClient srcClient, final String srcBundleId,
+            final ServiceClient destClient, final String destBundleId,
+            final CopyCheckpoint checkpoint, final ServiceRetry retry, ExecutorService langPool)
+                    throws ServiceException, IOException {
 
         // First, create the destination bundle without target languages
-        BundleData srcBundleInfo = srcClient.getBundleInfo(srcBundleId);
+        BundleData srcBundleInfo = retry.call(new ServiceRetry.Request<BundleData>() {
+            @Override
+            public BundleData call() throws ServiceException {
+                return srcClient.getBundleInfo(srcBundleId);
+            }
+        });
         String srcLang = srcBundleInfo.getSourceLanguage();
         Set<String> targetLangs = srcBundleInfo.getTargetLanguages();
 
-        NewBundleData newBundleData = new NewBundleData(srcLang);
-        newBundleData.setNotes(srcBundleInfo.getNotes());
-        newBundleData.setMetadata(srcBundleInfo.getMetadata());
-        newBundleData.setPartner(srcBundleInfo.getPartner());
-        newBundleData.setNoTranslationPattern(srcBundleInfo.getNoTranslationPattern());
-        newBundleData.setSegmentSeparatorPattern(srcBundleInfo.getSegmentSeparatorPattern());
+        if (checkpoint == null || !checkpoint.isCreated(destBundleId)) {
+            final NewBundleData newBundleData = new NewBundleData(srcLang);
+            newBundleData.setNotes(srcBundleInfo.getNotes());
+            newBundleData.setMetadata(srcBundleInfo.getMetadata());
+            newBundleData.setPartner(srcBundleInfo.getPartner());
+            newBundleData.setNoTranslationPattern(srcBundleInfo.getNoTranslationPattern());
+            newBundleData.setSegmentSeparatorPattern(srcBundleInfo.getSegmentSeparatorPattern());
 
-        destClient.createBundle(destBundleId, newBundleData);
+            createBundle(destClient, destBundleId, newBundleData, checkpoint, retry);
+        }
 
         // Upload resource data for source language and target languages
         Set<String> remainingLangs = targetLangs == null ?
                 Collections.<String>emptySet() : new HashSet<>(targetLangs);
 
-        Map<String, ResourceEntryData> srcResources = srcClient.getResourceEntries(
-                srcBundleId, srcLang);
+        // Target languages are fetched while the source language is copied,
+        // and uploaded after the source language is uploaded.
+        final SourceLanguageGate srcGate = new SourceLanguageGate();
+        Map<String, Future<Boolean>> trgResults = new TreeMap<>();
+        try {
+            for (final String trgLang : remainingLangs) {
+                if (checkpoint != null && checkpoint.isCopied(destBundleId, trgLang)) {
+                    continue;
+                }
+                trgResults.put(trgLang, langPool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        Map<String, ResourceEntryData> resources = getResourceEntries(retry, srcClient,
+                                srcBundleId, trgLang);
+                        if (resources.isEmpty() || !srcGate.await()) {
+                            return Boolean.FALSE;
+                        }
+                        if (!uploadResources(retry, destClient, destBundleId, trgLang, resources)) {
+                            return Boolean.FALSE;
+                        }
+                        if (checkpoint != null) {
+                            checkpoint.markCopied(destBundleId, trgLang);
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
 
-        if (!srcResources.isEmpty()) {
-            uploadResources(destClient, destBundleId, srcLang, srcResources);
+            // A language is recorded in the checkpoint only when some resource
+            // entries were uploaded, so the language is treated as uploaded
+            // on resume.
+            boolean srcUploaded = checkpoint != null && checkpoint.isCopied(destBundleId, srcLang);
+            if (!srcUploaded) {
+                Map<String, ResourceEntryData> srcResources = getResourceEntries(retry, srcClient,
+                        srcBundleId, srcLang);
+                if (!srcResources.isEmpty()) {
+                    uploadResources(retry, destClient, destBundleId, srcLang, srcResources);
+                    srcUploaded = true;
+                    if (checkpoint != null) {
+                        checkpoint.markCopied(destBundleId, srcLang);
+                    }
+                }
+            }
+            // Target languages are not uploaded when the source bundle is empty
+            srcGate.open(srcUploaded);
 
-            // Upload resource data for target languages
             // Removing already processed target languages from remainingLangs
             // while iterating through the set, so we need to use Iterator here.
             for (Iterator<String> i = remainingLangs.iterator(); i.hasNext();) {
                 String trgLang = i.next();
-                Map<String, ResourceEntryData> resources = srcClient.getResourceEntries(srcBundleId, trgLang);
-                if (!resources.isEmpty()) {
-                    if (uploadResources(destClient, destBundleId, trgLang, resources)) {
-                        // if something has been uploaded, the language was automatically
-                        // added to the bundle's target language list. So remove the language
-                        // from the 'remaining' language list.
-                        i.remove();
-                    }
+                Future<Boolean> result = trgResults.get(trgLang);
+                if (result == null || result.get().booleanValue()) {
+                    // if something has been uploaded, the language was automatically
+                    // added to the bundle's target language list. So remove the language
+                    // from the 'remaining' language list.
+                    i.remove();
                 }
             }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ServiceException) {
+                throw (ServiceException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while copying bundle:" + srcBundleId, e);
+        } finally {
+            // Releases target language transfers waiting for the source language
+            // when the source language failed
+            srcGate.open(false);
+            for (Future<Boolean> result : trgResults.values()) {
+                result.cancel(true);
+            }
         }
 
         if (!remainingLangs.isEmpty()) {
@@ -143,9 +243,101 @@ final class CopyBundleCmd extends BundleCmd {
             // contents. We want to set the set of target languages
             // to the destination bundle.
             assert targetLangs != null;
-            BundleDataChangeSet bundleDataChanges = new BundleDataChangeSet();
+            final BundleDataChangeSet bundleDataChanges = new BundleDataChangeSet();
             bundleDataChanges.setTargetLanguages(targetLangs);
-            destClient.updateBundle(destBundleId, bundleDataChanges);
+            retry.call(new ServiceRetry.Request<Void>() {
+                @Override
+                public Void call() throws ServiceException {
+                    destClient.updateBundle(destBundleId, bundleDataChanges);
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates the destination bundle. When a checkpoint is specified, the
+     * attempt is recorded in the checkpoint before the bundle is created,
+     * and the bundle is recorded as created after the request succeeded.
+     * <p>
+     * A previous run might have been terminated after the bundle was created,
+     * but before it was recorded as created. When the attempt was recorded by
+     * a previous run and the request fails, the bundle is treated as created
+     * if it exists at the destination.
+     * <p>
+     * Creating a bundle is not retried, because a request timed out might
+     * have created the bundle already.
+     *
+     * @param destClient    GP service client for the destination bundle
+     * @param destBundleId  Destination bundle ID
+     * @param newBundleData The bundle data
+     * @param checkpoint    Checkpoint, or null
+     * @param retry         Retry policy for looking up existing bundles
+     * @throws ServiceException
+     * @throws IOException if the checkpoint cannot be written
+     */
+    static void createBundle(final ServiceClient destClient, String destBundleId,
+            NewBundleData newBundleData, CopyCheckpoint checkpoint, ServiceRetry retry)
+                    throws ServiceException, IOException {
+        boolean attempted = false;
+        if (checkpoint != null) {
+            attempted = checkpoint.isCreating(destBundleId);
+            checkpoint.markCreating(destBundleId);
+        }
+        try {
+            destClient.createBundle(destBundleId, newBundleData);
+        } catch (ServiceException e) {
+            if (!attempted) {
+                throw e;
+            }
+            Set<String> bundleIds = retry.call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return destClient.getBundleIds();
+                }
+            });
+            if (!bundleIds.contains(destBundleId)) {
+                throw e;
+            }
+        }
+        if (checkpoint != null) {
+            checkpoint.markCreated(destBundleId);
+        }
+    }
+
+    private static Map<String, ResourceEntryData> getResourceEntries(ServiceRetry retry,
+            final ServiceClient client, final String bundleId, final String language)
+                    throws ServiceException {
+        return retry.call(new ServiceRetry.Request<Map<String, ResourceEntryData>>() {
+            @Override
+            public Map<String, ResourceEntryData> call() throws ServiceException {
+                return client.getResourceEntries(bundleId, language);
+            }
+        });
+    }
+
+    /**
+     * Makes target language transfers wait until the source language is
+     * copied to the destination.
+     */
+    private static final class SourceLanguageGate {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile boolean uploaded = false;
+
+        void open(boolean uploaded) {
+            if (latch.getCount() > 0) {
+                this.uploaded = uploaded;
+                latch.countDown();
+            }
+        }
+
+        /**
+         * Waits until the gate is opened, and returns true if the source
+         * language was uploaded.
+         */
+        boolean await() throws InterruptedException {
+            latch.await();
+            return uploaded;
         }
     }
 
@@ -153,6 +345,7 @@ final class CopyBundleCmd extends BundleCmd {
      * Upload resource entries. An entry for a target language with status
      * other than 'translated' will be excluded.
      * 
+     * @param retry     Retry policy for the upload request
      * @param client    GP service client
      * @param bundleId  Bundle ID
      * @param language  Language ID
@@ -161,9 +354,10 @@ final class CopyBundleCmd extends BundleCmd {
      *          if nothing uploaded.
      * @throws ServiceException
      */
-    private static boolean uploadResources(ServiceClient client, String bundleId,
-            String language, Map<String, ResourceEntryData> resources) throws ServiceException {
-        Map<String, NewResourceEntryData> newResources =
+    private static boolean uploadResources(ServiceRetry retry, final ServiceClient client,
+            final String bundleId, final String language, Map<String, ResourceEntryData> resources)
+                    throws ServiceException {
+        final Map<String, NewResourceEntryData> newResources =
                 new HashMap<String, NewResourceEntryData>(resources.size());
         for (Entry<String, ResourceEntryData> res : resources.entrySet()) {
             ResourceEntryData resdata = res.getValue();
@@ -187,7 +381,13 @@ final class CopyBundleCmd extends BundleCmd {
         if (newResources.isEmpty()) {
             return false;
         }
-        client.uploadResourceEntries(bundleId, language, newResources);
+        retry.call(new ServiceRetry.Request<Void>() {
+            @Override
+            public Void call() throws ServiceException {
+                client.uploadResourceEntries(bundleId, language, newResources);
+                return null;
+            }
+        });
         return true;
     }
 }
\ No newline at end of file
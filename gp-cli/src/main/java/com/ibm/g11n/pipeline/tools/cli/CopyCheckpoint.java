@@ -0,0 +1,171 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records progress of copying bundles, so an interrupted copy can be
+ * resumed.
+ * <p>
+ * The checkpoint file is a text file, appended a line for each step -
+ * a bundle about to be created at the destination, a bundle created,
+ * a language copied and a bundle copied entirely. Each line is flushed immediately, so
+ * the file is valid when the process is terminated at any point.
+ *
+ * @author yoshito_umaoka
+ */
+final class CopyCheckpoint implements Closeable {
+    private static final String CREATING = "creating";
+    private static final String CREATED = "created";
+    private static final String LANGUAGE = "language";
+    private static final String COMPLETED = "completed";
+    private static final char SEP = '\t';
+
+    private final Set<String> creating = new HashSet<>();
+    private final Set<String> created = new HashSet<>();
+    private final Set<String> languages = new HashSet<>();
+    private final Set<String> completed = new HashSet<>();
+
+    private final Writer writer;
+
+    private CopyCheckpoint(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the checkpoint file. When the file exists, the progress recorded
+     * in the file is loaded, and new progress is appended to the file.
+     *
+     * @param file  The checkpoint file.
+     * @return  The checkpoint.
+     * @throws IOException if the file cannot be read or written.
+     */
+    static CopyCheckpoint open(File file) throws IOException {
+        Set<String> creating = new HashSet<>();
+        Set<String> created = new HashSet<>();
+        Set<String> languages = new HashSet<>();
+        Set<String> completed = new HashSet<>();
+        if (file.exists()) {
+            // Discards a line partially written at termination. Such line
+            // may look like a valid record, such as a language ID truncated
+            // from "zh-Hans" to "zh".
+            truncatePartialLine(file);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(String.valueOf(SEP));
+                    if (fields.length == 2 && fields[0].equals(CREATING)) {
+                        creating.add(fields[1]);
+                    } else if (fields.length == 2 && fields[0].equals(CREATED)) {
+                        created.add(fields[1]);
+                    } else if (fields.length == 3 && fields[0].equals(LANGUAGE)) {
+                        languages.add(fields[1] + SEP + fields[2]);
+                    } else if (fields.length == 2 && fields[0].equals(COMPLETED)) {
+                        completed.add(fields[1]);
+                    }
+                }
+            }
+        }
+        CopyCheckpoint checkpoint = new CopyCheckpoint(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        checkpoint.creating.addAll(creating);
+        checkpoint.created.addAll(created);
+        checkpoint.languages.addAll(languages);
+        checkpoint.completed.addAll(completed);
+        return checkpoint;
+    }
+
+    private static void truncatePartialLine(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long len = raf.length();
+            while (len > 0) {
+                raf.seek(len - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                len--;
+            }
+            if (len < raf.length()) {
+                raf.setLength(len);
+            }
+        }
+    }
+
+    synchronized boolean isCreating(String bundleId) {
+        return creating.contains(bundleId);
+    }
+
+    synchronized boolean isCreated(String bundleId) {
+        return created.contains(bundleId);
+    }
+
+    synchronized boolean isCopied(String bundleId, String language) {
+        return languages.contains(bundleId + SEP + language);
+    }
+
+    synchronized boolean isCompleted(String bundleId) {
+        return completed.contains(bundleId);
+    }
+
+    synchronized void markCreating(String bundleId) throws IOException {
+        if (creating.add(bundleId)) {
+            append(CREATING + SEP + bundleId);
+        }
+    }
+
+    synchronized void markCreated(String bundleId) throws IOException {
+        if (created.add(bundleId)) {
+            append(CREATED + SEP + bundleId);
+        }
+    }
+
+    synchronized void markCopied(String bundleId, String language) throws IOException {
+        if (languages.add(bundleId + SEP + language)) {
+            append(LANGUAGE + SEP + bundleId + SEP + language);
+        }
+    }
+
+    synchronized void markCompleted(String bundleId) throws IOException {
+        if (completed.add(bundleId)) {
+            append(COMPLETED + SEP + bundleId);
+        }
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A thin launcher forwarding a command to the Globalization Pipeline command
+ * daemon started by <code>daemon</code> command. When the daemon is not running,
+ * the command is executed in this JVM.
+ * <p>
+ * This class only depends on the Java runtime, so forwarding a command does not
+ * load the command line parser, the service client or the resource filters.
+ * <p>
+ * The access token is never sent to the daemon. The launcher and the daemon
+ * exchange random nonces, and each of them proves the knowledge of the token
+ * by an HMAC over the nonces. The launcher sends the command line arguments
+ * only after the daemon proved it, so a process listening on the port left in
+ * a stale daemon information file cannot obtain the arguments.
+ *
+ * @author yoshito_umaoka
+ */
+public class DaemonClient {
+    static final int PROTOCOL_VERSION = 2;
+
+    static final int NONCE_LENGTH = 32;
+
+    /** The length of HMAC-SHA256 */
+    static final int PROOF_LENGTH = 32;
+
+    /** The timeout for reading a request, or the proof of the daemon */
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 30000;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] DAEMON_ROLE = {'d'};
+    private static final byte[] CLIENT_ROLE = {'c'};
+
+    /** The argument count requesting the daemon to stop */
+    static final int STOP_REQUEST = -1;
+
+    /** The maximum number of arguments accepted by the daemon */
+    static final int MAX_ARGS = 256;
+
+    /** The maximum length of an argument in modified UTF-8 accepted by the daemon */
+    static final int MAX_ARG_LENGTH = 8192;
+
+    static final int FRAME_EXIT = 0;
+    static final int FRAME_STDOUT = 1;
+    static final int FRAME_STDERR = 2;
+
+    static final String PROP_PORT = "port";
+    static final String PROP_TOKEN = "token";
+
+    /**
+     * The environment variable specifying the daemon information file.
+     */
+    static final String DAEMON_FILE_ENV = "GP_CLI_DAEMON_FILE";
+
+    public static void main(String[] args) {
+        Integer status = null;
+        try {
+            status = forward(getInfoFile(), args);
+        } catch (IOException e) {
+            System.err.println("Failed to communicate with the daemon: " + e.getMessage());
+            System.exit(1);
+        }
+        if (status == null) {
+            // The daemon is not running
+            GPCmd.main(args);
+        } else if (status.intValue() != 0) {
+            System.exit(status.intValue());
+        }
+    }
+
+    /**
+     * Returns the file storing the port and the access token of the running daemon.
+     */
+    static File getInfoFile() {
+        String path = System.getenv(DAEMON_FILE_ENV);
+        if (path != null && !path.isEmpty()) {
+            return new File(path);
+        }
+        return new File(new File(System.getProperty("user.home"), ".gp-cli"), "daemon.properties");
+    }
+
+    /**
+     * Forwards the command to the daemon, and writes out the output of the command
+     * to the standard output and the standard error.
+     *
+     * @param infoFile  The daemon information file
+     * @param args      The command line arguments
+     * @return  The exit status of the command, or null if the daemon is not running,
+     *          or the arguments exceed the limits of the daemon.
+     * @throws IOException on a communication error.
+     */
+    static Integer forward(File infoFile, String[] args) throws IOException {
+        if (args.length > MAX_ARGS) {
+            return null;
+        }
+        for (String arg : args) {
+            if (utfLength(arg) > MAX_ARG_LENGTH) {
+                return null;
+            }
+        }
+        try (Socket socket = connect(infoFile)) {
+            if (socket == null) {
+                return null;
+            }
+            DataOutputStream out = handshake(socket, infoFile);
+            out.writeInt(args.length);
+            out.writeUTF(new File("").getAbsolutePath());
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            return Integer.valueOf(readResponse(socket.getInputStream(), System.out, System.err));
+        }
+    }
+
+    /**
+     * Returns the length of the string encoded in modified UTF-8, as written by
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    static int utfLength(String str) {
+        int len = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                len++;
+            } else if (c <= 0x07FF) {
+                len += 2;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Requests the daemon to stop.
+     *
+     * @param infoFile  The daemon information file
+     * @return  true if the daemon was stopped, or false if the daemon is not running.
+     * @throws IOException on a communication error.
+     */
+    static boolean stop(File infoFile) throws IOException {
+        try (Socket socket = connect(infoFile)) {
+            if (socket == null) {
+                return false;
+            }
+            DataOutputStream out = handshake(socket, infoFile);
+            out.writeInt(STOP_REQUEST);
+            out.flush();
+            readResponse(socket.getInputStream(), System.out, System.err);
+            return true;
+        }
+    }
+
+    private static Socket connect(File infoFile) throws IOException {
+        if (!infoFile.isFile()) {
+            return null;
+        }
+        int port;
+        try {
+            port = Integer.parseInt(readInfo(infoFile).getProperty(PROP_PORT, ""));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid daemon information file " + infoFile.getPath(), e);
+        }
+        try {
+            return new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (ConnectException e) {
+            // The daemon information file was left by a daemon terminated abnormally
+            return null;
+        }
+    }
+
+    /**
+     * Verifies the proof of the daemon, and sends the proof of the launcher.
+     *
+     * @return  The stream for writing the request to the daemon.
+     * @throws IOException if the listener is not the daemon, or on a communication error.
+     */
+    private static DataOutputStream handshake(Socket socket, File infoFile) throws IOException {
+        String token = readInfo(infoFile).getProperty(PROP_TOKEN, "");
+        if (token.isEmpty()) {
+            throw new IOException("Invalid daemon information file " + infoFile.getPath());
+        }
+        byte[] clientNonce = new byte[NONCE_LENGTH];
+        new SecureRandom().nextBytes(clientNonce);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(PROTOCOL_VERSION);
+        out.write(clientNonce);
+        out.flush();
+
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] daemonNonce = new byte[NONCE_LENGTH];
+        byte[] daemonProof = new byte[PROOF_LENGTH];
+        in.readFully(daemonNonce);
+        in.readFully(daemonProof);
+        int port = socket.getPort();
+        if (!MessageDigest.isEqual(daemonProof, proof(token, true, port, clientNonce, daemonNonce))) {
+            throw new IOException("The process listening on the port " + port
+                    + " is not the daemon. Remove " + infoFile.getPath() + " if the daemon is not running.");
+        }
+        // commands may run for a long time
+        socket.setSoTimeout(0);
+
+        out.write(proof(token, false, port, daemonNonce, clientNonce));
+        return out;
+    }
+
+    /**
+     * Returns the HMAC proving the knowledge of the access token.
+     *
+     * @param token         The access token.
+     * @param daemon        true for the proof of the daemon, false for the launcher.
+     * @param port          The port of the daemon.
+     * @param peerNonce     The nonce sent by the peer.
+     * @param ownNonce      The nonce sent by the prover.
+     * @return  The proof.
+     */
+    static byte[] proof(String token, boolean daemon, int port, byte[] peerNonce, byte[] ownNonce) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.US_ASCII), HMAC_ALGORITHM));
+            mac.update(daemon ? DAEMON_ROLE : CLIENT_ROLE);
+            mac.update(new byte[] {(byte) (port >> 24), (byte) (port >> 16), (byte) (port >> 8), (byte) port});
+            mac.update(peerNonce);
+            mac.update(ownNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties readInfo(File infoFile) throws IOException {
+        Properties props = new Properties();
+        try (InputStream is = new FileInputStream(infoFile)) {
+            props.load(is);
+        }
+        return props;
+    }
+
+    private static int readResponse(InputStream is, PrintStream stdout, PrintStream stderr)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        byte[] buf = new byte[8192];
+        while (true) {
+            int type = in.readByte();
+            int len = in.readInt();
+            if (type == FRAME_EXIT) {
+                stdout.flush();
+                stderr.flush();
+                return len;
+            }
+            PrintStream dest = type == FRAME_STDERR ? stderr : stdout;
+            while (len > 0) {
+                int n = in.read(buf, 0, Math.min(len, buf.length));
+                if (n < 0) {
+                    throw new IOException("Unexpected end of the response from the daemon");
+                }
+                dest.write(buf, 0, n);
+                len -= n;
+            }
+            if (type == FRAME_STDERR) {
+                stderr.flush();
+            }
+        }
+    }
+}
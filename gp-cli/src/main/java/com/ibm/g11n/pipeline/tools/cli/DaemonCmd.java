@@ -0,0 +1,336 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.sync.StateFiles;
+
+/**
+ * Runs a daemon executing commands forwarded by {@link DaemonClient}.
+ * <p>
+ * The daemon keeps the JVM, service clients and resource filters resident,
+ * so commands forwarded to the daemon do not pay the cost of JVM startup,
+ * class loading and establishing a new TLS session. The daemon listens on
+ * a loopback port, and accepts only requests proving the knowledge of the
+ * access token stored in the daemon information file readable by the owner
+ * only. Requests are executed by a bounded number of threads, and requests
+ * beyond the capacity of the request queue are refused.
+ *
+ * @author yoshito_umaoka
+ */
+@Parameters(commandDescription = "Runs a daemon executing commands forwarded by the launcher.")
+final class DaemonCmd extends BaseCmd {
+    @Parameter(
+            names = {"--port"},
+            description = "The loopback port used by the daemon. An available port is used by default.")
+    private int port = 0;
+
+    @Parameter(
+            names = {"--threads"},
+            description = "The maximum number of commands executed concurrently")
+    private int threads = 4;
+
+    @Parameter(
+            names = {"--stop"},
+            description = "Stops the running daemon")
+    private boolean stop = false;
+
+    /**
+     * The capacity of the request queue per thread.
+     */
+    private static final int QUEUE_CAPACITY_PER_THREAD = 2;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private volatile boolean stopped = false;
+
+    @Override
+    protected void _execute() {
+        File infoFile = DaemonClient.getInfoFile();
+        if (stop) {
+            try {
+                if (!DaemonClient.stop(infoFile)) {
+                    throw new RuntimeException("The daemon is not running.");
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to stop the daemon: " + e.getMessage(), e);
+            }
+            System.out.println("The daemon was stopped.");
+            return;
+        }
+
+        // Loads the resource filters, and creates the service client when
+        // credentials are specified, so the first command runs fast.
+        ResourceFilterFactory.getDefaultInstance();
+        if (jsonCreds != null || gpUrl != null) {
+            getClient();
+        }
+
+        byte[] token = new byte[32];
+        RANDOM.nextBytes(token);
+        String tokenStr = StateFiles.toHex(token);
+
+        int numThreads = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numThreads * QUEUE_CAPACITY_PER_THREAD),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "gp-cli-daemon-request");
+                    }
+                });
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            writeInfo(infoFile, serverSocket.getLocalPort(), tokenStr);
+            OutputRouter.install();
+            System.out.println("The daemon is listening on " + serverSocket.getInetAddress().getHostAddress()
+                    + ":" + serverSocket.getLocalPort());
+            try {
+                while (!stopped) {
+                    final Socket socket;
+                    try {
+                        socket = serverSocket.accept();
+                    } catch (SocketException e) {
+                        // closed by a stop request
+                        break;
+                    }
+                    try {
+                        pool.execute(new Handler(socket, serverSocket, tokenStr));
+                    } catch (RejectedExecutionException e) {
+                        // too many requests
+                        socket.close();
+                    }
+                }
+            } finally {
+                pool.shutdown();
+                infoFile.delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Daemon I/O error: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeInfo(File infoFile, int port, String token) throws IOException {
+        File dir = infoFile.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        infoFile.delete();
+        infoFile.createNewFile();
+        // Restricts access to the owner before writing the token
+        try {
+            Files.setPosixFilePermissions(infoFile.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            infoFile.setReadable(false, false);
+            infoFile.setReadable(true, true);
+            infoFile.setWritable(false, false);
+            infoFile.setWritable(true, true);
+        }
+        Properties props = new Properties();
+        props.setProperty(DaemonClient.PROP_PORT, String.valueOf(port));
+        props.setProperty(DaemonClient.PROP_TOKEN, token);
+        try (OutputStream os = new FileOutputStream(infoFile)) {
+            props.store(os, "Globalization Pipeline command daemon");
+        }
+    }
+
+    /**
+     * Sends the proof of the daemon, and verifies the proof of the launcher.
+     *
+     * @param in        The input stream from the launcher.
+     * @param out       The output stream to the launcher.
+     * @param token     The access token.
+     * @param port      The port of the daemon.
+     * @return  true if the launcher knows the access token.
+     * @throws IOException on a communication error.
+     */
+    static boolean authenticate(DataInputStream in, DataOutputStream out, String token, int port)
+            throws IOException {
+        if (in.readInt() != DaemonClient.PROTOCOL_VERSION) {
+            return false;
+        }
+        byte[] clientNonce = new byte[DaemonClient.NONCE_LENGTH];
+        in.readFully(clientNonce);
+
+        byte[] daemonNonce = new byte[DaemonClient.NONCE_LENGTH];
+        RANDOM.nextBytes(daemonNonce);
+        out.write(daemonNonce);
+        out.write(DaemonClient.proof(token, true, port, clientNonce, daemonNonce));
+        out.flush();
+
+        byte[] clientProof = new byte[DaemonClient.PROOF_LENGTH];
+        in.readFully(clientProof);
+        return MessageDigest.isEqual(clientProof, DaemonClient.proof(token, false, port, daemonNonce, clientNonce));
+    }
+
+    /**
+     * Reads the working directory followed by the command line arguments
+     * forwarded by a launcher.
+     *
+     * @param in    The input stream from the launcher.
+     * @param argc  The number of the command line arguments.
+     * @return  The working directory and the arguments, or null if the number
+     *          of the arguments or the length of an argument exceeds the limit.
+     * @throws IOException on a communication error.
+     */
+    static String[] readArguments(DataInputStream in, int argc) throws IOException {
+        if (argc < 0 || argc > DaemonClient.MAX_ARGS) {
+            return null;
+        }
+        String[] args = new String[argc + 1];
+        for (int i = 0; i < args.length; i++) {
+            // Checks the length prefix written by writeUTF before reading the string
+            in.mark(2);
+            int len = in.readUnsignedShort();
+            in.reset();
+            if (len > DaemonClient.MAX_ARG_LENGTH) {
+                return null;
+            }
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    /**
+     * Executes a command forwarded by a launcher.
+     */
+    private final class Handler implements Runnable {
+        private final Socket socket;
+        private final ServerSocket serverSocket;
+        private final String token;
+
+        Handler(Socket socket, ServerSocket serverSocket, String token) {
+            this.socket = socket;
+            this.serverSocket = serverSocket;
+            this.token = token;
+        }
+
+        @Override
+        public void run() {
+            try (Socket s = socket) {
+                s.setSoTimeout(DaemonClient.HANDSHAKE_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                if (!authenticate(in, out, token, s.getLocalPort())) {
+                    return;
+                }
+                int argc = in.readInt();
+                if (argc == DaemonClient.STOP_REQUEST) {
+                    stopped = true;
+                    writeExit(out, 0);
+                    serverSocket.close();
+                    return;
+                }
+                String[] args = readArguments(in, argc);
+                if (args == null) {
+                    return;
+                }
+                File workingDir = new File(args[0]);
+                args = Arrays.copyOfRange(args, 1, args.length);
+
+                OutputStream stdout = new BufferedOutputStream(new FrameOutputStream(out, DaemonClient.FRAME_STDOUT));
+                OutputStream stderr = new BufferedOutputStream(new FrameOutputStream(out, DaemonClient.FRAME_STDERR));
+                int status;
+                OutputRouter.set(stdout, stderr);
+                try {
+                    status = GPCmd.run(args, workingDir);
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                    status = 1;
+                } finally {
+                    System.out.flush();
+                    System.err.flush();
+                    OutputRouter.clear();
+                }
+                stdout.flush();
+                stderr.flush();
+                writeExit(out, status);
+            } catch (IOException e) {
+                // The launcher was terminated
+            }
+        }
+
+        private void writeExit(DataOutputStream out, int status) throws IOException {
+            synchronized (out) {
+                out.writeByte(DaemonClient.FRAME_EXIT);
+                out.writeInt(status);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes data to the launcher as frames of the specified type.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int type;
+
+        FrameOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
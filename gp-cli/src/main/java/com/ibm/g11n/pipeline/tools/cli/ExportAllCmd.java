@@ -0,0 +1,431 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.ExportJob;
+import com.ibm.g11n.pipeline.sync.SyncEngine;
+import com.ibm.g11n.pipeline.sync.SyncException;
+
+/**
+ * Exports resource data from multiple bundles and languages to resource
+ * bundle files.
+ * <p>
+ * Resource entries are fetched concurrently with a single service client,
+ * and converted and written out in parallel by the sync engine.
+ * <p>
+ * With a multi-bundle resource type, the selected bundles are written out
+ * to a single file per language. When a base file is specified, translated
+ * values are merged into the base file, and resource entries are fetched
+ * only for bundles looked up by the resource filter.
+ *
+ * @author yoshito_umaoka
+ */
+@Parameters(commandDescription = "Exports resource data from multiple bundles and languages.")
+final class ExportAllCmd extends BaseCmd {
+    @Parameter(
+            names = {"-b", "--bundles"},
+            description = "Comma separated bundle IDs to be exported. '*' matches any characters."
+                    + " All bundles are exported by default.")
+    private List<String> bundleSelectors;
+
+    @Parameter(
+            names = {"-l", "--languages"},
+            description = "Comma separated language IDs to be exported."
+                    + " All languages in each bundle are exported by default.")
+    private List<String> languages;
+
+    @Parameter(
+            names = {"-t", "--type"},
+            description = "Resource file type",
+            required = true)
+    private String type;
+
+    @Parameter(
+            names = {"-o", "--output"},
+            description = "Output file path template, such as out/{LANG}/{BUNDLE}.json",
+            required = true)
+    private String output;
+
+    @Parameter(
+            names = {"--base"},
+            description = "Base file merged with translated values, used with a multi-bundle resource type")
+    private String base;
+
+    @Parameter(
+            names = {"-k", "--fallback"},
+            description = "Whether if source language value is used if translation is missing")
+    private boolean fallback = false;
+
+    @Parameter(
+            names = {"-r", "--reviewedOnly"},
+            description = "Includes only reviewed translation.")
+    private boolean reviewedOnly = false;
+
+    @Parameter(
+            names = {"--threads"},
+            description = "The number of concurrent requests to the service")
+    private int threads = 4;
+
+    @Parameter(
+            names = {"--retries"},
+            description = "The maximum number of retries for a request failed by a transient service error")
+    private int retries = 3;
+
+    @Parameter(
+            names = {"--spillThreshold"},
+            description = "The maximum number of resource strings held in memory."
+                    + " Resource strings exceeding the number are kept in temporary files.")
+    private int spillThreshold = 0;
+
+    @Parameter(
+            names = {"--spillDir"},
+            description = "Directory for the temporary files used with --spillThreshold")
+    private String spillDir;
+
+    @Override
+    protected void _execute() {
+        final ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
+        MultiBundleResourceFilter multiBundleFilter = null;
+        if (filter == null) {
+            multiBundleFilter = ResourceFilterFactory.getMultiBundleResourceFilter(type);
+            if (multiBundleFilter == null) {
+                throw new RuntimeException("Resource filter for " + type + " is not available.");
+            }
+        } else if (base != null) {
+            throw new RuntimeException("--base is used only with a multi-bundle resource type.");
+        }
+        if (spillThreshold < 0) {
+            throw new RuntimeException("--spillThreshold must not be negative.");
+        }
+        File spillDirectory = spillDir == null ? null : getFile(spillDir);
+        BundlePathTemplate template = null;
+        if (multiBundleFilter == null) {
+            try {
+                template = new BundlePathTemplate(output);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+
+        final ServiceClient client = getClient();
+        final ServiceRetry retry = new ServiceRetry(retries);
+        int numThreads = Math.max(1, threads);
+
+        // Fetches bundle information of the selected bundles concurrently
+        Map<String, BundleData> bundleInfos = new TreeMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            Set<String> bundleIds = retry.call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return client.getBundleIds();
+                }
+            });
+            Map<String, Future<BundleData>> results = new TreeMap<>();
+            for (final String bundleId : selectBundles(bundleIds)) {
+                results.put(bundleId, pool.submit(new Callable<BundleData>() {
+                    @Override
+                    public BundleData call() throws ServiceException {
+                        return retry.call(new ServiceRetry.Request<BundleData>() {
+                            @Override
+                            public BundleData call() throws ServiceException {
+                                return client.getBundleInfo(bundleId);
+                            }
+                        });
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<BundleData>> result : results.entrySet()) {
+                bundleInfos.put(result.getKey(), result.getValue().get());
+            }
+        } catch (ServiceException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (bundleInfos.isEmpty()) {
+            System.out.println("No bundles matched the specified bundle IDs.");
+            return;
+        }
+
+        if (multiBundleFilter != null) {
+            exportMultiBundle(multiBundleFilter, bundleInfos, client, retry);
+            return;
+        }
+
+        List<ExportJob> jobs = new ArrayList<>();
+        Set<File> outputFiles = new HashSet<>();
+        for (Map.Entry<String, BundleData> bundleInfo : bundleInfos.entrySet()) {
+            final String bundleId = bundleInfo.getKey();
+            BundleData bundleData = bundleInfo.getValue();
+
+            for (final String language : selectLanguages(bundleData)) {
+                File outputFile = getFile(template.expand(bundleId, language));
+                if (!outputFiles.add(outputFile)) {
+                    throw new RuntimeException("The output file " + outputFile.getPath()
+                            + " is used for multiple bundles or languages. Check the output path template "
+                            + output + ".");
+                }
+                ExportJob job = new ExportJob(bundleId, language, type, outputFile) {
+                    @Override
+                    protected Map<String, EntryData> fetch() throws ServiceException {
+                        return EntryData.fromResourceEntries(retry.call(
+                                new ServiceRetry.Request<Map<String, ResourceEntryData>>() {
+                            @Override
+                            public Map<String, ResourceEntryData> call() throws ServiceException {
+                                return client.getResourceEntries(bundleId, language);
+                            }
+                        }));
+                    }
+
+                    @Override
+                    protected void completed() {
+                        System.out.println("Resource data exported from bundle:" + bundleId
+                                + ", language: " + language + " was successfully saved to file "
+                                + getOutputFile().getPath());
+                    }
+                };
+                job.embeddedLanguageCode(language)
+                    .reviewedOnly(reviewedOnly)
+                    .withFallback(fallback)
+                    .notes(bundleData.getNotes())
+                    .metadata(bundleData.getMetadata())
+                    .filter(filter)
+                    .spillThreshold(spillThreshold)
+                    .spillDirectory(spillDirectory);
+                jobs.add(job);
+            }
+        }
+
+        int numProcessors = Runtime.getRuntime().availableProcessors();
+        try (SyncEngine engine = new SyncEngine(numThreads, numProcessors, numProcessors, numThreads)) {
+            engine.run(jobs);
+        } catch (SyncException e) {
+            throw new RuntimeException("Failed to export " + e.getJob() + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        System.out.println(jobs.size() + " resource bundle files were exported from "
+                + bundleInfos.size() + " bundles.");
+    }
+
+    /**
+     * Exports the selected bundles to a multi-bundle resource file per language.
+     */
+    private void exportMultiBundle(MultiBundleResourceFilter filter, Map<String, BundleData> bundleInfos,
+            final ServiceClient client, final ServiceRetry retry) {
+        // Bundles containing each language
+        Map<String, Set<String>> langBundles = new TreeMap<>();
+        for (Map.Entry<String, BundleData> bundleInfo : bundleInfos.entrySet()) {
+            for (String language : selectLanguages(bundleInfo.getValue())) {
+                Set<String> bundleIds = langBundles.get(language);
+                if (bundleIds == null) {
+                    bundleIds = new TreeSet<>();
+                    langBundles.put(language, bundleIds);
+                }
+                bundleIds.add(bundleInfo.getKey());
+            }
+        }
+        if (langBundles.size() > 1 && !output.contains(BundlePathTemplate.LANG)) {
+            throw new RuntimeException("The output path template " + output + " must contain "
+                    + BundlePathTemplate.LANG + " for exporting multiple languages.");
+        }
+        File baseFile = base == null ? null : getFile(base);
+
+        for (Map.Entry<String, Set<String>> langEntry : langBundles.entrySet()) {
+            final String language = langEntry.getKey();
+            final Set<String> bundleIds = langEntry.getValue();
+            File outputFile = getFile(output.replace(BundlePathTemplate.LANG, language));
+            File outputDir = outputFile.getAbsoluteFile().getParentFile();
+            if (!outputDir.isDirectory()) {
+                outputDir.mkdirs();
+            }
+            FilterOptions options = new FilterOptions(Locale.forLanguageTag(language));
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+                if (baseFile != null) {
+                    try (InputStream is = new BufferedInputStream(new FileInputStream(baseFile))) {
+                        filter.merge(is, os, new MultiBundleResourceFilter.TranslationLookup() {
+                            // Resource entries of bundles looked up so far
+                            private final Map<String, Map<String, ResourceEntryData>> entries = new HashMap<>();
+
+                            @Override
+                            public String lookup(String bundleId, String key) throws ResourceFilterException {
+                                if (!bundleIds.contains(bundleId)) {
+                                    return null;
+                                }
+                                Map<String, ResourceEntryData> bundleEntries = entries.get(bundleId);
+                                if (bundleEntries == null) {
+                                    try {
+                                        bundleEntries = getResourceEntries(client, retry, bundleId, language);
+                                    } catch (ServiceException e) {
+                                        throw new ResourceFilterException("Failed to fetch resource entries of bundle:"
+                                                + bundleId + ", language:" + language, e);
+                                    }
+                                    entries.put(bundleId, bundleEntries);
+                                }
+                                ResourceEntryData data = bundleEntries.get(key);
+                                return data == null ? null : getExportValue(data);
+                            }
+                        }, options);
+                    }
+                } else {
+                    Map<String, LanguageBundle> languageBundles = new TreeMap<>();
+                    for (String bundleId : bundleIds) {
+                        LanguageBundleBuilder builder = new LanguageBundleBuilder(false);
+                        builder.embeddedLanguageCode(language);
+                        builder.embeddedSourceLanguageCode(bundleInfos.get(bundleId).getSourceLanguage());
+                        for (Map.Entry<String, ResourceEntryData> entry
+                                : getResourceEntries(client, retry, bundleId, language).entrySet()) {
+                            ResourceEntryData data = entry.getValue();
+                            String value = getExportValue(data);
+                            if (value == null) {
+                                continue;
+                            }
+                            ResourceString.Builder resb = ResourceString.with(entry.getKey(), value)
+                                    .sourceValue(data.getSourceValue());
+                            if (data.getSequenceNumber() != null) {
+                                resb.sequenceNumber(data.getSequenceNumber().intValue());
+                            }
+                            builder.addResourceString(resb);
+                        }
+                        languageBundles.put(bundleId, builder.build());
+                    }
+                    filter.write(os, languageBundles, options);
+                }
+            } catch (IOException | ResourceFilterException | ServiceException e) {
+                throw new RuntimeException("Failed to export language " + language + ": " + e.getMessage(), e);
+            }
+            System.out.println("Resource data exported for language: " + language
+                    + " was successfully saved to file " + outputFile.getPath());
+        }
+    }
+
+    private static Map<String, ResourceEntryData> getResourceEntries(final ServiceClient client,
+            ServiceRetry retry, final String bundleId, final String language) throws ServiceException {
+        return retry.call(new ServiceRetry.Request<Map<String, ResourceEntryData>>() {
+            @Override
+            public Map<String, ResourceEntryData> call() throws ServiceException {
+                return client.getResourceEntries(bundleId, language);
+            }
+        });
+    }
+
+    /**
+     * Returns the value exported for the resource entry, or null if the entry
+     * is not exported, in the same manner with {@link ExportJob}.
+     */
+    private String getExportValue(ResourceEntryData data) {
+        String value = data.getValue();
+        if (reviewedOnly && !data.isReviewed()) {
+            value = null;
+        }
+        if (value == null && fallback) {
+            value = data.getSourceValue();
+        }
+        return value;
+    }
+
+    private Set<String> selectLanguages(BundleData bundleData) {
+        Set<String> bundleLangs = new TreeSet<>();
+        bundleLangs.add(bundleData.getSourceLanguage());
+        if (bundleData.getTargetLanguages() != null) {
+            bundleLangs.addAll(bundleData.getTargetLanguages());
+        }
+        if (languages == null) {
+            return bundleLangs;
+        }
+        Set<String> exportLangs = new TreeSet<>(languages);
+        exportLangs.retainAll(bundleLangs);
+        return exportLangs;
+    }
+
+    private Set<String> selectBundles(Set<String> bundleIds) {
+        if (bundleSelectors == null) {
+            return new TreeSet<>(bundleIds);
+        }
+        List<Pattern> patterns = new ArrayList<>(bundleSelectors.size());
+        for (String selector : bundleSelectors) {
+            StringBuilder regex = new StringBuilder();
+            String[] parts = selector.split("\\*", -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!parts[i].isEmpty()) {
+                    regex.append(Pattern.quote(parts[i]));
+                }
+            }
+            patterns.add(Pattern.compile(regex.toString()));
+        }
+        Set<String> selected = new TreeSet<>();
+        for (String bundleId : bundleIds) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(bundleId).matches()) {
+                    selected.add(bundleId);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+}
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2015, 2018
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,27 +15,17 @@
  */
 package com.ibm.g11n.pipeline.tools.cli;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.ibm.g11n.pipeline.client.BundleData;
-import com.ibm.g11n.pipeline.client.ResourceEntryData;
-import com.ibm.g11n.pipeline.client.ServiceException;
-import com.ibm.g11n.pipeline.resfilter.FilterOptions;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
-import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.ExportJob;
+import com.ibm.g11n.pipeline.sync.SyncEngine;
+import com.ibm.g11n.pipeline.sync.SyncException;
 
 /**
  * Exports resource data from a translation bundle.
@@ -80,80 +70,53 @@ final class ExportCmd extends BundleCmd {
             required = false)
     private boolean reviewedOnly = false;
 
-    @Override
-    protected void _execute() {
-        Map<String, ResourceEntryData> resEntries = null;
-        LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
-        try {
-            // For now, just use language ID specified on the command line
-            bundleBuilder.embeddedLanguageCode(languageId);
-
-            BundleData bundleData = getClient().getBundleInfo(bundleId);
-            List<String> bundleNotes = bundleData.getNotes();
-            if (bundleNotes != null) {
-                bundleBuilder.notes(bundleNotes);
-            }
-            Map<String, String> bundleMetadata = bundleData.getMetadata();
-            if (bundleMetadata != null) {
-                bundleBuilder.metadata(bundleMetadata);
-            }
+    @Parameter(
+            names = {"--spillThreshold"},
+            description = "The maximum number of resource strings held in memory."
+                    + " Resource strings exceeding the number are kept in temporary files.",
+            required = false)
+    private int spillThreshold = 0;
 
-            resEntries =
-                    getClient().getResourceEntries(bundleId, languageId);
-            for (Entry<String, ResourceEntryData> entry : resEntries.entrySet()) {
-                String key = entry.getKey();
-                ResourceEntryData data = entry.getValue();
-                String resVal = data.getValue();
-                Integer seqNum = data.getSequenceNumber();
-                String srcVal = data.getSourceValue();
-                List<String> notes = data.getNotes();
-                Map<String, String> metadata = data.getMetadata();
-                boolean isReviewed = data.isReviewed();
+    @Parameter(
+            names = {"--spillDir"},
+            description = "Directory for the temporary files used with --spillThreshold",
+            required = false)
+    private String spillDir;
 
-                if (reviewedOnly && !isReviewed) {
-                    resVal = null;
-                }
-                if (resVal == null && fallback) {
-                    resVal = srcVal;
-                }
-                if (resVal != null) {
-                    ResourceString.Builder resString = ResourceString.with(key, resVal)
-                            .sourceValue(srcVal);
+    @Override
+    protected void _execute() {
+        if (ResourceFilterFactory.getResourceFilter(type) == null) {
+            throw new RuntimeException("Resource filter for " + type + " is not available.");
+        }
+        if (spillThreshold < 0) {
+            throw new RuntimeException("--spillThreshold must not be negative.");
+        }
 
-                    if (seqNum != null) {
-                        resString.sequenceNumber(seqNum.intValue());
-                    }
-                    if (notes != null) {
-                        resString.notes(notes);
-                    }
-                    if (metadata != null) {
-                        resString.metadata(metadata);
-                    }
-                    bundleBuilder.addResourceString(resString.build());
-                }
+        ExportJob job = new ExportJob(bundleId, languageId, type, getFile(fileName)) {
+            @Override
+            protected Map<String, EntryData> fetch() throws Exception {
+                BundleData bundleData = getClient().getBundleInfo(bundleId);
+                notes(bundleData.getNotes());
+                metadata(bundleData.getMetadata());
+                return EntryData.fromResourceEntries(getClient().getResourceEntries(bundleId, languageId));
             }
-        } catch (ServiceException e) {
-            throw new RuntimeException(e);
+        };
+        // For now, just use language ID specified on the command line
+        job.embeddedLanguageCode(languageId).reviewedOnly(reviewedOnly).withFallback(fallback)
+            .spillThreshold(spillThreshold)
+            .spillDirectory(spillDir == null ? null : getFile(spillDir));
+        if (sourceFileName != null && !sourceFileName.isEmpty()) {
+            job.mergeSource(getFile(sourceFileName));
         }
-        LanguageBundle bundle = bundleBuilder.build();
 
-        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-        if (filter == null) {
-            throw new RuntimeException("Resource filter for " + type + " is not available.");
-        }
-        File f = new File(fileName);
-        FilterOptions fopts = new FilterOptions(Locale.forLanguageTag(languageId));
-        try (FileOutputStream fos = new FileOutputStream(f)) {
-            if (sourceFileName != null && !sourceFileName.isEmpty()) {
-                FileInputStream fis = new FileInputStream(sourceFileName);
-                filter.merge(fis, fos, bundle, fopts);
-            } else {
-                filter.write(fos, bundle, fopts);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to write the resoruce data to " + fileName + ": " + e.getMessage(), e);
-        } catch (ResourceFilterException e) {
-            throw new RuntimeException("Failed to process the resource data for " + fileName + ": " + e.getMessage(), e);
+        // A single job does not benefit from concurrent stages
+        try (SyncEngine engine = new SyncEngine(1, 1, 1, 1)) {
+            engine.run(Collections.singletonList(job));
+        } catch (SyncException e) {
+            throw new RuntimeException("Failed to export the resource data to " + fileName + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
         }
 
         System.out.println("Resource data exported from bundle:" + bundleId
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2017, 2018
+ * Copyright IBM Corp. 2017, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -52,7 +52,7 @@ final class ExportDocumentCmd extends DocumentCmd {
             throw new RuntimeException(e);
         }
 
-        File f = new File(fileName);
+        File f = getFile(fileName);
         try  {
             FileOutputStream fos = new FileOutputStream(f);
             fos.write(content);
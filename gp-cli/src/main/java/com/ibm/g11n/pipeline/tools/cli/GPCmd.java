@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2015, 2018
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package com.ibm.g11n.pipeline.tools.cli;
 
+import java.io.File;
+
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
@@ -36,6 +38,21 @@ public class GPCmd {
     }
 
     public static void main(String[] args) {
+        int status = run(args, null);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Parses the command line arguments, and executes the command.
+     *
+     * @param args          The command line arguments
+     * @param workingDir    The working directory for resolving relative file paths,
+     *                      or null when executed by main
+     * @return  The exit status
+     */
+    static int run(String[] args, File workingDir) {
         GPCmd gpCmd = new GPCmd();
         JCommander jc = new JCommander(gpCmd);
 
@@ -52,7 +69,9 @@ public class GPCmd {
         jc.addCommand("copy-bundle", new CopyBundleCmd(), "copy");
         jc.addCommand("copy-all-bundles", new CopyAllBundlesCmd());
         jc.addCommand("export", new ExportCmd());
+        jc.addCommand("export-all", new ExportAllCmd());
         jc.addCommand("import", new ImportCmd());
+        jc.addCommand("import-all", new ImportAllCmd());
         jc.addCommand("list-mt-languages", new ListMTLanguagesCmd());
 
         // users
@@ -70,19 +89,29 @@ public class GPCmd {
         jc.addCommand("export-document", new ExportDocumentCmd());
         jc.addCommand("import-document", new ImportDocumentCmd());
 
+        // others
+        jc.addCommand("daemon", new DaemonCmd());
+
         try {
             jc.parse(args);
             String cmdName = jc.getParsedCommand();
             if (cmdName == null || cmdName.equalsIgnoreCase("help")) {
                 jc.usage();
-            } else {
-                BaseCmd parsedCmd = (BaseCmd)jc.getCommands().get(cmdName).getObjects().get(0);
-                parsedCmd.execute();
+                return 0;
+            }
+            BaseCmd parsedCmd = (BaseCmd)jc.getCommands().get(cmdName).getObjects().get(0);
+            if (workingDir != null) {
+                if (parsedCmd instanceof DaemonCmd) {
+                    System.err.println("The daemon command cannot be executed by the daemon.");
+                    return 1;
+                }
+                parsedCmd.setWorkingDirectory(workingDir);
             }
+            return parsedCmd.execute();
         } catch (ParameterException e) {
             System.err.println(e.getMessage());
             jc.usage();
-            System.exit(1);
+            return 1;
         }
     }
 }
@@ -0,0 +1,518 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
+
+/**
+ * Imports resource bundle files in a directory tree to bundles.
+ * <p>
+ * Bundle files are parsed in parallel, and uploaded concurrently with
+ * a single service client. For each bundle, the source language is
+ * uploaded first, then other languages are uploaded. The number of parsed
+ * bundles waiting for upload is bounded, and each bundle is released after
+ * it is uploaded.
+ *
+ * @author yoshito_umaoka
+ */
+@Parameters(commandDescription = "Imports resource bundle files in a directory tree to bundles.")
+final class ImportAllCmd extends BaseCmd {
+    /**
+     * Layout of translated bundle files relative to source bundle files.
+     */
+    enum BundleLayout {
+        /**
+         * In the same directory with the source bundle file, with extra language suffix,
+         * e.g. com/example/Messages_fr.properties
+         */
+        LANGUAGE_SUFFIX,
+        /**
+         * In a language sub-directory under the directory where the source bundle file
+         * is placed, e.g. com/example/fr/Messages.properties
+         */
+        LANGUAGE_SUBDIR
+    }
+
+    @Parameter(
+            names = {"-d", "--dir"},
+            description = "Base directory of resource bundle files",
+            required = true)
+    private String baseDir;
+
+    @Parameter(
+            names = {"-t", "--type"},
+            description = "Resource file type",
+            required = true)
+    private String type;
+
+    @Parameter(
+            names = {"--include"},
+            description = "Glob pattern of bundle file paths relative to the base directory,"
+                    + " such as **/*.json. By default, files with the extensions of the resource type are imported")
+    private String include;
+
+    @Parameter(
+            names = {"--layout"},
+            description = "Layout of translated bundle files - LANGUAGE_SUFFIX or LANGUAGE_SUBDIR")
+    private BundleLayout layout = BundleLayout.LANGUAGE_SUFFIX;
+
+    @Parameter(
+            names = {"--pattern"},
+            description = "Relative path template of bundle files, such as {LANG}/{BUNDLE}.json,"
+                    + " used instead of the layout")
+    private String pattern;
+
+    @Parameter(
+            names = {"--source-language"},
+            description = "Source language of bundles created by this command")
+    private String sourceLanguage = "en";
+
+    @Parameter(
+            names = {"--create-bundles"},
+            description = "Creates bundles not available in the service instance")
+    private boolean createBundles = false;
+
+    @Parameter(
+            names = {"-r", "--reviewed"},
+            description = "Mark imported resource strings as reviewed")
+    private boolean asReviewed = false;
+
+    @Parameter(
+            names = {"--threads"},
+            description = "The number of bundle files uploaded concurrently")
+    private int threads = 4;
+
+    @Parameter(
+            names = {"--retries"},
+            description = "The maximum number of retries for a request failed by a transient service error")
+    private int retries = 3;
+
+    /**
+     * File name extensions of the resource types, used when --include is not specified.
+     */
+    private static final Map<String, String[]> TYPE_EXTENSIONS = new HashMap<>();
+    static {
+        TYPE_EXTENSIONS.put("AMDJS", new String[] {".js"});
+        TYPE_EXTENSIONS.put("ANDROID", new String[] {".xml"});
+        TYPE_EXTENSIONS.put("GLOBALIZEJS", new String[] {".json"});
+        TYPE_EXTENSIONS.put("IOS", new String[] {".strings"});
+        TYPE_EXTENSIONS.put("JAVA", new String[] {".properties"});
+        TYPE_EXTENSIONS.put("JAVAMSG", new String[] {".properties"});
+        TYPE_EXTENSIONS.put("JAVAMSGUTF8", new String[] {".properties"});
+        TYPE_EXTENSIONS.put("JAVAUTF8", new String[] {".properties"});
+        TYPE_EXTENSIONS.put("JSON", new String[] {".json"});
+        TYPE_EXTENSIONS.put("PO", new String[] {".po"});
+        TYPE_EXTENSIONS.put("POT", new String[] {".pot"});
+        TYPE_EXTENSIONS.put("XLIFF", new String[] {".xlf", ".xliff"});
+        TYPE_EXTENSIONS.put("YML", new String[] {".yml", ".yaml"});
+    }
+
+    /**
+     * A bundle file to be imported.
+     */
+    private static final class BundleFile {
+        final File file;
+        final String relPath;
+        final String bundleId;
+        /** The language, or null for the source language of the bundle */
+        final String language;
+
+        BundleFile(File file, String relPath, String bundleId, String language) {
+            this.file = file;
+            this.relPath = relPath;
+            this.bundleId = bundleId;
+            this.language = language;
+        }
+    }
+
+    @Override
+    protected void _execute() {
+        final ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
+        if (filter == null) {
+            throw new RuntimeException("Resource filter for " + type + " is not available.");
+        }
+        File dir = getFile(baseDir);
+        if (!dir.isDirectory()) {
+            throw new RuntimeException("The directory " + baseDir + " does not exist.");
+        }
+
+        List<BundleFile> bundleFiles;
+        try {
+            bundleFiles = scan(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to scan the directory " + baseDir + ": " + e.getMessage(), e);
+        }
+        if (bundleFiles.isEmpty()) {
+            System.out.println("No resource bundle files were found in " + baseDir);
+            return;
+        }
+
+        Map<String, List<BundleFile>> filesByBundle = new TreeMap<>();
+        for (BundleFile bf : bundleFiles) {
+            List<BundleFile> files = filesByBundle.get(bf.bundleId);
+            if (files == null) {
+                files = new ArrayList<>();
+                filesByBundle.put(bf.bundleId, files);
+            }
+            files.add(bf);
+        }
+
+        final ServiceClient client = getClient();
+        final ServiceRetry retry = new ServiceRetry(retries);
+        int parseThreads = Runtime.getRuntime().availableProcessors();
+        int numThreads = Math.max(1, threads);
+        ExecutorService parsePool = Executors.newFixedThreadPool(parseThreads);
+        final ExecutorService uploadPool = Executors.newFixedThreadPool(numThreads);
+        // Bounds the number of translated bundles held in memory, from parse to upload completion
+        final Semaphore pendingBundles = new Semaphore(parseThreads + numThreads * 2);
+        Map<String, Throwable> failures = new TreeMap<>();
+        try {
+            final Set<String> availBundleIds = retry.call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return client.getBundleIds();
+                }
+            });
+
+            // Uploads source languages first
+            Map<String, Future<String>> srcResults = new TreeMap<>();
+            for (Map.Entry<String, List<BundleFile>> entry : filesByBundle.entrySet()) {
+                final String bundleId = entry.getKey();
+                final List<BundleFile> files = entry.getValue();
+                srcResults.put(bundleId, uploadPool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        String srcLang = prepareBundle(client, retry, bundleId,
+                                availBundleIds.contains(bundleId));
+                        for (BundleFile bf : files) {
+                            if (bf.language == null || bf.language.equals(srcLang)) {
+                                try (LanguageBundle bundle = parse(filter, bf)) {
+                                    upload(client, retry, bf, srcLang, true, bundle);
+                                }
+                            }
+                        }
+                        return srcLang;
+                    }
+                }));
+            }
+
+            // Then, other languages, parsed in parallel while uploading
+            Map<BundleFile, Future<Future<Void>>> trgResults = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<String>> srcResult : srcResults.entrySet()) {
+                String bundleId = srcResult.getKey();
+                final String srcLang;
+                try {
+                    srcLang = srcResult.getValue().get();
+                } catch (ExecutionException e) {
+                    failures.put(bundleId, e.getCause());
+                    System.out.println(".. failed to import bundle:" + bundleId + " - "
+                            + e.getCause().getMessage());
+                    continue;
+                }
+                for (final BundleFile bf : filesByBundle.get(bundleId)) {
+                    if (bf.language == null || bf.language.equals(srcLang)) {
+                        continue;
+                    }
+                    pendingBundles.acquire();
+                    trgResults.put(bf, parsePool.submit(new Callable<Future<Void>>() {
+                        @Override
+                        public Future<Void> call() throws Exception {
+                            boolean uploading = false;
+                            try {
+                                final LanguageBundle bundle = parse(filter, bf);
+                                Future<Void> result = uploadPool.submit(new Callable<Void>() {
+                                    @Override
+                                    public Void call() throws Exception {
+                                        try {
+                                            upload(client, retry, bf, bf.language, false, bundle);
+                                        } finally {
+                                            bundle.close();
+                                            pendingBundles.release();
+                                        }
+                                        return null;
+                                    }
+                                });
+                                uploading = true;
+                                return result;
+                            } finally {
+                                if (!uploading) {
+                                    pendingBundles.release();
+                                }
+                            }
+                        }
+                    }));
+                }
+            }
+            for (Map.Entry<BundleFile, Future<Future<Void>>> trgResult : trgResults.entrySet()) {
+                try {
+                    trgResult.getValue().get().get();
+                } catch (ExecutionException e) {
+                    BundleFile bf = trgResult.getKey();
+                    failures.put(bf.relPath, e.getCause());
+                    System.out.println(".. failed to import " + bf.relPath + " - "
+                            + e.getCause().getMessage());
+                }
+            }
+        } catch (ServiceException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            parsePool.shutdownNow();
+            uploadPool.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new RuntimeException(failures.size() + " bundle(s) or file(s) were not imported: "
+                    + failures.keySet(), failures.values().iterator().next());
+        }
+        System.out.println(bundleFiles.size() + " resource bundle files in " + baseDir
+                + " were successfully imported to " + filesByBundle.size() + " bundles.");
+    }
+
+    /**
+     * Makes sure the bundle exists, and returns the source language of the bundle.
+     */
+    private String prepareBundle(final ServiceClient client, ServiceRetry retry,
+            final String bundleId, boolean exists) throws ServiceException {
+        if (exists) {
+            BundleData bundleData = retry.call(new ServiceRetry.Request<BundleData>() {
+                @Override
+                public BundleData call() throws ServiceException {
+                    return client.getBundleInfo(bundleId);
+                }
+            });
+            return bundleData.getSourceLanguage();
+        }
+        if (!createBundles) {
+            throw new ServiceException("The bundle:" + bundleId + " does not exist.");
+        }
+        client.createBundle(bundleId, new NewBundleData(sourceLanguage));
+        System.out.println(".. created bundle:" + bundleId);
+        return sourceLanguage;
+    }
+
+    private LanguageBundle parse(ResourceFilter filter, BundleFile bf) throws IOException {
+        String lang = bf.language == null ? sourceLanguage : bf.language;
+        try (FileInputStream fis = new FileInputStream(bf.file)) {
+            return filter.parse(fis, new FilterOptions(Locale.forLanguageTag(lang)));
+        } catch (ResourceFilterException e) {
+            throw new IOException("Failed to parse the resource data in " + bf.relPath
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void upload(final ServiceClient client, ServiceRetry retry, BundleFile bf,
+            final String language, boolean isSrcLang, LanguageBundle bundle) throws ServiceException {
+        final String bundleId = bf.bundleId;
+        if (isSrcLang) {
+            final BundleDataChangeSet bundleDataChanges = ImportCmd.getBundleDataChanges(bundle);
+            if (bundleDataChanges != null) {
+                retry.call(new ServiceRetry.Request<Void>() {
+                    @Override
+                    public Void call() throws ServiceException {
+                        client.updateBundle(bundleId, bundleDataChanges);
+                        return null;
+                    }
+                });
+            }
+        }
+        final Map<String, NewResourceEntryData> resEntries = ImportCmd.getResourceEntries(bundle, asReviewed);
+        retry.call(new ServiceRetry.Request<Void>() {
+            @Override
+            public Void call() throws ServiceException {
+                client.uploadResourceEntries(bundleId, language, resEntries);
+                return null;
+            }
+        });
+        System.out.println("Resource data extracted from " + bf.relPath
+                + " was successfully imported to bundle:" + bundleId
+                + ", language:" + language);
+    }
+
+    /**
+     * Walks the directory tree, and resolves the bundle and the language of
+     * each file matching the include pattern, or the extensions of the type.
+     */
+    private List<BundleFile> scan(final File dir) throws IOException {
+        final PathMatcher matcher = getFileMatcher();
+        final Set<String> relPaths = new TreeSet<>();
+        final Path root = dir.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(root.relativize(file))) {
+                    relPaths.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        List<BundleFile> bundleFiles = new ArrayList<>();
+        if (pattern != null) {
+            BundlePathTemplate template = new BundlePathTemplate(pattern);
+            for (String relPath : relPaths) {
+                String[] match = template.match(relPath);
+                if (match != null) {
+                    bundleFiles.add(new BundleFile(new File(dir, relPath), relPath, match[0], match[1]));
+                }
+            }
+            return bundleFiles;
+        }
+
+        for (String relPath : relPaths) {
+            String[] srcAndLang = resolveSource(relPath, relPaths);
+            String srcPath = srcAndLang == null ? relPath : srcAndLang[0];
+            String language = srcAndLang == null ? null : srcAndLang[1];
+            bundleFiles.add(new BundleFile(new File(dir, relPath), relPath,
+                    pathToBundleId(srcPath), language));
+        }
+        return bundleFiles;
+    }
+
+    private PathMatcher getFileMatcher() {
+        if (include != null) {
+            return FileSystems.getDefault().getPathMatcher("glob:" + include);
+        }
+        final String[] extensions = TYPE_EXTENSIONS.get(type.toUpperCase(Locale.ROOT));
+        if (extensions == null) {
+            throw new RuntimeException("The file name extensions of the type " + type
+                    + " are unknown. Specify bundle files by --include.");
+        }
+        return new PathMatcher() {
+            @Override
+            public boolean matches(Path path) {
+                String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                for (String ext : extensions) {
+                    if (fileName.endsWith(ext) && fileName.length() > ext.length()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Resolves the source bundle file of a translated bundle file by the layout.
+     *
+     * @return  A 2-element array of the source bundle file path and the language,
+     *          or null if the file is not a translated bundle file.
+     */
+    private String[] resolveSource(String relPath, Set<String> relPaths) {
+        int sepIdx = relPath.lastIndexOf('/');
+        String dirPath = relPath.substring(0, sepIdx + 1);
+        String fileName = relPath.substring(sepIdx + 1);
+
+        switch (layout) {
+        case LANGUAGE_SUFFIX: {
+            // e.g. Messages_zh_TW.properties => Messages.properties, zh-TW
+            int extIdx = fileName.lastIndexOf('.');
+            String baseName = extIdx > 0 ? fileName.substring(0, extIdx) : fileName;
+            String ext = extIdx > 0 ? fileName.substring(extIdx) : "";
+            for (int idx = baseName.indexOf('_'); idx > 0; idx = baseName.indexOf('_', idx + 1)) {
+                String lang = baseName.substring(idx + 1);
+                String srcPath = dirPath + baseName.substring(0, idx) + ext;
+                if (BundlePathTemplate.isLanguageId(lang) && relPaths.contains(srcPath)) {
+                    return new String[] {srcPath, lang.replace('_', '-')};
+                }
+            }
+            break;
+        }
+        case LANGUAGE_SUBDIR: {
+            // e.g. com/example/fr/Messages.properties => com/example/Messages.properties, fr
+            if (sepIdx > 0) {
+                int parentIdx = relPath.lastIndexOf('/', sepIdx - 1);
+                String lang = relPath.substring(parentIdx + 1, sepIdx);
+                String srcPath = relPath.substring(0, parentIdx + 1) + fileName;
+                if (BundlePathTemplate.isLanguageId(lang) && relPaths.contains(srcPath)) {
+                    return new String[] {srcPath, lang.replace('_', '-')};
+                }
+            }
+            break;
+        }
+        }
+        return null;
+    }
+
+    /**
+     * Maps a source bundle file path to a bundle ID, in the same manner with
+     * the default path to bundle ID mapping used by the Maven plugin.
+     */
+    private String pathToBundleId(String srcPath) {
+        StringBuilder buf = new StringBuilder();
+        int sepIdx = srcPath.lastIndexOf('/');
+        if (sepIdx > 0) {
+            buf.append(srcPath.substring(0, sepIdx).replace('/', '.').replace(' ', '_'));
+        }
+
+        char sep = '-'; // separator between package and file
+        String fileName = srcPath.substring(sepIdx + 1).replace(' ', '_');
+        if (DefaultResourceFilterProvider.isJavaType(type)) {
+            int dotIdx = fileName.indexOf('.');
+            if (dotIdx >= 0) {
+                fileName = fileName.substring(0, dotIdx);
+            }
+            sep = '.';
+        }
+
+        if (sepIdx > 0) {
+            buf.append(sep);
+        }
+        buf.append(fileName);
+        return buf.toString();
+    }
+}
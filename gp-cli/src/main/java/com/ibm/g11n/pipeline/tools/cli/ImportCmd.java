@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2015, 2017
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -83,43 +83,16 @@ final class ImportCmd extends BundleCmd {
         if (filter == null) {
             throw new RuntimeException("Resource filter for " + type + " is not available.");
         }
-        File f = new File(fileName);
+        File f = getFile(fileName);
         try (FileInputStream fis = new FileInputStream(f)) {
             LanguageBundle bundle = filter.parse(fis, new FilterOptions(Locale.forLanguageTag(languageId)));
 
             if (isSrcLang) {
                 // if the specified language is the source language, update bundle data if
                 // notes/metadata are available in parsed result.
-
-                // notes
-                if (!bundle.getNotes().isEmpty()) {
-                    bundleDataChanges = new BundleDataChangeSet();
-                    bundleDataChanges.setNotes(bundle.getNotes());
-                }
-                // update metadata if any - for now, this operation only appends
-                // extra metadata key-value pairs from bundle files
-                if (!bundle.getMetadata().isEmpty()) {
-                    if (bundleDataChanges == null) {
-                        bundleDataChanges = new BundleDataChangeSet();
-                    }
-                    bundleDataChanges.setMetadata(bundle.getMetadata());
-                }
-            }
-
-            resEntries = new HashMap<>(bundle.getResourceStrings().size());
-            for (ResourceString resString : bundle.getResourceStrings()) {
-                NewResourceEntryData resEntryData = new NewResourceEntryData(resString.getValue());
-                int seqNum = resString.getSequenceNumber();
-                if (seqNum >= 0) {
-                    resEntryData.setSequenceNumber(Integer.valueOf(seqNum));
-                }
-                resEntryData.setNotes(resString.getNotes());
-                resEntryData.setMetadata(resString.getMetadata());
-                if (asReviewed) {
-                    resEntryData.setReviewed(Boolean.TRUE);
-                }
-                resEntries.put(resString.getKey(), resEntryData);
+                bundleDataChanges = getBundleDataChanges(bundle);
             }
+            resEntries = getResourceEntries(bundle, asReviewed);
         } catch (IOException e) {
             throw new RuntimeException("Failed to read the resoruce data from "
                     + fileName + ": " + e.getMessage(), e);
@@ -141,4 +114,56 @@ final class ImportCmd extends BundleCmd {
                 + " was successfully imported to bundle:" + bundleId
                 + ", language:" + languageId);
     }
+
+    /**
+     * Returns changes of bundle data for notes and metadata in the bundle
+     * parsed from a source language bundle file.
+     *
+     * @param bundle    The parsed language bundle
+     * @return  The bundle data changes, or null if nothing to be updated.
+     */
+    static BundleDataChangeSet getBundleDataChanges(LanguageBundle bundle) {
+        BundleDataChangeSet bundleDataChanges = null;
+        // notes
+        if (!bundle.getNotes().isEmpty()) {
+            bundleDataChanges = new BundleDataChangeSet();
+            bundleDataChanges.setNotes(bundle.getNotes());
+        }
+        // update metadata if any - for now, this operation only appends
+        // extra metadata key-value pairs from bundle files
+        if (!bundle.getMetadata().isEmpty()) {
+            if (bundleDataChanges == null) {
+                bundleDataChanges = new BundleDataChangeSet();
+            }
+            bundleDataChanges.setMetadata(bundle.getMetadata());
+        }
+        return bundleDataChanges;
+    }
+
+    /**
+     * Returns resource entries to be uploaded for the resource strings in
+     * the parsed bundle.
+     *
+     * @param bundle        The parsed language bundle
+     * @param asReviewed    Whether the resource entries are marked as reviewed
+     * @return  The resource entries indexed by resource keys.
+     */
+    static Map<String, NewResourceEntryData> getResourceEntries(LanguageBundle bundle,
+            boolean asReviewed) {
+        Map<String, NewResourceEntryData> resEntries = new HashMap<>(bundle.getResourceStrings().size());
+        for (ResourceString resString : bundle.getResourceStrings()) {
+            NewResourceEntryData resEntryData = new NewResourceEntryData(resString.getValue());
+            int seqNum = resString.getSequenceNumber();
+            if (seqNum >= 0) {
+                resEntryData.setSequenceNumber(Integer.valueOf(seqNum));
+            }
+            resEntryData.setNotes(resString.getNotes());
+            resEntryData.setMetadata(resString.getMetadata());
+            if (asReviewed) {
+                resEntryData.setReviewed(Boolean.TRUE);
+            }
+            resEntries.put(resString.getKey(), resEntryData);
+        }
+        return resEntries;
+    }
 }
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2017, 2018
+ * Copyright IBM Corp. 2017, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -42,7 +42,7 @@ final class ImportDocumentCmd extends DocumentCmd {
 
     @Override
     protected void _execute() {
-        File f = new File(fileName);
+        File f = getFile(fileName);
 
         try {
             getClient().updateDocumentContent(type, documentId, languageId, f);
@@ -0,0 +1,96 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Routes the standard output and the standard error written by a thread to
+ * the destinations set for the thread. Threads created by the thread inherit
+ * the destinations, so output written by worker threads of a command is also
+ * routed. Output written by other threads goes to the original streams.
+ *
+ * @author yoshito_umaoka
+ */
+final class OutputRouter {
+    private static final InheritableThreadLocal<OutputStream[]> DESTINATIONS =
+            new InheritableThreadLocal<>();
+
+    private static boolean installed = false;
+
+    private OutputRouter() {
+    }
+
+    /**
+     * Replaces {@link System#out} and {@link System#err} with the routing streams.
+     */
+    static synchronized void install() {
+        if (!installed) {
+            System.setOut(new PrintStream(new Route(System.out, 0), true));
+            System.setErr(new PrintStream(new Route(System.err, 1), true));
+            installed = true;
+        }
+    }
+
+    /**
+     * Sets the destinations for the current thread.
+     *
+     * @param out   The destination of the standard output
+     * @param err   The destination of the standard error
+     */
+    static void set(OutputStream out, OutputStream err) {
+        DESTINATIONS.set(new OutputStream[] {out, err});
+    }
+
+    /**
+     * Clears the destinations for the current thread.
+     */
+    static void clear() {
+        DESTINATIONS.remove();
+    }
+
+    private static final class Route extends OutputStream {
+        private final OutputStream original;
+        private final int index;
+
+        Route(OutputStream original, int index) {
+            this.original = original;
+            this.index = index;
+        }
+
+        private OutputStream destination() {
+            OutputStream[] dests = DESTINATIONS.get();
+            return dests == null ? original : dests[index];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            destination().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            destination().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            destination().flush();
+        }
+    }
+}
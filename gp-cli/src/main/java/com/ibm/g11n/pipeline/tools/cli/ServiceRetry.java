@@ -0,0 +1,123 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * Retries a Globalization Pipeline service request failed by a transient
+ * error - an I/O error, or HTTP status 429 (Too Many Requests) or 5xx.
+ *
+ * @author yoshito_umaoka
+ */
+final class ServiceRetry {
+    /**
+     * A service request.
+     *
+     * @param <T> The result type of the request.
+     */
+    interface Request<T> {
+        T call() throws ServiceException;
+    }
+
+    /**
+     * The HTTP status in error messages of the Globalization Pipeline client library,
+     * such as "Received HTTP status: 503 from GET https://...". The client library
+     * does not provide the status code of a failed request in any other way.
+     */
+    private static final Pattern HTTP_STATUS = Pattern.compile("Received HTTP status: (\\d{3})");
+
+    private static final long INITIAL_DELAY_MILLIS = 1000L;
+
+    private final int maxRetries;
+
+    /**
+     * Constructs a retry policy.
+     *
+     * @param maxRetries    The maximum number of retries for a request.
+     *                      0 disables retries.
+     */
+    ServiceRetry(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Calls the request, and retries it with exponential backoff while it
+     * fails by a transient error.
+     *
+     * @param request   The request.
+     * @return  The result of the request.
+     * @throws ServiceException if the request failed by a non-transient error,
+     *          or retries were exhausted.
+     */
+    <T> T call(Request<T> request) throws ServiceException {
+        long delay = INITIAL_DELAY_MILLIS;
+        for (int retry = 0; ; retry++) {
+            try {
+                return request.call();
+            } catch (ServiceException e) {
+                if (retry >= maxRetries || !isTransient(e)) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                delay *= 2;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the request failed by an I/O error, or the service
+     * returned HTTP status 429 or 5xx. The client library wraps these errors
+     * in another <code>ServiceException</code> for some requests, so the causes
+     * of the exception are also examined.
+     */
+    static boolean isTransient(ServiceException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof IOException) {
+                // failed to send the request or to read the response
+                return true;
+            }
+            int status = parseStatusCode(t.getMessage());
+            if (status >= 0) {
+                return status == 429 || status >= 500 && status < 600;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the HTTP status code in the error message of the client library,
+     * or -1 if not found.
+     */
+    private static int parseStatusCode(String message) {
+        if (message != null) {
+            Matcher m = HTTP_STATUS.matcher(message);
+            if (m.find()) {
+                return Integer.parseInt(m.group(1));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @see BundlePathTemplate
+ * @author yoshito_umaoka
+ */
+public class BundlePathTemplateTest {
+
+    @Test
+    public void testMatch() {
+        BundlePathTemplate template = new BundlePathTemplate("{LANG}/{BUNDLE}.json");
+        Assert.assertTrue(template.hasLanguage());
+        Assert.assertArrayEquals(new String[] {"messages", "fr"}, template.match("fr/messages.json"));
+        Assert.assertArrayEquals(new String[] {"app.messages", "pt-BR"},
+                template.match("pt_BR/app/messages.json"));
+        Assert.assertNull(template.match("messages.json"));
+        Assert.assertNull(template.match("fr/messages.properties"));
+
+        template = new BundlePathTemplate("{BUNDLE}_{LANG}.*");
+        Assert.assertArrayEquals(new String[] {"Messages", "zh-TW"}, template.match("Messages_zh_TW.properties"));
+
+        template = new BundlePathTemplate("src/{BUNDLE}.yml");
+        Assert.assertFalse(template.hasLanguage());
+        Assert.assertArrayEquals(new String[] {"strings", null}, template.match("src/strings.yml"));
+    }
+
+    @Test
+    public void testExpand() {
+        BundlePathTemplate template = new BundlePathTemplate("{BUNDLE}/{LANG}/{BUNDLE}.json");
+        Assert.assertEquals("app/de/app.json", template.expand("app", "de"));
+        Assert.assertArrayEquals(new String[] {"app", "de"}, template.match("app/de/app.json"));
+        Assert.assertNull(template.match("app/de/other.json"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoBundle() {
+        new BundlePathTemplate("{LANG}/messages.json");
+    }
+}
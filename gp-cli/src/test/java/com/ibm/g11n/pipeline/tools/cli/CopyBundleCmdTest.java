@@ -0,0 +1,135 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @see CopyBundleCmd
+ * @author yoshito_umaoka
+ */
+public class CopyBundleCmdTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ServiceClient client;
+
+    // the bundle IDs listed by the server
+    private volatile String bundleIds;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int status;
+                byte[] body;
+                if (exchange.getRequestMethod().equals("GET")) {
+                    status = 200;
+                    body = ("{\"status\":\"SUCCESS\",\"bundleIds\":[" + bundleIds + "]}")
+                            .getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                } else {
+                    // creating a bundle always fails
+                    status = 409;
+                    body = "Bundle already exists".getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                }
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        });
+        server.start();
+        client = ServiceClient.getInstance(ServiceAccount.getInstance(
+                "http://localhost:" + server.getAddress().getPort() + "/translate/rest",
+                "instance", "user", "password"));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void createBundle(CopyCheckpoint checkpoint) throws ServiceException, IOException {
+        CopyBundleCmd.createBundle(client, "bundle1", new NewBundleData("en"), checkpoint,
+                new ServiceRetry(0));
+    }
+
+    @Test
+    public void testCreateBundleResume() throws ServiceException, IOException {
+        File file = new File(tempFolder.getRoot(), "copy.checkpoint");
+        bundleIds = "\"bundle1\"";
+
+        // the bundle existing before the first attempt is not reused
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            try {
+                createBundle(checkpoint);
+                Assert.fail("ServiceException is expected");
+            } catch (ServiceException e) {
+                // expected
+            }
+            Assert.assertTrue(checkpoint.isCreating("bundle1"));
+            Assert.assertFalse(checkpoint.isCreated("bundle1"));
+        }
+
+        // a previous attempt might have created the bundle, but the bundle does not exist
+        bundleIds = "\"bundle2\"";
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            try {
+                createBundle(checkpoint);
+                Assert.fail("ServiceException is expected");
+            } catch (ServiceException e) {
+                // expected
+            }
+            Assert.assertFalse(checkpoint.isCreated("bundle1"));
+        }
+
+        // a previous attempt created the bundle
+        bundleIds = "\"bundle1\",\"bundle2\"";
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            createBundle(checkpoint);
+            Assert.assertTrue(checkpoint.isCreated("bundle1"));
+        }
+
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            Assert.assertTrue(checkpoint.isCreated("bundle1"));
+        }
+    }
+}
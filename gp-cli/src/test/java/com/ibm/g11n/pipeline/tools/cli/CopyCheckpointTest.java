@@ -0,0 +1,85 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @see CopyCheckpoint
+ * @author yoshito_umaoka
+ */
+public class CopyCheckpointTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws IOException {
+        File file = new File(tempFolder.getRoot(), "copy.checkpoint");
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            checkpoint.markCreated("bundle1");
+            checkpoint.markCopied("bundle1", "en");
+            checkpoint.markCopied("bundle1", "fr");
+            checkpoint.markCompleted("bundle1");
+            checkpoint.markCreated("bundle2");
+            checkpoint.markCopied("bundle2", "en");
+        }
+
+        // simulates a line partially written at termination
+        try (OutputStream os = new FileOutputStream(file, true)) {
+            os.write("language\tbund".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            Assert.assertTrue(checkpoint.isCompleted("bundle1"));
+            Assert.assertTrue(checkpoint.isCopied("bundle1", "fr"));
+            Assert.assertTrue(checkpoint.isCreated("bundle2"));
+            Assert.assertFalse(checkpoint.isCompleted("bundle2"));
+            Assert.assertTrue(checkpoint.isCopied("bundle2", "en"));
+            Assert.assertFalse(checkpoint.isCopied("bundle2", "fr"));
+            checkpoint.markCopied("bundle2", "fr");
+        }
+
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            Assert.assertTrue(checkpoint.isCopied("bundle2", "fr"));
+        }
+
+        // a truncated line with all fields, "language\tbundle2\tzh-Hans" cut in the language ID
+        try (OutputStream os = new FileOutputStream(file, true)) {
+            os.write("language\tbundle2\tzh".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            Assert.assertFalse(checkpoint.isCopied("bundle2", "zh"));
+            Assert.assertTrue(checkpoint.isCopied("bundle2", "fr"));
+            checkpoint.markCopied("bundle2", "zh-Hans");
+        }
+
+        try (CopyCheckpoint checkpoint = CopyCheckpoint.open(file)) {
+            Assert.assertFalse(checkpoint.isCopied("bundle2", "zh"));
+            Assert.assertTrue(checkpoint.isCopied("bundle2", "zh-Hans"));
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @see DaemonClient
+ * @see DaemonCmd
+ * @see OutputRouter
+ * @author yoshito_umaoka
+ */
+public class DaemonClientTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testNoDaemon() throws IOException {
+        File infoFile = new File(tmp.getRoot(), "daemon.properties");
+        Assert.assertNull(DaemonClient.forward(infoFile, new String[] {"help"}));
+        Assert.assertFalse(DaemonClient.stop(infoFile));
+    }
+
+    private File writeInfoFile(int port, String token) throws IOException {
+        File infoFile = tmp.newFile("daemon.properties");
+        Properties props = new Properties();
+        props.setProperty(DaemonClient.PROP_PORT, String.valueOf(port));
+        props.setProperty(DaemonClient.PROP_TOKEN, token);
+        try (OutputStream os = new FileOutputStream(infoFile)) {
+            props.store(os, null);
+        }
+        return infoFile;
+    }
+
+    @Test
+    public void testStaleInfoFile() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        File infoFile = writeInfoFile(port, "0123");
+        Assert.assertNull(DaemonClient.forward(infoFile, new String[] {"help"}));
+    }
+
+    @Test
+    public void testForward() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // serves a single request in the same manner with the daemon
+            Future<List<String>> request = executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws IOException {
+                    try (Socket s = serverSocket.accept()) {
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                        Assert.assertTrue(DaemonCmd.authenticate(in, out, "0123", s.getLocalPort()));
+                        List<String> args = new ArrayList<>();
+                        int argc = in.readInt();
+                        in.readUTF(); // working directory
+                        for (int i = 0; i < argc; i++) {
+                            args.add(in.readUTF());
+                        }
+                        out.writeByte(DaemonClient.FRAME_EXIT);
+                        out.writeInt(3);
+                        out.flush();
+                        return args;
+                    }
+                }
+            });
+            File infoFile = writeInfoFile(serverSocket.getLocalPort(), "0123");
+            Assert.assertEquals(Integer.valueOf(3),
+                    DaemonClient.forward(infoFile, new String[] {"list", "-j", "creds.json"}));
+            Assert.assertEquals(Arrays.asList("list", "-j", "creds.json"), request.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNotDaemon() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // a listener not knowing the access token, recording everything sent by the launcher
+            Future<String> received = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    try (Socket s = serverSocket.accept()) {
+                        InputStream in = s.getInputStream();
+                        OutputStream out = s.getOutputStream();
+                        ByteArrayOutputStream data = new ByteArrayOutputStream();
+                        byte[] buf = new byte[4 + DaemonClient.NONCE_LENGTH];
+                        new DataInputStream(in).readFully(buf);
+                        out.write(new byte[DaemonClient.NONCE_LENGTH + DaemonClient.PROOF_LENGTH]);
+                        out.flush();
+                        int b;
+                        while ((b = in.read()) >= 0) {
+                            data.write(b);
+                        }
+                        return new String(data.toByteArray(), StandardCharsets.UTF_8);
+                    }
+                }
+            });
+            File infoFile = writeInfoFile(serverSocket.getLocalPort(), "0123");
+            try {
+                DaemonClient.forward(infoFile, new String[] {"list", "--password", "secret"});
+                Assert.fail("IOException is expected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("is not the daemon"));
+            }
+            Assert.assertEquals("Nothing sent after the handshake", "", received.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBadToken() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Future<Boolean> authenticated = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException {
+                    try (Socket s = serverSocket.accept()) {
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                        return DaemonCmd.authenticate(in, out, "4567", s.getLocalPort());
+                    } catch (IOException e) {
+                        // closed by the launcher
+                        return Boolean.FALSE;
+                    }
+                }
+            });
+            File infoFile = writeInfoFile(serverSocket.getLocalPort(), "0123");
+            try {
+                DaemonClient.forward(infoFile, new String[] {"help"});
+                Assert.fail("IOException is expected");
+            } catch (IOException e) {
+                // the daemon does not know the token in the file
+            }
+            Assert.assertFalse(authenticated.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] request(int numArgs, String arg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF("/work");
+        for (int i = 0; i < numArgs; i++) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static String[] readArguments(byte[] request, int argc) throws IOException {
+        return DaemonCmd.readArguments(new DataInputStream(new ByteArrayInputStream(request)), argc);
+    }
+
+    @Test
+    public void testArgumentLimits() throws IOException {
+        String[] args = readArguments(request(2, "list"), 2);
+        Assert.assertArrayEquals(new String[] {"/work", "list", "list"}, args);
+
+        Assert.assertNull("Negative count", readArguments(request(0, "list"), -2));
+        Assert.assertNull("Too many arguments", readArguments(request(1, "list"), DaemonClient.MAX_ARGS + 1));
+
+        char[] chars = new char[DaemonClient.MAX_ARG_LENGTH / 2];
+        Arrays.fill(chars, '\u00e9');
+        String longArg = new String(chars);
+        Assert.assertEquals(DaemonClient.MAX_ARG_LENGTH, DaemonClient.utfLength(longArg));
+        args = readArguments(request(1, longArg), 1);
+        Assert.assertEquals(longArg, args[1]);
+        Assert.assertNull("Too long argument", readArguments(request(1, longArg + "x"), 1));
+
+        // the launcher runs the command locally rather than connecting to the daemon
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            File infoFile = writeInfoFile(serverSocket.getLocalPort(), "0123");
+            Assert.assertNull(DaemonClient.forward(infoFile, new String[] {"list", longArg + "x"}));
+            Assert.assertNull(DaemonClient.forward(infoFile, new String[DaemonClient.MAX_ARGS + 1]));
+        }
+    }
+
+    @Test
+    public void testOutputRouter() throws Exception {
+        OutputRouter.install();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        OutputRouter.set(out, err);
+        try {
+            System.out.print("out");
+            System.err.print("err");
+            // Worker threads inherit the destinations
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    System.out.print(" worker");
+                }
+            });
+            worker.start();
+            worker.join();
+            System.out.flush();
+        } finally {
+            OutputRouter.clear();
+        }
+        Assert.assertEquals("out worker", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals("err", new String(err.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
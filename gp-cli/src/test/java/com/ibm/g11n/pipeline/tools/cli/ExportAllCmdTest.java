@@ -0,0 +1,141 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @see ExportAllCmd
+ * @author yoshito_umaoka
+ */
+public class ExportAllCmdTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final String BASE_XLIFF =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<xliff version=\"1.2\" xmlns=\"urn:oasis:names:tc:xliff:document:1.2\">\n"
+            + "  <file original=\"foods\" source-language=\"en\" datatype=\"plaintext\">\n"
+            + "    <body>\n"
+            + "      <trans-unit id=\"apple\">\n"
+            + "        <source>Apple</source>\n"
+            + "      </trans-unit>\n"
+            + "    </body>\n"
+            + "  </file>\n"
+            + "</xliff>\n";
+
+    private HttpServer server;
+    private String serviceUrl;
+
+    // resource entry requests received by the server
+    private final List<String> entryRequests = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // serves bundles "foods" and "greetings" with Japanese translation
+                String path = exchange.getRequestURI().getPath();
+                String[] segments = path.substring(path.indexOf("/v2/bundles") + "/v2/bundles".length())
+                        .split("/");
+                String json;
+                if (segments.length <= 1) {
+                    json = "{\"status\":\"SUCCESS\",\"bundleIds\":[\"foods\",\"greetings\"]}";
+                } else if (segments.length == 2) {
+                    json = "{\"status\":\"SUCCESS\",\"bundle\":"
+                            + "{\"sourceLanguage\":\"en\",\"targetLanguages\":[\"ja\"]}}";
+                } else {
+                    entryRequests.add(segments[1] + ":" + segments[2]);
+                    String key = segments[1].equals("foods") ? "apple" : "hello";
+                    String value = segments[1].equals("foods") ? "Ringo" : "Konnichiwa";
+                    json = "{\"status\":\"SUCCESS\",\"resourceEntries\":{\"" + key + "\":"
+                            + "{\"value\":\"" + value + "\",\"sourceValue\":\"Source\","
+                            + "\"translationStatus\":\"TRANSLATED\",\"sequenceNumber\":1}}}";
+                }
+                byte[] body = json.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        });
+        server.start();
+        serviceUrl = "http://localhost:" + server.getAddress().getPort() + "/translate/rest";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private int exportAll(String... options) {
+        List<String> args = new ArrayList<>();
+        Collections.addAll(args, "export-all", "-t", "XLIFF-MULTI", "-l", "ja",
+                "-s", serviceUrl, "-i", "instance", "-u", "user", "-p", "password");
+        Collections.addAll(args, options);
+        return GPCmd.run(args.toArray(new String[args.size()]), tempFolder.getRoot());
+    }
+
+    private String read(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(tempFolder.getRoot(), path).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMultiBundle() throws IOException {
+        Assert.assertEquals(0, exportAll("-o", "out/{LANG}.xlf"));
+        String xliff = read("out/ja.xlf");
+        Assert.assertTrue(xliff, xliff.contains("Ringo"));
+        Assert.assertTrue(xliff, xliff.contains("Konnichiwa"));
+    }
+
+    @Test
+    public void testMultiBundleBase() throws IOException {
+        try (OutputStream os = new FileOutputStream(tempFolder.newFile("en.xlf"))) {
+            os.write(BASE_XLIFF.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(0, exportAll("--base", "en.xlf", "-o", "out/{LANG}.xlf"));
+        String xliff = read("out/ja.xlf");
+        Assert.assertTrue(xliff, xliff.contains("<target>Ringo</target>"));
+        Assert.assertFalse(xliff, xliff.contains("Konnichiwa"));
+        // only bundles in the base file are fetched
+        Assert.assertEquals(Collections.singletonList("foods:ja"), entryRequests);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.tools.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @see ServiceRetry
+ * @author yoshito_umaoka
+ */
+public class ServiceRetryTest {
+
+    private HttpServer server;
+    private ServiceClient client;
+
+    // the HTTP status returned by the server
+    private volatile int status;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                byte[] body = "Service error".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        });
+        server.start();
+        client = ServiceClient.getInstance(ServiceAccount.getInstance(
+                "http://localhost:" + server.getAddress().getPort() + "/translate/rest",
+                "instance", "user", "password"));
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Returns the exception thrown by the client library for a request.
+     */
+    private ServiceException requestError() {
+        try {
+            client.getBundleIds();
+        } catch (ServiceException e) {
+            return e;
+        }
+        Assert.fail("ServiceException is expected");
+        return null;
+    }
+
+    @Test
+    public void testIsTransient() {
+        status = 503;
+        ServiceException e = requestError();
+        // the error with the HTTP status is wrapped by the client library
+        String msg = e.getCause().getMessage();
+        Assert.assertTrue(msg, msg.startsWith("Received HTTP status: 503"));
+        Assert.assertTrue(e.getMessage(), ServiceRetry.isTransient(e));
+
+        status = 429;
+        e = requestError();
+        Assert.assertTrue(e.getMessage(), ServiceRetry.isTransient(e));
+
+        status = 404;
+        e = requestError();
+        Assert.assertFalse(e.getMessage(), ServiceRetry.isTransient(e));
+
+        status = 401;
+        e = requestError();
+        Assert.assertFalse(e.getMessage(), ServiceRetry.isTransient(e));
+
+        // connection refused
+        server.stop(0);
+        server = null;
+        e = requestError();
+        Assert.assertTrue(e.getMessage(), ServiceRetry.isTransient(e));
+    }
+
+    @Test
+    public void testRetry() throws ServiceException {
+        status = 503;
+        try {
+            new ServiceRetry(1).call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return client.getBundleIds();
+                }
+            });
+            Assert.fail("ServiceException is expected");
+        } catch (ServiceException e) {
+            Assert.assertEquals("retried once", 2, requests.get());
+        }
+
+        // not retried
+        requests.set(0);
+        status = 404;
+        try {
+            new ServiceRetry(1).call(new ServiceRetry.Request<Set<String>>() {
+                @Override
+                public Set<String> call() throws ServiceException {
+                    return client.getBundleIds();
+                }
+            });
+            Assert.fail("ServiceException is expected");
+        } catch (ServiceException e) {
+            Assert.assertEquals(1, requests.get());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Buffers log messages for a single bundle processed on a worker thread,
+ * so messages for the bundle are written together, without being interleaved
+ * with messages for other bundles.
+ *
+ * @author yoshito_umaoka
+ */
+final class BundleLog {
+    private final List<String> messages = new ArrayList<>();
+    private final List<Boolean> debugFlags = new ArrayList<>();
+
+    void info(String message) {
+        messages.add(message);
+        debugFlags.add(Boolean.FALSE);
+    }
+
+    void debug(String message) {
+        messages.add(message);
+        debugFlags.add(Boolean.TRUE);
+    }
+
+    /**
+     * Writes out buffered messages to the log, then clears the buffer.
+     *
+     * @param log   The log.
+     */
+    void flush(Log log) {
+        synchronized (log) {
+            for (int i = 0; i < messages.size(); i++) {
+                if (debugFlags.get(i)) {
+                    log.debug(messages.get(i));
+                } else {
+                    log.info(messages.get(i));
+                }
+            }
+        }
+        messages.clear();
+        debugFlags.clear();
+    }
+}
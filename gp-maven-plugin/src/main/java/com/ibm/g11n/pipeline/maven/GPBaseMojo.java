@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2016, 2018
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,12 +20,15 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -35,10 +38,12 @@ import org.apache.maven.shared.model.fileset.util.FileSetManager;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
-import com.ibm.g11n.pipeline.client.ServiceAccount;
 import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
 import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
+import com.ibm.g11n.pipeline.sync.SourceIndex;
+import com.ibm.g11n.pipeline.sync.SourceIndex.ScannedFile;
+import com.ibm.g11n.pipeline.sync.StateFiles;
 
 /**
  * Base class of GP download/upload Mojo.
@@ -77,7 +82,24 @@ public abstract class GPBaseMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * The file storing the index of source bundle files. The index keeps
+     * digests of source bundle files, so they are computed again only for
+     * modified files, and the source bundle files found in each bundle set,
+     * so a bundle set is scanned again only when its directories are modified.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gp-source-index.json",
+            property = "gp.sourceIndexFile")
+    private File sourceIndexFile;
+
+    private SourceIndex sourceIndex = null;
+
     private volatile ServiceClient gpClient = null;
+    private volatile ServiceCache serviceCache = null;
+    private volatile String serviceInstanceKey = null;
 
     /**
      * Returns GP ServiceClient instance used for this for
@@ -123,22 +145,57 @@ public abstract class GPBaseMojo extends AbstractMojo {
 
                 getLog().debug("Using GP service credentials " + creds);
 
-                gpClient = ServiceClient.getInstance(
-                        ServiceAccount.getInstance(
-                                creds.getUrl(), creds.getInstanceId(),
-                                creds.getUserId(), creds.getPassword()));
+                serviceInstanceKey = creds.getUrl() + "#" + creds.getInstanceId();
+                // The client and service metadata are shared by all executions
+                // in the maven session using the same credentials.
+                serviceCache = ServiceCache.get(session == null ? null : session.getRequest(), creds);
+                gpClient = serviceCache.getClient();
             }
         }
         return gpClient;
     }
 
+    /**
+     * Returns the cache of Globalization Pipeline service metadata shared
+     * by all executions in this maven session.
+     *
+     * @return The service metadata cache.
+     * @throws MojoFailureException on a failure.
+     */
+    protected ServiceCache getServiceCache() throws MojoFailureException {
+        getServiceClient();
+        return serviceCache;
+    }
+
+    /**
+     * Returns a string identifying the Globalization Pipeline service
+     * instance used for this maven session, composed from the service
+     * URL and the instance ID.
+     *
+     * @return The string identifying the service instance.
+     * @throws MojoFailureException on a failure.
+     */
+    protected String getServiceInstanceKey() throws MojoFailureException {
+        getServiceClient();
+        return serviceInstanceKey;
+    }
+
+    /**
+     * Returns true if maven is running in offline mode.
+     *
+     * @return true if maven is running in offline mode.
+     */
+    protected boolean isOffline() {
+        return session != null && session.isOffline();
+    }
+
     protected static class SourceBundleFile {
         private String type;
         private String bundleId;
         private File file;
         private String relativePath;
 
-        private SourceBundleFile(String type, String bundleId, File file, String relativePath) {
+        SourceBundleFile(String type, String bundleId, File file, String relativePath) {
             this.type = type;
             this.bundleId = bundleId;
             this.file = file;
@@ -162,24 +219,97 @@ public abstract class GPBaseMojo extends AbstractMojo {
         }
     }
 
-    protected List<SourceBundleFile> getSourceBundleFiles(BundleSet bundleSet) {
+    protected List<SourceBundleFile> getSourceBundleFiles(final BundleSet bundleSet) {
         List<SourceBundleFile> bundleFiles = new LinkedList<SourceBundleFile>();
 
-        FileSetManager fsm = new FileSetManager(getLog());
         File baseDir = project.getBasedir();
-        String type = bundleSet.getType();
-        FileSet fs = bundleSet.getSourceFiles();
+        final String type = bundleSet.getType();
+        final FileSet fs = bundleSet.getSourceFiles();
         File fsBaseDir = new File(baseDir, fs.getDirectory());
-        String[] relPathes = fsm.getIncludedFiles(fs);
-        for (String relPath : relPathes) {
-            File bundleFile = new File(fsBaseDir, relPath);
+
+        // The result of the last scan is reused, unless the configuration
+        // is changed or a file is added or removed in the file set.
+        List<ScannedFile> scannedFiles = getSourceIndex().scan(getScanFingerprint(fsBaseDir, bundleSet),
+                fsBaseDir, fs.isFollowSymlinks(), new SourceIndex.FileScanner() {
+                    @Override
+                    public List<ScannedFile> scan() {
+                        FileSetManager fsm = new FileSetManager(getLog());
+                        String[] relPathes = fsm.getIncludedFiles(fs);
+                        List<ScannedFile> files = new ArrayList<>(relPathes.length);
+                        for (String relPath : relPathes) {
+                            files.add(new ScannedFile(relPath, pathToBundleId(relPath, bundleSet), type));
+                        }
+                        return files;
+                    }
+                });
+        for (ScannedFile scannedFile : scannedFiles) {
+            String relPath = scannedFile.getRelativePath();
             bundleFiles.add(
-                    new SourceBundleFile(type, pathToBundleId(relPath, bundleSet),
-                            bundleFile, relPath));
+                    new SourceBundleFile(scannedFile.getType(), scannedFile.getBundleId(),
+                            new File(fsBaseDir, relPath), relPath));
         }
         return bundleFiles;
     }
 
+    /**
+     * Returns the fingerprint of the configuration used for scanning the
+     * source bundle files of the bundle set, and mapping the file paths to
+     * bundle IDs.
+     */
+    private static String getScanFingerprint(File fsBaseDir, BundleSet bundleSet) {
+        FileSet fs = bundleSet.getSourceFiles();
+        StringBuilder buf = new StringBuilder();
+        buf.append(fsBaseDir.getAbsolutePath()).append('\n');
+        buf.append(bundleSet.getType()).append('\n');
+        buf.append(fs.isFollowSymlinks()).append('\n');
+        buf.append(fs.isUseDefaultExcludes()).append('\n');
+        for (String include : fs.getIncludes()) {
+            buf.append("include:").append(include).append('\n');
+        }
+        for (String exclude : fs.getExcludes()) {
+            buf.append("exclude:").append(exclude).append('\n');
+        }
+        List<RegexMapper> mappers = bundleSet.getPathToBundleMapper();
+        if (mappers != null) {
+            for (RegexMapper mapper : mappers) {
+                buf.append("mapper:").append(mapper.getPattern())
+                    .append('\n').append(mapper.getReplacement()).append('\n');
+            }
+        }
+        MessageDigest md = StateFiles.newDigest();
+        return StateFiles.toHex(md.digest(buf.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the index of source bundle files.
+     *
+     * @return The source bundle file index.
+     */
+    protected synchronized SourceIndex getSourceIndex() {
+        if (sourceIndex == null) {
+            try {
+                sourceIndex = SourceIndex.load(sourceIndexFile);
+            } catch (IOException e) {
+                getLog().warn("Failed to read the source bundle file index: " + e.getMessage());
+                sourceIndex = SourceIndex.empty(sourceIndexFile);
+            }
+        }
+        return sourceIndex;
+    }
+
+    /**
+     * Writes out the index of source bundle files, if it was used.
+     */
+    protected synchronized void saveSourceIndex() {
+        if (sourceIndex != null) {
+            try {
+                sourceIndex.save();
+            } catch (IOException e) {
+                getLog().warn("Failed to write the source bundle file index: " + e.getMessage());
+            }
+        }
+    }
+
     protected synchronized List<BundleSet> getBundleSets() {
         if (bundleSets == null) {
             // default SourceBundleSet
@@ -250,21 +380,30 @@ public abstract class GPBaseMojo extends AbstractMojo {
         return buf.toString();
     }
 
+    /**
+     * Returns the machine translation languages configured in the
+     * Globalization Pipeline service instance.
+     *
+     * @return A map of target languages indexed by source languages.
+     * @throws MojoFailureException on a failure.
+     */
+    protected Map<String, Set<String>> getConfiguredMTLanguages() throws MojoFailureException {
+        try {
+            return getServiceCache().getConfiguredMTLanguages();
+        } catch (ServiceException e) {
+            throw new MojoFailureException("Globalization Pipeline service error", e);
+        }
+    }
+
     protected Set<String> resolveTargetLanguages(BundleSet bundleSet) throws MojoFailureException {
         Set<String> targetLanguages = bundleSet.getTargetLanguages();
         if (targetLanguages == null) {
-            ServiceClient client = getServiceClient();
             String srcLang = bundleSet.getSourceLanguage();
             if (srcLang == null) {
                 srcLang = "en";
             }
             // targetLanguages is not specified. Default to all available languages.
-            try {
-                Map<String, Set<String>> activeMTLangs = client.getConfiguredMTLanguages();
-                targetLanguages = activeMTLangs.get(srcLang);
-            } catch (ServiceException e) {
-                throw new MojoFailureException("Globalization Pipeline service error", e);
-            }
+            targetLanguages = getConfiguredMTLanguages().get(srcLang);
 
             if (targetLanguages == null) {
                 targetLanguages = Collections.emptySet();
@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2016, 2018
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,16 +15,20 @@
  */
 package com.ibm.g11n.pipeline.maven;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -33,16 +37,21 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import com.ibm.g11n.pipeline.client.BundleData;
-import com.ibm.g11n.pipeline.client.ResourceEntryData;
 import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
-import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.sync.DownloadState;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.ExportJob;
+import com.ibm.g11n.pipeline.sync.Snapshot;
+import com.ibm.g11n.pipeline.sync.SourceIndex;
+import com.ibm.g11n.pipeline.sync.SyncEngine;
+import com.ibm.g11n.pipeline.sync.SyncException;
 
 /**
  * Fetches translated string resource bundles from an instance of
@@ -67,6 +76,79 @@ public class GPDownloadMojo extends GPBaseMojo {
     @Parameter(defaultValue = "true")
     private boolean overwrite;
 
+    /**
+     * The maximum number of concurrent requests to Globalization Pipeline service
+     * while downloading bundles. Translated bundle files are written as soon as
+     * the translated strings are fetched. The default value is 1.
+     */
+    @Parameter(defaultValue = "1", property = "gp.downloadThreads")
+    private int downloadThreads;
+
+    /**
+     * Whether to skip writing bundle files when the translated contents are not
+     * changed since the last download. When true, fingerprints of the translated
+     * contents written to output files are recorded in {@link #downloadStateFile}.
+     * The default value is true.
+     */
+    @Parameter(defaultValue = "true", property = "gp.incrementalDownload")
+    private boolean incrementalDownload;
+
+    /**
+     * The file storing fingerprints of the translated contents written by the
+     * last download, used when {@link #incrementalDownload} is true.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gp-download-state.json",
+            property = "gp.downloadStateFile")
+    private File downloadStateFile;
+
+    /**
+     * The snapshot file created by the snapshot goal. When maven is running in
+     * offline mode, translated bundle files are produced only from the snapshot.
+     * Otherwise, the snapshot is used only when {@link #useSnapshotOnline} is true.
+     * When not specified, all translated contents are fetched from the service.
+     */
+    @Parameter(property = "gp.snapshotFile")
+    private File snapshotFile;
+
+    /**
+     * The maximum age of the snapshot in minutes used when maven is not running
+     * in offline mode. The default value is 60.
+     */
+    @Parameter(defaultValue = "60", property = "gp.snapshotMaxAge")
+    private int snapshotMaxAge;
+
+    /**
+     * Whether to use the snapshot when maven is not running in offline mode.
+     * When true, the snapshot is used for bundles not updated since the snapshot
+     * was created, as long as the snapshot is not older than {@link #snapshotMaxAge}.
+     * The update time of a bundle does not change when its resource entries are
+     * updated, so translations in the snapshot may be stale. The default value
+     * is false.
+     */
+    @Parameter(defaultValue = "false", property = "gp.useSnapshotOnline")
+    private boolean useSnapshotOnline;
+
+    /**
+     * The maximum number of resource strings of a bundle held in memory while
+     * producing a bundle file. When a bundle has more resource strings, they
+     * are kept in temporary files in {@link #spillDirectory}. The default value
+     * is 0, which keeps all resource strings in memory.
+     */
+    @Parameter(defaultValue = "0", property = "gp.spillThreshold")
+    private int spillThreshold;
+
+    /**
+     * The directory for the temporary files used when {@link #spillThreshold}
+     * is specified.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gp-spill", property = "gp.spillDirectory")
+    private File spillDirectory;
+
+    private DownloadState downloadState;
+
+    private Snapshot snapshot;
+    private boolean offline;
+
     /* (non-Javadoc)
      * @see org.apache.maven.plugin.Mojo#execute()
      */
@@ -74,141 +156,312 @@ public class GPDownloadMojo extends GPBaseMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         getLog().debug("Entering GPDownloadMojo#execute()");
 
-        ServiceClient client = getServiceClient();
+        offline = isOffline();
+        loadSnapshot();
+
+        final ServiceClient client = offline ? null : getServiceClient();
+        final ServiceCache cache = offline ? null : getServiceCache();
+        final String serviceKey = offline ? snapshot.getService() : getServiceInstanceKey();
 
         Set<String> availBundleIds = null;
-        try {
-            availBundleIds = client.getBundleIds();
-        } catch (ServiceException e) {
-            throw new MojoFailureException("Failed to get available bundle IDs.", e);
+        if (offline) {
+            availBundleIds = snapshot.getBundleIds();
+        } else {
+            try {
+                availBundleIds = cache.getBundleIds();
+            } catch (ServiceException e) {
+                throw new MojoFailureException("Failed to get available bundle IDs.", e);
+            }
         }
 
-        List<BundleSet> bundleSets = getBundleSets();
-        for (BundleSet bundleSet : bundleSets) {
-            String srcLang = bundleSet.getSourceLanguage();
-            Set<String> tgtLangs = resolveTargetLanguages(bundleSet);
-            boolean outputSrcLang = bundleSet.isOutputSourceLanguage();
-            List<SourceBundleFile> sourceBundleFiles = getSourceBundleFiles(bundleSet);
-            OutputContentOption outContentOpt = bundleSet.getOutputContentOption();
-            Map<String, String> langMap = bundleSet.getLanguageMap();
+        if (incrementalDownload) {
+            try {
+                downloadState = DownloadState.load(downloadStateFile, serviceKey);
+            } catch (IOException e) {
+                getLog().warn("Failed to read the download state - all bundle files will be written: "
+                        + e.getMessage());
+            }
+        }
 
-            File outDir = bundleSet.getOutputDir();
-            if (outDir == null) {
-                outDir = outputDir;
+        int numThreads = Math.max(1, downloadThreads);
+        getLog().debug("Download threads: " + numThreads);
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        SyncEngine engine = new SyncEngine(numThreads);
+
+        try {
+            List<BundleSet> bundleSets = getBundleSets();
+
+            // Starts fetching bundle information of all bundle sets concurrently
+            List<List<SourceBundleFile>> sourceBundleFilesList = new ArrayList<>(bundleSets.size());
+            Set<String> prefetchBundleIds = new HashSet<>();
+            for (BundleSet bundleSet : bundleSets) {
+                List<SourceBundleFile> sourceBundleFiles = getSourceBundleFiles(bundleSet);
+                sourceBundleFilesList.add(sourceBundleFiles);
+                for (SourceBundleFile bf : sourceBundleFiles) {
+                    if (availBundleIds.contains(bf.getBundleId())) {
+                        prefetchBundleIds.add(bf.getBundleId());
+                    }
+                }
             }
-            if (outDir.exists()) {
-                outDir.mkdirs();
+            if (!offline) {
+                cache.prefetchBundleInfos(prefetchBundleIds, pool);
             }
 
-            for (SourceBundleFile bf : sourceBundleFiles) {
-                String bundleId = bf.getBundleId();
-                if (!availBundleIds.contains(bundleId)) {
-                    getLog().warn("The bundle:" + bundleId + " does not exist.");
-                    continue;
+            for (int bsIdx = 0; bsIdx < bundleSets.size(); bsIdx++) {
+                BundleSet bundleSet = bundleSets.get(bsIdx);
+                String srcLang = bundleSet.getSourceLanguage();
+                Set<String> tgtLangs = resolveTargetLanguages(bundleSet);
+                boolean outputSrcLang = bundleSet.isOutputSourceLanguage();
+                List<SourceBundleFile> sourceBundleFiles = sourceBundleFilesList.get(bsIdx);
+                OutputContentOption outContentOpt = bundleSet.getOutputContentOption();
+                Map<String, String> langMap = bundleSet.getLanguageMap();
+
+                File outDir = bundleSet.getOutputDir();
+                if (outDir == null) {
+                    outDir = outputDir;
                 }
-
-                BundleData bdlData = null;
-                try {
-                    bdlData = client.getBundleInfo(bundleId);
-                } catch (ServiceException e) {
-                    throw new MojoFailureException("Failed to get bundle data for " + bundleId, e);
+                if (outDir.exists()) {
+                    outDir.mkdirs();
                 }
 
-                String bdlSrcLang = bdlData.getSourceLanguage();
-                Set<String> bdlTrgLangs = bdlData.getTargetLanguages();
-                Set<String> bdlLangs = new HashSet<String>();
-                bdlLangs.add(bdlSrcLang);
-                if (bdlTrgLangs != null) {
-                    bdlLangs.addAll(bdlData.getTargetLanguages());
-                }
+                // Fetches, converts and writes out each bundle/language pair in the pipeline
+                List<DownloadJob> exportJobs = new ArrayList<>();
+                for (SourceBundleFile bf : sourceBundleFiles) {
+                    String bundleId = bf.getBundleId();
+                    if (!availBundleIds.contains(bundleId)) {
+                        getLog().warn("The bundle:" + bundleId + " does not exist.");
+                        continue;
+                    }
+                    MergeTemplateHolder templateHolder = new MergeTemplateHolder(bf, getSourceIndex());
+
+                    String bdlSrcLang;
+                    Set<String> bdlLangs;
+                    Snapshot.BundleSnapshot bdlSnapshot = snapshot == null ? null : snapshot.getBundle(bundleId);
+                    if (offline) {
+                        bdlSrcLang = bdlSnapshot.getSourceLanguage();
+                        bdlLangs = bdlSnapshot.getLanguages();
+                    } else {
+                        BundleData bdlData;
+                        try {
+                            bdlData = cache.getBundleInfo(bundleId);
+                        } catch (ServiceException e) {
+                            throw new MojoFailureException("Failed to get bundle data for " + bundleId, e);
+                        }
+
+                        bdlSrcLang = bdlData.getSourceLanguage();
+                        Set<String> bdlTrgLangs = bdlData.getTargetLanguages();
+                        bdlLangs = new HashSet<String>();
+                        bdlLangs.add(bdlSrcLang);
+                        if (bdlTrgLangs != null) {
+                            bdlLangs.addAll(bdlData.getTargetLanguages());
+                        }
+
+                        if (bdlSnapshot != null && !bdlSnapshot.isSameBundle(bdlData)) {
+                            getLog().info("The bundle:" + bundleId
+                                    + " was updated after the snapshot was created - fetching from the service");
+                            bdlSnapshot = null;
+                        }
+                    }
 
-                if (!srcLang.equals(bdlSrcLang)) {
-                    getLog().warn("The source language of the bundle:" + bundleId
-                            + " (" + bdlSrcLang + ") is different from the language specified by the configuration ("
-                            + bdlSrcLang + ")");
-                }
+                    if (!srcLang.equals(bdlSrcLang)) {
+                        getLog().warn("The source language of the bundle:" + bundleId
+                                + " (" + bdlSrcLang + ") is different from the language specified by the configuration ("
+                                + bdlSrcLang + ")");
+                    }
 
-                File outputFile;
+                    List<String> exportLangs = new ArrayList<>();
+                    if (outputSrcLang) {
+                        if (bdlLangs.contains(srcLang)) {
+                            exportLangs.add(srcLang);
+                        } else {
+                            getLog().warn("The specified source language (" + srcLang
+                                    + ") does not exist in the bundle:" + bundleId);
+                        }
+                    }
 
-                if (outputSrcLang) {
-                    if (bdlLangs.contains(srcLang)) {
-                        outputFile = resolveOutputFile(bf, srcLang, outDir, bundleSet);
-                        exportLanguageResource(client, bf, srcLang, outputFile, outContentOpt, langMap);
-                    } else {
-                        getLog().warn("The specified source language (" + srcLang
-                                + ") does not exist in the bundle:" + bundleId);
+                    for (String tgtLang: tgtLangs) {
+                        if (bdlLangs.contains(tgtLang)) {
+                            exportLangs.add(tgtLang);
+                        } else {
+                            getLog().warn("The specified target language (" + tgtLang
+                                    + ") does not exist in the bundle:" + bundleId);
+                        }
                     }
-                }
 
-                for (String tgtLang: tgtLangs) {
-                    if (bdlLangs.contains(tgtLang)) {
-                        outputFile = resolveOutputFile(bf, tgtLang, outDir, bundleSet);
-                        exportLanguageResource(client, bf, tgtLang, outputFile, outContentOpt, langMap);
-                    } else {
-                        getLog().warn("The specified target language (" + tgtLang
-                                + ") does not exist in the bundle:" + bundleId);
+                    for (String lang : exportLangs) {
+                        File outputFile = resolveOutputFile(bf, lang, outDir, bundleSet);
+                        exportJobs.add(new DownloadJob(client, bdlSnapshot, bf, lang, outputFile,
+                                outContentOpt, getEmbeddedLanguageId(lang, langMap), templateHolder));
                     }
                 }
+                runJobs(engine, exportJobs);
             }
+        } finally {
+            engine.close();
+            // Cancels prefetch tasks not started yet, so they are not left in the cache
+            for (Runnable task : pool.shutdownNow()) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+            if (downloadState != null) {
+                try {
+                    downloadState.save();
+                } catch (IOException e) {
+                    getLog().warn("Failed to write the download state: " + e.getMessage());
+                }
+            }
+            saveSourceIndex();
         }
     }
 
-    private void exportLanguageResource(ServiceClient client, SourceBundleFile bf, String language,
-            File outputFile, OutputContentOption outContntOpt, Map<String, String> langMap)
-            throws MojoFailureException {
-
-        getLog().info("Exporting bundle:" + bf.getBundleId() + " language:" + language + " to "
-                + outputFile.getAbsolutePath());
-
-        if (outputFile.exists()) {
-            if (overwrite) {
-                getLog().info("The output bundle file:" + outputFile.getAbsolutePath()
-                    + " already exists - overwriting");
-            } else {
-                getLog().info("The output bundle file:" + outputFile.getAbsolutePath()
-                    + " already exists - skipping");
-                // When overwrite is false, do nothing
-                return;
+    /**
+     * Runs the jobs in the sync engine. Logs of the jobs are written in the order
+     * of the jobs, as soon as all preceding jobs are completed. When a job fails,
+     * the remaining jobs are skipped and this method throws the failure.
+     */
+    private void runJobs(SyncEngine engine, List<DownloadJob> jobs)
+            throws MojoExecutionException, MojoFailureException {
+        try {
+            engine.run(jobs);
+        } catch (SyncException e) {
+            if (e.getJob() instanceof DownloadJob) {
+                ((DownloadJob) e.getJob()).log.flush(getLog());
             }
+            Throwable cause = e.getCause();
+            if (cause instanceof MojoFailureException) {
+                throw (MojoFailureException) cause;
+            }
+            throw new MojoFailureException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while downloading bundles", e);
         }
+    }
 
-        if (!outputFile.getParentFile().exists()) {
-            outputFile.getParentFile().mkdirs();
+    /**
+     * Exports a bundle in a language to a bundle file. Log messages are buffered,
+     * and written out when the job is completed.
+     */
+    private final class DownloadJob extends ExportJob {
+        private final ServiceClient client;
+        private final Snapshot.BundleSnapshot bundleSnapshot;
+        private final OutputContentOption outContentOpt;
+        private final MergeTemplateHolder templateHolder;
+        private final boolean merge;
+        private final BundleLog log = new BundleLog();
+        private String fingerprint;
+
+        DownloadJob(ServiceClient client, Snapshot.BundleSnapshot bundleSnapshot, SourceBundleFile bf,
+                String language, File outputFile, OutputContentOption outContentOpt,
+                String embeddedLanguageId, MergeTemplateHolder templateHolder) throws MojoFailureException {
+            super(bf.getBundleId(), language, bf.getType(), outputFile);
+            this.client = client;
+            this.bundleSnapshot = bundleSnapshot;
+            this.outContentOpt = outContentOpt;
+            this.templateHolder = templateHolder;
+            embeddedLanguageCode(embeddedLanguageId);
+            spillThreshold(spillThreshold).spillDirectory(spillDirectory);
+
+            boolean merge = false;
+            switch (outContentOpt) {
+            case MERGE_TO_SOURCE:
+                withFallback(true);
+                merge = true;
+                break;
+
+            case TRANSLATED_WITH_FALLBACK:
+                withFallback(true);
+                break;
+
+            case TRANSLATED_ONLY:
+                break;
+
+            case MERGE_REVIEWED_TO_SOURCE:
+                reviewedOnly(true).withFallback(true);
+                merge = true;
+                break;
+
+            case REVIEWED_WITH_FALLBACK:
+                reviewedOnly(true).withFallback(true);
+                break;
+
+            case REVIEWED_ONLY:
+                reviewedOnly(true);
+                break;
+
+            default:
+                throw new MojoFailureException("Unsupported output content option - " + outContentOpt);
+            }
+            this.merge = merge;
         }
 
-        LanguageBundle bundle;
-        String embeddedLangId = getEmbeddedLanguageId(language, langMap);
-
-        switch (outContntOpt) {
-        case MERGE_TO_SOURCE:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, true);
-            mergeTranslation(bundle, language, bf.getType(), bf.getFile(), outputFile);
-            break;
-
-        case TRANSLATED_WITH_FALLBACK:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, true);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+        @Override
+        protected Map<String, EntryData> fetch() throws MojoFailureException {
+            File outputFile = getOutputFile();
+            log.info("Exporting bundle:" + getBundleId() + " language:" + getLanguage() + " to "
+                    + outputFile.getAbsolutePath());
+
+            if (outputFile.exists()) {
+                if (overwrite) {
+                    log.info("The output bundle file:" + outputFile.getAbsolutePath()
+                        + " already exists - overwriting");
+                } else {
+                    log.info("The output bundle file:" + outputFile.getAbsolutePath()
+                        + " already exists - skipping");
+                    // When overwrite is false, do nothing
+                    return null;
+                }
+            }
+            return getResourceEntries(client, bundleSnapshot, getBundleId(), getLanguage());
+        }
 
-        case TRANSLATED_ONLY:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, false, false);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+        @Override
+        protected LanguageBundle assemble(Map<String, EntryData> entries) throws Exception {
+            LanguageBundle bundle = super.assemble(entries);
+            if (downloadState != null) {
+                fingerprint = DownloadState.fingerprint(bundle, getType(), outContentOpt.name(),
+                        merge ? templateHolder.getSourceDigest() : null);
+                if (downloadState.isUpToDate(getOutputFile(), fingerprint)) {
+                    log.info("The translated contents for " + getOutputFile().getAbsolutePath()
+                        + " are not changed since the last download - skipping");
+                    bundle.close();
+                    return null;
+                }
+            }
+            return bundle;
+        }
 
-        case MERGE_REVIEWED_TO_SOURCE:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, true);
-            mergeTranslation(bundle, language, bf.getType(), bf.getFile(), outputFile);
-            break;
+        @Override
+        protected byte[] convert(LanguageBundle bundle) throws Exception {
+            if (!merge) {
+                return super.convert(bundle);
+            }
+            MergeTemplate template = templateHolder.get();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                template.apply(bos, bundle, new FilterOptions(Locale.forLanguageTag(getLanguage())));
+            } catch (IOException e) {
+                throw new MojoFailureException("I/O error while merging the translated strings to "
+                        + getOutputFile().getAbsolutePath(), e);
+            } catch (ResourceFilterException e) {
+                throw new MojoFailureException("Resource filter error while merging the translated strings to "
+                        + getOutputFile().getAbsolutePath(), e);
+            }
+            return bos.toByteArray();
+        }
 
-        case REVIEWED_WITH_FALLBACK:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, true);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+        @Override
+        protected void write(byte[] content) throws Exception {
+            super.write(content);
+            if (fingerprint != null) {
+                downloadState.update(getOutputFile(), fingerprint);
+            }
+        }
 
-        case REVIEWED_ONLY:
-            bundle = getBundle(client, bf.getBundleId(), language, embeddedLangId, true, false);
-            exportTranslation(bundle, language, bf.getType(), outputFile);
-            break;
+        @Override
+        protected void completed() {
+            log.flush(getLog());
         }
     }
 
@@ -243,85 +496,147 @@ public class GPDownloadMojo extends GPBaseMojo {
         return languageId;
     }
 
-    private void mergeTranslation(LanguageBundle bundle, String language, String type,
-            File srcFile, File outFile) throws MojoFailureException {
-        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-        if (filter == null) {
-            throw new MojoFailureException("Unknown resource filter type - " + type);
+    /**
+     * Holds a merge template compiled from a source bundle file. The template
+     * is compiled on first use, then shared by all target languages of the bundle.
+     * The digest of the source bundle file is also computed once and shared.
+     */
+    private static final class MergeTemplateHolder {
+        private final SourceBundleFile bf;
+        private final SourceIndex sourceIndex;
+        private MergeTemplate template;
+        private String sourceDigest;
+
+        MergeTemplateHolder(SourceBundleFile bf, SourceIndex sourceIndex) {
+            this.bf = bf;
+            this.sourceIndex = sourceIndex;
         }
-        try (FileOutputStream fos = new FileOutputStream(outFile);
-                FileInputStream fis = new FileInputStream(srcFile)) {
-            filter.merge(fis, fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-        } catch (IOException e) {
-            throw new MojoFailureException("I/O error while merging the translated strings to "
-                    + outFile.getAbsolutePath(), e);
-        } catch (ResourceFilterException e) {
-            throw new MojoFailureException("Resource filter error while merging the translated strings to "
-                    + outFile.getAbsolutePath(), e);
+
+        synchronized MergeTemplate get() throws MojoFailureException {
+            if (template == null) {
+                ResourceFilter filter = ResourceFilterFactory.getResourceFilter(bf.getType());
+                if (filter == null) {
+                    throw new MojoFailureException("Unknown resource filter type - " + bf.getType());
+                }
+                File srcFile = bf.getFile();
+                try (FileInputStream fis = new FileInputStream(srcFile)) {
+                    // language specific options are given when the template is applied
+                    template = filter.compileMergeTemplate(fis, new FilterOptions(Locale.ROOT));
+                } catch (IOException e) {
+                    throw new MojoFailureException("I/O error while reading the source bundle "
+                            + srcFile.getAbsolutePath(), e);
+                } catch (ResourceFilterException e) {
+                    throw new MojoFailureException("Resource filter error while reading the source bundle "
+                            + srcFile.getAbsolutePath(), e);
+                }
+            }
+            return template;
+        }
+
+        synchronized String getSourceDigest() throws MojoFailureException {
+            if (sourceDigest == null) {
+                try {
+                    sourceDigest = sourceIndex.getDigest(bf.getFile());
+                } catch (IOException e) {
+                    throw new MojoFailureException("I/O error while reading the source bundle "
+                            + bf.getFile().getAbsolutePath(), e);
+                }
+            }
+            return sourceDigest;
         }
     }
 
-    private void exportTranslation(LanguageBundle bundle, String language, String type,
-            File outFile) throws MojoFailureException {
-        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-        if (filter == null) {
-            throw new MojoFailureException("Unknown resource filter type - " + type);
+    /**
+     * Returns the resource entries of the bundle in the language, from the
+     * snapshot of the bundle if available, otherwise from the service.
+     */
+    private Map<String, EntryData> getResourceEntries(ServiceClient client,
+            Snapshot.BundleSnapshot bundleSnapshot, String bundleId, String language)
+            throws MojoFailureException {
+        if (bundleSnapshot != null) {
+            Map<String, EntryData> entries = bundleSnapshot.getEntries(language);
+            if (entries != null) {
+                return entries;
+            }
         }
-        try (FileOutputStream fos = new FileOutputStream(outFile)) {
-            filter.write(fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-        } catch (IOException e) {
-            throw new MojoFailureException("I/O error while writing the translated strings to "
-                    + outFile.getAbsolutePath(), e);
-        } catch (ResourceFilterException e) {
-            throw new MojoFailureException("Resource filter error while writing the translated strings to "
-                    + outFile.getAbsolutePath(), e);
+        if (client == null) {
+            throw new MojoFailureException("The snapshot does not contain the bundle:" + bundleId
+                    + " language:" + language);
+        }
+        try {
+            return EntryData.fromResourceEntries(client.getResourceEntries(bundleId, language));
+        } catch (ServiceException e) {
+            throw new MojoFailureException("Globalization Pipeline service error", e);
         }
     }
 
-    private LanguageBundle getBundle(ServiceClient client, String bundleId, String language, String embeddedLanguageId,
-            boolean reviewedOnly, boolean withFallback) throws MojoFailureException {
+    /**
+     * Loads the snapshot specified by {@link #snapshotFile}. When maven is not
+     * running in offline mode, the snapshot is used only when {@link #useSnapshotOnline}
+     * is true, and a snapshot created for another service instance or older than
+     * {@link #snapshotMaxAge} is not used.
+     */
+    private void loadSnapshot() throws MojoFailureException {
+        snapshot = null;
+        if (snapshotFile == null) {
+            if (offline) {
+                getLog().warn("Maven is running in offline mode, but no snapshot file is specified"
+                        + " - fetching bundles from the service");
+                offline = false;
+            }
+            return;
+        }
+        if (!offline && !useSnapshotOnline) {
+            return;
+        }
+        if (!snapshotFile.isFile()) {
+            if (offline) {
+                throw new MojoFailureException("The snapshot file " + snapshotFile.getAbsolutePath()
+                        + " does not exist. Run the snapshot goal while online.");
+            }
+            getLog().warn("The snapshot file " + snapshotFile.getAbsolutePath()
+                    + " does not exist - fetching bundles from the service");
+            return;
+        }
+
+        Snapshot s;
         try {
-            LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
-            bundleBuilder.embeddedLanguageCode(embeddedLanguageId);
-
-            Map<String, ResourceEntryData> resEntries = client.getResourceEntries(bundleId, language);
-            for (Entry<String, ResourceEntryData> entry : resEntries.entrySet()) {
-                String key = entry.getKey();
-                ResourceEntryData data = entry.getValue();
-                String resVal = data.getValue();
-                String srcVal = data.getSourceValue();
-                Integer seqNum = data.getSequenceNumber();
-                List<String> notes = data.getNotes();
-                Map<String, String> metadata = data.getMetadata();
-
-                if (reviewedOnly) {
-                    if (!data.isReviewed()) {
-                        resVal = null;
-                    }
-                }
+            s = Snapshot.read(snapshotFile);
+        } catch (IOException e) {
+            if (offline) {
+                throw new MojoFailureException("Failed to read the snapshot file "
+                        + snapshotFile.getAbsolutePath(), e);
+            }
+            getLog().warn("Failed to read the snapshot file - fetching bundles from the service: "
+                    + e.getMessage());
+            return;
+        }
 
-                if (resVal == null && withFallback) {
-                    resVal = data.getSourceValue();
-                }
+        long ageMinutes = (System.currentTimeMillis() - s.getCreatedAt()) / 60000L;
+        if (offline) {
+            getLog().info("Maven is running in offline mode - using the snapshot "
+                    + snapshotFile.getAbsolutePath() + " created " + ageMinutes + " minutes ago");
+        } else if (!getServiceInstanceKey().equals(s.getService())) {
+            getLog().warn("The snapshot file " + snapshotFile.getAbsolutePath()
+                    + " was created for another service instance - not used");
+            return;
+        } else if (ageMinutes >= snapshotMaxAge) {
+            getLog().info("The snapshot file " + snapshotFile.getAbsolutePath() + " was created "
+                    + ageMinutes + " minutes ago - fetching bundles from the service");
+            return;
+        }
+        snapshot = s;
+    }
 
-                if (resVal != null) {
-                    ResourceString.Builder resb = ResourceString.with(key, resVal).sourceValue(srcVal);
-                    if (seqNum != null) {
-                        resb.sequenceNumber(seqNum.intValue());
-                    }
-                    if (notes != null) {
-                        resb.notes(notes);
-                    }
-                    if (metadata != null) {
-                        resb.metadata(metadata);
-                    }
-                    bundleBuilder.addResourceString(resb);
-                }
+    @Override
+    protected Map<String, Set<String>> getConfiguredMTLanguages() throws MojoFailureException {
+        if (offline) {
+            if (snapshot.getMTLanguages() == null) {
+                return Collections.emptyMap();
             }
-            return bundleBuilder.build();
-        } catch (ServiceException e) {
-            throw new MojoFailureException("Globalization Pipeline service error", e);
+            return snapshot.getMTLanguages();
         }
+        return super.getConfiguredMTLanguages();
     }
 
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.sync.EntryData;
+import com.ibm.g11n.pipeline.sync.Snapshot;
+
+/**
+ * Fetches all languages of the bundles used by the configured bundle sets
+ * from an instance of Globalization Pipeline service, and writes them out
+ * to a compressed snapshot file. The download goal can produce translated
+ * bundle files from the snapshot without accessing the service.
+ *
+ * @author yoshito_umaoka
+ */
+@Mojo(name = "snapshot")
+public class GPSnapshotMojo extends GPBaseMojo {
+    /**
+     * The snapshot file to be written.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gp-snapshot.json.gz",
+            property = "gp.snapshotFile")
+    private File snapshotFile;
+
+    /**
+     * The maximum number of concurrent requests to Globalization Pipeline service
+     * while fetching bundles. The default value is 1.
+     */
+    @Parameter(defaultValue = "1", property = "gp.downloadThreads")
+    private int downloadThreads;
+
+    /* (non-Javadoc)
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        getLog().debug("Entering GPSnapshotMojo#execute()");
+
+        final ServiceClient client = getServiceClient();
+        final ServiceCache cache = getServiceCache();
+
+        Snapshot snapshot = new Snapshot(getServiceInstanceKey(), System.currentTimeMillis());
+
+        Set<String> bundleIds = new TreeSet<>();
+        try {
+            Set<String> availBundleIds = cache.getBundleIds();
+            for (BundleSet bundleSet : getBundleSets()) {
+                for (SourceBundleFile bf : getSourceBundleFiles(bundleSet)) {
+                    if (availBundleIds.contains(bf.getBundleId())) {
+                        bundleIds.add(bf.getBundleId());
+                    } else {
+                        getLog().warn("The bundle:" + bf.getBundleId() + " does not exist.");
+                    }
+                }
+            }
+            snapshot.setMTLanguages(cache.getConfiguredMTLanguages());
+        } catch (ServiceException e) {
+            throw new MojoFailureException("Globalization Pipeline service error", e);
+        } finally {
+            saveSourceIndex();
+        }
+
+        int numThreads = Math.max(1, downloadThreads);
+        getLog().debug("Download threads: " + numThreads);
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+
+        try {
+            cache.prefetchBundleInfos(bundleIds, pool);
+
+            List<Future<Map<String, EntryData>>> results = new ArrayList<>();
+            List<Snapshot.BundleSnapshot> targets = new ArrayList<>();
+            List<String> languages = new ArrayList<>();
+            for (final String bundleId : bundleIds) {
+                BundleData bdlData;
+                try {
+                    bdlData = cache.getBundleInfo(bundleId);
+                } catch (ServiceException e) {
+                    throw new MojoFailureException("Failed to get bundle data for " + bundleId, e);
+                }
+                Snapshot.BundleSnapshot bdlSnapshot = new Snapshot.BundleSnapshot(bdlData);
+                snapshot.putBundle(bundleId, bdlSnapshot);
+
+                for (final String lang : bdlSnapshot.getLanguages()) {
+                    getLog().info("Fetching bundle:" + bundleId + " language:" + lang);
+                    results.add(pool.submit(new Callable<Map<String, EntryData>>() {
+                        @Override
+                        public Map<String, EntryData> call() throws ServiceException {
+                            return EntryData.fromResourceEntries(client.getResourceEntries(bundleId, lang));
+                        }
+                    }));
+                    targets.add(bdlSnapshot);
+                    languages.add(lang);
+                }
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    targets.get(i).putEntries(languages.get(i), results.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new MojoFailureException("Globalization Pipeline service error", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while fetching bundles", e);
+                }
+            }
+        } finally {
+            // Cancels tasks not started yet, so they are not left in the cache
+            for (Runnable task : pool.shutdownNow()) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+        }
+
+        getLog().info("Writing " + snapshot.getBundleIds().size() + " bundles to the snapshot file "
+                + snapshotFile.getAbsolutePath());
+        try {
+            snapshot.write(snapshotFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write the snapshot file "
+                    + snapshotFile.getAbsolutePath(), e);
+        }
+    }
+}
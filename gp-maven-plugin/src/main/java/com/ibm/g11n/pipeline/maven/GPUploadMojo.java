@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2016, 2018
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,24 +15,36 @@
  */
 package com.ibm.g11n.pipeline.maven;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import com.ibm.g11n.pipeline.client.BundleData;
 import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
 import com.ibm.g11n.pipeline.client.NewBundleData;
 import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
 import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
@@ -50,6 +62,34 @@ import com.ibm.g11n.pipeline.resfilter.ResourceString;
  */
 @Mojo(name = "upload")
 public class GPUploadMojo extends GPBaseMojo {
+    /**
+     * The maximum number of bundles uploaded to Globalization Pipeline service
+     * concurrently. Source bundle files are parsed on a separate thread pool, and
+     * parsed bundles are uploaded by this number of threads. The default value
+     * is 1.
+     */
+    @Parameter(defaultValue = "1", property = "gp.uploadThreads")
+    private int uploadThreads;
+
+    /**
+     * Whether to skip bundles not changed since the last successful upload.
+     * When true, the state of uploaded bundles is recorded in {@link #uploadStateFile}.
+     * Bundles whose source file and configuration are not changed are skipped
+     * without accessing Globalization Pipeline service, and only added or
+     * modified resource entries are uploaded for changed bundles.
+     * The default value is true.
+     */
+    @Parameter(defaultValue = "true", property = "gp.incrementalUpload")
+    private boolean incrementalUpload;
+
+    /**
+     * The file storing the state of bundles uploaded by the last successful
+     * upload, used when {@link #incrementalUpload} is true.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gp-upload-state.json",
+            property = "gp.uploadStateFile")
+    private File uploadStateFile;
+
     /* (non-Javadoc)
      * @see org.apache.maven.plugin.Mojo#execute()
      */
@@ -57,133 +97,379 @@ public class GPUploadMojo extends GPBaseMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         getLog().debug("Entering GPUploadMojo#execute()");
 
-        ServiceClient client = getServiceClient();
+        final ServiceClient client = getServiceClient();
+        final ServiceCache cache = getServiceCache();
 
+        final Set<String> bundleIds;
         try {
-            Set<String> bundleIds = client.getBundleIds();
-            List<BundleSet> bundleSets = getBundleSets();
+            bundleIds = cache.getBundleIds();
+        } catch (ServiceException e) {
+            throw new MojoFailureException("Globalization Pipeline service error", e);
+        }
+        List<BundleSet> bundleSets = getBundleSets();
 
-            for (BundleSet bundleSet : bundleSets) {
-                String srcLang = bundleSet.getSourceLanguage();
-                Set<String> tgtLangs = resolveTargetLanguages(bundleSet);
-                List<SourceBundleFile> bundleFiles = getSourceBundleFiles(bundleSet);
-
-                // Process each bundle
-                for (SourceBundleFile bf : bundleFiles) {
-                    getLog().info(bf.getType() + " : " + bf.getBundleId() + " : " + bf.getFile().getAbsolutePath());
-
-                    // Checks if the bundle already exists
-                    String bundleId = bf.getBundleId();
-                    boolean createNew = false;
-                    Set<String> currentTgtLangs = null;
-                    if (bundleIds.contains(bundleId)) {
-                        getLog().info("Found bundle:" + bundleId);
-                        // Checks if the source language matches.
-                        BundleData bundle = client.getBundleInfo(bundleId);
-                        if (!srcLang.equals(bundle.getSourceLanguage())) {
-                            throw new MojoFailureException("The source language in bundle:"
-                                    + bundleId + "(" + bundle.getSourceLanguage()
-                                    + ") does not match the specified language("
-                                    + srcLang + ").");
-                        }
-                        currentTgtLangs = bundle.getTargetLanguages();
-                    } else {
-                        getLog().info("bundle:" + bundleId + " does not exist, creating a new bundle.");
-                        createNew = true;
-                    }
+        UploadState uploadState = null;
+        if (incrementalUpload) {
+            try {
+                uploadState = UploadState.load(uploadStateFile, getServiceInstanceKey());
+            } catch (IOException e) {
+                getLog().warn("Failed to read the upload state - all bundles will be uploaded: "
+                        + e.getMessage());
+                uploadState = null;
+            }
+        }
+        final UploadState state = uploadState;
 
-                    // Parse the resource bundle file
-                    ResourceFilter filter = ResourceFilterFactory.getResourceFilter(bf.getType());
-                    if (filter == null) {
-                        throw new MojoFailureException("Resource filter for " + bf.getType() + " is not available.");
-                    }
+        int numThreads = Math.max(1, uploadThreads);
+        getLog().debug("Upload threads: " + numThreads);
 
-                    Map<String, NewResourceEntryData> resEntries = new HashMap<>();
-                    try (FileInputStream fis = new FileInputStream(bf.getFile())) {
-                        LanguageBundle resBundle = filter.parse(fis, new FilterOptions(Locale.forLanguageTag(srcLang)));
+        int parseThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService parsePool = Executors.newFixedThreadPool(parseThreads);
+        final ExecutorService uploadPool = Executors.newFixedThreadPool(numThreads);
+        // Fetches information of existing bundles to be updated, while bundles are parsed
+        final ExecutorService prefetchPool = Executors.newFixedThreadPool(numThreads);
+        // Limits the number of bundles being parsed or uploaded, including parsed
+        // bundles waiting for upload, so only a bounded number of parsed bundles
+        // are held in memory
+        final Semaphore pendingBundles = new Semaphore(parseThreads + numThreads * 2);
 
-                        if (createNew) {
-                            NewBundleData newBundleData = new NewBundleData(srcLang);
-                            // set target languages
-                            if (!tgtLangs.isEmpty()) {
-                                newBundleData.setTargetLanguages(new TreeSet<String>(tgtLangs));
-                            }
-                            // set bundle notes
-                            newBundleData.setNotes(resBundle.getNotes());
-                            // set metadata
-                            newBundleData.setMetadata(resBundle.getMetadata());
-                            client.createBundle(bundleId, newBundleData);
-                            getLog().info("Created bundle: " + bundleId);
-                        } else {
-                            BundleDataChangeSet bundleDataChanges = new BundleDataChangeSet();
-                            boolean updateBundle = false;
-
-                            // checks if target languages need to be updated
-                            if (!tgtLangs.isEmpty()) {
-                                if (currentTgtLangs == null || !currentTgtLangs.containsAll(tgtLangs)) {
-                                    // add missing target languages - we don't want to delete
-                                    // existing target languages automatically here.
-                                    Set<String> newTgtLangs = new TreeSet<>(tgtLangs);
-                                    if (currentTgtLangs != null) {
-                                        newTgtLangs.addAll(currentTgtLangs);
+        List<SourceBundleFile> bundleFiles = new ArrayList<>();
+        // Each parse task returns the future of the upload task, or null when
+        // the bundle is not changed
+        List<Future<Future<?>>> results = new ArrayList<>();
+        List<MojoFailureException> failures = new ArrayList<>();
+
+        try {
+            for (BundleSet bundleSet : bundleSets) {
+                final String srcLang = bundleSet.getSourceLanguage();
+                final Set<String> tgtLangs = resolveTargetLanguages(bundleSet);
+
+                // Parse bundle files in parallel, and upload each bundle once it's parsed
+                for (final SourceBundleFile bf : getSourceBundleFiles(bundleSet)) {
+                    pendingBundles.acquire();
+                    bundleFiles.add(bf);
+                    results.add(parsePool.submit(new Callable<Future<?>>() {
+                        @Override
+                        public Future<?> call() throws MojoFailureException {
+                            boolean uploading = false;
+                            try {
+                                final ParsedBundle parsed = parseBundle(bf, srcLang, tgtLangs, bundleIds, state);
+                                if (parsed.bundle == null) {
+                                    return null;
+                                }
+                                if (bundleIds.contains(bf.getBundleId())) {
+                                    cache.prefetchBundleInfos(Collections.singleton(bf.getBundleId()),
+                                            prefetchPool);
+                                }
+                                Future<?> upload = uploadPool.submit(new Callable<Void>() {
+                                    @Override
+                                    public Void call() throws MojoFailureException {
+                                        BundleLog log = new BundleLog();
+                                        try {
+                                            uploadBundle(client, cache, bundleIds, bf, srcLang, tgtLangs,
+                                                    parsed, state, log);
+                                        } catch (MojoFailureException | RuntimeException e) {
+                                            if (state != null) {
+                                                state.remove(bf.getBundleId());
+                                            }
+                                            throw e;
+                                        } finally {
+                                            log.flush(getLog());
+                                            pendingBundles.release();
+                                        }
+                                        return null;
                                     }
-                                    bundleDataChanges.setTargetLanguages(newTgtLangs);
-                                    updateBundle = true;
+                                });
+                                uploading = true;
+                                return upload;
+                            } finally {
+                                if (!uploading) {
+                                    pendingBundles.release();
                                 }
                             }
-
-                            // update bundle notes if any
-                            if (!resBundle.getNotes().isEmpty()) {
-                                bundleDataChanges.setNotes(resBundle.getNotes());
-                                updateBundle = true;
-                            }
-                            // update metadata if any - for now, this operation only appends
-                            // extra metadata key-value pairs from bundle files
-                            if (!resBundle.getMetadata().isEmpty()) {
-                                bundleDataChanges.setMetadata(resBundle.getMetadata());
-                                updateBundle = true;
-                            }
-                            if (updateBundle) {
-                                client.updateBundle(bundleId, bundleDataChanges);
-                                getLog().info("Updated bundle data: " + bundleId);
-                            }
                         }
-                        Collection<ResourceString> resStrings = resBundle.getResourceStrings();
-                        for (ResourceString resString : resStrings) {
-                            NewResourceEntryData resEntryData = new NewResourceEntryData(resString.getValue());
-                            int seqNum = resString.getSequenceNumber();
-                            if (seqNum >= 0) {
-                                resEntryData.setSequenceNumber(Integer.valueOf(seqNum));
-                            }
-                            // set resource string notes
-                            if (!resString.getNotes().isEmpty()) {
-                                resEntryData.setNotes(resString.getNotes());
-                            }
-                            // set resource string metadata
-                            if (!resString.getMetadata().isEmpty()) {
-                                resEntryData.setMetadata(resString.getMetadata());
-                            }
-                            resEntries.put(resString.getKey(), resEntryData);
-                        }
-                    } catch (IOException e) {
-                        throw new MojoFailureException("Failed to read the resoruce data from "
-                                + bf.getFile().getAbsolutePath() + ": " + e.getMessage(), e);
-                    } catch (ResourceFilterException e) {
-                        throw new MojoFailureException("Failed to parse the resource data from "
-                                + bf.getFile().getAbsolutePath() + ": " + e.getMessage(), e);
+                    }));
+                }
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                SourceBundleFile bf = bundleFiles.get(i);
+                Future<?> upload;
+                try {
+                    upload = results.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.add(toFailure(bf, e.getCause()));
+                    if (state != null) {
+                        state.remove(bf.getBundleId());
                     }
-                    if (resEntries.isEmpty()) {
-                        getLog().info("No resource entries in " + bf.getFile().getAbsolutePath());
-                    } else {
-                        // Upload the resource entries
-                        client.uploadResourceEntries(bundleId, srcLang, resEntries);
-                        getLog().info("Uploaded source language(" + srcLang
-                                + ") resource entries(" + resEntries.size() + ") to bundle: " + bundleId);
+                    continue;
+                }
+
+                if (upload == null) {
+                    getLog().info(bf.getType() + " : " + bf.getBundleId() + " : "
+                            + bf.getFile().getAbsolutePath() + " - not changed since the last upload, skipping");
+                    continue;
+                }
+                try {
+                    upload.get();
+                } catch (ExecutionException e) {
+                    failures.add(toFailure(bf, e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while uploading bundles", e);
+        } finally {
+            parsePool.shutdownNow();
+            uploadPool.shutdownNow();
+            // Cancels prefetch tasks not started yet, so they are not left in the cache
+            for (Runnable task : prefetchPool.shutdownNow()) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+            saveSourceIndex();
+        }
+
+        if (state != null) {
+            try {
+                state.save();
+            } catch (IOException e) {
+                getLog().warn("Failed to write the upload state: " + e.getMessage());
+            }
+        }
+
+        if (failures.size() == 1) {
+            throw failures.get(0);
+        }
+        if (!failures.isEmpty()) {
+            for (MojoFailureException failure : failures) {
+                getLog().error(failure.getMessage());
+            }
+            throw new MojoFailureException(failures.size() + " bundles failed to upload. First failure: "
+                    + failures.get(0).getMessage(), failures.get(0));
+        }
+    }
+
+    private static MojoFailureException toFailure(SourceBundleFile bf, Throwable t) {
+        if (t instanceof MojoFailureException) {
+            return (MojoFailureException) t;
+        }
+        return new MojoFailureException("Failed to upload bundle:" + bf.getBundleId()
+                + " from " + bf.getFile().getAbsolutePath() + ": " + t.getMessage(), t);
+    }
+
+    /**
+     * A source bundle file parsed and converted to resource entries.
+     */
+    private static class ParsedBundle {
+        static final ParsedBundle UNCHANGED = new ParsedBundle(null, null, null);
+
+        final LanguageBundle bundle;
+        final Map<String, NewResourceEntryData> resEntries;
+        final UploadState.BundleState bundleState;
+
+        ParsedBundle(LanguageBundle bundle, Map<String, NewResourceEntryData> resEntries,
+                UploadState.BundleState bundleState) {
+            this.bundle = bundle;
+            this.resEntries = resEntries;
+            this.bundleState = bundleState;
+        }
+    }
+
+    private ParsedBundle parseBundle(SourceBundleFile bf, String srcLang, Set<String> tgtLangs,
+            Set<String> bundleIds, UploadState state) throws MojoFailureException {
+        String digest = null;
+        if (state != null) {
+            try {
+                digest = getSourceIndex().getDigest(bf.getFile());
+            } catch (IOException e) {
+                throw new MojoFailureException("Failed to read the resoruce data from "
+                        + bf.getFile().getAbsolutePath() + ": " + e.getMessage(), e);
+            }
+            UploadState.BundleState prevState = state.get(bf.getBundleId());
+            if (prevState != null && bundleIds.contains(bf.getBundleId())
+                    && prevState.matches(bf.getType(), digest, srcLang, tgtLangs)) {
+                return ParsedBundle.UNCHANGED;
+            }
+        }
+
+        // Parse the resource bundle file
+        ResourceFilter filter = ResourceFilterFactory.getResourceFilter(bf.getType());
+        if (filter == null) {
+            throw new MojoFailureException("Resource filter for " + bf.getType() + " is not available.");
+        }
+
+        Map<String, NewResourceEntryData> resEntries = new HashMap<>();
+        try (FileInputStream fis = new FileInputStream(bf.getFile())) {
+            LanguageBundle resBundle = filter.parse(fis, new FilterOptions(Locale.forLanguageTag(srcLang)));
+            Collection<ResourceString> resStrings = resBundle.getResourceStrings();
+            for (ResourceString resString : resStrings) {
+                NewResourceEntryData resEntryData = new NewResourceEntryData(resString.getValue());
+                int seqNum = resString.getSequenceNumber();
+                if (seqNum >= 0) {
+                    resEntryData.setSequenceNumber(Integer.valueOf(seqNum));
+                }
+                // set resource string notes
+                if (!resString.getNotes().isEmpty()) {
+                    resEntryData.setNotes(resString.getNotes());
+                }
+                // set resource string metadata
+                if (!resString.getMetadata().isEmpty()) {
+                    resEntryData.setMetadata(resString.getMetadata());
+                }
+                resEntries.put(resString.getKey(), resEntryData);
+            }
+            UploadState.BundleState bundleState = null;
+            if (digest != null) {
+                bundleState = new UploadState.BundleState(bf.getType(), digest, srcLang, tgtLangs,
+                        UploadState.hashEntries(resEntries));
+            }
+            return new ParsedBundle(resBundle, resEntries, bundleState);
+        } catch (IOException e) {
+            throw new MojoFailureException("Failed to read the resoruce data from "
+                    + bf.getFile().getAbsolutePath() + ": " + e.getMessage(), e);
+        } catch (ResourceFilterException e) {
+            throw new MojoFailureException("Failed to parse the resource data from "
+                    + bf.getFile().getAbsolutePath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void uploadBundle(ServiceClient client, ServiceCache cache, Set<String> bundleIds,
+            SourceBundleFile bf, String srcLang, Set<String> tgtLangs, ParsedBundle parsed,
+            UploadState state, BundleLog log) throws MojoFailureException {
+        log.info(bf.getType() + " : " + bf.getBundleId() + " : " + bf.getFile().getAbsolutePath());
+
+        String bundleId = bf.getBundleId();
+        LanguageBundle resBundle = parsed.bundle;
+        UploadState.BundleState prevState = null;
+        try {
+            // Checks if the bundle already exists
+            if (bundleIds.contains(bundleId)) {
+                log.info("Found bundle:" + bundleId);
+                if (state != null) {
+                    prevState = state.get(bundleId);
+                }
+                // Checks if the source language matches.
+                BundleData bundle = cache.getBundleInfo(bundleId);
+                if (!srcLang.equals(bundle.getSourceLanguage())) {
+                    throw new MojoFailureException("The source language in bundle:"
+                            + bundleId + "(" + bundle.getSourceLanguage()
+                            + ") does not match the specified language("
+                            + srcLang + ").");
+                }
+                Set<String> currentTgtLangs = bundle.getTargetLanguages();
+
+                BundleDataChangeSet bundleDataChanges = new BundleDataChangeSet();
+                boolean updateBundle = false;
+
+                // checks if target languages need to be updated
+                if (!tgtLangs.isEmpty()) {
+                    if (currentTgtLangs == null || !currentTgtLangs.containsAll(tgtLangs)) {
+                        // add missing target languages - we don't want to delete
+                        // existing target languages automatically here.
+                        Set<String> newTgtLangs = new TreeSet<>(tgtLangs);
+                        if (currentTgtLangs != null) {
+                            newTgtLangs.addAll(currentTgtLangs);
+                        }
+                        bundleDataChanges.setTargetLanguages(newTgtLangs);
+                        updateBundle = true;
                     }
                 }
+
+                // update bundle notes if any
+                if (!resBundle.getNotes().isEmpty()) {
+                    bundleDataChanges.setNotes(resBundle.getNotes());
+                    updateBundle = true;
+                }
+                // update metadata if any - for now, this operation only appends
+                // extra metadata key-value pairs from bundle files
+                if (!resBundle.getMetadata().isEmpty()) {
+                    bundleDataChanges.setMetadata(resBundle.getMetadata());
+                    updateBundle = true;
+                }
+                if (updateBundle) {
+                    client.updateBundle(bundleId, bundleDataChanges);
+                    cache.invalidateBundle(bundleId);
+                    log.info("Updated bundle data: " + bundleId);
+                }
+            } else {
+                log.info("bundle:" + bundleId + " does not exist, creating a new bundle.");
+                NewBundleData newBundleData = new NewBundleData(srcLang);
+                // set target languages
+                if (!tgtLangs.isEmpty()) {
+                    newBundleData.setTargetLanguages(new TreeSet<String>(tgtLangs));
+                }
+                // set bundle notes
+                newBundleData.setNotes(resBundle.getNotes());
+                // set metadata
+                newBundleData.setMetadata(resBundle.getMetadata());
+                client.createBundle(bundleId, newBundleData);
+                cache.invalidateBundle(bundleId);
+                log.info("Created bundle: " + bundleId);
+            }
+
+            Map<String, NewResourceEntryData> resEntries = parsed.resEntries;
+            Map<String, ResourceEntryDataChangeSet> changes = null;
+            if (prevState != null && parsed.bundleState != null) {
+                changes = getChangedEntries(resEntries, prevState.entryHashes,
+                        parsed.bundleState.entryHashes);
+            }
+            if (resEntries.isEmpty()) {
+                log.info("No resource entries in " + bf.getFile().getAbsolutePath());
+            } else if (changes != null) {
+                if (changes.isEmpty()) {
+                    log.info("No changes in source language(" + srcLang
+                            + ") resource entries in bundle: " + bundleId);
+                } else {
+                    client.updateResourceEntries(bundleId, srcLang, changes, false);
+                    log.info("Uploaded changed source language(" + srcLang
+                            + ") resource entries(" + changes.size() + ") to bundle: " + bundleId);
+                }
+            } else {
+                // Upload the resource entries
+                client.uploadResourceEntries(bundleId, srcLang, resEntries);
+                log.info("Uploaded source language(" + srcLang
+                        + ") resource entries(" + resEntries.size() + ") to bundle: " + bundleId);
             }
         } catch (ServiceException e) {
-            throw new MojoFailureException("Globalization Pipeline service error", e);
+            throw new MojoFailureException("Globalization Pipeline service error while uploading bundle:"
+                    + bundleId, e);
+        }
+
+        if (state != null && parsed.bundleState != null) {
+            state.put(bundleId, parsed.bundleState);
+        }
+    }
+
+    /**
+     * Returns resource entries added or modified since the last upload, or null
+     * if any resource entries were removed. Uploading changed resource entries
+     * does not delete removed resource entries from the bundle, so the entire
+     * resource entries must be uploaded in that case.
+     */
+    private static Map<String, ResourceEntryDataChangeSet> getChangedEntries(
+            Map<String, NewResourceEntryData> resEntries, Map<String, String> prevHashes,
+            Map<String, String> hashes) {
+        if (prevHashes == null || !hashes.keySet().containsAll(prevHashes.keySet())) {
+            return null;
+        }
+        Map<String, ResourceEntryDataChangeSet> changes = new HashMap<>();
+        for (Entry<String, NewResourceEntryData> entry : resEntries.entrySet()) {
+            String key = entry.getKey();
+            if (hashes.get(key).equals(prevHashes.get(key))) {
+                continue;
+            }
+            NewResourceEntryData data = entry.getValue();
+            ResourceEntryDataChangeSet change = new ResourceEntryDataChangeSet()
+                    .setValue(data.getValue())
+                    .setSequenceNumber(data.getSequenceNumber())
+                    .setNotes(data.getNotes() == null ? Collections.<String>emptyList() : data.getNotes());
+            if (data.getMetadata() != null) {
+                change.setMetadata(data.getMetadata());
+            }
+            changes.put(key, change);
         }
+        return changes;
     }
 }
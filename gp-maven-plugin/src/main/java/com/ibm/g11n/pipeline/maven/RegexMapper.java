@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,8 @@ public class RegexMapper {
     @Parameter(required = true)
     private String replacement;
 
+    private Pattern compiledPattern;
+
     public RegexMapper() {
     }
 
@@ -52,6 +54,7 @@ public class RegexMapper {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        this.compiledPattern = null;
     }
 
     /**
@@ -73,6 +76,12 @@ public class RegexMapper {
         assert pattern != null;
         assert replacement != null;
 
-        return Pattern.compile(pattern).matcher(s).replaceAll(replacement);
+        // Pattern is immutable and thread-safe - compile it once and reuse
+        Pattern p = compiledPattern;
+        if (p == null) {
+            p = Pattern.compile(pattern);
+            compiledPattern = p;
+        }
+        return p.matcher(s).replaceAll(replacement);
     }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * A cache of a Globalization Pipeline service client and service metadata
+ * shared by all mojo executions in a maven session.
+ * <p>
+ * A cache is created for each set of service credentials. When multiple
+ * threads request the same metadata concurrently, only one of them calls
+ * the service, and others wait for the result. Failed requests are not
+ * cached.
+ *
+ * @author yoshito_umaoka
+ */
+final class ServiceCache {
+    private static final String BUNDLE_IDS = "bundleIds";
+    private static final String MT_LANGUAGES = "mtLanguages";
+    private static final String BUNDLE_INFO_PREFIX = "bundleInfo:";
+
+    /**
+     * Caches indexed by session keys, then by credentials.
+     */
+    private static final Map<Object, Map<String, ServiceCache>> SESSION_CACHES = new WeakHashMap<>();
+
+    private final ServiceClient client;
+    private final ConcurrentMap<String, Future<?>> results = new ConcurrentHashMap<>();
+
+    ServiceCache(ServiceClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the cache for the session and the credentials.
+     *
+     * @param sessionKey    The object identifying the maven session, or null
+     *                      to create a cache not shared with other executions.
+     * @param creds         The service credentials.
+     * @return  The cache.
+     */
+    static ServiceCache get(Object sessionKey, Credentials creds) {
+        if (sessionKey == null) {
+            return new ServiceCache(createClient(creds));
+        }
+        synchronized (SESSION_CACHES) {
+            Map<String, ServiceCache> caches = SESSION_CACHES.get(sessionKey);
+            if (caches == null) {
+                caches = new HashMap<>();
+                SESSION_CACHES.put(sessionKey, caches);
+            }
+            String credsKey = creds.toString();
+            ServiceCache cache = caches.get(credsKey);
+            if (cache == null) {
+                cache = new ServiceCache(createClient(creds));
+                caches.put(credsKey, cache);
+            }
+            return cache;
+        }
+    }
+
+    private static ServiceClient createClient(Credentials creds) {
+        return ServiceClient.getInstance(
+                ServiceAccount.getInstance(
+                        creds.getUrl(), creds.getInstanceId(),
+                        creds.getUserId(), creds.getPassword()));
+    }
+
+    ServiceClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the IDs of bundles in the service instance.
+     *
+     * @return  An unmodifiable set of bundle IDs.
+     * @throws ServiceException on a service error.
+     */
+    Set<String> getBundleIds() throws ServiceException {
+        return get(BUNDLE_IDS, new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws ServiceException {
+                return Collections.unmodifiableSet(client.getBundleIds());
+            }
+        });
+    }
+
+    /**
+     * Returns the machine translation languages configured in the service instance.
+     *
+     * @return  An unmodifiable map of target languages indexed by source languages.
+     * @throws ServiceException on a service error.
+     */
+    Map<String, Set<String>> getConfiguredMTLanguages() throws ServiceException {
+        return get(MT_LANGUAGES, new Callable<Map<String, Set<String>>>() {
+            @Override
+            public Map<String, Set<String>> call() throws ServiceException {
+                return Collections.unmodifiableMap(client.getConfiguredMTLanguages());
+            }
+        });
+    }
+
+    /**
+     * Returns the information of the bundle.
+     *
+     * @param bundleId  The bundle ID.
+     * @return  The bundle information.
+     * @throws ServiceException on a service error.
+     */
+    BundleData getBundleInfo(String bundleId) throws ServiceException {
+        return get(BUNDLE_INFO_PREFIX + bundleId, bundleInfoLoader(bundleId));
+    }
+
+    /**
+     * Starts fetching the information of the bundles on the executor, unless
+     * the information is already cached or being fetched. Subsequent calls to
+     * {@link #getBundleInfo(String)} wait for the results.
+     * <p>
+     * When the executor is shut down before running some of the tasks, the caller
+     * must cancel them, so these bundles are fetched again on demand.
+     *
+     * @param bundleIds The bundle IDs.
+     * @param executor  The executor running fetch tasks.
+     */
+    void prefetchBundleInfos(Collection<String> bundleIds, Executor executor) {
+        for (String bundleId : bundleIds) {
+            String key = BUNDLE_INFO_PREFIX + bundleId;
+            FutureTask<BundleData> task = new FutureTask<>(bundleInfoLoader(bundleId));
+            if (results.putIfAbsent(key, task) == null) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    results.remove(key, task);
+                }
+            }
+        }
+    }
+
+    private Callable<BundleData> bundleInfoLoader(final String bundleId) {
+        return new Callable<BundleData>() {
+            @Override
+            public BundleData call() throws ServiceException {
+                return client.getBundleInfo(bundleId);
+            }
+        };
+    }
+
+    /**
+     * Discards cached metadata affected by creating or updating the bundle.
+     *
+     * @param bundleId  The bundle ID.
+     */
+    void invalidateBundle(String bundleId) {
+        results.remove(BUNDLE_IDS);
+        results.remove(BUNDLE_INFO_PREFIX + bundleId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, Callable<T> loader) throws ServiceException {
+        while (true) {
+            FutureTask<T> task = new FutureTask<>(loader);
+            Future<?> result = results.putIfAbsent(key, task);
+            if (result == null) {
+                result = task;
+                task.run();
+            }
+            try {
+                return (T) result.get();
+            } catch (CancellationException e) {
+                // a prefetch task was cancelled - load it again
+                results.remove(key, result);
+            } catch (ExecutionException e) {
+                results.remove(key, result);
+                Throwable cause = e.getCause();
+                if (cause instanceof ServiceException) {
+                    throw (ServiceException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + key, e);
+            }
+        }
+    }
+}
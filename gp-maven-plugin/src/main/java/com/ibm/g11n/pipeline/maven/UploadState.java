@@ -0,0 +1,174 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.sync.StateFiles;
+
+/**
+ * The state of bundles uploaded by the previous successful executions of
+ * {@link GPUploadMojo}, persisted in a JSON file.
+ * <p>
+ * For each bundle, the state keeps the digest of the source bundle file and
+ * a hash of each resource entry, so unchanged bundles can be skipped and
+ * only added or modified resource entries are uploaded for changed bundles.
+ *
+ * @author yoshito_umaoka
+ */
+final class UploadState {
+    private static final int VERSION = 1;
+
+    /**
+     * The state of a single bundle.
+     */
+    static final class BundleState {
+        String type;
+        String digest;
+        String sourceLanguage;
+        List<String> targetLanguages;
+        Map<String, String> entryHashes;
+
+        BundleState(String type, String digest, String sourceLanguage,
+                Collection<String> targetLanguages, Map<String, String> entryHashes) {
+            this.type = type;
+            this.digest = digest;
+            this.sourceLanguage = sourceLanguage;
+            this.targetLanguages = new ArrayList<>(targetLanguages);
+            Collections.sort(this.targetLanguages);
+            this.entryHashes = new TreeMap<>(entryHashes);
+        }
+
+        /**
+         * Returns true if the source bundle file and the bundle configuration
+         * are same with this state.
+         */
+        boolean matches(String type, String digest, String sourceLanguage,
+                Collection<String> targetLanguages) {
+            List<String> sortedTgtLangs = new ArrayList<>(targetLanguages);
+            Collections.sort(sortedTgtLangs);
+            return type.equals(this.type) && digest.equals(this.digest)
+                    && sourceLanguage.equals(this.sourceLanguage)
+                    && sortedTgtLangs.equals(this.targetLanguages);
+        }
+    }
+
+    private static final class StateData {
+        int version;
+        String service;
+        Map<String, BundleState> bundles;
+    }
+
+    private final File file;
+    private final String service;
+    private final Map<String, BundleState> bundles;
+
+    private UploadState(File file, String service, Map<String, BundleState> bundles) {
+        this.file = file;
+        this.service = service;
+        this.bundles = bundles;
+    }
+
+    /**
+     * Loads the upload state from the file.
+     * <p>
+     * When the file does not exist, or it was created for a different
+     * service instance, this method returns an empty state.
+     *
+     * @param file      The state file.
+     * @param service   The identifier of the service instance.
+     * @return  The upload state.
+     * @throws IOException if the file cannot be read or has a bad format.
+     */
+    static UploadState load(File file, String service) throws IOException {
+        Map<String, BundleState> bundles = new TreeMap<>();
+        StateData data = StateFiles.read(file, StateData.class);
+        if (data != null && data.version == VERSION && service.equals(data.service)
+                && data.bundles != null) {
+            bundles.putAll(data.bundles);
+        }
+        return new UploadState(file, service, bundles);
+    }
+
+    /**
+     * Writes out the upload state to the file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    synchronized void save() throws IOException {
+        StateData data = new StateData();
+        data.version = VERSION;
+        data.service = service;
+        data.bundles = bundles;
+
+        StateFiles.write(file, data);
+    }
+
+    synchronized BundleState get(String bundleId) {
+        return bundles.get(bundleId);
+    }
+
+    synchronized void put(String bundleId, BundleState state) {
+        bundles.put(bundleId, state);
+    }
+
+    synchronized void remove(String bundleId) {
+        bundles.remove(bundleId);
+    }
+
+    /**
+     * Returns hashes of resource entries, indexed by resource keys.
+     *
+     * @param resEntries    The resource entries.
+     * @return  The hashes of resource entries.
+     */
+    static Map<String, String> hashEntries(Map<String, NewResourceEntryData> resEntries) {
+        Map<String, String> hashes = new TreeMap<>();
+        MessageDigest md = StateFiles.newDigest();
+        StringBuilder buf = new StringBuilder();
+        for (Entry<String, NewResourceEntryData> entry : resEntries.entrySet()) {
+            NewResourceEntryData data = entry.getValue();
+            buf.setLength(0);
+            buf.append(data.getValue()).append('\u0000');
+            buf.append(data.getSequenceNumber()).append('\u0000');
+            if (data.getNotes() != null) {
+                for (String note : data.getNotes()) {
+                    buf.append(note).append('\u0001');
+                }
+            }
+            buf.append('\u0000');
+            if (data.getMetadata() != null) {
+                for (Entry<String, String> meta : new TreeMap<>(data.getMetadata()).entrySet()) {
+                    buf.append(meta.getKey()).append('\u0002').append(meta.getValue()).append('\u0001');
+                }
+            }
+            md.reset();
+            hashes.put(entry.getKey(), StateFiles.toHex(md.digest(buf.toString().getBytes(StandardCharsets.UTF_8))));
+        }
+        return hashes;
+    }
+}
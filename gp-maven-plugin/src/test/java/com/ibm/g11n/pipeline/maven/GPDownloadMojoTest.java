@@ -0,0 +1,250 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.TranslationStatus;
+import com.ibm.g11n.pipeline.maven.GPBaseMojo.SourceBundleFile;
+
+/**
+ * GPDownloadMojo test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class GPDownloadMojoTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final int NUM_ENTRIES = 50;
+
+    private static class TestBundleData extends BundleData {
+        TestBundleData() {
+            super("en", false, "user", new Date());
+        }
+
+        @Override
+        public Set<String> getTargetLanguages() {
+            return Collections.singleton("fr");
+        }
+
+        @Override
+        public List<String> getNotes() {
+            return null;
+        }
+
+        @Override
+        public Map<String, String> getMetadata() {
+            return null;
+        }
+
+        @Override
+        public String getPartner() {
+            return null;
+        }
+
+        @Override
+        public String getSegmentSeparatorPattern() {
+            return null;
+        }
+
+        @Override
+        public String getNoTranslationPattern() {
+            return null;
+        }
+    }
+
+    private static class TestResourceEntryData extends ResourceEntryData {
+        private final int seqNum;
+
+        TestResourceEntryData(String value, String sourceValue, int seqNum) {
+            super(value, sourceValue, TranslationStatus.TRANSLATED, true, "user", new Date());
+            this.seqNum = seqNum;
+        }
+
+        @Override
+        public List<String> getNotes() {
+            return null;
+        }
+
+        @Override
+        public Map<String, String> getMetadata() {
+            return null;
+        }
+
+        @Override
+        public String getPartnerStatus() {
+            return null;
+        }
+
+        @Override
+        public Integer getSequenceNumber() {
+            return seqNum;
+        }
+    }
+
+    /**
+     * A client serving a bundle "messages" translated to French.
+     */
+    private static class DownloadClient extends StubServiceClient {
+        @Override
+        public Set<String> getBundleIds() {
+            return Collections.singleton("messages");
+        }
+
+        @Override
+        public BundleData getBundleInfo(String bundleId) {
+            return new TestBundleData();
+        }
+
+        @Override
+        public Map<String, ResourceEntryData> getResourceEntries(String bundleId, String language) {
+            Map<String, ResourceEntryData> entries = new TreeMap<>();
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                entries.put("key" + i, new TestResourceEntryData(language + " value " + i, "value " + i, i));
+            }
+            return entries;
+        }
+    }
+
+    private static class TestDownloadMojo extends GPDownloadMojo {
+        private final ServiceCache cache;
+        private final BundleSet bundleSet;
+        private final SourceBundleFile bundleFile;
+
+        TestDownloadMojo(ServiceClient client, SourceBundleFile bundleFile, File outputDir,
+                File indexFile) throws Exception {
+            this.cache = new ServiceCache(client);
+            this.bundleSet = new BundleSet(new FileSet());
+            this.bundleSet.setTargetLanguages(Collections.singleton("fr"));
+            this.bundleSet.setOutputDir(outputDir);
+            this.bundleFile = bundleFile;
+
+            setField(GPDownloadMojo.class, "overwrite", true);
+            setField(GPBaseMojo.class, "sourceIndexFile", indexFile);
+        }
+
+        void setField(Class<?> cls, String name, Object value) throws Exception {
+            Field field = cls.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(this, value);
+        }
+
+        @Override
+        protected ServiceClient getServiceClient() {
+            return cache.getClient();
+        }
+
+        @Override
+        protected ServiceCache getServiceCache() {
+            return cache;
+        }
+
+        @Override
+        protected String getServiceInstanceKey() {
+            return "test";
+        }
+
+        @Override
+        protected synchronized List<BundleSet> getBundleSets() {
+            return Collections.singletonList(bundleSet);
+        }
+
+        @Override
+        protected List<SourceBundleFile> getSourceBundleFiles(BundleSet bundleSet) {
+            return Collections.singletonList(bundleFile);
+        }
+    }
+
+    private SourceBundleFile createBundleFile() throws IOException {
+        File file = tempFolder.newFile("messages.properties");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1)) {
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                writer.write("key" + i + "=value " + i + "\n");
+            }
+        }
+        return new SourceBundleFile("JAVA", "messages", file, file.getName());
+    }
+
+    private static Properties read(File f) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(f), StandardCharsets.ISO_8859_1)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    @Test
+    public void testSpillThreshold() throws Exception {
+        File outputDir = tempFolder.newFolder("out");
+        File spillDir = new File(tempFolder.getRoot(), "spill");
+        TestDownloadMojo mojo = new TestDownloadMojo(new DownloadClient(), createBundleFile(), outputDir,
+                new File(tempFolder.getRoot(), "source-index.json"));
+        mojo.setField(GPDownloadMojo.class, "spillThreshold", 8);
+        mojo.setField(GPDownloadMojo.class, "spillDirectory", spillDir);
+
+        mojo.execute();
+
+        Properties fr = read(new File(outputDir, "messages_fr.properties"));
+        Assert.assertEquals(NUM_ENTRIES, fr.size());
+        Assert.assertEquals("fr value 0", fr.getProperty("key0"));
+        Assert.assertEquals("fr value 49", fr.getProperty("key49"));
+        // resource strings were spilled to the directory, and deleted after conversion
+        Assert.assertTrue("Spill directory", spillDir.isDirectory());
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void testNoSpillThreshold() throws Exception {
+        File outputDir = tempFolder.newFolder("out");
+        File spillDir = new File(tempFolder.getRoot(), "spill");
+        TestDownloadMojo mojo = new TestDownloadMojo(new DownloadClient(), createBundleFile(), outputDir,
+                new File(tempFolder.getRoot(), "source-index.json"));
+        mojo.setField(GPDownloadMojo.class, "spillDirectory", spillDir);
+
+        mojo.execute();
+
+        Properties fr = read(new File(outputDir, "messages_fr.properties"));
+        Assert.assertEquals(NUM_ENTRIES, fr.size());
+        Assert.assertFalse("Spill directory", spillDir.exists());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.maven.GPBaseMojo.SourceBundleFile;
+
+/**
+ * GPUploadMojo test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class GPUploadMojoTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * A client creating new bundles, failing bundles whose IDs start with "bad".
+     */
+    private static class UploadClient extends StubServiceClient {
+        final Map<String, Map<String, NewResourceEntryData>> uploaded = new ConcurrentHashMap<>();
+        final AtomicInteger activeUploads = new AtomicInteger();
+        final AtomicInteger maxActiveUploads = new AtomicInteger();
+
+        @Override
+        public Set<String> getBundleIds() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void createBundle(String bundleId, NewBundleData newBundleData) throws ServiceException {
+            int active = activeUploads.incrementAndGet();
+            try {
+                synchronized (maxActiveUploads) {
+                    maxActiveUploads.set(Math.max(maxActiveUploads.get(), active));
+                }
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                activeUploads.decrementAndGet();
+            }
+            if (bundleId.startsWith("bad")) {
+                throw new ServiceException("failed to create " + bundleId);
+            }
+        }
+
+        @Override
+        public void uploadResourceEntries(String bundleId, String language,
+                Map<String, NewResourceEntryData> resEntries) {
+            uploaded.put(bundleId, resEntries);
+        }
+    }
+
+    private static class TestUploadMojo extends GPUploadMojo {
+        private final ServiceCache cache;
+        private final BundleSet bundleSet;
+        private final List<SourceBundleFile> bundleFiles;
+
+        TestUploadMojo(ServiceClient client, List<SourceBundleFile> bundleFiles) throws Exception {
+            this.cache = new ServiceCache(client);
+            this.bundleSet = new BundleSet(new FileSet());
+            this.bundleSet.setTargetLanguages(Collections.singleton("fr"));
+            this.bundleFiles = bundleFiles;
+
+            Field uploadThreads = GPUploadMojo.class.getDeclaredField("uploadThreads");
+            uploadThreads.setAccessible(true);
+            uploadThreads.setInt(this, 4);
+        }
+
+        @Override
+        protected ServiceClient getServiceClient() {
+            return cache.getClient();
+        }
+
+        @Override
+        protected ServiceCache getServiceCache() {
+            return cache;
+        }
+
+        @Override
+        protected synchronized List<BundleSet> getBundleSets() {
+            return Collections.singletonList(bundleSet);
+        }
+
+        @Override
+        protected List<SourceBundleFile> getSourceBundleFiles(BundleSet bundleSet) {
+            return bundleFiles;
+        }
+    }
+
+    private SourceBundleFile createBundleFile(String bundleId) throws IOException {
+        File file = tempFolder.newFile(bundleId + ".properties");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.ISO_8859_1)) {
+            writer.write("key1=" + bundleId + " value 1\n");
+            writer.write("key2=" + bundleId + " value 2\n");
+        }
+        return new SourceBundleFile("JAVA", bundleId, file, file.getName());
+    }
+
+    @Test
+    public void testParallelUpload() throws Exception {
+        List<SourceBundleFile> bundleFiles = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            bundleFiles.add(createBundleFile("bundle" + i));
+        }
+        UploadClient client = new UploadClient();
+
+        new TestUploadMojo(client, bundleFiles).execute();
+
+        Assert.assertEquals(8, client.uploaded.size());
+        Assert.assertEquals("bundle3 value 2", client.uploaded.get("bundle3").get("key2").getValue());
+        Assert.assertTrue("Bundles uploaded concurrently", client.maxActiveUploads.get() > 1);
+    }
+
+    @Test
+    public void testUploadFailures() throws Exception {
+        List<SourceBundleFile> bundleFiles = new ArrayList<>();
+        bundleFiles.add(createBundleFile("bundle0"));
+        bundleFiles.add(createBundleFile("bad1"));
+        bundleFiles.add(createBundleFile("bundle2"));
+        bundleFiles.add(createBundleFile("bad3"));
+        UploadClient client = new UploadClient();
+
+        try {
+            new TestUploadMojo(client, bundleFiles).execute();
+            Assert.fail("MojoFailureException is expected");
+        } catch (MojoFailureException e) {
+            // failures are reported in the order of bundle files
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("2 bundles failed to upload."));
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("bundle:bad1"));
+        }
+        // other bundles are uploaded
+        Assert.assertEquals(2, client.uploaded.size());
+        Assert.assertTrue(client.uploaded.containsKey("bundle0"));
+        Assert.assertTrue(client.uploaded.containsKey("bundle2"));
+    }
+}
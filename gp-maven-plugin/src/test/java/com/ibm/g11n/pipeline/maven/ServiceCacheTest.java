@@ -0,0 +1,237 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * ServiceCache test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class ServiceCacheTest {
+
+    private static class TestBundleData extends BundleData {
+        TestBundleData(String sourceLanguage) {
+            super(sourceLanguage, false, "user", new Date());
+        }
+
+        @Override
+        public Set<String> getTargetLanguages() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public List<String> getNotes() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<String, String> getMetadata() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getPartner() {
+            return null;
+        }
+
+        @Override
+        public String getSegmentSeparatorPattern() {
+            return null;
+        }
+
+        @Override
+        public String getNoTranslationPattern() {
+            return null;
+        }
+    }
+
+    /**
+     * A client counting requests. Requests for bundle IDs wait until
+     * {@link #release} is counted down, and the first request fails
+     * if {@link #failFirst} is true.
+     */
+    private static class CountingClient extends StubServiceClient {
+        final AtomicInteger bundleIdsRequests = new AtomicInteger();
+        final AtomicInteger bundleInfoRequests = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean failFirst = false;
+
+        @Override
+        public Set<String> getBundleIds() throws ServiceException {
+            int count = bundleIdsRequests.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServiceException(e);
+            }
+            if (failFirst && count == 1) {
+                throw new ServiceException("first request failed");
+            }
+            return new HashSet<>(Arrays.asList("bundle1", "bundle2"));
+        }
+
+        @Override
+        public BundleData getBundleInfo(String bundleId) {
+            bundleInfoRequests.incrementAndGet();
+            return new TestBundleData("en");
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final CountingClient client = new CountingClient();
+        final ServiceCache cache = new ServiceCache(client);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Set<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws ServiceException {
+                        return cache.getBundleIds();
+                    }
+                }));
+            }
+            // lets other callers join the request in progress
+            Thread.sleep(200);
+            client.release.countDown();
+
+            Set<String> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Set<String>> result : results) {
+                Assert.assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals("Service requests", 1, client.bundleIdsRequests.get());
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        CountingClient client = new CountingClient();
+        client.failFirst = true;
+        client.release.countDown();
+        ServiceCache cache = new ServiceCache(client);
+
+        try {
+            cache.getBundleIds();
+            Assert.fail("ServiceException is expected");
+        } catch (ServiceException e) {
+            // expected
+        }
+        Assert.assertEquals(2, cache.getBundleIds().size());
+        Assert.assertEquals("Service requests", 2, client.bundleIdsRequests.get());
+    }
+
+    @Test
+    public void testInvalidateBundle() throws Exception {
+        CountingClient client = new CountingClient();
+        client.release.countDown();
+        ServiceCache cache = new ServiceCache(client);
+
+        cache.getBundleIds();
+        cache.getBundleInfo("bundle1");
+        cache.getBundleInfo("bundle1");
+        cache.getBundleInfo("bundle2");
+        Assert.assertEquals(1, client.bundleIdsRequests.get());
+        Assert.assertEquals(2, client.bundleInfoRequests.get());
+
+        // a write to bundle1 discards the bundle IDs and bundle1 only
+        cache.invalidateBundle("bundle1");
+        cache.getBundleIds();
+        cache.getBundleInfo("bundle1");
+        cache.getBundleInfo("bundle2");
+        Assert.assertEquals(2, client.bundleIdsRequests.get());
+        Assert.assertEquals(3, client.bundleInfoRequests.get());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        CountingClient client = new CountingClient();
+        ServiceCache cache = new ServiceCache(client);
+
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        cache.prefetchBundleInfos(Arrays.asList("bundle1", "bundle2"), direct);
+        // already cached - not fetched again
+        cache.prefetchBundleInfos(Collections.singleton("bundle1"), direct);
+        Assert.assertEquals(2, client.bundleInfoRequests.get());
+
+        Assert.assertEquals("en", cache.getBundleInfo("bundle1").getSourceLanguage());
+        Assert.assertEquals(2, client.bundleInfoRequests.get());
+    }
+
+    @Test
+    public void testCancelPrefetch() throws Exception {
+        CountingClient client = new CountingClient();
+        ServiceCache cache = new ServiceCache(client);
+
+        // tasks are queued, but never run
+        final List<Runnable> queued = new ArrayList<>();
+        cache.prefetchBundleInfos(Collections.singleton("bundle1"), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        Assert.assertEquals(1, queued.size());
+        Assert.assertEquals(0, client.bundleInfoRequests.get());
+
+        // cancels the task, as done after the prefetch executor is shut down
+        ((Future<?>) queued.get(0)).cancel(false);
+        Assert.assertNotNull(cache.getBundleInfo("bundle1"));
+        Assert.assertEquals("Fetched on demand", 1, client.bundleInfoRequests.get());
+
+        // a rejected task is not left in the cache
+        cache.prefetchBundleInfos(Collections.singleton("bundle2"), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        Assert.assertNotNull(cache.getBundleInfo("bundle2"));
+        Assert.assertEquals("Fetched on demand", 2, client.bundleInfoRequests.get());
+    }
+}
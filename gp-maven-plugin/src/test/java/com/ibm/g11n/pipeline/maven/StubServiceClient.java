@@ -0,0 +1,374 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.BundleDataChangeSet;
+import com.ibm.g11n.pipeline.client.BundleMetrics;
+import com.ibm.g11n.pipeline.client.DocumentData;
+import com.ibm.g11n.pipeline.client.DocumentDataChangeSet;
+import com.ibm.g11n.pipeline.client.DocumentMetrics;
+import com.ibm.g11n.pipeline.client.DocumentTranslationRequestData;
+import com.ibm.g11n.pipeline.client.DocumentTranslationRequestDataChangeSet;
+import com.ibm.g11n.pipeline.client.DocumentType;
+import com.ibm.g11n.pipeline.client.LanguageMetrics;
+import com.ibm.g11n.pipeline.client.MTServiceBindingData;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewDocumentData;
+import com.ibm.g11n.pipeline.client.NewDocumentTranslationRequestData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.NewTranslationConfigData;
+import com.ibm.g11n.pipeline.client.NewTranslationRequestData;
+import com.ibm.g11n.pipeline.client.NewUserData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
+import com.ibm.g11n.pipeline.client.SegmentData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.client.ServiceInfo;
+import com.ibm.g11n.pipeline.client.ServiceInstanceInfo;
+import com.ibm.g11n.pipeline.client.TranslationConfigData;
+import com.ibm.g11n.pipeline.client.TranslationRequestData;
+import com.ibm.g11n.pipeline.client.TranslationRequestDataChangeSet;
+import com.ibm.g11n.pipeline.client.UserData;
+import com.ibm.g11n.pipeline.client.UserDataChangeSet;
+
+/**
+ * A service client for tests, throwing <code>UnsupportedOperationException</code>
+ * from all operations. Test cases override operations they use.
+ *
+ * @author yoshito_umaoka
+ */
+class StubServiceClient extends ServiceClient {
+
+    StubServiceClient() {
+        super(ServiceAccount.getInstance("https://gp.example.com/translate/rest", "instance",
+                "user", "password"));
+    }
+
+    @Override
+    public ServiceInfo getServiceInfo() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ServiceInstanceInfo getServiceInstanceInfo() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<String> getBundleIds() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createBundle(String arg0, NewBundleData arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BundleData getBundleInfo(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BundleMetrics getBundleMetrics(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateBundle(String arg0, BundleDataChangeSet arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBundle(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, String> getResourceStrings(String arg0, String arg1, boolean arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, ResourceEntryData> getResourceEntries(String arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LanguageMetrics getLanguageMetrics(String arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void uploadResourceStrings(String arg0, String arg1, Map<String, String> arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void uploadResourceEntries(String arg0, String arg1, Map<String, NewResourceEntryData> arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateResourceStrings(String arg0, String arg1, Map<String, String> arg2, boolean arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateResourceEntries(String arg0, String arg1, Map<String, ResourceEntryDataChangeSet> arg2, boolean arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResourceEntryData getResourceEntry(String arg0, String arg1, String arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateResourceEntry(String arg0, String arg1, String arg2, ResourceEntryDataChangeSet arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<String> getDocumentIds(DocumentType arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void createDocument(DocumentType arg0, String arg1, NewDocumentData arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentData getDocumentInfo(DocumentType arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentMetrics getDocumentMetrics(DocumentType arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateDocument(DocumentType arg0, String arg1, DocumentDataChangeSet arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateDocumentContent(DocumentType arg0, String arg1, String arg2, File arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getDocumentContent(DocumentType arg0, String arg1, String arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeDocumentContent(DocumentType arg0, String arg1, String arg2, OutputStream arg3) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteDocument(DocumentType arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, UserData> getUsers() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public UserData createUser(NewUserData arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public UserData getUser(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public UserData updateUser(String arg0, UserDataChangeSet arg1, boolean arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteUser(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, MTServiceBindingData> getAllMTServiceBindings() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Map<String, Set<String>>> getAvailableMTLanguages() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MTServiceBindingData getMTServiceBinding(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Map<String, NewTranslationConfigData>> getAllTranslationConfigs() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Set<String>> getConfiguredMTLanguages() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putTranslationConfig(String arg0, String arg1, NewTranslationConfigData arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TranslationConfigData getTranslationConfig(String arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTranslationConfig(String arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, TranslationRequestData> getTranslationRequests() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TranslationRequestData getTranslationRequest(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TranslationRequestData createTranslationRequest(NewTranslationRequestData arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TranslationRequestData updateTranslationRequest(String arg0, TranslationRequestDataChangeSet arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTranslationRequest(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BundleData getTRBundleInfo(String arg0, String arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, ResourceEntryData> getTRResourceEntries(String arg0, String arg1, String arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResourceEntryData getTRResourceEntry(String arg0, String arg1, String arg2, String arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getXliffFromBundles(String arg0, String arg1, Set<String> arg2, OutputStream arg3) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateBundlesWithXliff(InputStream arg0) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getXliffFromTranslationRequest(String arg0, String arg1, String arg2, OutputStream arg3) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, DocumentTranslationRequestData> getDocumentTranslationRequests() throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentTranslationRequestData getDocumentTranslationRequest(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentTranslationRequestData createDocumentTranslationRequest(NewDocumentTranslationRequestData arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentTranslationRequestData updateDocumentTranslationRequest(String arg0, DocumentTranslationRequestDataChangeSet arg1) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteDocumentTranslationRequest(String arg0) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DocumentData getTRDocumentInfo(String arg0, DocumentType arg1, String arg2) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, SegmentData> getTRSegments(String arg0, DocumentType arg1, String arg2, String arg3) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SegmentData getTRSegment(String arg0, DocumentType arg1, String arg2, String arg3, String arg4) throws ServiceException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getXliffFromDocuments(String arg0, String arg1, Map<DocumentType, Set<String>> arg2, OutputStream arg3) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateDocumentsWithXliff(InputStream arg0) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getXliffFromDocumentTranslationRequest(String arg0, String arg1, String arg2, OutputStream arg3) throws ServiceException, IOException {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+
+/**
+ * UploadState test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class UploadStateTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File stateFile = new File(tempFolder.getRoot(), "state/gp-upload-state.json");
+        UploadState state = UploadState.load(stateFile, "https://gp.example.com#instance1");
+        Assert.assertNull(state.get("bundle1"));
+
+        Map<String, String> hashes = new HashMap<>();
+        hashes.put("key1", "hash1");
+        state.put("bundle1", new UploadState.BundleState("java", "digest1", "en",
+                Arrays.asList("ja", "de"), hashes));
+        state.save();
+
+        UploadState loaded = UploadState.load(stateFile, "https://gp.example.com#instance1");
+        UploadState.BundleState bundleState = loaded.get("bundle1");
+        Assert.assertNotNull(bundleState);
+        Assert.assertEquals(hashes, bundleState.entryHashes);
+        Assert.assertTrue(bundleState.matches("java", "digest1", "en", Arrays.asList("de", "ja")));
+        Assert.assertFalse(bundleState.matches("java", "digest2", "en", Arrays.asList("de", "ja")));
+        Assert.assertFalse(bundleState.matches("java", "digest1", "en", Arrays.asList("de", "ja", "fr")));
+
+        // state for another service instance is discarded
+        UploadState other = UploadState.load(stateFile, "https://gp.example.com#instance2");
+        Assert.assertNull(other.get("bundle1"));
+    }
+
+    @Test
+    public void testHashEntries() {
+        Map<String, NewResourceEntryData> entries = new HashMap<>();
+        entries.put("key1", new NewResourceEntryData("value 1").setSequenceNumber(1));
+        entries.put("key2", new NewResourceEntryData("value 2").setSequenceNumber(2));
+        Map<String, String> hashes1 = UploadState.hashEntries(entries);
+
+        entries.put("key2", new NewResourceEntryData("value 2").setSequenceNumber(2)
+                .setNotes(Arrays.asList("note")));
+        Map<String, String> hashes2 = UploadState.hashEntries(entries);
+
+        Assert.assertEquals(hashes1.get("key1"), hashes2.get("key1"));
+        Assert.assertNotEquals(hashes1.get("key2"), hashes2.get("key2"));
+    }
+}
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -53,8 +53,8 @@ public class FilterOptions {
      * Sets a map including key-value pairs specifying filter implementation specific custom
      * parameters.
      * <p>
-     * Note: This map is not currently used by the default filter implementations included
-     * in this library.
+     * Note: This map is currently used only by the Java properties filter implementations
+     * included in this library, for enabling parallel parsing.
      * 
      * @param customParams  A map including key-value pairs specifying filter implementation
      *                      specific custom parameters.
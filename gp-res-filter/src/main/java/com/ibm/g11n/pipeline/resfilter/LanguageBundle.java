@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -26,10 +27,14 @@ import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
 
 /**
  * <code>LanguageBundle</code> is a class representing a bundle data for a language.
+ * <p>
+ * A bundle built by a {@link LanguageBundleBuilder} with a spill threshold holds
+ * resource strings in temporary files. Such bundle should be closed when it is no
+ * longer used, so the temporary files are deleted.
  * 
  * @author yoshito_umaoka
  */
-public final class LanguageBundle {
+public final class LanguageBundle implements Closeable {
     private Collection<ResourceString> resourceStrings;
     private List<String> notes;
     private Map<String, String> metadata;
@@ -90,6 +95,14 @@ public final class LanguageBundle {
         this.resourceStrings = new ArrayList<>(resourceStrings);
     }
 
+    /**
+     * Sets resource strings stored in temporary files without copying them.
+     * @param resourceStrings   Resource strings stored in temporary files.
+     */
+    void setSpilledResourceStrings(SpilledResourceStrings resourceStrings) {
+        this.resourceStrings = resourceStrings;
+    }
+
     /**
      * Returns an unmodifiable collection of resource strings.
      * @return  an unmodifiable collection of resource strings.
@@ -147,8 +160,36 @@ public final class LanguageBundle {
      */
     public List<ResourceString> getSortedResourceStrings() {
         List<ResourceString> sortedResStrings = new ArrayList<>(resourceStrings);
-        Collections.sort(sortedResStrings, new ResourceStringComparator());
+        if (!(resourceStrings instanceof SpilledResourceStrings)) {
+            // SpilledResourceStrings iterates resource strings in sorted order
+            Collections.sort(sortedResStrings, new ResourceStringComparator());
+        }
         return sortedResStrings;
     }
-}
 
+    /**
+     * Returns {@link ResourceString}s in sorted order. Unlike {@link #getSortedResourceStrings()},
+     * this method does not load all resource strings in memory when the bundle was built
+     * by a {@link LanguageBundleBuilder} with a spill threshold.
+     * @return  an iterable of {@link ResourceString}s in sorted order.
+     */
+    public Iterable<ResourceString> getSortedResourceStringsIterable() {
+        if (resourceStrings instanceof SpilledResourceStrings) {
+            return Collections.unmodifiableCollection(resourceStrings);
+        }
+        return getSortedResourceStrings();
+    }
+
+    /**
+     * Deletes temporary files holding resource strings of this bundle, and closes
+     * iterators of the resource strings not read to the end. Resource strings are
+     * no longer available after this method is called. This method does nothing
+     * when all resource strings are held in memory.
+     */
+    @Override
+    public void close() {
+        if (resourceStrings instanceof SpilledResourceStrings) {
+            ((SpilledResourceStrings) resourceStrings).close();
+        }
+    }
+}
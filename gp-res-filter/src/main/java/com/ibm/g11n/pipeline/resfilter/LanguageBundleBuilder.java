@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,6 +38,11 @@ public final class LanguageBundleBuilder {
     private final boolean autoSequenceNumbers;
     private int seqNum = 1;
 
+    private int spillThreshold = 0;
+    private File spillDirectory;
+    private List<File> spillFiles = new ArrayList<>();
+    private int spilledCount = 0;
+
     /**
      * Constructs a <code>LanguageBundleBuilder</code>.
      * 
@@ -75,6 +82,7 @@ public final class LanguageBundleBuilder {
             resourceStringBuilder.sequenceNumber(seqNum++);
         }
         resourceStrings.add(resourceStringBuilder.build());
+        spillIfNecessary();
         return this;
     }
 
@@ -162,10 +170,64 @@ public final class LanguageBundleBuilder {
             // TODO
         } else {
             resourceStrings.add(resourceString);
+            spillIfNecessary();
         }
         return this;
     }
 
+    /**
+     * Sets the maximum number of resource strings kept in memory by this builder.
+     * <p>
+     * When the number of resource strings added to this builder reaches the threshold,
+     * the resource strings are sorted and written to a temporary file in a compact binary
+     * form. A bundle built from such a builder reads the temporary files on demand, and
+     * {@link LanguageBundle#getSortedResourceStringsIterable()} returns resource strings
+     * in sorted order by merging the temporary files, without loading all of them in memory.
+     * <p>
+     * Temporary files are deleted when the bundle is closed by {@link LanguageBundle#close()}.
+     * Bundles built by the same builder share the temporary files, so the files are no
+     * longer available to the other bundles once one of them is closed.
+     *
+     * @param threshold The maximum number of resource strings kept in memory, or 0 (default)
+     *                  to keep all resource strings in memory.
+     * @return  this builder instance.
+     */
+    public LanguageBundleBuilder spillThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative spill threshold: " + threshold);
+        }
+        this.spillThreshold = threshold;
+        spillIfNecessary();
+        return this;
+    }
+
+    /**
+     * Sets the directory where temporary files are created when the number of resource
+     * strings exceeds the threshold specified by {@link #spillThreshold(int)}.
+     *
+     * @param dir   The directory, or null (default) to use the default temporary-file
+     *              directory.
+     * @return  this builder instance.
+     */
+    public LanguageBundleBuilder spillDirectory(File dir) {
+        this.spillDirectory = dir;
+        return this;
+    }
+
+    private void spillIfNecessary() {
+        if (spillThreshold <= 0 || resourceStrings.size() < spillThreshold) {
+            return;
+        }
+        List<ResourceString> run = new ArrayList<>(resourceStrings);
+        try {
+            spillFiles.add(SpilledResourceStrings.writeRun(spillDirectory, run));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write resource strings to a temporary file", e);
+        }
+        spilledCount += run.size();
+        resourceStrings.clear();
+    }
+
     /**
      * Adds a single bundle note (comment).
      * @param note  The note to be appended.
@@ -261,7 +323,12 @@ public final class LanguageBundleBuilder {
         // This method creates a copy of collection object, so the builder
         // object can be reused.
         LanguageBundle bundle = new LanguageBundle();
-        bundle.setResourceStrings(new ArrayList<ResourceString>(resourceStrings));
+        if (spillFiles.isEmpty()) {
+            bundle.setResourceStrings(new ArrayList<ResourceString>(resourceStrings));
+        } else {
+            bundle.setSpilledResourceStrings(
+                    new SpilledResourceStrings(spillFiles, resourceStrings, spilledCount));
+        }
         if (!notes.isEmpty()) {
             bundle.setNotes(new ArrayList<String>(notes));
         }
@@ -0,0 +1,51 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * <code>MergeTemplate</code> is a base bundle compiled by
+ * {@link ResourceFilter#compileMergeTemplate(InputStream, FilterOptions)}.
+ * <p>
+ * A template is created once for a base bundle, then applied to language bundles
+ * for multiple languages, without reading and parsing the base bundle again.
+ * Implementations must be immutable, so a template can be applied by multiple
+ * threads concurrently.
+ *
+ * @author yoshito_umaoka
+ */
+public abstract class MergeTemplate {
+    /**
+     * Merges the language bundle data into the base bundle compiled in this template,
+     * and writes the result to the output stream. The result is same as
+     * {@link ResourceFilter#merge(InputStream, OutputStream, LanguageBundle, FilterOptions)}
+     * with the base bundle.
+     *
+     * @param outStream The output stream where the resource data will be written.
+     * @param languageBundle    The language bundle data including resource strings and other resource
+     *                          information.
+     * @param options   The options controlling the filter's behavior. This argument is optional and
+     *                  can be <code>null</code>.
+     * @throws IOException  if an error occurred when writing to the output stream.
+     * @throws ResourceFilterException  if an error occurred when converting language bundle data
+     *                          to a target format.
+     */
+    public abstract void apply(OutputStream outStream, LanguageBundle languageBundle,
+            FilterOptions options) throws IOException, ResourceFilterException;
+}
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,10 +15,14 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * <code>MultiBundleResourceFilter</code> is an abstract class defines multiple bundle resource
@@ -31,6 +35,38 @@ import java.util.Map;
  * @author yoshito_umaoka
  */
 public abstract class MultiBundleResourceFilter {
+    /**
+     * <code>ResourceStringConsumer</code> receives resource strings read by
+     * {@link MultiBundleResourceFilter#parse(InputStream, ResourceStringConsumer, FilterOptions)}
+     * one by one.
+     */
+    public interface ResourceStringConsumer {
+        /**
+         * Accepts a resource string read from the input.
+         * 
+         * @param bundleId  The identifier of the bundle which the resource string belongs to.
+         * @param resString The resource string.
+         * @throws ResourceFilterException  if an error occurred when processing the resource string.
+         */
+        void accept(String bundleId, ResourceString resString) throws ResourceFilterException;
+    }
+
+    /**
+     * <code>TranslationLookup</code> supplies translated values to
+     * {@link MultiBundleResourceFilter#merge(InputStream, OutputStream, TranslationLookup, FilterOptions)}.
+     */
+    public interface TranslationLookup {
+        /**
+         * Returns the translated value of the resource string.
+         * 
+         * @param bundleId  The bundle identifier.
+         * @param key   The resource key.
+         * @return  The translated value, or <code>null</code> if not available.
+         * @throws ResourceFilterException  if an error occurred when retrieving the value.
+         */
+        String lookup(String bundleId, String key) throws ResourceFilterException;
+    }
+
     /**
      * Parses the contents of resource data from the specified input stream and returns a map of
      * <code>LanguageBundle</code> with bundle identifiers as keys.
@@ -45,6 +81,32 @@ public abstract class MultiBundleResourceFilter {
     public abstract Map<String, LanguageBundle> parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException;
 
+    /**
+     * Parses the contents of resource data from the specified input stream and passes each
+     * resource string to the consumer, without holding all resource strings in memory.
+     * <p>
+     * The default implementation calls {@link #parse(InputStream, FilterOptions)} and passes
+     * resource strings in the result to the consumer. A concrete subclass of this class may
+     * override this method if the resource format can be read incrementally.
+     * 
+     * @param inStream  The input stream of the resource data.
+     * @param consumer  The consumer receiving resource strings.
+     * @param options   The options controlling the filter's behavior. This argument is optional and
+     *                  can be <code>null</code>.
+     * @throws IOException  if an error occurred when reading from the input stream.
+     * @throws ResourceFilterException  if an error occurred when parsing the resource contents,
+     *                          or thrown by the consumer.
+     */
+    public void parse(InputStream inStream, ResourceStringConsumer consumer, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        Map<String, LanguageBundle> bundles = parse(inStream, options);
+        for (Entry<String, LanguageBundle> bundleEntry : bundles.entrySet()) {
+            for (ResourceString resString : bundleEntry.getValue().getSortedResourceStrings()) {
+                consumer.accept(bundleEntry.getKey(), resString);
+            }
+        }
+    }
+
     /**
      * Writes the map of language bundle data indexed by bundle IDs to the specified output stream in
      * a target resource format implemented by the filter class.
@@ -79,4 +141,60 @@ public abstract class MultiBundleResourceFilter {
             FilterOptions options) throws IOException, ResourceFilterException {
         write(outStream, languageBundles, options);
     }
+
+    /**
+     * Merges translated values supplied by the lookup into the corresponding multiple bundle
+     * resource. A concrete subclass of this class may override this method if the resource
+     * format can be merged without holding all translations in memory.
+     * <p>
+     * The default implementation reads the entire base resource into a byte array, looks up
+     * translated values of resource strings parsed from the base resource, and calls
+     * {@link #merge(InputStream, OutputStream, Map, FilterOptions)}. So the memory used by the
+     * default implementation is proportional to the size of the base resource, in addition to
+     * the translated values found.
+     * 
+     * @param baseStream    The input stream of base multiple bundle resource.
+     * @param outStream The output stream where the resource data will be written.
+     * @param lookup    The lookup supplying translated values.
+     * @param options   The options controlling the filter's behavior. This argument is optional and
+     *                  can be <code>null</code>.
+     * @throws IOException  if an error occurred when reading form the input stream, or writing to
+     *                      the output stream.
+     * @throws ResourceFilterException  if an error occurred when converting resource data
+     *                          to a target format, or thrown by the lookup.
+     */
+    public void merge(InputStream baseStream, OutputStream outStream, final TranslationLookup lookup,
+            FilterOptions options) throws IOException, ResourceFilterException {
+        // The base resource is read twice - for collecting keys and for merging
+        ByteArrayOutputStream baseBytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = baseStream.read(buf)) != -1) {
+            baseBytes.write(buf, 0, len);
+        }
+        byte[] base = baseBytes.toByteArray();
+
+        final Map<String, LanguageBundleBuilder> builders = new HashMap<>();
+        parse(new ByteArrayInputStream(base), new ResourceStringConsumer() {
+            @Override
+            public void accept(String bundleId, ResourceString resString) throws ResourceFilterException {
+                String value = lookup.lookup(bundleId, resString.getKey());
+                if (value == null) {
+                    return;
+                }
+                LanguageBundleBuilder builder = builders.get(bundleId);
+                if (builder == null) {
+                    builder = new LanguageBundleBuilder(true);
+                    builders.put(bundleId, builder);
+                }
+                builder.addResourceString(resString.getKey(), value);
+            }
+        }, options);
+
+        Map<String, LanguageBundle> languageBundles = new HashMap<>();
+        for (Entry<String, LanguageBundleBuilder> builderEntry : builders.entrySet()) {
+            languageBundles.put(builderEntry.getKey(), builderEntry.getValue().build());
+        }
+        merge(new ByteArrayInputStream(base), outStream, languageBundles, options);
+    }
 }
@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -78,4 +80,42 @@ public abstract class ResourceFilter {
             FilterOptions options) throws IOException, ResourceFilterException {
         write(outStream, languageBundle, options);
     }
+
+    /**
+     * Compiles the base bundle into a {@link MergeTemplate}, which can be applied to language
+     * bundles for multiple languages. Applying the template to a language bundle produces the
+     * same result as {@link #merge(InputStream, OutputStream, LanguageBundle, FilterOptions)}
+     * with the base bundle.
+     * <p>
+     * A concrete subclass of this class may override this method to parse the base bundle
+     * only once. The default implementation reads the entire contents of the base bundle in
+     * memory, and calls {@link #merge(InputStream, OutputStream, LanguageBundle, FilterOptions)}
+     * with the contents for each language bundle.
+     *
+     * @param baseStream    The input stream of base bundle.
+     * @param options   The options controlling the filter's behavior when parsing the base bundle.
+     *                  Because a template is shared by multiple languages, language specific options,
+     *                  such as the content locale, should be specified when the template is applied.
+     *                  This argument is optional and can be <code>null</code>.
+     * @return  A merge template for the base bundle.
+     * @throws IOException  if an error occurred when reading from the input stream.
+     * @throws ResourceFilterException  if an error occurred when parsing the base bundle.
+     */
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = baseStream.read(buf)) > 0) {
+            baos.write(buf, 0, len);
+        }
+        final byte[] baseContent = baos.toByteArray();
+        return new MergeTemplate() {
+            @Override
+            public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                    throws IOException, ResourceFilterException {
+                merge(new ByteArrayInputStream(baseContent), outStream, languageBundle, options);
+            }
+        };
+    }
 }
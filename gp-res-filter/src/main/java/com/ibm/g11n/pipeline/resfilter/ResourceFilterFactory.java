@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,12 +15,23 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.Map.Entry;
+import java.util.ServiceConfigurationError;
 import java.util.Set;
 
 import com.ibm.g11n.pipeline.resfilter.FilterInfo.Type;
@@ -33,11 +44,62 @@ import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
  */
 public class ResourceFilterFactory {
 
+    /**
+     * The resource path of filter index files.
+     * <p>
+     * A filter index file lists resource filters supported by {@link ResourceFilterProvider}
+     * implementations. Each line consists of a provider class name, a filter ID and a filter
+     * type (<code>SINGLE</code> or <code>MULTI</code>) separated by white spaces. Characters
+     * after '#' are ignored.
+     * <p>
+     * A provider listed in an index file is not loaded until one of its filters is requested.
+     * A provider not listed in any index files is loaded and instantiated when a factory is
+     * created, for calling {@link ResourceFilterProvider#getAvailableResourceFilters()}.
+     */
+    public static final String FILTER_INDEX_RESOURCE = "META-INF/com.ibm.g11n.pipeline.resfilter.filters";
+
+    private static final String PROVIDER_SERVICE_RESOURCE =
+            "META-INF/services/" + ResourceFilterProvider.class.getName();
+
+    /**
+     * Holds a provider instance created on demand.
+     */
+    private static class ProviderHolder {
+        private final String className;
+        private final ClassLoader cl;
+        private volatile ResourceFilterProvider provider;
+
+        ProviderHolder(String className, ClassLoader cl) {
+            this.className = className;
+            this.cl = cl;
+        }
+
+        ProviderHolder(ResourceFilterProvider provider) {
+            this.className = provider.getClass().getName();
+            this.cl = null;
+            this.provider = provider;
+        }
+
+        ResourceFilterProvider get() {
+            ResourceFilterProvider result = provider;
+            if (result == null) {
+                synchronized (this) {
+                    result = provider;
+                    if (result == null) {
+                        result = newProvider(className, cl);
+                        provider = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
     private static class ResourceFilterRegistryEntry {
         FilterInfo filterInfo;
-        ResourceFilterProvider provider;
+        ProviderHolder provider;
 
-        ResourceFilterRegistryEntry(FilterInfo filterInfo, ResourceFilterProvider provider) {
+        ResourceFilterRegistryEntry(FilterInfo filterInfo, ProviderHolder provider) {
             this.filterInfo = filterInfo;
             this.provider = provider;
         }
@@ -46,29 +108,142 @@ public class ResourceFilterFactory {
     private Map<String, ResourceFilterRegistryEntry> registry;
 
     private ResourceFilterFactory(ClassLoader cl) {
+        if (cl == null) {
+            cl = ClassLoader.getSystemClassLoader();
+        }
+        ClassLoader defaultCl = ResourceFilterFactory.class.getClassLoader();
+        if (defaultCl == null) {
+            defaultCl = ClassLoader.getSystemClassLoader();
+        }
+
+        Map<String, List<FilterInfo>> index = new HashMap<>();
+        loadIndex(cl, index);
+        if (defaultCl != cl) {
+            loadIndex(defaultCl, index);
+        }
+
         Map<String, ResourceFilterRegistryEntry> map = new HashMap<>();
         // Walk through available provider implementations
-        for (ResourceFilterProvider provider : ServiceLoader.load(ResourceFilterProvider.class, cl)) {
-            Iterator<FilterInfo> filtItr = provider.getAvailableResourceFilters();
-            while (filtItr.hasNext()) {
-                FilterInfo filtInfo = filtItr.next();
-                String id = filtInfo.getId().toUpperCase(Locale.ROOT);
-                if (!map.containsKey(id)) {
-                    map.put(id, new ResourceFilterRegistryEntry(filtInfo, provider));
-                }
-            }
+        for (String providerClassName : loadProviderClassNames(cl)) {
+            register(map, providerClassName, cl, index);
         }
         // Add default filters
-        ResourceFilterProvider defaultProvider = new DefaultResourceFilterProvider();
-        Iterator<FilterInfo> filtItr = defaultProvider.getAvailableResourceFilters();
+        register(map, DefaultResourceFilterProvider.class.getName(), defaultCl, index);
+        registry = Collections.unmodifiableMap(map);
+    }
+
+    private static void register(Map<String, ResourceFilterRegistryEntry> map, String providerClassName,
+            ClassLoader cl, Map<String, List<FilterInfo>> index) {
+        ProviderHolder holder;
+        Iterator<FilterInfo> filtItr;
+        List<FilterInfo> indexedFilters = index.get(providerClassName);
+        if (indexedFilters != null) {
+            holder = new ProviderHolder(providerClassName, cl);
+            filtItr = indexedFilters.iterator();
+        } else {
+            ResourceFilterProvider provider = newProvider(providerClassName, cl);
+            holder = new ProviderHolder(provider);
+            filtItr = provider.getAvailableResourceFilters();
+        }
         while (filtItr.hasNext()) {
             FilterInfo filtInfo = filtItr.next();
             String id = filtInfo.getId().toUpperCase(Locale.ROOT);
             if (!map.containsKey(id)) {
-                map.put(id, new ResourceFilterRegistryEntry(filtInfo, defaultProvider));
+                map.put(id, new ResourceFilterRegistryEntry(filtInfo, holder));
             }
         }
-        registry = Collections.unmodifiableMap(map);
+    }
+
+    private static ResourceFilterProvider newProvider(String className, ClassLoader cl) {
+        try {
+            Class<?> cls = Class.forName(className, true, cl);
+            if (!ResourceFilterProvider.class.isAssignableFrom(cls)) {
+                throw new ServiceConfigurationError(ResourceFilterProvider.class.getName()
+                        + ": Provider " + className + " not a subtype");
+            }
+            return (ResourceFilterProvider) cls.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new ServiceConfigurationError(ResourceFilterProvider.class.getName()
+                    + ": Provider " + className + " not found", e);
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException e) {
+            throw new ServiceConfigurationError(ResourceFilterProvider.class.getName()
+                    + ": Provider " + className + " could not be instantiated", e);
+        } catch (InvocationTargetException e) {
+            throw new ServiceConfigurationError(ResourceFilterProvider.class.getName()
+                    + ": Provider " + className + " could not be instantiated", e.getCause());
+        }
+    }
+
+    /**
+     * Reads provider class names from the service configuration files, in the same
+     * order as {@link java.util.ServiceLoader}.
+     */
+    private static Set<String> loadProviderClassNames(ClassLoader cl) {
+        Set<String> classNames = new LinkedHashSet<>();
+        for (String line : readResourceLines(cl, PROVIDER_SERVICE_RESOURCE)) {
+            classNames.add(line);
+        }
+        return classNames;
+    }
+
+    private static void loadIndex(ClassLoader cl, Map<String, List<FilterInfo>> index) {
+        Map<String, List<FilterInfo>> loaded = new HashMap<>();
+        for (String line : readResourceLines(cl, FILTER_INDEX_RESOURCE)) {
+            String[] fields = line.split("\\s+");
+            Type type = null;
+            if (fields.length == 3) {
+                try {
+                    type = Type.valueOf(fields[2].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    // fall through
+                }
+            }
+            if (type == null) {
+                throw new ServiceConfigurationError(FILTER_INDEX_RESOURCE + ": Illegal index entry: " + line);
+            }
+            List<FilterInfo> filters = loaded.get(fields[0]);
+            if (filters == null) {
+                filters = new ArrayList<>();
+                loaded.put(fields[0], filters);
+            }
+            filters.add(new FilterInfo(type, fields[1]));
+        }
+        for (Entry<String, List<FilterInfo>> entry : loaded.entrySet()) {
+            if (!index.containsKey(entry.getKey())) {
+                index.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads non-empty lines from all resources with the specified name, excluding
+     * comments starting with '#'.
+     */
+    private static List<String> readResourceLines(ClassLoader cl, String name) {
+        List<String> lines = new ArrayList<>();
+        try {
+            Enumeration<URL> urls = cl.getResources(name);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        int commentIdx = line.indexOf('#');
+                        if (commentIdx >= 0) {
+                            line = line.substring(0, commentIdx);
+                        }
+                        line = line.trim();
+                        if (!line.isEmpty()) {
+                            lines.add(line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ServiceConfigurationError(name + ": Error reading configuration file", e);
+        }
+        return lines;
     }
 
     private static volatile ResourceFilterFactory DEFAULT_FACTORY = null;
@@ -141,7 +316,7 @@ public class ResourceFilterFactory {
         if (entry == null || entry.filterInfo.getType() != Type.SINGLE) {
             return null;
         }
-        return entry.provider.getResourceFilter(entry.filterInfo.getId());
+        return entry.provider.get().getResourceFilter(entry.filterInfo.getId());
     }
 
     /**
@@ -158,7 +333,7 @@ public class ResourceFilterFactory {
         if (entry == null || entry.filterInfo.getType() != Type.MULTI) {
             return null;
         }
-        return entry.provider.getMultiBundleResourceFilter(entry.filterInfo.getId());
+        return entry.provider.get().getMultiBundleResourceFilter(entry.filterInfo.getId());
     }
 
     //
@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2016, 2018
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -225,6 +225,20 @@ public final class ResourceString {
         return Collections.unmodifiableMap(metadata);
     }
 
+    /**
+     * Returns the notes list, or null if notes were never set.
+     */
+    List<String> getRawNotes() {
+        return notes;
+    }
+
+    /**
+     * Returns the metadata map, or null if metadata was never set.
+     */
+    Map<String, String> getRawMetadata() {
+        return metadata;
+    }
+
     @Override
     /**
      * {@inheritDoc}
@@ -0,0 +1,340 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
+
+/**
+ * A read-only collection of resource strings stored in sorted run files
+ * created by {@link LanguageBundleBuilder}.
+ * <p>
+ * The iterator merges the run files and the in-memory sorted resource strings,
+ * and returns resource strings in the order defined by {@link ResourceStringComparator}.
+ * Only one resource string per run is kept in memory while iterating.
+ * <p>
+ * {@link #close()} deletes the run files, and closes iterators not read
+ * to the end.
+ *
+ * @author yoshito_umaoka
+ */
+final class SpilledResourceStrings extends AbstractCollection<ResourceString> {
+    private static final Comparator<ResourceString> COMPARATOR = new ResourceStringComparator();
+
+    private final List<File> runs;
+    private final List<ResourceString> sortedTail;
+    private final int size;
+
+    private final Set<MergeIterator> openIterators = new HashSet<>();
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param runs          Run files created by {@link #writeRun(File, List)}.
+     * @param tail          Resource strings not written to run files.
+     * @param spilledCount  The total number of resource strings in run files.
+     */
+    SpilledResourceStrings(List<File> runs, List<ResourceString> tail, int spilledCount) {
+        this.runs = new ArrayList<>(runs);
+        this.sortedTail = new ArrayList<>(tail);
+        Collections.sort(this.sortedTail, COMPARATOR);
+        this.size = spilledCount + tail.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<ResourceString> iterator() {
+        synchronized (openIterators) {
+            if (closed) {
+                throw new IllegalStateException("Resource strings in temporary files were already released");
+            }
+            MergeIterator itr = new MergeIterator();
+            if (itr.hasNext()) {
+                openIterators.add(itr);
+            }
+            return itr;
+        }
+    }
+
+    /**
+     * Closes iterators not read to the end, and deletes the run files.
+     */
+    void close() {
+        synchronized (openIterators) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (MergeIterator itr : openIterators) {
+                itr.close();
+            }
+            openIterators.clear();
+        }
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    /**
+     * Sorts the resource strings and writes them to a new temporary file in the
+     * specified directory.
+     *
+     * @param dir       The directory, or null to use the default temporary directory.
+     * @param resStrings    The resource strings. This list is sorted by this method.
+     * @return  The run file.
+     * @throws IOException  if an I/O error occurs.
+     */
+    static File writeRun(File dir, List<ResourceString> resStrings) throws IOException {
+        Collections.sort(resStrings, COMPARATOR);
+        File runFile = File.createTempFile("gp-bundle", ".run", dir);
+        boolean written = false;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(runFile)))) {
+            for (ResourceString resString : resStrings) {
+                write(out, resString);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                runFile.delete();
+            }
+        }
+        return runFile;
+    }
+
+    private static void write(DataOutputStream out, ResourceString resString) throws IOException {
+        out.writeInt(resString.getSequenceNumber());
+        writeString(out, resString.getKey());
+        writeString(out, resString.getValue());
+        writeString(out, resString.getSourceValue());
+
+        // ResourceString#equals distinguishes null notes/metadata from empty ones
+        List<String> notes = resString.getRawNotes();
+        if (notes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(notes.size());
+            for (String note : notes) {
+                writeString(out, note);
+            }
+        }
+        Map<String, String> metadata = resString.getRawMetadata();
+        if (metadata == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(metadata.size());
+            for (Entry<String, String> entry : metadata.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+    }
+
+    private static ResourceString read(DataInputStream in) throws IOException {
+        int seqNum;
+        try {
+            seqNum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        String key = readString(in);
+        String value = readString(in);
+        ResourceString.Builder builder = ResourceString.with(key, value)
+                .sourceValue(readString(in))
+                .sequenceNumber(seqNum);
+
+        int numNotes = in.readInt();
+        if (numNotes >= 0) {
+            List<String> notes = new ArrayList<>(numNotes);
+            for (int i = 0; i < numNotes; i++) {
+                notes.add(readString(in));
+            }
+            builder.notes(notes);
+        }
+        int numMetadata = in.readInt();
+        if (numMetadata >= 0) {
+            Map<String, String> metadata = new TreeMap<>();
+            for (int i = 0; i < numMetadata; i++) {
+                metadata.put(readString(in), readString(in));
+            }
+            builder.metadata(metadata);
+        }
+        return builder.build();
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The head of a sorted source - a run file or the in-memory tail.
+     */
+    private static final class Source {
+        private final DataInputStream in;
+        private final Iterator<ResourceString> itr;
+        private ResourceString head;
+
+        Source(DataInputStream in) {
+            this.in = in;
+            this.itr = null;
+        }
+
+        Source(Iterator<ResourceString> itr) {
+            this.in = null;
+            this.itr = itr;
+        }
+
+        boolean advance() throws IOException {
+            if (in != null) {
+                head = read(in);
+                if (head == null) {
+                    in.close();
+                }
+            } else {
+                head = itr.hasNext() ? itr.next() : null;
+            }
+            return head != null;
+        }
+    }
+
+    private final class MergeIterator implements Iterator<ResourceString> {
+        private final PriorityQueue<Source> queue;
+
+        MergeIterator() {
+            queue = new PriorityQueue<>(runs.size() + 1, new Comparator<Source>() {
+                @Override
+                public int compare(Source s1, Source s2) {
+                    return COMPARATOR.compare(s1.head, s2.head);
+                }
+            });
+            try {
+                for (File run : runs) {
+                    Source src = new Source(new DataInputStream(
+                            new BufferedInputStream(new FileInputStream(run))));
+                    if (src.advance()) {
+                        queue.add(src);
+                    }
+                }
+                Source tailSrc = new Source(sortedTail.iterator());
+                if (tailSrc.advance()) {
+                    queue.add(tailSrc);
+                }
+            } catch (IOException e) {
+                close();
+                throw new IllegalStateException("Failed to read resource strings from a temporary file", e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public ResourceString next() {
+            Source src = queue.poll();
+            if (src == null) {
+                throw new NoSuchElementException();
+            }
+            ResourceString resString = src.head;
+            try {
+                if (src.advance()) {
+                    queue.add(src);
+                }
+            } catch (IOException e) {
+                release();
+                throw new IllegalStateException("Failed to read resource strings from a temporary file", e);
+            }
+            if (queue.isEmpty()) {
+                // all sources were closed when they reached the end
+                release();
+            }
+            return resString;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Closes this iterator, and removes it from the open iterators.
+         */
+        private void release() {
+            synchronized (openIterators) {
+                openIterators.remove(this);
+            }
+            close();
+        }
+
+        private void close() {
+            for (Source src : queue) {
+                if (src.in != null) {
+                    try {
+                        src.in.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+            queue.clear();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2015, 2019
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,10 +24,14 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Parser;
@@ -44,6 +48,7 @@ import org.mozilla.javascript.ast.StringLiteral;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
@@ -245,10 +250,366 @@ public class AmdJsResource extends ResourceFilter {
         }
     }
 
+    /**
+     * DefineLexer reads the common form of AMD i18n bundle, that is, a single
+     * <code>define({...})</code> call with an object literal containing string
+     * literal values (optionally concatenated with '+'), or the same object
+     * nested in a "root" property. It produces the same key/value data with
+     * {@link KeyValueVisitor}, without the cost of building JavaScript AST.
+     * <p>
+     * When the lexer finds anything other than the simple form, {@link #read()}
+     * returns null and the caller should use the full JavaScript parser instead.
+     */
+    private static class DefineLexer {
+        private final char[] src;
+        private int pos = 0;
+
+        // JavaScript reserved words - may be parsed differently
+        // when used as a property name
+        private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+                "break", "case", "catch", "class", "const", "continue", "debugger", "default",
+                "delete", "do", "else", "enum", "export", "extends", "false", "finally", "for",
+                "function", "if", "implements", "import", "in", "instanceof", "interface", "let",
+                "new", "null", "package", "private", "protected", "public", "return", "static",
+                "super", "switch", "this", "throw", "true", "try", "typeof", "var", "void",
+                "while", "with", "yield"));
+
+        /**
+         * Thrown when the input is not in the form supported by the lexer.
+         */
+        @SuppressWarnings("serial")
+        private static class UnsupportedSyntaxException extends Exception {
+            UnsupportedSyntaxException() {
+                super(null, null, false, false);
+            }
+        }
+
+        private static final UnsupportedSyntaxException UNSUPPORTED = new UnsupportedSyntaxException();
+
+        DefineLexer(char[] src) {
+            this.src = src;
+        }
+
+        /**
+         * Reads key/value pairs from the source.
+         *
+         * @return  Key/value pairs, or null if the source is not in the
+         *          form supported by the lexer.
+         */
+        LinkedHashMap<String, ValueData> read() {
+            try {
+                skipSpaces();
+                expectWord("define");
+                skipSpaces();
+                expect('(');
+                skipSpaces();
+
+                LinkedHashMap<String, ValueData> elements = new LinkedHashMap<>();
+                LinkedHashMap<String, ValueData> rootElements = readObject(elements, true);
+
+                skipSpaces();
+                expect(')');
+                skipSpaces();
+                if (pos < src.length && src[pos] == ';') {
+                    pos++;
+                    skipSpaces();
+                }
+                if (pos < src.length) {
+                    throw UNSUPPORTED;
+                }
+                return rootElements == null ? elements : rootElements;
+            } catch (UnsupportedSyntaxException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Reads an object literal and puts string values to the map.
+         *
+         * @param elements  The map receiving key/value pairs.
+         * @param topLevel  Whether if the object is the argument of define.
+         * @return  Key/value pairs in the first "root" object, or null.
+         */
+        private LinkedHashMap<String, ValueData> readObject(LinkedHashMap<String, ValueData> elements,
+                boolean topLevel) throws UnsupportedSyntaxException {
+            LinkedHashMap<String, ValueData> rootElements = null;
+
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                pos++;
+                return null;
+            }
+
+            while (true) {
+                String key = readKey();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+
+                int c = peek();
+                if (c == '"' || c == '\'') {
+                    elements.put(key, readStringConcat());
+                } else if (c == '{' && topLevel && key.equalsIgnoreCase("root")) {
+                    LinkedHashMap<String, ValueData> nested = new LinkedHashMap<>();
+                    readObject(nested, false);
+                    if (rootElements == null) {
+                        rootElements = nested;
+                    }
+                } else {
+                    // other literal values, such as locale flags
+                    // "fr": true, are not resource strings
+                    skipLiteral();
+                }
+
+                skipSpaces();
+                c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw UNSUPPORTED;
+                }
+                skipSpaces();
+            }
+            return rootElements;
+        }
+
+        private String readKey() throws UnsupportedSyntaxException {
+            int c = peek();
+            if (c == '"' || c == '\'') {
+                return readString();
+            }
+            if (!isIdentifierStart(c)) {
+                throw UNSUPPORTED;
+            }
+            int start = pos;
+            while (pos < src.length && isIdentifierPart(src[pos])) {
+                pos++;
+            }
+            String name = new String(src, start, pos - start);
+            if (RESERVED_WORDS.contains(name)) {
+                throw UNSUPPORTED;
+            }
+            return name;
+        }
+
+        private void skipLiteral() throws UnsupportedSyntaxException {
+            int start = pos;
+            while (pos < src.length && (isIdentifierPart(src[pos]) || src[pos] == '.')) {
+                pos++;
+            }
+            String literal = new String(src, start, pos - start);
+            if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")
+                    && !literal.matches("[0-9]+(\\.[0-9]+)?")) {
+                throw UNSUPPORTED;
+            }
+        }
+
+        private ValueData readStringConcat() throws UnsupportedSyntaxException {
+            int start = pos;
+            StringBuilder value = new StringBuilder(readString());
+            int end = pos;
+            while (true) {
+                skipSpaces();
+                if (peek() != '+') {
+                    break;
+                }
+                pos++;
+                skipSpaces();
+                int c = peek();
+                if (c != '"' && c != '\'') {
+                    throw UNSUPPORTED;
+                }
+                value.append(readString());
+                end = pos;
+            }
+            return new ValueData(value.toString(), start, end);
+        }
+
+        private String readString() throws UnsupportedSyntaxException {
+            char quote = (char) next();
+            StringBuilder buf = new StringBuilder();
+            while (true) {
+                int c = next();
+                if (c == quote) {
+                    break;
+                }
+                switch (c) {
+                case -1:
+                case '\n':
+                case '\r':
+                case '\u2028':
+                case '\u2029':
+                    throw UNSUPPORTED;
+
+                case '\\':
+                    c = next();
+                    switch (c) {
+                    case 'n':
+                        buf.append('\n');
+                        break;
+                    case 't':
+                        buf.append('\t');
+                        break;
+                    case 'r':
+                        buf.append('\r');
+                        break;
+                    case 'b':
+                        buf.append('\b');
+                        break;
+                    case 'f':
+                        buf.append('\f');
+                        break;
+                    case 'v':
+                        buf.append('\u000B');
+                        break;
+                    case 'x':
+                        buf.append((char) readHex(2));
+                        break;
+                    case 'u':
+                        buf.append((char) readHex(4));
+                        break;
+                    case '0':
+                        if (Character.isDigit(peek())) {
+                            // octal escape
+                            throw UNSUPPORTED;
+                        }
+                        buf.append('\0');
+                        break;
+                    default:
+                        if (c == -1 || (c >= '1' && c <= '9') || c == '\n' || c == '\r'
+                                || c == '\u2028' || c == '\u2029') {
+                            // octal escape or line continuation
+                            throw UNSUPPORTED;
+                        }
+                        buf.append((char) c);
+                        break;
+                    }
+                    break;
+
+                default:
+                    buf.append((char) c);
+                    break;
+                }
+            }
+            return buf.toString();
+        }
+
+        private int readHex(int digits) throws UnsupportedSyntaxException {
+            int val = 0;
+            for (int i = 0; i < digits; i++) {
+                int d = Character.digit(next(), 16);
+                if (d < 0) {
+                    throw UNSUPPORTED;
+                }
+                val = val * 16 + d;
+            }
+            return val;
+        }
+
+        /**
+         * Skips white spaces and comments.
+         */
+        private void skipSpaces() throws UnsupportedSyntaxException {
+            while (pos < src.length) {
+                char c = src[pos];
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\u000B' || c == '\f'
+                        || c == '\u00A0' || c == '\uFEFF') {
+                    pos++;
+                } else if (c == '/' && pos + 1 < src.length && src[pos + 1] == '/') {
+                    pos += 2;
+                    while (pos < src.length && src[pos] != '\n' && src[pos] != '\r') {
+                        pos++;
+                    }
+                } else if (c == '/' && pos + 1 < src.length && src[pos + 1] == '*') {
+                    pos += 2;
+                    while (true) {
+                        if (pos + 1 >= src.length) {
+                            throw UNSUPPORTED;
+                        }
+                        if (src[pos] == '*' && src[pos + 1] == '/') {
+                            pos += 2;
+                            break;
+                        }
+                        pos++;
+                    }
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void expectWord(String word) throws UnsupportedSyntaxException {
+            int len = word.length();
+            if (pos + len > src.length || !word.equals(new String(src, pos, len))) {
+                throw UNSUPPORTED;
+            }
+            pos += len;
+            if (pos < src.length && isIdentifierPart(src[pos])) {
+                throw UNSUPPORTED;
+            }
+        }
+
+        private void expect(char c) throws UnsupportedSyntaxException {
+            if (next() != c) {
+                throw UNSUPPORTED;
+            }
+        }
+
+        private int peek() {
+            return pos < src.length ? src[pos] : -1;
+        }
+
+        private int next() {
+            return pos < src.length ? src[pos++] : -1;
+        }
+
+        private static boolean isIdentifierStart(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+        }
+
+        private static boolean isIdentifierPart(int c) {
+            return isIdentifierStart(c) || (c >= '0' && c <= '9');
+        }
+    }
+
     @Override
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
         LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
+        LinkedHashMap<String, ValueData> resultMap = extractKeyValues(readContent(inStream));
+        for (Entry<String, ValueData> entry : resultMap.entrySet()) {
+            bb.addResourceString(entry.getKey(), entry.getValue().getValue());
+        }
+        return bb.build();
+    }
+
+    /**
+     * Loads entire content of the input stream.
+     */
+    private static char[] readContent(InputStream inStream) throws IOException {
+        CharArrayWriter caw = new CharArrayWriter();
+        try (InputStreamReader reader = new InputStreamReader(new BomInputStream(inStream), "UTF-8")) {
+            char[] buf = new char[1024];
+            int len;
+            while ((len = reader.read(buf)) >= 0) {
+                caw.write(buf, 0, len);
+            }
+        }
+        return caw.toCharArray();
+    }
+
+    /**
+     * Extracts key/value data from JS source. The simple form of AMD i18n bundle
+     * is handled by {@link DefineLexer}, and the JavaScript parser is used only when
+     * the lexer cannot handle the source.
+     */
+    private static LinkedHashMap<String, ValueData> extractKeyValues(char[] content) throws IOException {
+        LinkedHashMap<String, ValueData> elements = new DefineLexer(content).read();
+        if (elements != null) {
+            return elements;
+        }
 
         // TODO: Rhino parse(Reader, String, int) only throws IOException on IO
         // error thrown
@@ -256,17 +617,10 @@ public class AmdJsResource extends ResourceFilter {
         // constructor,
         // and check the reporter after parse method to detect JavaScript syntax
         // problems.
-        try (InputStreamReader reader = new InputStreamReader(new BomInputStream(inStream), "UTF-8")) {
-            AstRoot root = new Parser().parse(reader, null, 1);
-            KeyValueVisitor visitor = new KeyValueVisitor();
-            root.visitAll(visitor);
-            LinkedHashMap<String, ValueData> resultMap = visitor.elements;
-            for (Entry<String, ValueData> entry : resultMap.entrySet()) {
-                bb.addResourceString(entry.getKey(), entry.getValue().getValue());
-            }
-        }
-
-        return bb.build();
+        AstRoot root = new Parser().parse(new CharArrayReader(content), null, 1);
+        KeyValueVisitor visitor = new KeyValueVisitor();
+        root.visitAll(visitor);
+        return visitor.elements;
     }
 
     @Override
@@ -292,65 +646,72 @@ public class AmdJsResource extends ResourceFilter {
     @Override
     public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
+        compileMergeTemplate(baseStream, options).apply(outStream, languageBundle, options);
+    }
 
-        // Load entire base content to CharSequence
-        CharArrayWriter caw = new CharArrayWriter();
-        try (InputStreamReader reader = new InputStreamReader(new BomInputStream(baseStream), "UTF-8")) {
-            char[] buf = new char[1024];
-            int len;
-            while ((len = reader.read(buf)) >= 0) {
-                caw.write(buf, 0, len);
-            }
-        }
-
-        char[] baseContent = caw.toCharArray();
-        CharArrayReader car = new CharArrayReader(baseContent);
+    @Override
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        char[] baseContent = readContent(baseStream);
 
         // Parse base JS and extract key-value data
-        AstRoot root = new Parser().parse(car,  null , 1);
-        KeyValueVisitor visitor = new KeyValueVisitor();
-        root.visitAll(visitor);
-        LinkedHashMap<String, ValueData> baseKVMap = visitor.elements;
+        LinkedHashMap<String, ValueData> baseKVMap = extractKeyValues(baseContent);
 
-        // Merge translated value
-        Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+        return new AmdJsMergeTemplate(baseContent, new ArrayList<>(baseKVMap.entrySet()));
+    }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(outStream), StandardCharsets.UTF_8)) {
-            int idx = 0;    // current index in baseContent
-            for (Entry<String, ValueData> baseEntry : baseKVMap.entrySet()) {
-                String key = baseEntry.getKey();
-                ValueData valData = baseEntry.getValue();
-                int start = valData.getStart();
-                int end = valData.getEnd();
-
-                if (idx < start) {
-                    // write out text up to the start of the original key-value expression
-                    writer.write(baseContent, idx, start - idx);
-                    idx = start;
-                }
+    private static final class AmdJsMergeTemplate extends MergeTemplate {
+        private final char[] baseContent;
+        private final List<Entry<String, ValueData>> baseEntries;
 
-                String translatedValue = kvMap.get(key);
-                if (translatedValue == null) {
-                    // use original value
-                    writer.write(baseContent, idx, end - idx);
-                } else {
-                    // use translated value
+        AmdJsMergeTemplate(char[] baseContent, List<Entry<String, ValueData>> baseEntries) {
+            this.baseContent = baseContent;
+            this.baseEntries = baseEntries;
+        }
+
+        @Override
+        public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                throws IOException, ResourceFilterException {
+            // Merge translated value
+            Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+
+            try (OutputStreamWriter writer = new OutputStreamWriter(new BufferedOutputStream(outStream), StandardCharsets.UTF_8)) {
+                int idx = 0;    // current index in baseContent
+                for (Entry<String, ValueData> baseEntry : baseEntries) {
+                    String key = baseEntry.getKey();
+                    ValueData valData = baseEntry.getValue();
+                    int start = valData.getStart();
+                    int end = valData.getEnd();
+
+                    if (idx < start) {
+                        // write out text up to the start of the original key-value expression
+                        writer.write(baseContent, idx, start - idx);
+                        idx = start;
+                    }
 
-                    // opening quote
-                    char quote = baseContent[idx];
-                    writer.write(quote);
+                    String translatedValue = kvMap.get(key);
+                    if (translatedValue == null) {
+                        // use original value
+                        writer.write(baseContent, idx, end - idx);
+                    } else {
+                        // use translated value
 
-                    // translation value
-                    writer.write(escapeString(translatedValue, quote));
+                        // opening quote
+                        char quote = baseContent[idx];
+                        writer.write(quote);
 
-                    // closing quote
-                    assert quote == baseContent[end - 1];
-                    writer.write(quote);
+                        // translation value
+                        writer.write(escapeString(translatedValue, quote));
+
+                        // closing quote
+                        assert quote == baseContent[end - 1];
+                        writer.write(quote);
+                    }
+                    idx = end;
+                }
+                if (idx < baseContent.length) {
+                    writer.write(baseContent, idx, baseContent.length - idx);
                 }
-                idx = end;
-            }
-            if (idx < baseContent.length) {
-                writer.write(baseContent, idx, baseContent.length - idx);
             }
         }
     }
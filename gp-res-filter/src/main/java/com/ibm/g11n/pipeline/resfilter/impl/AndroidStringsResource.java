@@ -25,6 +25,7 @@ import java.io.OutputStreamWriter;
 import java.text.BreakIterator;
 import java.text.FieldPosition;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -53,6 +54,7 @@ import org.xml.sax.SAXException;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
@@ -308,121 +310,164 @@ public class AndroidStringsResource extends ResourceFilter {
     @Override
     public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
+        compileMergeTemplate(baseStream, options).apply(outStream, languageBundle, options);
+    }
 
-        // put res data into a map for easier searching
-        Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
-        BreakIterator brkItr = Utils.getWordBreakIterator(options);
+    /**
+     * The kind of the element starting in a line of the base bundle.
+     */
+    private enum ElementKind {
+        STRING_ARRAY,
+        STRING,
+        PLURALS
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(baseStream, CHAR_SET));
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, CHAR_SET));
+    /**
+     * A line in the base bundle, with the results of the pattern matching
+     * used for merging translated strings.
+     */
+    private static class TemplateLine {
+        final String text;
+        // the kind of the element starting in this line, or null
+        final ElementKind kind;
+        final String openingTag;
+        final String key;
+        final boolean closesStringArray;
+        final boolean closesString;
+        final boolean closesPlurals;
+
+        TemplateLine(String text) {
+            this.text = text;
+            if (text.matches(STR_ARRAY_OPEN_TAG_PTRN)) {
+                kind = ElementKind.STRING_ARRAY;
+            } else if (text.matches(STR_OPEN_TAG_PTRN)) {
+                kind = ElementKind.STRING;
+            } else if (text.matches(PLURALS_OPEN_TAG_PTRN)) {
+                kind = ElementKind.PLURALS;
+            } else {
+                kind = null;
+            }
+            if (kind != null) {
+                openingTag = text.substring(0, text.indexOf('>') + 1);
+                key = openingTag.substring(openingTag.indexOf('"') + 1, openingTag.lastIndexOf('"'));
+            } else {
+                openingTag = null;
+                key = null;
+            }
+            closesStringArray = text.matches(STR_ARRAY_CLOSE_TAG_PTRN);
+            closesString = text.matches(STR_CLOSE_TAG_PTRN);
+            closesPlurals = text.matches(PLURALS_CLOSE_TAG_PTRN);
+        }
+    }
 
+    @Override
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        final List<TemplateLine> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(baseStream, CHAR_SET));
         String line;
         while ((line = reader.readLine()) != null) {
-            if (line.matches(STR_ARRAY_OPEN_TAG_PTRN)) {
-                // handle <string-array name="name"> tag
-                String openingTag = line.substring(0, line.indexOf('>') + 1);
-                String key = openingTag.substring(openingTag.indexOf('"') + 1, openingTag.lastIndexOf('"'));
-
-                if (!kvMap.containsKey(key)) {
-                    writer.write(line);
-                    writer.newLine();
-                    continue;
-                }
-
-                String value = kvMap.get(key);
-
-                if (!(value.startsWith("[") && value.endsWith("]"))) {
-                    writer.write(line);
-                    writer.newLine();
-                    continue;
-                }
-
-                String tabSubString = openingTag.substring(0, openingTag.indexOf('<'));
-                String spaces = tabSubString + getTabStr(tabSubString);
-                writer.write(openingTag);
-                writer.newLine();
-
-                String[] items = value.substring(1, value.length() - 1).split(",");
+            lines.add(new TemplateLine(line));
+        }
 
-                for (int i = 0; i < items.length; i++) {
-                    writer.write(formatMessage("<item>", items[i].trim(), "</item>", spaces, brkItr));
-                }
+        return new MergeTemplate() {
+            @Override
+            public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                    throws IOException, ResourceFilterException {
+                // put res data into a map for easier searching
+                Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+                BreakIterator brkItr = Utils.getWordBreakIterator(options);
+
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, CHAR_SET));
+
+                int idx = 0;
+                while (idx < lines.size()) {
+                    TemplateLine line = lines.get(idx++);
+                    if (line.kind == null || !kvMap.containsKey(line.key)) {
+                        writer.write(line.text);
+                        writer.newLine();
+                        continue;
+                    }
 
-                writer.write(openingTag.substring(0, openingTag.indexOf('<')));
+                    String openingTag = line.openingTag;
+                    String value = kvMap.get(line.key);
 
-                writer.write("</string-array>");
-                writer.newLine();
+                    if (line.kind == ElementKind.STRING_ARRAY) {
+                        // handle <string-array name="name"> tag
+                        if (!(value.startsWith("[") && value.endsWith("]"))) {
+                            writer.write(line.text);
+                            writer.newLine();
+                            continue;
+                        }
 
-                while ((line = reader.readLine()) != null && !line.matches(STR_ARRAY_CLOSE_TAG_PTRN))
-                    ;
-            } else if (line.matches(STR_OPEN_TAG_PTRN)) {
-                // handle <string name="name"> tag
-                String openingTag = line.substring(0, line.indexOf('>') + 1);
-                String key = openingTag.substring(openingTag.indexOf('"') + 1, openingTag.lastIndexOf('"'));
+                        String tabSubString = openingTag.substring(0, openingTag.indexOf('<'));
+                        String spaces = tabSubString + getTabStr(tabSubString);
+                        writer.write(openingTag);
+                        writer.newLine();
 
-                if (!kvMap.containsKey(key)) {
-                    writer.write(line);
-                    writer.newLine();
-                    continue;
-                }
+                        String[] items = value.substring(1, value.length() - 1).split(",");
 
-                String value = kvMap.get(key);
+                        for (int i = 0; i < items.length; i++) {
+                            writer.write(formatMessage("<item>", items[i].trim(), "</item>", spaces, brkItr));
+                        }
 
-                String spaces = openingTag.substring(0, openingTag.indexOf('<'));
+                        writer.write(openingTag.substring(0, openingTag.indexOf('<')));
 
-                writer.write(formatMessage(openingTag.trim(), value, "</string>", spaces, brkItr));
+                        writer.write("</string-array>");
+                        writer.newLine();
 
-                while (line != null && !line.matches(STR_CLOSE_TAG_PTRN)) {
-                    line = reader.readLine();
-                }
-            } else if (line.matches(PLURALS_OPEN_TAG_PTRN)) {
-                // handle <plurals name="name"> tag
-                String openingTag = line.substring(0, line.indexOf('>') + 1);
-                String key = openingTag.substring(openingTag.indexOf('"') + 1, openingTag.lastIndexOf('"'));
-
-                if (!kvMap.containsKey(key)) {
-                    writer.write(line);
-                    writer.newLine();
-                    continue;
-                }
+                        // skips the following lines up to the closing tag
+                        while (idx < lines.size() && !lines.get(idx++).closesStringArray)
+                            ;
+                    } else if (line.kind == ElementKind.STRING) {
+                        // handle <string name="name"> tag
+                        String spaces = openingTag.substring(0, openingTag.indexOf('<'));
 
-                String value = kvMap.get(key);
+                        writer.write(formatMessage(openingTag.trim(), value, "</string>", spaces, brkItr));
 
-                Map<String, String> plural_categories = null;
+                        // skips lines up to the closing tag, which may be in this line
+                        if (!line.closesString) {
+                            while (idx < lines.size() && !lines.get(idx++).closesString)
+                                ;
+                        }
+                    } else {
+                        // handle <plurals name="name"> tag
+                        Map<String, String> plural_categories = null;
+
+                        if ((plural_categories = getPluralCategories(value)).isEmpty()) {
+                            writer.write(line.text);
+                            writer.newLine();
+                            continue;
+                        }
 
-                if ((plural_categories = getPluralCategories(value)).isEmpty()) {
-                    writer.write(line);
-                    writer.newLine();
-                    continue;
-                }
+                        String tabSubString = openingTag.substring(0, openingTag.indexOf('<'));
+                        String spaces = tabSubString + getTabStr(tabSubString);
+                        writer.write(openingTag);
+                        writer.newLine();
+
+                        for (String pKey : Constants.PLURAL_CATEGORIES) {
+                            if (plural_categories.containsKey(pKey)) {
+                                String pValue = plural_categories.get(pKey);
+                                // <item quantity="one">
+                                String itemStr = "<item quantity=\"" + pKey + "\">";
+                                writer.write(formatMessage(itemStr, pValue.trim(), "</item>", spaces, brkItr));
+                            }
+                        }
+                        writer.write(openingTag.substring(0, openingTag.indexOf('<')));
 
-                String tabSubString = openingTag.substring(0, openingTag.indexOf('<'));
-                String spaces = tabSubString + getTabStr(tabSubString);
-                writer.write(openingTag);
-                writer.newLine();
+                        writer.write("</plurals>");
+                        writer.newLine();
 
-                for (String pKey : Constants.PLURAL_CATEGORIES) {
-                    if (plural_categories.containsKey(pKey)) {
-                        String pValue = plural_categories.get(pKey);
-                        // <item quantity="one">
-                        String itemStr = "<item quantity=\"" + pKey + "\">";
-                        writer.write(formatMessage(itemStr, pValue.trim(), "</item>", spaces, brkItr));
+                        // skips lines up to the closing tag, which may be in this line
+                        if (!line.closesPlurals) {
+                            while (idx < lines.size() && !lines.get(idx++).closesPlurals)
+                                ;
+                        }
                     }
                 }
-                writer.write(openingTag.substring(0, openingTag.indexOf('<')));
-
-                writer.write("</plurals>");
-                writer.newLine();
-
-                while (line != null && !line.matches(PLURALS_CLOSE_TAG_PTRN)) {
-                    line = reader.readLine();
-                }
-            } else {
-                writer.write(line);
-                writer.newLine();
+                writer.flush();
             }
-        }
-        writer.flush();
+        };
     }
 
     /**
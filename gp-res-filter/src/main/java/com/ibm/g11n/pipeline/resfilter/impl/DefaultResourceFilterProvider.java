@@ -47,17 +47,33 @@ public class DefaultResourceFilterProvider extends ResourceFilterProvider {
         PO,
         POT,
         XLIFF,
+        XLIFF_MULTI("XLIFF-MULTI", Type.MULTI),
         YML;
 
+        private final String id;
+        private final Type type;
+
+        private Filter() {
+            this.id = name();
+            this.type = Type.SINGLE;
+        }
+
+        private Filter(String id, Type type) {
+            this.id = id;
+            this.type = type;
+        }
+
         FilterInfo getFilterInfo() {
-            return new FilterInfo(Type.SINGLE, name());
+            return new FilterInfo(type, id);
         }
     }
 
     private static final Map<String, FilterInfo> FILTERS = new HashMap<>(Filter.values().length);
+    private static final Map<String, Filter> FILTER_IDS = new HashMap<>(Filter.values().length);
     static {
         for (Filter filter : Filter.values()) {
-            FILTERS.put(filter.name(), filter.getFilterInfo());
+            FILTERS.put(filter.id, filter.getFilterInfo());
+            FILTER_IDS.put(filter.id, filter);
         }
     }
 
@@ -74,13 +90,13 @@ public class DefaultResourceFilterProvider extends ResourceFilterProvider {
      */
     @Override
     public ResourceFilter getResourceFilter(String id) {
-        id = id.toUpperCase(Locale.ROOT);
-        if (!FILTERS.containsKey(id)) {
+        Filter filter = FILTER_IDS.get(id.toUpperCase(Locale.ROOT));
+        if (filter == null || filter.type != Type.SINGLE) {
             return null;
         }
 
         ResourceFilter result = null;
-        switch (Filter.valueOf(id)) {
+        switch (filter) {
         case AMDJS:
             result = new AmdJsResource();
             break;
@@ -120,6 +136,8 @@ public class DefaultResourceFilterProvider extends ResourceFilterProvider {
         case YML:
             result = new YMLResource();
             break;
+        default:
+            break;
         }
 
         return result;
@@ -130,8 +148,21 @@ public class DefaultResourceFilterProvider extends ResourceFilterProvider {
      */
     @Override
     public MultiBundleResourceFilter getMultiBundleResourceFilter(String id) {
-        // no multi bundle resource filters available yet
-        return null;
+        Filter filter = FILTER_IDS.get(id.toUpperCase(Locale.ROOT));
+        if (filter == null || filter.type != Type.MULTI) {
+            return null;
+        }
+
+        MultiBundleResourceFilter result = null;
+        switch (filter) {
+        case XLIFF_MULTI:
+            result = new MultiBundleXLIFFResource();
+            break;
+        default:
+            break;
+        }
+
+        return result;
     }
 
     // TODO: GP Maven/Ant plugin uses different path-bundle name mapping for Java.
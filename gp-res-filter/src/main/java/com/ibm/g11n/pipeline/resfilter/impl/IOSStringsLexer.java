@@ -0,0 +1,312 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Character level lexer for iOS <code>.strings</code> files.
+ * <p>
+ * Each call to {@link #next()} reads one token. The raw text of every token is
+ * available, so a caller can copy the input to the output without any changes.
+ * <p>
+ * The value of a quoted string keeps escape sequences such as <code>\"</code>
+ * as they appear in the input. A line break inside a quoted string, together
+ * with white spaces around it, is replaced with a single space.
+ *
+ * @author yoshito_umaoka
+ */
+final class IOSStringsLexer {
+
+    enum TokenType {
+        WHITESPACE,
+        NEWLINE,
+        BLOCK_COMMENT,
+        LINE_COMMENT,
+        STRING,
+        EQUALS,
+        SEMICOLON,
+        OTHER,
+        EOF
+    }
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    private boolean started = false;
+
+    private final StringBuilder raw = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final List<String> commentLines = new ArrayList<>();
+
+    private int lineNumber = 1;
+    private int tokenLineNumber = 1;
+
+    IOSStringsLexer(Reader reader) {
+        this.reader = reader;
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit) {
+            limit = reader.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        if (c != EOF) {
+            pos--;
+        }
+        return c;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return The type of the token, or {@link TokenType#EOF} at the end of the input.
+     * @throws IOException if an I/O error occurs.
+     */
+    TokenType next() throws IOException {
+        raw.setLength(0);
+        value.setLength(0);
+        commentLines.clear();
+        tokenLineNumber = lineNumber;
+
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                // skip BOM
+                c = read();
+            }
+        }
+
+        switch (c) {
+        case EOF:
+            return TokenType.EOF;
+
+        case ' ':
+        case '\t':
+            raw.append((char) c);
+            while ((c = peek()) == ' ' || c == '\t') {
+                raw.append((char) read());
+            }
+            return TokenType.WHITESPACE;
+
+        case '\r':
+            raw.append('\r');
+            if (peek() == '\n') {
+                raw.append((char) read());
+            }
+            lineNumber++;
+            return TokenType.NEWLINE;
+
+        case '\n':
+            raw.append('\n');
+            lineNumber++;
+            return TokenType.NEWLINE;
+
+        case '=':
+            raw.append('=');
+            return TokenType.EQUALS;
+
+        case ';':
+            raw.append(';');
+            return TokenType.SEMICOLON;
+
+        case '"':
+            raw.append('"');
+            readString();
+            return TokenType.STRING;
+
+        case '/':
+            raw.append('/');
+            c = peek();
+            if (c == '*') {
+                raw.append((char) read());
+                readBlockComment();
+                return TokenType.BLOCK_COMMENT;
+            }
+            if (c == '/') {
+                raw.append((char) read());
+                readLineComment();
+                return TokenType.LINE_COMMENT;
+            }
+            return TokenType.OTHER;
+
+        default:
+            // a run of characters not recognized by the lexer
+            raw.append((char) c);
+            while ((c = peek()) != EOF && !isDelimiter(c)) {
+                raw.append((char) read());
+            }
+            return TokenType.OTHER;
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        switch (c) {
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\n':
+        case '=':
+        case ';':
+        case '"':
+        case '/':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void readString() throws IOException {
+        int c;
+        while ((c = read()) != EOF) {
+            raw.append((char) c);
+            switch (c) {
+            case '"':
+                return;
+
+            case '\\':
+                value.append('\\');
+                c = read();
+                if (c == EOF) {
+                    return;
+                }
+                raw.append((char) c);
+                if (c == '\n') {
+                    lineNumber++;
+                }
+                value.append((char) c);
+                break;
+
+            case '\n':
+                lineNumber++;
+                // white spaces around a line break are replaced with a space
+                int len = value.length();
+                while (len > 0 && isWhitespace(value.charAt(len - 1))) {
+                    len--;
+                }
+                value.setLength(len);
+                value.append(' ');
+                while (isWhitespace(c = peek())) {
+                    raw.append((char) read());
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                }
+                break;
+
+            default:
+                value.append((char) c);
+                break;
+            }
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private void readBlockComment() throws IOException {
+        StringBuilder line = value;
+        int c;
+        while ((c = read()) != EOF) {
+            raw.append((char) c);
+            if (c == '*' && peek() == '/') {
+                raw.append((char) read());
+                break;
+            }
+            if (c == '\n') {
+                lineNumber++;
+                commentLines.add(stripCR(line));
+                line.setLength(0);
+            } else {
+                line.append((char) c);
+            }
+        }
+        commentLines.add(stripCR(line));
+        line.setLength(0);
+    }
+
+    private void readLineComment() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && c != '\n' && c != '\r') {
+            raw.append((char) read());
+            value.append((char) c);
+        }
+        commentLines.add(value.toString());
+        value.setLength(0);
+    }
+
+    private static String stripCR(StringBuilder line) {
+        int len = line.length();
+        if (len > 0 && line.charAt(len - 1) == '\r') {
+            return line.substring(0, len - 1);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Returns the raw text of the current token.
+     */
+    String getRawText() {
+        return raw.toString();
+    }
+
+    /**
+     * Appends the raw text of the current token to the builder.
+     */
+    void appendRawText(StringBuilder sb) {
+        sb.append(raw);
+    }
+
+    /**
+     * Returns the contents of the current {@link TokenType#STRING} token
+     * without the enclosing quotes.
+     */
+    String getStringValue() {
+        return value.toString();
+    }
+
+    /**
+     * Returns the lines of the current {@link TokenType#BLOCK_COMMENT} or
+     * {@link TokenType#LINE_COMMENT} token without comment delimiters.
+     */
+    List<String> getCommentLines() {
+        return new ArrayList<>(commentLines);
+    }
+
+    /**
+     * Returns the line number where the current token starts.
+     */
+    int getLineNumber() {
+        return tokenLineNumber;
+    }
+}
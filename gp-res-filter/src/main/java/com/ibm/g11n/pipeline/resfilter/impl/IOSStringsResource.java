@@ -15,7 +15,6 @@
  */
 package com.ibm.g11n.pipeline.resfilter.impl;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,16 +24,18 @@ import java.io.OutputStreamWriter;
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.resfilter.impl.IOSStringsLexer.TokenType;
 
 /**
  * iOS string resource filter.
@@ -51,60 +52,127 @@ public class IOSStringsResource extends ResourceFilter {
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, CHAR_SET));
+        IOSStringsLexer lexer = new IOSStringsLexer(new InputStreamReader(inStream, CHAR_SET));
         LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
-        String line;
         List<String> notes = new ArrayList<>();
-        Boolean commentIsGlobal = true;
-        while ((line = reader.readLine()) != null) {
-            if (line.trim().startsWith(COMMENT_BEGIN)) {// begins with /*
-                // skip comments until line ends with */
-                // the short circuit expression evaluation handles both
-                // single and multi lined comments
-                String comment = line.substring(line.indexOf(COMMENT_BEGIN)+2);
-                Boolean commentEndProcessed = false;
-                while (!commentEndProcessed && line != null) {
-                    if (comment.trim().endsWith(COMMENT_END)) {
-                        comment = comment.substring(0, comment.lastIndexOf(COMMENT_END));
-                        commentEndProcessed = true;
-                    }
-                    notes.add(comment);
-                    if (!commentEndProcessed) {
-                        line = reader.readLine();
-                        comment = line;
+        boolean commentIsGlobal = true;
+        boolean emptyLine = true;
+        // true after an entry ends on the current line
+        boolean entryEnded = false;
+        // true while skipping a line not starting with a quoted key
+        boolean skipLine = false;
+
+        EntryState state = EntryState.KEY;
+        String key = null;
+        String value = null;
+
+        TokenType type;
+        while ((type = lexer.next()) != TokenType.EOF) {
+            if (skipLine && type != TokenType.NEWLINE) {
+                continue;
+            }
+            switch (type) {
+            case NEWLINE:
+                if (commentIsGlobal && emptyLine) {
+                    // comments before the first empty line are global
+                    commentIsGlobal = false;
+                    if (!notes.isEmpty()) {
+                        bb.addNotes(notes);
+                        notes.clear();
                     }
                 }
-            } else if (commentIsGlobal && line.isEmpty()) {
-                commentIsGlobal = false;
-                if (!notes.isEmpty()) {
-                    bb.addNotes(notes);
-                    notes.clear();
+                emptyLine = true;
+                entryEnded = false;
+                skipLine = false;
+                continue;
+
+            case WHITESPACE:
+                break;
+
+            case BLOCK_COMMENT:
+            case LINE_COMMENT:
+                // comments inside an entry, or following an entry on
+                // the same line are ignored
+                if (state == EntryState.KEY && !entryEnded) {
+                    notes.addAll(lexer.getCommentLines());
+                }
+                break;
+
+            case STRING:
+                if (state == EntryState.KEY) {
+                    key = lexer.getStringValue().trim();
+                    state = EntryState.EQUALS;
+                } else if (state == EntryState.VALUE) {
+                    value = lexer.getStringValue().trim();
+                    state = EntryState.SEMICOLON;
+                } else {
+                    throw unexpectedToken(lexer);
                 }
-            } else if (line.matches("^\\s*\".*")) { // begins with quote char
-                // new entry
-                StringBuilder entry = new StringBuilder(128);
-
-                // keep appending lines until entry termination via semi-colon
-                do {
-                    entry.append(line.trim()).append(' ');
-                } while (!line.matches(".*[^\\\\];\\s*$") && (line = reader.readLine()) != null);
-
-                // split across " = "
-                String[] parts = entry.toString().split("\"\\s*=\\s*\"");
-                String key = parts[0].substring(parts[0].indexOf('"') + 1).trim();
-                String value = parts[1].substring(0, parts[1].lastIndexOf('"')).trim();
-
-                if (notes.isEmpty()) {
-                    bb.addResourceString(key, value);
+                break;
+
+            case EQUALS:
+                if (state == EntryState.KEY) {
+                    // not an entry, ignores the rest of the line
+                    skipLine = true;
+                } else if (state != EntryState.EQUALS) {
+                    throw unexpectedToken(lexer);
                 } else {
-                    bb.addResourceString(ResourceString.with(key, value).notes(notes));
-                    notes.clear();
+                    state = EntryState.VALUE;
+                }
+                break;
+
+            case SEMICOLON:
+                if (state == EntryState.SEMICOLON) {
+                    addEntry(bb, key, value, notes);
+                    state = EntryState.KEY;
+                    entryEnded = true;
+                } else if (state != EntryState.KEY) {
+                    throw unexpectedToken(lexer);
+                }
+                break;
+
+            default:
+                if (state != EntryState.KEY) {
+                    throw unexpectedToken(lexer);
                 }
+                // a line not starting with a quoted key, such as an unquoted
+                // key, is ignored
+                skipLine = true;
+                break;
             }
+            emptyLine = false;
+        }
+
+        if (state == EntryState.SEMICOLON) {
+            // the last entry without semicolon
+            addEntry(bb, key, value, notes);
+        } else if (state != EntryState.KEY) {
+            throw new IllegalResourceFormatException("Unexpected end of input in the entry \"" + key + "\".");
         }
         return bb.build();
     }
 
+    private enum EntryState {
+        KEY,
+        EQUALS,
+        VALUE,
+        SEMICOLON
+    }
+
+    private static void addEntry(LanguageBundleBuilder bb, String key, String value, List<String> notes) {
+        if (notes.isEmpty()) {
+            bb.addResourceString(key, value);
+        } else {
+            bb.addResourceString(ResourceString.with(key, value).notes(notes));
+            notes.clear();
+        }
+    }
+
+    private static IllegalResourceFormatException unexpectedToken(IOSStringsLexer lexer) {
+        return new IllegalResourceFormatException("Unexpected token '" + lexer.getRawText()
+                + "' at line " + lexer.getLineNumber() + ".");
+    }
+
     @Override
     public void write(OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
@@ -134,49 +202,146 @@ public class IOSStringsResource extends ResourceFilter {
     @Override
     public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
-        // put res data into a map for easier searching
-        Map<String, ResourceString> resMap = Utils.createResourceStringMap(languageBundle.getResourceStrings());
+        compileMergeTemplate(baseStream, options).apply(outStream, languageBundle, options);
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(baseStream, CHAR_SET));
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, CHAR_SET));
+    /**
+     * An entry in the base bundle, which may be replaced with a translated entry.
+     */
+    private static class EntrySlot {
+        final String key;
+        // raw text of the entry, written back as is if the key is not found
+        final String rawText;
+        // white spaces and a line break following the entry
+        final StringBuilder trailing = new StringBuilder();
+
+        EntrySlot(String key, String rawText) {
+            this.key = key;
+            this.rawText = rawText;
+        }
+    }
 
-        BreakIterator brkItr = Utils.getWordBreakIterator(options);
+    @Override
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+        // Each segment is either a raw text (String) or an EntrySlot
+        final List<Object> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        IOSStringsLexer lexer = new IOSStringsLexer(new InputStreamReader(baseStream, CHAR_SET));
+
+        // raw text of the current entry
+        StringBuilder entry = new StringBuilder(128);
+        EntryState state = EntryState.KEY;
+        String key = null;
+        EntrySlot lastSlot = null;
+
+        TokenType type;
+        while ((type = lexer.next()) != TokenType.EOF) {
+            if (lastSlot != null) {
+                // a translated entry already ends with a line break
+                if (type == TokenType.WHITESPACE) {
+                    lexer.appendRawText(lastSlot.trailing);
+                    continue;
+                }
+                if (type == TokenType.NEWLINE) {
+                    lexer.appendRawText(lastSlot.trailing);
+                    lastSlot = null;
+                    continue;
+                }
+                lastSlot = null;
+            }
+
+            if (state == EntryState.KEY) {
+                if (type == TokenType.STRING) {
+                    // new entry
+                    key = lexer.getStringValue().trim();
+                    entry.setLength(0);
+                    lexer.appendRawText(entry);
+                    state = EntryState.EQUALS;
+                } else {
+                    lexer.appendRawText(literal);
+                }
+                continue;
+            }
+
+            lexer.appendRawText(entry);
+            switch (type) {
+            case WHITESPACE:
+            case NEWLINE:
+            case BLOCK_COMMENT:
+            case LINE_COMMENT:
+                break;
+
+            case EQUALS:
+            case STRING:
+                if (type == TokenType.EQUALS && state == EntryState.EQUALS) {
+                    state = EntryState.VALUE;
+                } else if (type == TokenType.STRING && state == EntryState.VALUE) {
+                    state = EntryState.SEMICOLON;
+                } else {
+                    // malformed entry, write it as is
+                    literal.append(entry);
+                    state = EntryState.KEY;
+                }
+                break;
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.matches("^\\s*\".*")) { // begins with quote char
-                // new entry
-                StringBuilder entry = new StringBuilder(128);
-                List<String> rawLines = new LinkedList<String>();
-
-                // keep appending lines until entry termination via semi-colon
-                // also keep a list of lines read so they can be written back
-                // if the key is not found
-                do {
-                    entry.append(line.trim()).append(' ');
-                    rawLines.add(line);
-                } while (!line.matches(".*[^\\\\];\\s*$") && (line = reader.readLine()) != null);
-
-                // split across " = "
-                String[] parts = entry.toString().split("\"\\s*=\\s*\"");
-                String key = parts[0].substring(parts[0].indexOf('"') + 1).trim();
-
-                if (!resMap.containsKey(key)) {
-                    for (String rawLine : rawLines) {
-                        writer.write(rawLine);
+            case SEMICOLON:
+                if (state == EntryState.SEMICOLON) {
+                    if (literal.length() > 0) {
+                        segments.add(literal.toString());
+                        literal.setLength(0);
                     }
-                    writer.newLine();
-                    continue;
+                    lastSlot = new EntrySlot(key, entry.toString());
+                    segments.add(lastSlot);
+                } else {
+                    literal.append(entry);
                 }
+                state = EntryState.KEY;
+                break;
 
-                writer.write(formatEntry(key, resMap.get(key).getValue(), resMap.get(key).getNotes(), brkItr));
-            } else {
-                writer.write(line);
-                writer.newLine();
+            default:
+                literal.append(entry);
+                state = EntryState.KEY;
+                break;
             }
         }
 
-        writer.flush();
+        if (state != EntryState.KEY) {
+            literal.append(entry);
+        }
+        if (literal.length() > 0) {
+            segments.add(literal.toString());
+        }
+
+        return new MergeTemplate() {
+            @Override
+            public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                    throws IOException, ResourceFilterException {
+                // put res data into a map for easier searching
+                Map<String, ResourceString> resMap = Utils.createResourceStringMap(languageBundle.getResourceStrings());
+
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, CHAR_SET));
+                BreakIterator brkItr = Utils.getWordBreakIterator(options);
+
+                for (Object segment : segments) {
+                    if (segment instanceof String) {
+                        writer.write((String) segment);
+                        continue;
+                    }
+                    EntrySlot slot = (EntrySlot) segment;
+                    ResourceString res = resMap.get(slot.key);
+                    if (res == null) {
+                        writer.write(slot.rawText);
+                        writer.write(slot.trailing.toString());
+                    } else {
+                        writer.write(formatEntry(slot.key, res.getValue(), res.getNotes(), brkItr));
+                    }
+                }
+
+                writer.flush();
+            }
+        };
     }
 
     static String formatEntry(String key, String value, List<String> notes, BreakIterator brkItr) {
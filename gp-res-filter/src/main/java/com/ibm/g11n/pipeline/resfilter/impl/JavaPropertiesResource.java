@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2015, 2018
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.text.BreakIterator;
@@ -36,10 +37,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
@@ -114,17 +118,42 @@ public class JavaPropertiesResource extends ResourceFilter {
         }
     }
 
+    /**
+     * The key of the custom parameter in {@link FilterOptions} enabling parallel
+     * parsing. When the value is "true", the input is split into chunks at logical
+     * line boundaries and the chunks are parsed concurrently.
+     */
+    public static final String PARALLEL_PARSE_PARAM = "parallelParse";
+
+    // The approximate number of characters in a chunk used by parallel parsing
+    private static final int PARSE_CHUNK_SIZE = 64 * 1024;
+
     @Override
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
-
-        LinkedProperties props = new LinkedProperties();
         BufferedReader inStreamReader = new BufferedReader(new InputStreamReader(inStream, getCharset()));
+        if (options != null && options.getCustomParams() != null
+                && Boolean.parseBoolean(options.getCustomParams().get(PARALLEL_PARSE_PARAM))) {
+            return parseParallel(inStreamReader);
+        }
+
+        BundleAssembler assembler = new BundleAssembler();
+        readLines(inStreamReader, assembler);
+        return assembler.build();
+    }
+
+    /**
+     * Receives comment lines, blank lines and properties read from a properties file.
+     */
+    private interface LineHandler {
+        void comment(String note);
+        void blank();
+        void property(String key, String value);
+    }
+
+    private void readLines(BufferedReader inStreamReader, LineHandler handler)
+            throws IOException, ResourceFilterException {
         String line;
-        Map<String, List<String>> notesMap = new HashMap<>();
-        List<String> currentNotes = new ArrayList<>();
-        boolean globalNotesAvailable = true;
-        List<String> globalNotes = null;
         while ((line = inStreamReader.readLine()) != null) {
             line = stripLeadingSpaces(line);
             // Comment line - Add to list of comments (notes) until we find
@@ -136,28 +165,16 @@ public class JavaPropertiesResource extends ResourceFilter {
                 if (enc == Encoding.UTF_8) {
                     // Do not unescape unicode - because if backslash u encoding is used
                     // in comment, it is on purpose and better not to decode it.
-                    currentNotes.add(line.substring(1));
+                    handler.comment(line.substring(1));
                 } else {
                     // Unescape unicode - if not UTF-8 props, backslash u encoding must be
                     // used always.
-                    currentNotes.add(unescapeOnlyUnicode(line.substring(1)));
+                    handler.comment(unescapeOnlyUnicode(line.substring(1)));
                 }
             } else if (line.isEmpty()) {
-                // We are following the convention that the first blank line in
-                // a properties
-                // file signifies the end of a global comment.
-                if (globalNotesAvailable && !currentNotes.isEmpty()) {
-                    globalNotes = new ArrayList<>(currentNotes);
-                    currentNotes.clear();
-                } else {
-                    // Just a generic blank line - treat it like a comment.
-                    currentNotes.add(line);
-                }
-                globalNotesAvailable = false;
+                handler.blank();
             } else {
-                // Regular non-comment line. If there are notes outstanding that
-                // apply
-                // to this line, we find its key and add it to the notes map.
+                // Regular non-comment line.
                 StringBuffer sb = new StringBuffer(line);
                 while (isContinuationLine(sb.toString())) {
                     String continuationLine = inStreamReader.readLine();
@@ -169,27 +186,234 @@ public class JavaPropertiesResource extends ResourceFilter {
                 }
                 String logicalLine = sb.toString();
                 PropDef pd = PropDef.parseLine(logicalLine);
-                String value = unescapeMessagePattern(pd.getValue(), msgPatEsc);  
-                
-                props.setProperty(pd.getKey(), value);
-                if (!currentNotes.isEmpty()) {
-                    notesMap.put(pd.getKey(), new ArrayList<>(currentNotes));
-                    currentNotes.clear();
+                String value = unescapeMessagePattern(pd.getValue(), msgPatEsc);
+
+                handler.property(pd.getKey(), value);
+            }
+        }
+    }
+
+    /**
+     * Builds a language bundle from lines in the order they appear in
+     * a properties file.
+     */
+    private class BundleAssembler implements LineHandler {
+        private final LinkedProperties props = new LinkedProperties();
+        private final Map<String, List<String>> notesMap = new HashMap<>();
+        private final List<String> currentNotes = new ArrayList<>();
+        private boolean globalNotesAvailable = true;
+        private List<String> globalNotes = null;
+
+        @Override
+        public void comment(String note) {
+            currentNotes.add(note);
+        }
+
+        @Override
+        public void blank() {
+            // We are following the convention that the first blank line in
+            // a properties
+            // file signifies the end of a global comment.
+            if (globalNotesAvailable && !currentNotes.isEmpty()) {
+                globalNotes = new ArrayList<>(currentNotes);
+                currentNotes.clear();
+            } else {
+                // Just a generic blank line - treat it like a comment.
+                currentNotes.add("");
+            }
+            globalNotesAvailable = false;
+        }
+
+        @Override
+        public void property(String key, String value) {
+            // If there are notes outstanding that apply to this line,
+            // add them to the notes map.
+            props.setProperty(key, value);
+            if (!currentNotes.isEmpty()) {
+                notesMap.put(key, new ArrayList<>(currentNotes));
+                currentNotes.clear();
+            }
+        }
+
+        LanguageBundle build() {
+            Iterator<Object> i = props.orderedKeys().iterator();
+            LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
+            while (i.hasNext()) {
+                String key = (String) i.next();
+                List<String> notes = notesMap.get(key);
+                bb.addResourceString(ResourceString.with(key, props.getProperty(key)).notes(notes));
+            }
+            if (globalNotes != null) {
+                bb.addNotes(globalNotes);
+            }
+            return bb.build();
+        }
+    }
+
+    /**
+     * Lines read from a chunk, recorded for replaying them to a
+     * {@link BundleAssembler} in the original order.
+     */
+    private static class RecordedLines implements LineHandler {
+        // key is null for comment and blank lines, value is null for blank lines
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        @Override
+        public void comment(String note) {
+            keys.add(null);
+            values.add(note);
+        }
+
+        @Override
+        public void blank() {
+            keys.add(null);
+            values.add(null);
+        }
+
+        @Override
+        public void property(String key, String value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        void replay(LineHandler handler) {
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                String value = values.get(i);
+                if (key != null) {
+                    handler.property(key, value);
+                } else if (value != null) {
+                    handler.comment(value);
+                } else {
+                    handler.blank();
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses chunks of properties file contents on a fork-join pool.
+     */
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private final List<String> chunks;
+        private final RecordedLines[] results;
+        private final Exception[] errors;
+        private final int start;
+        private final int end;
+
+        ChunkTask(List<String> chunks, RecordedLines[] results, Exception[] errors, int start, int end) {
+            this.chunks = chunks;
+            this.results = results;
+            this.errors = errors;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                RecordedLines lines = new RecordedLines();
+                try {
+                    readLines(new BufferedReader(new StringReader(chunks.get(start))), lines);
+                    results[start] = lines;
+                } catch (IOException | ResourceFilterException e) {
+                    errors[start] = e;
                 }
+                return;
             }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ChunkTask(chunks, results, errors, start, mid),
+                    new ChunkTask(chunks, results, errors, mid, end));
         }
+    }
+
+    private static class ParsePoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
 
-        Iterator<Object> i = props.orderedKeys().iterator();
-        LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
-        while (i.hasNext()) {
-            String key = (String) i.next();
-            List<String> notes = notesMap.get(key);
-            bb.addResourceString(ResourceString.with(key, props.getProperty(key)).notes(notes));
+    private LanguageBundle parseParallel(BufferedReader inStreamReader)
+            throws IOException, ResourceFilterException {
+        StringBuilder text = new StringBuilder();
+        char[] buf = new char[8192];
+        int len;
+        while ((len = inStreamReader.read(buf)) > 0) {
+            text.append(buf, 0, len);
         }
-        if (globalNotes != null) {
-            bb.addNotes(globalNotes);
+
+        List<String> chunks = splitChunks(text, PARSE_CHUNK_SIZE);
+        RecordedLines[] results = new RecordedLines[chunks.size()];
+        Exception[] errors = new Exception[chunks.size()];
+        if (!chunks.isEmpty()) {
+            ChunkTask task = new ChunkTask(chunks, results, errors, 0, chunks.size());
+            if (chunks.size() == 1) {
+                task.compute();
+            } else {
+                ParsePoolHolder.POOL.invoke(task);
+            }
         }
-        return bb.build();
+
+        // Lines are replayed in the original order, so sequence numbers, notes and
+        // duplicated keys are processed exactly same as sequential parsing.
+        BundleAssembler assembler = new BundleAssembler();
+        for (int i = 0; i < results.length; i++) {
+            if (errors[i] instanceof ResourceFilterException) {
+                throw (ResourceFilterException) errors[i];
+            }
+            if (errors[i] instanceof IOException) {
+                throw (IOException) errors[i];
+            }
+            results[i].replay(assembler);
+        }
+        return assembler.build();
+    }
+
+    /**
+     * Splits properties file contents into chunks of approximately the specified size.
+     * A chunk always ends with a line terminator not preceded by a continuation
+     * backslash, so a logical line never spans multiple chunks.
+     */
+    static List<String> splitChunks(CharSequence text, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int idx = chunkSize;
+        while (idx < text.length()) {
+            // find the next line terminator
+            int lineEnd = idx;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            if (lineEnd >= text.length()) {
+                break;
+            }
+            int next = lineEnd + 1;
+            if (text.charAt(lineEnd) == '\r' && next < text.length() && text.charAt(next) == '\n') {
+                next++;
+            }
+
+            // the search may start at '\n' of "\r\n"
+            int contentEnd = lineEnd;
+            if (text.charAt(lineEnd) == '\n' && lineEnd > chunkStart && text.charAt(lineEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            int backslashCount = 0;
+            for (int i = contentEnd - 1; i >= chunkStart && text.charAt(i) == '\\'; i--) {
+                backslashCount++;
+            }
+            if (backslashCount % 2 == 0) {
+                chunks.add(text.subSequence(chunkStart, next).toString());
+                chunkStart = next;
+                idx = next + chunkSize;
+            } else {
+                // the line continues to the next line
+                idx = next;
+            }
+        }
+        if (chunkStart < text.length()) {
+            chunks.add(text.subSequence(chunkStart, text.length()).toString());
+        }
+        return chunks;
     }
 
     // This method handles the bizarre edge case where someone might have
@@ -210,7 +434,7 @@ public class JavaPropertiesResource extends ResourceFilter {
     public void write(OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
 
-        List<ResourceString> resStrings = languageBundle.getSortedResourceStrings();
+        Iterable<ResourceString> resStrings = languageBundle.getSortedResourceStringsIterable();
         BreakIterator brkItr = Utils.getWordBreakIterator(options);
 
         PrintWriter pw = new PrintWriter(new OutputStreamWriter(outStream, getCharset()));
@@ -916,13 +1140,35 @@ public class JavaPropertiesResource extends ResourceFilter {
     @Override
     public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
+        compileMergeTemplate(baseStream, options).apply(outStream, languageBundle, options);
+    }
 
-        Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+    /**
+     * A property definition in the base bundle, which may be replaced with
+     * a translated value.
+     */
+    private static class PropertySlot {
+        final String key;
+        final PropDef.PropSeparator separator;
+        final String leadingSpaces;
+        final List<String> orgLines;
 
-        BufferedReader baseReader = new BufferedReader(new InputStreamReader(baseStream, getCharset()));
-        PrintWriter outWriter = new PrintWriter(new OutputStreamWriter(outStream, getCharset()));
+        PropertySlot(String key, PropDef.PropSeparator separator, String leadingSpaces, List<String> orgLines) {
+            this.key = key;
+            this.separator = separator;
+            this.leadingSpaces = leadingSpaces;
+            this.orgLines = orgLines;
+        }
+    }
 
-        BreakIterator brkItr = Utils.getWordBreakIterator(options);
+    @Override
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+
+        // Each segment is either an original line (String) or a PropertySlot
+        final List<Object> segments = new ArrayList<>();
+
+        BufferedReader baseReader = new BufferedReader(new InputStreamReader(baseStream, getCharset()));
 
         String line = null;
         StringBuilder logicalLineBuf = new StringBuilder();
@@ -947,7 +1193,7 @@ public class JavaPropertiesResource extends ResourceFilter {
                     // No continuation marker in the previous line
                     if (normLine.startsWith("#") || normLine.startsWith("!")) {
                         // Comment line - print the original line
-                        outWriter.println(line);
+                        segments.add(line);
                     } else if (isContinuationLine(normLine)) {
                         // Continue to the next line
                         logicalLineBuf.append(normLine, 0, normLine.length() - 1);
@@ -971,29 +1217,16 @@ public class JavaPropertiesResource extends ResourceFilter {
             }
 
             if (logicalLine != null) {
+                List<String> lines = orgLines.isEmpty()
+                        ? Collections.singletonList(line) : new ArrayList<>(orgLines);
                 PropDef pd = PropDef.parseLine(logicalLine);
-                if (pd != null && kvMap.containsKey(pd.getKey())) {
+                if (pd != null) {
                     // Preserve original leading spaces
-                    String firstLine = orgLines.isEmpty() ? line : orgLines.get(0);
-                    int len = getLeadingSpacesLength(firstLine);
-                    if (len > 0) {
-                        outWriter.print(firstLine.substring(0, len));
-                    }
-                    // Write the property key and value
-                    String key = pd.getKey();
-                    String value = escapeMessagePattern(kvMap.get(key), msgPatEsc);
-                    PropDef modPd = new PropDef(key, value , pd.getSeparator(), null);
-                    modPd.print(outWriter, brkItr, (enc == Encoding.UTF_8));
+                    String firstLine = lines.get(0);
+                    String leadingSpaces = firstLine.substring(0, getLeadingSpacesLength(firstLine));
+                    segments.add(new PropertySlot(pd.getKey(), pd.getSeparator(), leadingSpaces, lines));
                 } else {
-                    if (orgLines.isEmpty()) {
-                        // Single line
-                        outWriter.println(line);
-                    } else {
-                        // Multiple lines
-                        for (String orgLine : orgLines) {
-                            outWriter.println(orgLine);
-                        }
-                    }
+                    segments.addAll(lines);
                 }
 
                 // Clear continuation data
@@ -1002,7 +1235,45 @@ public class JavaPropertiesResource extends ResourceFilter {
             }
         } while (line != null);
 
-        outWriter.flush();
+        return new PropertiesMergeTemplate(segments);
+    }
+
+    private class PropertiesMergeTemplate extends MergeTemplate {
+        private final List<Object> segments;
+
+        PropertiesMergeTemplate(List<Object> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                throws IOException, ResourceFilterException {
+            Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+
+            PrintWriter outWriter = new PrintWriter(new OutputStreamWriter(outStream, getCharset()));
+            BreakIterator brkItr = Utils.getWordBreakIterator(options);
+
+            for (Object segment : segments) {
+                if (segment instanceof String) {
+                    outWriter.println((String) segment);
+                    continue;
+                }
+                PropertySlot slot = (PropertySlot) segment;
+                if (kvMap.containsKey(slot.key)) {
+                    outWriter.print(slot.leadingSpaces);
+                    // Write the property key and value
+                    String value = escapeMessagePattern(kvMap.get(slot.key), msgPatEsc);
+                    PropDef modPd = new PropDef(slot.key, value, slot.separator, null);
+                    modPd.print(outWriter, brkItr, (enc == Encoding.UTF_8));
+                } else {
+                    for (String orgLine : slot.orgLines) {
+                        outWriter.println(orgLine);
+                    }
+                }
+            }
+
+            outWriter.flush();
+        }
     }
 
     private static int getLeadingSpacesLength(String s) {
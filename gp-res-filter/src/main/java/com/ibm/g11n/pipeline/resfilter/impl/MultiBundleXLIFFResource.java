@@ -0,0 +1,218 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * Multi-bundle XLIFF 1.2/2.0 resource filter implementation.
+ * <p>
+ * Each &lt;file&gt; element in an XLIFF document is mapped to a bundle. The bundle ID
+ * is taken from <code>original</code> attribute, or <code>id</code> attribute when
+ * <code>original</code> is not available. Multiple &lt;file&gt; elements with the same
+ * bundle ID are combined into a single bundle.
+ *
+ * @author yoshito_umaoka
+ */
+public class MultiBundleXLIFFResource extends MultiBundleResourceFilter {
+
+    private static final String ENGLISH = "en";
+
+    @Override
+    public Map<String, LanguageBundle> parse(InputStream inStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
+
+        final Map<String, LanguageBundleBuilder> builders = new LinkedHashMap<>();
+        XLIFFStreamSupport.parse(inStream, new XLIFFStreamSupport.UnitHandler() {
+            private LanguageBundleBuilder current = null;
+
+            @Override
+            public void startFile(String fileId, String srcLang, String trgLang)
+                    throws ResourceFilterException {
+                if (fileId == null || fileId.isEmpty()) {
+                    throw new IllegalResourceFormatException("<file> element must have original or id attribute.");
+                }
+                current = builders.get(fileId);
+                if (current == null) {
+                    current = new LanguageBundleBuilder(true);
+                    builders.put(fileId, current);
+                }
+                if (srcLang != null) {
+                    current.embeddedSourceLanguageCode(srcLang);
+                }
+                if (trgLang != null) {
+                    current.embeddedLanguageCode(trgLang);
+                }
+            }
+
+            @Override
+            public void unit(String key, String source) throws ResourceFilterException {
+                if (current == null) {
+                    throw new IllegalResourceFormatException("Translation unit " + key
+                            + " is not in <file> element.");
+                }
+                current.addResourceString(key, source);
+            }
+        });
+
+        Map<String, LanguageBundle> result = new TreeMap<String, LanguageBundle>();
+        for (Entry<String, LanguageBundleBuilder> builderEntry : builders.entrySet()) {
+            result.put(builderEntry.getKey(), builderEntry.getValue().build());
+        }
+        return result;
+    }
+
+    @Override
+    public void parse(InputStream inStream, final ResourceStringConsumer consumer, FilterOptions options)
+            throws IOException, ResourceFilterException {
+
+        // last sequence number used for each bundle
+        final Map<String, int[]> seqNums = new HashMap<String, int[]>();
+        XLIFFStreamSupport.parse(inStream, new XLIFFStreamSupport.UnitHandler() {
+            private String currentBundleId = null;
+            private int[] currentSeqNum = null;
+
+            @Override
+            public void startFile(String fileId, String srcLang, String trgLang)
+                    throws ResourceFilterException {
+                if (fileId == null || fileId.isEmpty()) {
+                    throw new IllegalResourceFormatException("<file> element must have original or id attribute.");
+                }
+                currentBundleId = fileId;
+                currentSeqNum = seqNums.get(fileId);
+                if (currentSeqNum == null) {
+                    currentSeqNum = new int[1];
+                    seqNums.put(fileId, currentSeqNum);
+                }
+            }
+
+            @Override
+            public void unit(String key, String source) throws ResourceFilterException {
+                if (currentBundleId == null) {
+                    throw new IllegalResourceFormatException("Translation unit " + key
+                            + " is not in <file> element.");
+                }
+                consumer.accept(currentBundleId,
+                        ResourceString.with(key, source).sequenceNumber(++currentSeqNum[0]).build());
+            }
+        });
+    }
+
+    @Override
+    public void write(OutputStream outStream, Map<String, LanguageBundle> languageBundles,
+            FilterOptions options) throws IOException, ResourceFilterException {
+
+        // Sort by bundle
+        TreeMap<String, LanguageBundle> sortedBundles = new TreeMap<>(languageBundles);
+
+        XLIFFStreamSupport.DocumentWriter writer = new XLIFFStreamSupport.DocumentWriter(outStream);
+        writer.start();
+        for (Entry<String, LanguageBundle> bundleEntry : sortedBundles.entrySet()) {
+            String bundleId = bundleEntry.getKey();
+            LanguageBundle languageBundle = bundleEntry.getValue();
+
+            String targetLanguage = languageBundle.getEmbeddedLanguageCode();
+            if (targetLanguage == null || targetLanguage.isEmpty()) {
+                throw new ResourceFilterException("Target language is not specified for bundle " + bundleId + ".");
+            }
+            String sourceLanguage = languageBundle.getEmbeddedSourceLanguageCode();
+            if (sourceLanguage == null || sourceLanguage.isEmpty()) {
+                sourceLanguage = ENGLISH;
+            }
+            writer.writeFile(bundleId, sourceLanguage, targetLanguage, languageBundle.getSortedResourceStrings());
+        }
+        writer.end();
+    }
+
+    @Override
+    public void merge(InputStream baseStream, OutputStream outStream, final Map<String, LanguageBundle> languageBundles,
+            FilterOptions options) throws IOException, ResourceFilterException {
+
+        // XLIFF 2.0 specifies the target language at the document level
+        String documentLanguage = null;
+        for (LanguageBundle languageBundle : languageBundles.values()) {
+            documentLanguage = languageBundle.getEmbeddedLanguageCode();
+            if (documentLanguage != null) {
+                break;
+            }
+        }
+
+        XLIFFStreamSupport.merge(baseStream, outStream, documentLanguage, new XLIFFStreamSupport.FileValuesSource() {
+            @Override
+            public Map<String, String> getValues(String fileId) {
+                LanguageBundle languageBundle = fileId == null ? null : languageBundles.get(fileId);
+                if (languageBundle == null) {
+                    return null;
+                }
+                // created per <file>, so only one bundle's values are held at a time
+                return Utils.createKeyValueMap(languageBundle.getResourceStrings());
+            }
+
+            @Override
+            public String getLanguage(String fileId) {
+                LanguageBundle languageBundle = fileId == null ? null : languageBundles.get(fileId);
+                return languageBundle == null ? null : languageBundle.getEmbeddedLanguageCode();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The lookup does not supply target languages. When the content locale is specified
+     * by the options, it is used as the target language of all files in the document,
+     * because whether a file has translated values is not known until its units are read.
+     * Otherwise, target language attributes in the base document are preserved.
+     */
+    @Override
+    public void merge(InputStream baseStream, OutputStream outStream, final TranslationLookup lookup,
+            FilterOptions options) throws IOException, ResourceFilterException {
+        final String language = options == null || options.getContentLocale() == null
+                ? null : options.getContentLocale().toLanguageTag();
+
+        XLIFFStreamSupport.merge(baseStream, outStream, language, new XLIFFStreamSupport.TranslationSource() {
+            @Override
+            public boolean hasValues(String fileId) {
+                return fileId != null;
+            }
+
+            @Override
+            public String getValue(String fileId, String unitId) throws ResourceFilterException {
+                return lookup.lookup(fileId, unitId);
+            }
+
+            @Override
+            public String getLanguage(String fileId) {
+                return language;
+            }
+        });
+    }
+}
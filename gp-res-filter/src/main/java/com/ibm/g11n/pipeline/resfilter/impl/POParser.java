@@ -0,0 +1,386 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+
+/**
+ * Single pass, character level parser for GetText PO/POT files.
+ * <p>
+ * The parser reads the input exactly once and reports each entry to an
+ * {@link EntryHandler} as soon as the entry is complete. Quoted strings are
+ * concatenated across continuation lines, but escape sequences such as
+ * <code>\n</code> are kept as they appear in the file.
+ * <p>
+ * The parser is lenient - unknown keywords are skipped and an unterminated
+ * string ends at the end of the line.
+ *
+ * @author yoshito_umaoka
+ */
+final class POParser {
+
+    /**
+     * A single PO/POT entry.
+     */
+    static final class Entry {
+        private final List<String> comments = new ArrayList<>();
+        private final List<String> flags = new ArrayList<>();
+        private String msgctxt;
+        private String msgid;
+        private String msgidPlural;
+        private String msgstr;
+        private final List<String> msgstrPlural = new ArrayList<>(2);
+
+        /**
+         * Returns comment lines of this entry without the leading '#',
+         * excluding the flag line.
+         */
+        List<String> getComments() {
+            return Collections.unmodifiableList(comments);
+        }
+
+        /**
+         * Returns flags specified by "#," comment lines, such as "fuzzy".
+         */
+        List<String> getFlags() {
+            return Collections.unmodifiableList(flags);
+        }
+
+        String getMsgctxt() {
+            return msgctxt;
+        }
+
+        String getMsgid() {
+            return msgid;
+        }
+
+        String getMsgidPlural() {
+            return msgidPlural;
+        }
+
+        String getMsgstr() {
+            return msgstr;
+        }
+
+        /**
+         * Returns the value of msgstr[index], or null if not available.
+         */
+        String getMsgstrPlural(int index) {
+            return index < msgstrPlural.size() ? msgstrPlural.get(index) : null;
+        }
+
+        private boolean hasMessage() {
+            return msgid != null || msgctxt != null;
+        }
+
+        private boolean hasTranslation() {
+            return msgstr != null || !msgstrPlural.isEmpty();
+        }
+    }
+
+    /**
+     * Receives entries read by {@link POParser#parse(Reader, EntryHandler)}.
+     */
+    interface EntryHandler {
+        void entry(Entry entry) throws ResourceFilterException;
+    }
+
+    private static final String MSGCTXT = "msgctxt";
+    private static final String MSGID = "msgid";
+    private static final String MSGID_PLURAL = "msgid_plural";
+    private static final String MSGSTR = "msgstr";
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    private final StringBuilder token = new StringBuilder();
+
+    private Entry entry = new Entry();
+
+    // the string currently receiving continuation lines
+    private StringBuilder field;
+    // the field kind and plural index of the current string
+    private String fieldName;
+    private int fieldIndex;
+
+    private POParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parses PO/POT contents and calls the handler for each entry in the
+     * order they appear in the input.
+     *
+     * @param reader    The input. The reader is not closed by this method.
+     * @param handler   The entry handler.
+     * @throws IOException  if an I/O error occurs.
+     * @throws ResourceFilterException if thrown by the handler.
+     */
+    static void parse(Reader reader, EntryHandler handler) throws IOException, ResourceFilterException {
+        new POParser(reader).run(handler);
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit) {
+            limit = reader.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buf[pos++];
+    }
+
+    private void unread() {
+        pos--;
+    }
+
+    private void run(EntryHandler handler) throws IOException, ResourceFilterException {
+        int c = read();
+        if (c == '\uFEFF') {
+            c = read();
+        }
+        if (c != EOF) {
+            unread();
+        }
+
+        while ((c = read()) != EOF) {
+            switch (c) {
+            case ' ':
+            case '\t':
+            case '\r':
+                // leading white space
+                break;
+
+            case '\n':
+                // an empty line terminates an entry, if any
+                flushString();
+                emit(handler);
+                break;
+
+            case '#':
+                flushString();
+                if (entry.hasMessage()) {
+                    // comments belong to the next entry
+                    emit(handler);
+                }
+                readComment();
+                break;
+
+            case '"':
+                if (field == null) {
+                    // a string without a keyword
+                    skipLine();
+                } else {
+                    readQuoted(field);
+                    skipLine();
+                }
+                break;
+
+            default:
+                unread();
+                readKeyword(handler);
+                break;
+            }
+        }
+        flushString();
+        emit(handler);
+    }
+
+    private void emit(EntryHandler handler) throws ResourceFilterException {
+        Entry done = entry;
+        entry = new Entry();
+        if (done.hasMessage()) {
+            handler.entry(done);
+        }
+    }
+
+    private void readComment() throws IOException {
+        int c = read();
+        if (c == ',') {
+            // flags
+            token.setLength(0);
+            while ((c = read()) != EOF && c != '\n') {
+                if (c == ',') {
+                    addFlag();
+                } else if (c != '\r') {
+                    token.append((char) c);
+                }
+            }
+            addFlag();
+            return;
+        }
+
+        token.setLength(0);
+        while (c != EOF && c != '\n') {
+            if (c != '\r') {
+                token.append((char) c);
+            }
+            c = read();
+        }
+        entry.comments.add(token.toString());
+    }
+
+    private void addFlag() {
+        String flag = token.toString().trim();
+        if (!flag.isEmpty()) {
+            entry.flags.add(flag);
+        }
+        token.setLength(0);
+    }
+
+    private void readKeyword(EntryHandler handler) throws IOException, ResourceFilterException {
+        token.setLength(0);
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == ' ' || c == '\t' || c == '"' || c == '\r' || c == '\n') {
+                unread();
+                break;
+            }
+            token.append((char) c);
+        }
+
+        String name = token.toString();
+        int index = -1;
+        if (name.startsWith(MSGSTR + "[") && name.endsWith("]")) {
+            try {
+                index = Integer.parseInt(name.substring(MSGSTR.length() + 1, name.length() - 1));
+            } catch (NumberFormatException e) {
+                // treated as an unknown keyword
+            }
+            if (index >= 0) {
+                name = MSGSTR;
+            }
+        }
+
+        if (!name.equals(MSGCTXT) && !name.equals(MSGID) && !name.equals(MSGID_PLURAL)
+                && !name.equals(MSGSTR)) {
+            flushString();
+            skipLine();
+            return;
+        }
+
+        flushString();
+
+        // msgctxt or msgid following a translation starts a new entry
+        if ((name.equals(MSGCTXT) || name.equals(MSGID)) && entry.hasTranslation()) {
+            emit(handler);
+        }
+
+        // skip white spaces before the opening quote
+        while ((c = read()) == ' ' || c == '\t') {
+            // skip
+        }
+
+        field = new StringBuilder();
+        fieldName = name;
+        fieldIndex = index;
+
+        if (c == '"') {
+            readQuoted(field);
+            skipLine();
+        } else if (c != EOF && c != '\n') {
+            skipLine();
+        }
+    }
+
+    /**
+     * Reads contents up to the closing quote, or to the end of the line.
+     * Escape sequences are copied as is.
+     */
+    private void readQuoted(StringBuilder out) throws IOException {
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == '"') {
+                return;
+            }
+            if (c == '\n') {
+                unread();
+                return;
+            }
+            if (c == '\\') {
+                out.append('\\');
+                c = read();
+                if (c == EOF) {
+                    return;
+                }
+                if (c == '\n') {
+                    unread();
+                    return;
+                }
+            }
+            if (c != '\r') {
+                out.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, including the line terminator.
+     */
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            // skip
+        }
+    }
+
+    /**
+     * Stores the current string into the entry.
+     */
+    private void flushString() {
+        if (field == null) {
+            return;
+        }
+        String value = field.toString();
+        switch (fieldName) {
+        case MSGCTXT:
+            entry.msgctxt = value;
+            break;
+        case MSGID:
+            entry.msgid = value;
+            break;
+        case MSGID_PLURAL:
+            entry.msgidPlural = value;
+            break;
+        case MSGSTR:
+            if (fieldIndex < 0) {
+                entry.msgstr = value;
+            } else {
+                while (entry.msgstrPlural.size() <= fieldIndex) {
+                    entry.msgstrPlural.add(null);
+                }
+                entry.msgstrPlural.set(fieldIndex, value);
+            }
+            break;
+        default:
+            break;
+        }
+        field = null;
+        fieldName = null;
+    }
+}
@@ -15,7 +15,6 @@
  */
 package com.ibm.g11n.pipeline.resfilter.impl;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -43,63 +42,47 @@ public class POResource extends POTResource {
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
 
-        LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, CHAR_SET));
-
-        // use these to store the state of an entry
-        String singularKey = null;
-        String pluralKey = null;
-        boolean singularValueSet = false;
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-
-            if (line.isEmpty()) {
-                // reset state, new entry is starting next
-                singularKey = null;
-                pluralKey = null;
-                singularValueSet = false;
-                continue;
-            }
-
-            String value = extractMessage(line, reader);
-            if (value == null || value.isEmpty()) {
-                continue;
-            }
-
-            if (line.startsWith(UNTRANSLATED_STRING_PREFIX)) {
-                // save the singular key for next loop iteration
-                singularKey = value;
-            } else if (singularKey != null && pluralKey == null && line.startsWith(UNTRANSLATED_PLURAL_STRING_PREFIX)) {
-                // save the plural key for next loop iteration
-                pluralKey = value;
-            } else if (singularKey != null && pluralKey == null && line.startsWith(TRANSLATED_STRING_PREFIX)
-                    && !line.startsWith(TRANSLATED_PLURAL_0_STRING_PREFIX)) {
-                // this covers the normal case when:
-                // msgid "untranslated-string"
-                // msgstr "translated-string"
-                
-                bb.addResourceString(singularKey, value);
-            } else if (singularKey != null && pluralKey != null && line.startsWith(TRANSLATED_PLURAL_0_STRING_PREFIX)) {
-                // this covers the singular key/value in a plural entry
-                // the key is the value of msgid and the value is that of
-                // msgstr[0]
+        final LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
+        POParser.parse(new InputStreamReader(inStream, CHAR_SET), new POParser.EntryHandler() {
+            @Override
+            public void entry(POParser.Entry entry) {
+                String singularKey = entry.getMsgid();
+                if (singularKey == null || singularKey.isEmpty()) {
+                    // the header entry, or an entry without msgid
+                    return;
+                }
+
+                String pluralKey = entry.getMsgidPlural();
+                if (pluralKey == null || pluralKey.isEmpty()) {
+                    // this covers the normal case when:
+                    // msgid "untranslated-string"
+                    // msgstr "translated-string"
+                    String value = entry.getMsgstr();
+                    if (value != null && !value.isEmpty()) {
+                        bb.addResourceString(singularKey, value);
+                    }
+                    return;
+                }
+
+                // this covers a plural entry - the singular key/value is
+                // msgid/msgstr[0], and the plural key/value is
+                // msgid_plural/msgstr[1]
                 // msgid "Unable to find user: @users"
                 // msgid_plural "Unable to find users: @users"
                 // msgstr[0] "Benutzer konnte nicht gefunden werden: @users"
                 // msgstr[1] "Benutzer konnten nicht gefunden werden: @users"
-
-                bb.addResourceString(singularKey, value);
-                singularValueSet = true;
-            } else if (singularKey != null && pluralKey != null && singularValueSet
-                    && line.startsWith(TRANSLATED_PLURAL_1_STRING_PREFIX)) {
-                // this covers the plural key/value in a plural entry
-                // the key is the value of msgid_plural and the value is that of
-                // msgstr[1]
-                bb.addResourceString(pluralKey, value);
+                String singularValue = entry.getMsgstrPlural(0);
+                if (singularValue == null || singularValue.isEmpty()) {
+                    return;
+                }
+                bb.addResourceString(singularKey, singularValue);
+
+                String pluralValue = entry.getMsgstrPlural(1);
+                if (pluralValue != null && !pluralValue.isEmpty()) {
+                    bb.addResourceString(pluralKey, pluralValue);
+                }
             }
-        }
-
+        });
         return bb.build();
     }
 
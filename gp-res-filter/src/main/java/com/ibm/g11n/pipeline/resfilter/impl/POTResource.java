@@ -27,7 +27,6 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
@@ -70,20 +69,20 @@ public class POTResource extends ResourceFilter {
     @Override
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, CHAR_SET));
-        LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
-        String line, value;
-        while ((line = reader.readLine()) != null) {
-            value = extractMessage(line, reader);
-            if (value == null || value.isEmpty()) {
-                continue;
-            }
-
-            if (line.startsWith(UNTRANSLATED_STRING_PREFIX) || line.startsWith(UNTRANSLATED_PLURAL_STRING_PREFIX)) {
-
-                bb.addResourceString(value, value);
+        final LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
+        POParser.parse(new InputStreamReader(inStream, CHAR_SET), new POParser.EntryHandler() {
+            @Override
+            public void entry(POParser.Entry entry) {
+                String msgid = entry.getMsgid();
+                if (msgid != null && !msgid.isEmpty()) {
+                    bb.addResourceString(msgid, msgid);
+                }
+                String msgidPlural = entry.getMsgidPlural();
+                if (msgidPlural != null && !msgidPlural.isEmpty()) {
+                    bb.addResourceString(msgidPlural, msgidPlural);
+                }
             }
-        }
+        });
         return bb.build();
     }
 
@@ -133,16 +132,25 @@ public class POTResource extends ResourceFilter {
             // if the line is a msgid, extract the value and check if the key is
             // in the resMap
             if (line.startsWith(UNTRANSLATED_STRING_PREFIX)) {
-                String key = extractMessage(line, reader);
-
-                // write the msgid
+                // write the msgid, collecting the key from the msgid line
+                // and following continuation lines
+                StringBuilder keyBuf = new StringBuilder();
                 do {
+                    String fragment = extractMsgBetweenQuotes(line);
+                    if (fragment != null) {
+                        keyBuf.append(fragment);
+                    }
                     writer.write(line);
                     writer.newLine();
                 } while ((line = reader.readLine()) != null && line.trim().startsWith("\""));
+                String key = keyBuf.toString();
+
+                if (line == null) {
+                    break;
+                }
 
                 // write msgstr
-                if (!line.startsWith(TRANSLATED_STRING_PREFIX) || key == null || key.isEmpty()
+                if (!line.startsWith(TRANSLATED_STRING_PREFIX) || key.isEmpty()
                         || !kvMap.containsKey(key) || kvMap.get(key) == null) {
                     // key not found, write msgstr as-is
                     do {
@@ -172,62 +180,6 @@ public class POTResource extends ResourceFilter {
         writer.flush();
     }
 
-    /**
-     * Extract message between quotes, possibly spanning multiple lines.<br>
-     * <br>
-     * e.g. if the input is: <br>
-     * <br>
-     * msgid ""<br>
-     * "Hello, this "<br>
-     * "is a "<br>
-     * "multi-line message."<br>
-     * <br>
-     * the extracted message will be:<br>
-     * <br>
-     * Hello, this is a multi-line message.<br>
-     *
-     * NOTE: This method <b> does not <b> advance the stream marker. Once the
-     * method returns, the stream can be read from where it was originally.
-     *
-     * @param firstLine
-     *            first line in the message
-     * @param reader
-     *            used to read additional lines in case the message is on
-     *            multiple lines
-     * @return extracted message, or null if there is no quotes present
-     * @throws IOException
-     *             if there were issues reading from the BufferedReader
-     */
-    static String extractMessage(String firstLine, BufferedReader reader) throws IOException {
-        String extractedMsg = extractMsgBetweenQuotes(firstLine);
-
-        if (extractedMsg == null) {
-            return null;
-        }
-
-        StringBuilder message = new StringBuilder();
-        message.append(extractedMsg);
-
-        // the Scanner will read ahead, the marker must be
-        // reset to where it started
-        reader.mark(1024);
-
-        // do not close the scanner because it closes the
-        // underlying input stream
-        @SuppressWarnings("resource")
-        Scanner scanner = new Scanner(reader);
-
-        // check if the next line begins with a quote char,
-        // this indicates that the value is on multiple lines
-        while (scanner.hasNextLine() && scanner.hasNext("\\s*\".*")
-                && (extractedMsg = extractMsgBetweenQuotes(scanner.nextLine())) != null) {
-            message.append(extractedMsg);
-        }
-
-        reader.reset();
-        return message.toString();
-    }
-
     /**
      * Extracts the message between quotes.<br>
      * <br>
@@ -0,0 +1,692 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.resfilter.impl.XMLTokenizer.TokenType;
+
+/**
+ * Streaming XLIFF 1.2/2.0 parse, write and merge operations shared by
+ * {@link XLIFFResource} and {@link MultiBundleXLIFFResource}.
+ * <p>
+ * Parse and write are implemented on StAX, and merge is implemented on {@link XMLTokenizer},
+ * which copies all tokens other than translation targets from the base document verbatim.
+ * None of them build an in-memory tree of the document.
+ *
+ * @author yoshito_umaoka
+ */
+final class XLIFFStreamSupport {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final String NEW_LINE = "\n";
+    private static final String INDENT = "  ";
+
+    private static final String VERSION_STRING = "version";
+    private static final String VERSION_NUMBER_STRING = "1.2";
+    private static final String VERSION_2_PREFIX = "2.";
+    private static final String XSI_PREFIX = "xsi";
+    private static final String XMLNS_VALUE_STRING = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String SCHEMA_LOCATION_STRING = "schemaLocation";
+    private static final String XSI_VALUE_STRING = "urn:oasis:names:tc:xliff:document:1.2 xliff-core-1.2-strict.xsd";
+
+    private static final String UNIT_STRING = "trans-unit";
+    private static final String UNIT_2_STRING = "unit";
+    private static final String SEGMENT_STRING = "segment";
+    private static final String IGNORABLE_STRING = "ignorable";
+    private static final String ID_STRING = "id";
+    private static final String SOURCE_STRING = "source";
+    private static final String TARGET_STRING = "target";
+    private static final String XLIFF_STRING = "xliff";
+    private static final String FILE_STRING = "file";
+    private static final String ORIGINAL_STRING = "original";
+    private static final String DATATYPE_STRING = "datatype";
+    private static final String PLAINTEXT_STRING = "plaintext";
+    private static final String SOURCE_LANGUAGE_STRING = "source-language";
+    private static final String TARGET_LANGUAGE_STRING = "target-language";
+    private static final String SRC_LANG_STRING = "srcLang";
+    private static final String TRG_LANG_STRING = "trgLang";
+    private static final String XML_LANG_STRING = "xml:lang";
+    private static final String BODY_STRING = "body";
+
+    private static final Pattern LINE_BREAK_PTRN = Pattern.compile("\\s*\n\\s*");
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // XLIFF does not rely on DTD. This also prevents external entity expansion.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    private XLIFFStreamSupport() {
+    }
+
+    //
+    // Parse
+    //
+
+    /**
+     * Receives contents of an XLIFF document from {@link XLIFFStreamSupport#parse(InputStream, UnitHandler)}.
+     */
+    interface UnitHandler {
+        /**
+         * Called at the beginning of each &lt;file&gt; element.
+         *
+         * @param fileId    The <code>original</code> attribute of the file, or <code>id</code>
+         *                  attribute if <code>original</code> is not available.
+         * @param srcLang   The source language of the file, or null.
+         * @param trgLang   The target language of the file, or null.
+         */
+        void startFile(String fileId, String srcLang, String trgLang) throws ResourceFilterException;
+
+        /**
+         * Called for each translation unit in the current file.
+         *
+         * @param key   The unit ID.
+         * @param source    The source text. Line breaks and surrounding white spaces are
+         *                  collapsed into a single space.
+         */
+        void unit(String key, String source) throws ResourceFilterException;
+    }
+
+    /**
+     * Parses an XLIFF 1.2 or 2.0 document and reports files and units to the handler.
+     */
+    static void parse(InputStream inStream, UnitHandler handler) throws IOException, ResourceFilterException {
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(inStream);
+
+            // local names of open elements, used for checking the parent of <source>
+            List<String> elements = new ArrayList<>();
+            String docSrcLang = null;
+            String docTrgLang = null;
+            String key = null;
+            StringBuilder value = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals(SOURCE_STRING) && key != null && isSourceContainer(elements)) {
+                        if (value == null) {
+                            value = new StringBuilder();
+                        }
+                        readText(reader, value);
+                        continue;
+                    }
+                    elements.add(name);
+
+                    if (name.equals(UNIT_STRING) || name.equals(UNIT_2_STRING)) {
+                        key = reader.getAttributeValue(null, ID_STRING);
+                        value = null;
+                    } else if (name.equals(XLIFF_STRING)) {
+                        // XLIFF 2.0
+                        docSrcLang = reader.getAttributeValue(null, SRC_LANG_STRING);
+                        docTrgLang = reader.getAttributeValue(null, TRG_LANG_STRING);
+                    } else if (name.equals(FILE_STRING)) {
+                        String fileId = reader.getAttributeValue(null, ORIGINAL_STRING);
+                        if (fileId == null) {
+                            fileId = reader.getAttributeValue(null, ID_STRING);
+                        }
+                        // XLIFF 1.2
+                        String srcLang = reader.getAttributeValue(null, SOURCE_LANGUAGE_STRING);
+                        String trgLang = reader.getAttributeValue(null, TARGET_LANGUAGE_STRING);
+                        handler.startFile(fileId,
+                                srcLang == null ? docSrcLang : srcLang,
+                                trgLang == null ? docTrgLang : trgLang);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = elements.remove(elements.size() - 1);
+                    if (key != null && (name.equals(UNIT_STRING) || name.equals(UNIT_2_STRING))) {
+                        if (value != null) {
+                            handler.unit(key, LINE_BREAK_PTRN.matcher(value).replaceAll(" "));
+                        }
+                        key = null;
+                        value = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalResourceFormatException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the innermost open element may contain a translation source -
+     * &lt;trans-unit&gt; in XLIFF 1.2, &lt;segment&gt; or &lt;ignorable&gt; in XLIFF 2.0.
+     * This excludes sources in &lt;alt-trans&gt; and other auxiliary elements.
+     */
+    private static boolean isSourceContainer(List<String> elements) {
+        if (elements.isEmpty()) {
+            return false;
+        }
+        String parent = elements.get(elements.size() - 1);
+        return parent.equals(UNIT_STRING) || parent.equals(SEGMENT_STRING) || parent.equals(IGNORABLE_STRING);
+    }
+
+    /**
+     * Appends all character data in the current element, including character data
+     * in nested inline elements, and moves the reader to the end of the element.
+     */
+    private static void readText(XMLStreamReader reader, StringBuilder buf) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                buf.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (depth-- == 0) {
+                    return;
+                }
+                break;
+            }
+        }
+    }
+
+    //
+    // Write
+    //
+
+    /**
+     * Streaming writer of an XLIFF 1.2 document. {@link #writeFile(String, String, String, Collection)}
+     * can be called multiple times between {@link #start()} and {@link #end()}.
+     */
+    static final class DocumentWriter {
+        private final Writer writer;
+        private XMLStreamWriter xw;
+
+        DocumentWriter(OutputStream outStream) {
+            writer = new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
+        }
+
+        void start() throws IOException, ResourceFilterException {
+            writer.write(XML_DECLARATION);
+            writer.write(NEW_LINE);
+            try {
+                xw = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+                xw.writeStartElement(XLIFF_STRING);
+                xw.writeNamespace(XSI_PREFIX, XMLNS_VALUE_STRING);
+                xw.writeAttribute(VERSION_STRING, VERSION_NUMBER_STRING);
+                xw.writeAttribute(XSI_PREFIX, XMLNS_VALUE_STRING, SCHEMA_LOCATION_STRING, XSI_VALUE_STRING);
+            } catch (XMLStreamException e) {
+                throw new ResourceFilterException(e);
+            }
+        }
+
+        void writeFile(String original, String sourceLanguage, String targetLanguage,
+                Collection<ResourceString> resStrings) throws ResourceFilterException {
+            try {
+                writeIndent(1);
+                xw.writeStartElement(FILE_STRING);
+                xw.writeAttribute(ORIGINAL_STRING, original);
+                xw.writeAttribute(DATATYPE_STRING, PLAINTEXT_STRING);
+                xw.writeAttribute(SOURCE_LANGUAGE_STRING, sourceLanguage);
+                xw.writeAttribute(TARGET_LANGUAGE_STRING, targetLanguage);
+
+                writeIndent(2);
+                xw.writeStartElement(BODY_STRING);
+
+                for (ResourceString resString : resStrings) {
+                    writeIndent(3);
+                    xw.writeStartElement(UNIT_STRING);
+                    xw.writeAttribute(ID_STRING, resString.getKey());
+
+                    writeIndent(4);
+                    xw.writeStartElement(SOURCE_STRING);
+                    writeText(resString.getSourceValue());
+                    xw.writeEndElement();
+
+                    writeIndent(4);
+                    xw.writeStartElement(TARGET_STRING);
+                    writeText(resString.getValue());
+                    xw.writeEndElement();
+
+                    writeIndent(3);
+                    xw.writeEndElement();   // trans-unit
+                }
+
+                writeIndent(2);
+                xw.writeEndElement();   // body
+                writeIndent(1);
+                xw.writeEndElement();   // file
+            } catch (XMLStreamException e) {
+                throw new ResourceFilterException(e);
+            }
+        }
+
+        void end() throws IOException, ResourceFilterException {
+            try {
+                writeIndent(0);
+                xw.writeEndElement();   // xliff
+                xw.flush();
+                xw.close();
+            } catch (XMLStreamException e) {
+                throw new ResourceFilterException(e);
+            }
+            writer.write(NEW_LINE);
+            writer.flush();
+        }
+
+        private void writeIndent(int level) throws XMLStreamException {
+            StringBuilder buf = new StringBuilder(NEW_LINE.length() + INDENT.length() * level);
+            buf.append(NEW_LINE);
+            for (int i = 0; i < level; i++) {
+                buf.append(INDENT);
+            }
+            xw.writeCharacters(buf.toString());
+        }
+
+        private void writeText(String text) throws XMLStreamException {
+            if (text != null && !text.isEmpty()) {
+                xw.writeCharacters(text);
+            }
+        }
+    }
+
+    //
+    // Merge
+    //
+
+    /**
+     * Supplies translated values for each &lt;file&gt; in a base document to
+     * {@link XLIFFStreamSupport#merge(InputStream, OutputStream, String, TranslationSource)}.
+     */
+    interface TranslationSource {
+        /**
+         * Returns true if translated values are available for the file, or false
+         * if the file should be copied as is.
+         */
+        boolean hasValues(String fileId) throws ResourceFilterException;
+
+        /**
+         * Returns the translated value of the unit in the file, or null if not available.
+         */
+        String getValue(String fileId, String unitId) throws ResourceFilterException;
+
+        /**
+         * Returns the target language of the file, or null if not available.
+         */
+        String getLanguage(String fileId);
+    }
+
+    /**
+     * A <code>TranslationSource</code> supplying translated values of each &lt;file&gt;
+     * as a map. Only the map of the current file is held.
+     */
+    abstract static class FileValuesSource implements TranslationSource {
+        private boolean loaded = false;
+        private String currentFileId;
+        private Map<String, String> currentValues;
+
+        /**
+         * Returns the translated values indexed by unit IDs for the file, or null
+         * if the file should be copied as is.
+         */
+        abstract Map<String, String> getValues(String fileId);
+
+        private Map<String, String> values(String fileId) {
+            if (!loaded || !Objects.equals(currentFileId, fileId)) {
+                currentValues = getValues(fileId);
+                currentFileId = fileId;
+                loaded = true;
+            }
+            return currentValues;
+        }
+
+        @Override
+        public boolean hasValues(String fileId) {
+            return values(fileId) != null;
+        }
+
+        @Override
+        public String getValue(String fileId, String unitId) {
+            Map<String, String> kvMap = values(fileId);
+            return kvMap == null ? null : kvMap.get(unitId);
+        }
+    }
+
+    /**
+     * Merges translated values into the base XLIFF document. Except target language attributes
+     * and &lt;target&gt; elements of units with translated values, all contents in the
+     * base document are copied to the output as is. When a unit in the base document does not
+     * have &lt;target&gt;, a new &lt;target&gt; element is inserted after &lt;source&gt;, using
+     * the same indentation. For XLIFF 2.0, the translation is stored in the first &lt;segment&gt;
+     * of a unit.
+     *
+     * @param baseStream    The input stream of the base document.
+     * @param outStream The output stream.
+     * @param documentLanguage  The target language used for the document level attribute
+     *                  in XLIFF 2.0.
+     * @param translations  The source of translated values.
+     */
+    static void merge(InputStream baseStream, OutputStream outStream, String documentLanguage,
+            TranslationSource translations) throws IOException, ResourceFilterException {
+        // TODO: We should use xml encoding declaration, instead of hardcoding
+        // "UTF-8"
+        XMLTokenizer tokenizer = new XMLTokenizer(
+                new InputStreamReader(new BomInputStream(baseStream), StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
+
+        new Merger(tokenizer, writer, documentLanguage, translations).merge();
+
+        writer.flush();
+    }
+
+    /**
+     * Reads the base XLIFF document into a recording of tokens, which can be merged with
+     * translated values in multiple languages by
+     * {@link #merge(XMLTokenizer.Recording, OutputStream, String, TranslationSource)}.
+     *
+     * @param baseStream    The input stream of the base document.
+     * @return  The recording of the base document.
+     */
+    static XMLTokenizer.Recording compile(InputStream baseStream) throws IOException, ResourceFilterException {
+        return XMLTokenizer.record(new XMLTokenizer(
+                new InputStreamReader(new BomInputStream(baseStream), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Merges translated values into the base XLIFF document compiled by {@link #compile(InputStream)}.
+     * The result is same as {@link #merge(InputStream, OutputStream, String, TranslationSource)}.
+     *
+     * @param base  The compiled base document.
+     * @param outStream The output stream.
+     * @param documentLanguage  The target language used for the document level attribute
+     *                  in XLIFF 2.0.
+     * @param translations  The source of translated values.
+     */
+    static void merge(XMLTokenizer.Recording base, OutputStream outStream, String documentLanguage,
+            TranslationSource translations) throws IOException, ResourceFilterException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8));
+
+        new Merger(base.replay(), writer, documentLanguage, translations).merge();
+
+        writer.flush();
+    }
+
+    /**
+     * Returns the target language to be set in a merged document. The language
+     * in the base document is preserved if it is same as, or more specific
+     * than the language of the bundle, e.g. "ja-JP" for "ja".
+     */
+    private static String resolveTargetLanguage(String baseLanguage, String bundleLanguage) {
+        if (bundleLanguage == null) {
+            return baseLanguage;
+        }
+        if (baseLanguage != null) {
+            String base = baseLanguage.toLowerCase(Locale.ROOT).replace('_', '-');
+            String bundle = bundleLanguage.toLowerCase(Locale.ROOT).replace('_', '-');
+            if (base.equals(bundle) || base.startsWith(bundle + "-")) {
+                return baseLanguage;
+            }
+        }
+        return bundleLanguage;
+    }
+
+    /**
+     * Streaming merge state machine over raw XML tokens.
+     */
+    private static class Merger {
+        private final XMLTokenSource tokenizer;
+        private final Writer writer;
+        private final String documentLanguage;
+        private final TranslationSource translations;
+
+        private boolean xliff2 = false;
+        private String targetLanguage;
+
+        // the current file ID, and whether if translated values are available for the file
+        private String fileId = null;
+        private boolean fileTranslated = false;
+
+        private int depth = 0;
+
+        // the translated value of the current unit, or null if not available
+        private String value = null;
+        // the depth of the element containing <source> and <target>, or -1
+        private int containerDepth = -1;
+        private boolean sourceHasLang = false;
+        private String sourcePrefix = "";
+        private String lastText = "";
+
+        // tokens after </source>, held until <target> or the end of the container
+        private StringBuilder pending = null;
+
+        Merger(XMLTokenSource tokenizer, Writer writer, String documentLanguage,
+                TranslationSource translations) {
+            this.tokenizer = tokenizer;
+            this.writer = writer;
+            this.documentLanguage = documentLanguage;
+            this.translations = translations;
+            this.targetLanguage = documentLanguage;
+        }
+
+        void merge() throws IOException, ResourceFilterException {
+            TokenType type;
+            while ((type = tokenizer.next()) != TokenType.EOF) {
+                switch (type) {
+                case START_TAG:
+                case EMPTY_TAG:
+                    startTag(type == TokenType.EMPTY_TAG);
+                    break;
+                case END_TAG:
+                    endTag();
+                    break;
+                default:
+                    if (type == TokenType.TEXT) {
+                        lastText = tokenizer.getRawText();
+                    }
+                    emit(tokenizer.getRawText());
+                    break;
+                }
+            }
+            if (pending != null) {
+                throw new IllegalResourceFormatException("Unexpected end of XLIFF document");
+            }
+        }
+
+        private void startTag(boolean empty) throws IOException, ResourceFilterException {
+            String name = tokenizer.getLocalName();
+            if (!empty) {
+                depth++;
+            }
+            String precedingText = lastText;
+            lastText = "";
+
+            if (name.equals(XLIFF_STRING)) {
+                String version = tokenizer.getAttribute(VERSION_STRING);
+                xliff2 = version != null && version.startsWith(VERSION_2_PREFIX);
+                if (xliff2 && documentLanguage != null) {
+                    targetLanguage = resolveTargetLanguage(tokenizer.getAttribute(TRG_LANG_STRING),
+                            documentLanguage);
+                    emit(tokenizer.getRawTextWithAttribute(TRG_LANG_STRING, targetLanguage));
+                    return;
+                }
+            } else if (name.equals(FILE_STRING)) {
+                fileId = tokenizer.getAttribute(ORIGINAL_STRING);
+                if (fileId == null) {
+                    fileId = tokenizer.getAttribute(ID_STRING);
+                }
+                fileTranslated = translations.hasValues(fileId);
+                if (!xliff2 && fileTranslated) {
+                    targetLanguage = resolveTargetLanguage(tokenizer.getAttribute(TARGET_LANGUAGE_STRING),
+                            translations.getLanguage(fileId));
+                    if (targetLanguage != null) {
+                        emit(tokenizer.getRawTextWithAttribute(TARGET_LANGUAGE_STRING, targetLanguage));
+                        return;
+                    }
+                }
+            } else if (!empty && name.equals(xliff2 ? UNIT_2_STRING : UNIT_STRING)) {
+                String key = tokenizer.getAttribute(ID_STRING);
+                value = key == null || !fileTranslated ? null : translations.getValue(fileId, key);
+                containerDepth = xliff2 ? -1 : depth;
+            } else if (!empty && value != null && xliff2 && containerDepth < 0
+                    && name.equals(SEGMENT_STRING)) {
+                containerDepth = depth;
+            } else if (value != null && containerDepth > 0 && depth == containerDepth + (empty ? 0 : 1)) {
+                if (name.equals(SOURCE_STRING)) {
+                    sourcePrefix = linePrefix(precedingText);
+                    sourceHasLang = tokenizer.getAttribute(XML_LANG_STRING) != null;
+                } else if (name.equals(TARGET_STRING)) {
+                    replaceTarget(empty);
+                    return;
+                }
+            }
+            emit(tokenizer.getRawText());
+        }
+
+        private void endTag() throws IOException, ResourceFilterException {
+            String name = tokenizer.getLocalName();
+            lastText = "";
+
+            if (value != null && containerDepth > 0) {
+                if (depth == containerDepth + 1 && name.equals(SOURCE_STRING)) {
+                    emit(tokenizer.getRawText());
+                    depth--;
+                    pending = new StringBuilder();
+                    return;
+                }
+                if (depth == containerDepth) {
+                    if (pending != null) {
+                        // no <target> in the container - insert a new one after </source>
+                        StringBuilder target = new StringBuilder();
+                        target.append(sourcePrefix).append('<').append(TARGET_STRING);
+                        if (sourceHasLang && targetLanguage != null) {
+                            target.append(' ').append(XML_LANG_STRING).append("=\"")
+                                .append(XMLTokenizer.escapeAttribute(targetLanguage)).append('"');
+                        }
+                        target.append('>').append(XMLTokenizer.escapeText(value))
+                            .append("</").append(TARGET_STRING).append('>');
+                        String held = pending.toString();
+                        pending = null;
+                        emit(target.toString());
+                        emit(held);
+                    }
+                    // only the first container in a unit receives the translation
+                    value = null;
+                    containerDepth = -1;
+                }
+            } else if (name.equals(FILE_STRING)) {
+                fileId = null;
+                fileTranslated = false;
+            }
+            depth--;
+            emit(tokenizer.getRawText());
+        }
+
+        private void replaceTarget(boolean empty) throws IOException, ResourceFilterException {
+            if (pending != null) {
+                String held = pending.toString();
+                pending = null;
+                emit(held);
+            }
+            String startTag = tokenizer.getAttribute(XML_LANG_STRING) == null || targetLanguage == null
+                    ? tokenizer.getRawText() : tokenizer.getRawTextWithAttribute(XML_LANG_STRING, targetLanguage);
+            String endTag;
+            if (empty) {
+                startTag = startTag.substring(0, startTag.length() - 2) + ">";
+                endTag = "</" + tokenizer.getName() + ">";
+            } else {
+                // skip the original contents
+                int targetDepth = depth;
+                TokenType type;
+                while ((type = tokenizer.next()) != TokenType.END_TAG || depth != targetDepth) {
+                    if (type == TokenType.EOF) {
+                        throw new IllegalResourceFormatException("Unexpected end of XLIFF document");
+                    } else if (type == TokenType.START_TAG) {
+                        depth++;
+                    } else if (type == TokenType.END_TAG) {
+                        depth--;
+                    }
+                }
+                depth--;
+                endTag = tokenizer.getRawText();
+            }
+            emit(startTag);
+            emit(XMLTokenizer.escapeText(value));
+            emit(endTag);
+        }
+
+        private void emit(String text) throws IOException {
+            if (pending != null) {
+                pending.append(text);
+            } else {
+                writer.write(text);
+            }
+        }
+
+        /**
+         * Returns the line break and indentation preceding a tag, or an empty
+         * string if the tag is not at the beginning of a line.
+         */
+        private static String linePrefix(String text) {
+            int idx = text.lastIndexOf('\n');
+            if (idx < 0) {
+                return "";
+            }
+            for (int i = idx + 1; i < text.length(); i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return "";
+                }
+            }
+            return idx > 0 && text.charAt(idx - 1) == '\r' ? text.substring(idx - 1) : text.substring(idx);
+        }
+    }
+}
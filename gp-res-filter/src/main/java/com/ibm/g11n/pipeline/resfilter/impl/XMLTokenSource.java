@@ -0,0 +1,67 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.IOException;
+
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
+import com.ibm.g11n.pipeline.resfilter.impl.XMLTokenizer.TokenType;
+
+/**
+ * A sequence of XML tokens, read from an input by {@link XMLTokenizer}, or
+ * replayed from a {@link XMLTokenizer.Recording}.
+ *
+ * @author yoshito_umaoka
+ */
+interface XMLTokenSource {
+    /**
+     * Moves to the next token.
+     *
+     * @return  The type of the token, or {@link TokenType#EOF} at the end.
+     * @throws IOException  if an error occurred when reading the input.
+     * @throws IllegalResourceFormatException   if the input is not tokenizable XML.
+     */
+    TokenType next() throws IOException, IllegalResourceFormatException;
+
+    /**
+     * Returns the raw characters of the current token.
+     */
+    String getRawText();
+
+    /**
+     * Returns the qualified name of the current tag, or null if the current
+     * token is not a tag.
+     */
+    String getName();
+
+    /**
+     * Returns the local name (the qualified name without prefix) of the current
+     * tag, or null if the current token is not a tag.
+     */
+    String getLocalName();
+
+    /**
+     * Returns the unescaped value of the specified attribute of the current start tag,
+     * or null if not available.
+     */
+    String getAttribute(String qname);
+
+    /**
+     * Returns the raw text of the current start tag with the specified attribute
+     * value replaced, or appended when the attribute is not present.
+     */
+    String getRawTextWithAttribute(String qname, String value);
+}
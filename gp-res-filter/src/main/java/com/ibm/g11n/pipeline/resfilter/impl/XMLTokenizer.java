@@ -0,0 +1,599 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
+
+/**
+ * A minimal streaming XML tokenizer preserving the raw text of every token.
+ * <p>
+ * Unlike StAX, this tokenizer gives access to the exact characters of each
+ * markup token, so a filter can copy unchanged parts of a document verbatim
+ * and only rewrite the tokens it cares about. Only one token is held in memory
+ * at a time. The tokenizer does not validate well-formedness beyond what is
+ * needed for splitting the input into tokens.
+ *
+ * @author yoshito_umaoka
+ */
+final class XMLTokenizer implements XMLTokenSource {
+
+    enum TokenType {
+        TEXT,
+        START_TAG,
+        END_TAG,
+        EMPTY_TAG,
+        COMMENT,
+        CDATA,
+        PROCESSING_INSTRUCTION,
+        DECLARATION,
+        EOF
+    }
+
+    private final Reader reader;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    private final StringBuilder raw = new StringBuilder(256);
+    private TokenType type;
+    private String name;
+
+    // attribute names, and value start/end offsets (excluding quotes) in raw
+    private final List<String> attrNames = new ArrayList<>();
+    private final List<int[]> attrSpans = new ArrayList<>();
+
+    XMLTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return  The type of the token, or {@link TokenType#EOF} at the end of input.
+     * @throws IOException  if an error occurred when reading the input.
+     * @throws IllegalResourceFormatException   if the input is not tokenizable XML.
+     */
+    @Override
+    public TokenType next() throws IOException, IllegalResourceFormatException {
+        raw.setLength(0);
+        name = null;
+        attrNames.clear();
+        attrSpans.clear();
+
+        int c = read();
+        if (c < 0) {
+            type = TokenType.EOF;
+            return type;
+        }
+        if (c != '<') {
+            raw.append((char) c);
+            while (ensure(1)) {
+                int start = pos;
+                while (pos < limit && buf[pos] != '<') {
+                    pos++;
+                }
+                raw.append(buf, start, pos - start);
+                if (pos < limit) {
+                    break;
+                }
+            }
+            type = TokenType.TEXT;
+            return type;
+        }
+
+        raw.append('<');
+        c = read();
+        if (c == '!') {
+            raw.append('!');
+            if (consume("--")) {
+                readUntil("-->");
+                type = TokenType.COMMENT;
+            } else if (consume("[CDATA[")) {
+                readUntil("]]>");
+                type = TokenType.CDATA;
+            } else {
+                readDeclaration();
+                type = TokenType.DECLARATION;
+            }
+        } else if (c == '?') {
+            raw.append('?');
+            readUntil("?>");
+            type = TokenType.PROCESSING_INSTRUCTION;
+        } else if (c == '/') {
+            raw.append('/');
+            name = readName();
+            skipSpaces();
+            expect('>');
+            type = TokenType.END_TAG;
+        } else {
+            if (c >= 0) {
+                unread();
+            }
+            name = readName();
+            type = readAttributes();
+        }
+        return type;
+    }
+
+    TokenType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the raw characters of the current token.
+     */
+    @Override
+    public String getRawText() {
+        return raw.toString();
+    }
+
+    /**
+     * Appends the raw characters of the current token to the specified buffer.
+     */
+    void appendRawText(StringBuilder sb) {
+        sb.append(raw);
+    }
+
+    /**
+     * Returns the qualified name of the current tag, or null if the current
+     * token is not a tag.
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the local name (the qualified name without prefix) of the current
+     * tag, or null if the current token is not a tag.
+     */
+    @Override
+    public String getLocalName() {
+        return localName(name);
+    }
+
+    /**
+     * Returns the unescaped value of the specified attribute of the current start tag,
+     * or null if not available.
+     */
+    @Override
+    public String getAttribute(String qname) {
+        return attribute(raw, attrNames, attrSpans, qname);
+    }
+
+    /**
+     * Returns the raw text of the current start tag with the specified attribute
+     * value replaced, or appended when the attribute is not present.
+     */
+    @Override
+    public String getRawTextWithAttribute(String qname, String value) {
+        return rawTextWithAttribute(raw, type, attrNames, attrSpans, qname, value);
+    }
+
+    private static String localName(String name) {
+        if (name == null) {
+            return null;
+        }
+        int idx = name.indexOf(':');
+        return idx < 0 ? name : name.substring(idx + 1);
+    }
+
+    private static String attribute(CharSequence raw, List<String> attrNames, List<int[]> attrSpans,
+            String qname) {
+        int idx = attrNames.indexOf(qname);
+        if (idx < 0) {
+            return null;
+        }
+        int[] span = attrSpans.get(idx);
+        return unescape(raw.subSequence(span[0], span[1]).toString());
+    }
+
+    private static String rawTextWithAttribute(CharSequence raw, TokenType type, List<String> attrNames,
+            List<int[]> attrSpans, String qname, String value) {
+        String escaped = escapeAttribute(value);
+        int idx = attrNames.indexOf(qname);
+        if (idx >= 0) {
+            int[] span = attrSpans.get(idx);
+            return new StringBuilder(raw.length() + escaped.length())
+                    .append(raw, 0, span[0]).append(escaped).append(raw, span[1], raw.length())
+                    .toString();
+        }
+        int insertPos = raw.length() - (type == TokenType.EMPTY_TAG ? 2 : 1);
+        while (insertPos > 0 && Character.isWhitespace(raw.charAt(insertPos - 1))) {
+            insertPos--;
+        }
+        return new StringBuilder(raw.length() + qname.length() + escaped.length() + 4)
+                .append(raw, 0, insertPos)
+                .append(' ').append(qname).append("=\"").append(escaped).append('"')
+                .append(raw, insertPos, raw.length())
+                .toString();
+    }
+
+    /**
+     * Reads all tokens from the tokenizer into a {@link Recording}.
+     *
+     * @param tokenizer The tokenizer.
+     * @return  The recording of the tokens.
+     * @throws IOException  if an error occurred when reading the input.
+     * @throws IllegalResourceFormatException   if the input is not tokenizable XML.
+     */
+    static Recording record(XMLTokenizer tokenizer) throws IOException, IllegalResourceFormatException {
+        List<Token> tokens = new ArrayList<>();
+        while (tokenizer.next() != TokenType.EOF) {
+            tokens.add(new Token(tokenizer.type, tokenizer.raw.toString(), tokenizer.name,
+                    tokenizer.attrNames.isEmpty() ? Collections.<String>emptyList()
+                            : new ArrayList<>(tokenizer.attrNames),
+                    tokenizer.attrSpans.isEmpty() ? Collections.<int[]>emptyList()
+                            : new ArrayList<>(tokenizer.attrSpans)));
+        }
+        return new Recording(tokens);
+    }
+
+    /**
+     * Tokens read by a tokenizer, which can be replayed without reading and splitting
+     * the input again. A recording is immutable, so it can be replayed by multiple
+     * threads concurrently.
+     */
+    static final class Recording {
+        private final List<Token> tokens;
+
+        private Recording(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * Returns a new token source replaying the recorded tokens from the beginning.
+         */
+        XMLTokenSource replay() {
+            return new Replay(tokens);
+        }
+    }
+
+    /**
+     * A cursor over recorded tokens.
+     */
+    private static final class Replay implements XMLTokenSource {
+        private final List<Token> tokens;
+        private int index = -1;
+        private Token token;
+
+        private Replay(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public TokenType next() {
+            if (index < tokens.size()) {
+                index++;
+            }
+            token = index < tokens.size() ? tokens.get(index) : null;
+            return token == null ? TokenType.EOF : token.type;
+        }
+
+        @Override
+        public String getRawText() {
+            return token.raw;
+        }
+
+        @Override
+        public String getName() {
+            return token.name;
+        }
+
+        @Override
+        public String getLocalName() {
+            return localName(token.name);
+        }
+
+        @Override
+        public String getAttribute(String qname) {
+            return attribute(token.raw, token.attrNames, token.attrSpans, qname);
+        }
+
+        @Override
+        public String getRawTextWithAttribute(String qname, String value) {
+            return rawTextWithAttribute(token.raw, token.type, token.attrNames, token.attrSpans, qname, value);
+        }
+    }
+
+    private static final class Token {
+        final TokenType type;
+        final String raw;
+        final String name;
+        final List<String> attrNames;
+        final List<int[]> attrSpans;
+
+        Token(TokenType type, String raw, String name, List<String> attrNames, List<int[]> attrSpans) {
+            this.type = type;
+            this.raw = raw;
+            this.name = name;
+            this.attrNames = attrNames;
+            this.attrSpans = attrSpans;
+        }
+    }
+
+    private TokenType readAttributes() throws IOException, IllegalResourceFormatException {
+        while (true) {
+            skipSpaces();
+            int c = read();
+            if (c == '>') {
+                raw.append('>');
+                return TokenType.START_TAG;
+            }
+            if (c == '/') {
+                raw.append('/');
+                expect('>');
+                return TokenType.EMPTY_TAG;
+            }
+            if (c < 0) {
+                throw new IllegalResourceFormatException("Unexpected end of XML input in tag <" + name + ">");
+            }
+            unread();
+            String attrName = readName();
+            skipSpaces();
+            expect('=');
+            skipSpaces();
+            int quote = read();
+            if (quote != '"' && quote != '\'') {
+                throw new IllegalResourceFormatException("Missing quote for attribute " + attrName
+                        + " in tag <" + name + ">");
+            }
+            raw.append((char) quote);
+            int start = raw.length();
+            while ((c = read()) != quote) {
+                if (c < 0) {
+                    throw new IllegalResourceFormatException("Unexpected end of XML input in tag <" + name + ">");
+                }
+                raw.append((char) c);
+            }
+            attrNames.add(attrName);
+            attrSpans.add(new int[] {start, raw.length()});
+            raw.append((char) quote);
+        }
+    }
+
+    private void readDeclaration() throws IOException, IllegalResourceFormatException {
+        // <!DOCTYPE ...> may contain an internal subset enclosed by [...]
+        int bracketDepth = 0;
+        int quote = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            raw.append((char) c);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[') {
+                bracketDepth++;
+            } else if (c == ']') {
+                bracketDepth--;
+            } else if (c == '>' && bracketDepth <= 0) {
+                return;
+            }
+        }
+        throw new IllegalResourceFormatException("Unexpected end of XML input in declaration");
+    }
+
+    private void readUntil(String terminator) throws IOException, IllegalResourceFormatException {
+        int tlen = terminator.length();
+        int minLen = raw.length() + tlen;
+        char last = terminator.charAt(tlen - 1);
+        int c;
+        while ((c = read()) >= 0) {
+            raw.append((char) c);
+            if (c == last && raw.length() >= minLen && endsWith(terminator)) {
+                return;
+            }
+        }
+        throw new IllegalResourceFormatException("Unexpected end of XML input, " + terminator + " is missing");
+    }
+
+    private boolean endsWith(String s) {
+        int offset = raw.length() - s.length();
+        for (int i = 0; i < s.length(); i++) {
+            if (raw.charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readName() throws IOException, IllegalResourceFormatException {
+        int start = raw.length();
+        int c;
+        while ((c = peek()) >= 0 && !Character.isWhitespace(c) && c != '>' && c != '/' && c != '='
+                && c != '<') {
+            raw.append((char) read());
+        }
+        if (raw.length() == start) {
+            throw new IllegalResourceFormatException("Missing XML name");
+        }
+        return raw.substring(start);
+    }
+
+    private void skipSpaces() throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+            raw.append((char) read());
+        }
+    }
+
+    private void expect(char expected) throws IOException, IllegalResourceFormatException {
+        int c = read();
+        if (c != expected) {
+            throw new IllegalResourceFormatException("'" + expected + "' is expected in XML markup: " + raw);
+        }
+        raw.append(expected);
+    }
+
+    private boolean consume(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            if (!ensure(i + 1) || buf[pos + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        pos += s.length();
+        raw.append(s);
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (!ensure(1)) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (!ensure(1)) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    private void unread() {
+        pos--;
+    }
+
+    /**
+     * Makes sure that at least <code>n</code> characters are available in the buffer,
+     * keeping the last character read so that {@link #unread()} works.
+     */
+    private boolean ensure(int n) throws IOException {
+        while (limit - pos < n) {
+            int keep = pos > 0 ? pos - 1 : 0;
+            if (keep > 0) {
+                System.arraycopy(buf, keep, buf, 0, limit - keep);
+                pos -= keep;
+                limit -= keep;
+            }
+            int len = reader.read(buf, limit, buf.length - limit);
+            if (len < 0) {
+                return false;
+            }
+            limit += len;
+        }
+        return true;
+    }
+
+    /**
+     * Escapes characters not allowed in XML character data.
+     */
+    static String escapeText(String s) {
+        return escape(s, false);
+    }
+
+    /**
+     * Escapes characters not allowed in a quoted XML attribute value.
+     */
+    static String escapeAttribute(String s) {
+        return escape(s, true);
+    }
+
+    private static String escape(String s, boolean attribute) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String rep = null;
+            switch (c) {
+            case '&':
+                rep = "&amp;";
+                break;
+            case '<':
+                rep = "&lt;";
+                break;
+            case '>':
+                rep = "&gt;";
+                break;
+            case '"':
+                if (attribute) {
+                    rep = "&quot;";
+                }
+                break;
+            case '\'':
+                if (attribute) {
+                    rep = "&apos;";
+                }
+                break;
+            }
+            if (rep != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(s.length() + 16);
+                    sb.append(s, 0, i);
+                }
+                sb.append(rep);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    /**
+     * Resolves predefined entity references and character references.
+     */
+    static String unescape(String s) {
+        int amp = s.indexOf('&');
+        if (amp < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        sb.append(s, 0, amp);
+        int i = amp;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            int semi;
+            if (c != '&' || (semi = s.indexOf(';', i)) < 0) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+            String ref = s.substring(i + 1, semi);
+            if (ref.equals("lt")) {
+                sb.append('<');
+            } else if (ref.equals("gt")) {
+                sb.append('>');
+            } else if (ref.equals("amp")) {
+                sb.append('&');
+            } else if (ref.equals("quot")) {
+                sb.append('"');
+            } else if (ref.equals("apos")) {
+                sb.append('\'');
+            } else if (ref.startsWith("#")) {
+                try {
+                    int cp = ref.startsWith("#x")
+                            ? Integer.parseInt(ref.substring(2), 16)
+                            : Integer.parseInt(ref.substring(1));
+                    sb.appendCodePoint(cp);
+                } catch (IllegalArgumentException e) {
+                    sb.append(s, i, semi + 1);
+                }
+            } else {
+                sb.append(s, i, semi + 1);
+            }
+            i = semi + 1;
+        }
+        return sb.toString();
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2015, 2018
+ * Copyright IBM Corp. 2015, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,166 +15,518 @@
  */
 package com.ibm.g11n.pipeline.resfilter.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.nio.charset.Charset;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLGenerator;
+import com.fasterxml.jackson.dataformat.yaml.YAMLParser;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.IllegalResourceFormatException;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 
+/**
+ * YAML resource filter implementation.
+ * <p>
+ * Nested mappings are flattened to keys joined by '.', for example,
+ * <code>{a: {b: c}}</code> is converted to a resource string with key
+ * <code>a.b</code> and value <code>c</code>. Only string scalar values are
+ * extracted - numbers, booleans, aliases and sequences are ignored.
+ * <p>
+ * All operations are streaming, and none of them builds a tree of the document.
+ */
 public class YMLResource extends ResourceFilter {
 
+    private static final char SEPARATOR = '.';
+
+    private static final YAMLFactory YAML_FACTORY = new YAMLFactory();
+
+    static {
+        YAML_FACTORY.disable(YAMLGenerator.Feature.WRITE_DOC_START_MARKER);
+        YAML_FACTORY.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        YAML_FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * ValueData stores value and start/end offset within YAML source
+     */
+    private static class ValueData {
+        private String key;
+        private String value;
+        private int start;
+        private int end;
+
+        public ValueData(String key, String value, int start, int end) {
+            this.key = key;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * Receives flattened string values in document order.
+     */
+    private interface ValueHandler {
+        void value(String key, String value, YAMLParser parser) throws IOException;
+    }
+
     // Take a yml file and converts a flattened map object to upload
     // to Globalization Pipeline service
     @Override
     public LanguageBundle parse(InputStream inStream, FilterOptions options)
             throws IOException, ResourceFilterException {
 
-        char separator = '.';
+        final LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
+        try (InputStreamReader reader = new InputStreamReader(new BomInputStream(inStream), StandardCharsets.UTF_8)) {
+            readValues(reader, new ValueHandler() {
+                @Override
+                public void value(String key, String value, YAMLParser parser) {
+                    bb.addResourceString(key, value);
+                }
+            });
+        }
+        return bb.build();
+    }
 
-        YAMLFactory yf = new YAMLFactory();
-        ObjectMapper mapper = new ObjectMapper(yf);
-        Map<String, Object> YAML_map = new LinkedHashMap<String, Object>();
+    /**
+     * Reads the first document in the input and calls the handler for each
+     * string scalar value with a flattened key.
+     */
+    private static void readValues(Reader reader, ValueHandler handler)
+            throws IOException, ResourceFilterException {
+        try (YAMLParser parser = YAML_FACTORY.createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                // empty document
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IllegalResourceFormatException("The root of YAML document must be a mapping.");
+            }
 
-        // Reads contents of YAML file and converts it to a hashmap
-        YAML_map = mapper.readValue(inStream, new TypeReference<LinkedHashMap<String, Object>>() {
-        });
+            // key prefix of the current mapping, and lengths of parent prefixes
+            StringBuilder prefix = new StringBuilder(100);
+            int[] prefixLengths = new int[8];
+            int depth = 0;
+
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                case FIELD_NAME:
+                    break;
 
-        Map<String, String> resultMap = flattenMap("", YAML_map, new LinkedHashMap<String, String>(), separator);
+                case START_OBJECT:
+                    if (depth == prefixLengths.length) {
+                        prefixLengths = Arrays.copyOf(prefixLengths, depth * 2);
+                    }
+                    prefixLengths[depth++] = prefix.length();
+                    prefix.append(parser.getCurrentName()).append(SEPARATOR);
+                    break;
+
+                case END_OBJECT:
+                    if (depth == 0) {
+                        // end of the root mapping - ignore subsequent documents
+                        return;
+                    }
+                    prefix.setLength(prefixLengths[--depth]);
+                    break;
+
+                case START_ARRAY:
+                    // sequences are not supported
+                    parser.skipChildren();
+                    break;
+
+                case VALUE_STRING:
+                    if (!parser.isCurrentAlias()) {
+                        int len = prefix.length();
+                        String key = prefix.append(parser.getCurrentName()).toString();
+                        prefix.setLength(len);
+                        handler.value(key, parser.getText(), parser);
+                    }
+                    break;
 
-        LanguageBundleBuilder bb = new LanguageBundleBuilder(true);
-        for (Entry<String, String> entry : resultMap.entrySet()) {
-            bb.addResourceString(entry.getKey(), entry.getValue());
+                default:
+                    // numbers, booleans and nulls are not translatable
+                    break;
+                }
+            }
         }
-        return bb.build();
     }
 
-    // flattens map object from {a={b=c}} to {a<sep>b=c}
-    @SuppressWarnings("unchecked")
-    private Map<String, String> flattenMap(String prefix, Map<String, Object> map, Map<String, String> resource,
-            char separator) {
+    @Override
+    public void write(OutputStream outStream, LanguageBundle languageBundle,
+            FilterOptions options) throws IOException, ResourceFilterException {
 
-        for (Object key : map.keySet()) {
-            String key_str = (String) key;
-            Object value = map.get(key);
+        List<ResourceString> resStrings = groupByPrefix(languageBundle.getSortedResourceStrings());
 
-            // The only possible types for the KVP's are string (final value) or
-            // maps (intermediate)
-            boolean isString = value.getClass().equals(String.class);
-            boolean isMap = value.getClass().equals(LinkedHashMap.class);
+        Writer writer = new OutputStreamWriter(new BufferedOutputStream(outStream), StandardCharsets.UTF_8);
+        try (JsonGenerator generator = YAML_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
 
-            StringBuilder new_prefix = new StringBuilder(100);
-            new_prefix.append(prefix).append(key_str).append(separator);
+            // names of mappings currently open
+            List<String> openPath = new ArrayList<>();
+            for (ResourceString res : resStrings) {
+                String[] segments = splitKey(res.getKey());
+                int parentLen = segments.length - 1;
 
-            if (isString) {
-                // Gets rid of last character since we always append the dot at
-                // the end
-                resource.put(new_prefix.substring(0, new_prefix.length() - 1), (String) value);
+                int common = 0;
+                while (common < openPath.size() && common < parentLen
+                        && openPath.get(common).equals(segments[common])) {
+                    common++;
+                }
+                while (openPath.size() > common) {
+                    generator.writeEndObject();
+                    openPath.remove(openPath.size() - 1);
+                }
+                for (int i = common; i < parentLen; i++) {
+                    generator.writeFieldName(segments[i]);
+                    generator.writeStartObject();
+                    openPath.add(segments[i]);
+                }
+                generator.writeStringField(segments[parentLen], res.getValue());
             }
 
-            else if (isMap) {
-                flattenMap(new_prefix.toString(), (Map<String, Object>) value, resource, separator);
+            for (int i = 0; i < openPath.size(); i++) {
+                generator.writeEndObject();
             }
+            generator.writeEndObject();
         }
+        writer.flush();
+    }
 
-        return resource;
+    private static String[] splitKey(String key) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int idx;
+        while ((idx = key.indexOf(SEPARATOR, start)) >= 0) {
+            segments.add(key.substring(start, idx));
+            start = idx + 1;
+        }
+        segments.add(key.substring(start));
+        return segments.toArray(new String[segments.size()]);
     }
 
-    // Takes a flattened hashmap and creates a yml file
-    @SuppressWarnings("unchecked")
+    /**
+     * Sorts resource strings so that keys sharing the same prefix are adjacent,
+     * while keeping the order of first appearance of each prefix.
+     */
+    private static List<ResourceString> groupByPrefix(List<ResourceString> resStrings)
+            throws ResourceFilterException {
+        final Map<String, Integer> ranks = new HashMap<>();
+        Set<String> prefixes = new HashSet<>();
+        final Map<ResourceString, int[]> rankPaths = new HashMap<>();
+
+        for (ResourceString res : resStrings) {
+            String key = res.getKey();
+            String[] segments = splitKey(key);
+            int[] rankPath = new int[segments.length];
+            int len = 0;
+            for (int i = 0; i < segments.length; i++) {
+                len += segments[i].length();
+                String path = key.substring(0, len);
+                Integer rank = ranks.get(path);
+                if (rank == null) {
+                    rank = ranks.size();
+                    ranks.put(path, rank);
+                }
+                rankPath[i] = rank;
+                if (i < segments.length - 1) {
+                    prefixes.add(path);
+                }
+                len++;  // separator
+            }
+            rankPaths.put(res, rankPath);
+        }
+
+        for (ResourceString res : resStrings) {
+            if (prefixes.contains(res.getKey())) {
+                throw new ResourceFilterException("The key " + res.getKey()
+                    + " cannot be used for both a value and a mapping.");
+            }
+        }
+
+        List<ResourceString> sorted = new ArrayList<>(resStrings);
+        Collections.sort(sorted, new Comparator<ResourceString>() {
+            @Override
+            public int compare(ResourceString r1, ResourceString r2) {
+                int[] p1 = rankPaths.get(r1);
+                int[] p2 = rankPaths.get(r2);
+                for (int i = 0; i < p1.length && i < p2.length; i++) {
+                    if (p1[i] != p2[i]) {
+                        return p1[i] < p2[i] ? -1 : 1;
+                    }
+                }
+                return p1.length - p2.length;
+            }
+        });
+        return sorted;
+    }
+
+    /*
+     * Merges translated values into the base YAML document. Only scalar values of
+     * keys included in the language bundle are replaced, and all other contents
+     * including comments, anchors and formatting are copied to the output as is.
+     *
+     * (non-Javadoc)
+     * @see com.ibm.g11n.pipeline.resfilter.ResourceFilter#merge(java.io.InputStream, java.io.OutputStream, com.ibm.g11n.pipeline.resfilter.LanguageBundle, com.ibm.g11n.pipeline.resfilter.FilterOptions)
+     */
     @Override
-    public void write(OutputStream outStream, LanguageBundle languageBundle,
+    public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
             FilterOptions options) throws IOException, ResourceFilterException {
+        compileMergeTemplate(baseStream, options).apply(outStream, languageBundle, options);
+    }
 
-        List<ResourceString> resStrings = languageBundle.getSortedResourceStrings();
+    @Override
+    public MergeTemplate compileMergeTemplate(InputStream baseStream, FilterOptions options)
+            throws IOException, ResourceFilterException {
 
-        // First we need to unflatten the map before writing the file
-        char separator = '.';
+        // Load entire base content to CharSequence
+        CharArrayWriter caw = new CharArrayWriter();
+        try (InputStreamReader reader = new InputStreamReader(new BomInputStream(baseStream), StandardCharsets.UTF_8)) {
+            char[] buf = new char[1024];
+            int len;
+            while ((len = reader.read(buf)) >= 0) {
+                caw.write(buf, 0, len);
+            }
+        }
 
-        // map that we will alter in order to populate
-        HashMap<String, Object> temp_map = new HashMap<String, Object>();
+        final char[] baseContent = caw.toCharArray();
+        final int[] lineStarts = getLineStarts(baseContent);
+
+        // Parse base YAML and extract key-value data
+        final List<ValueData> baseValues = new ArrayList<>();
+        readValues(new CharArrayReader(baseContent), new ValueHandler() {
+            @Override
+            public void value(String key, String value, YAMLParser parser) {
+                int start = toOffset(baseContent, lineStarts, parser.getTokenLocation());
+                int end = toOffset(baseContent, lineStarts, parser.getCurrentLocation());
+                baseValues.add(new ValueData(key, value, start, end));
+            }
+        });
 
-        // map that points to the top so we always have a reference
-        HashMap<String, Object> new_map = temp_map;
+        return new YMLMergeTemplate(baseContent, baseValues);
+    }
 
-        for (ResourceString res : resStrings) {
-            String value = res.getValue();
-            String key = res.getKey();
-            String[] temp = key.split("\\" + separator);
+    private static final class YMLMergeTemplate extends MergeTemplate {
+        private final char[] baseContent;
+        private final List<ValueData> baseValues;
 
-            for (int i = 0; i < temp.length; i++) {
+        YMLMergeTemplate(char[] baseContent, List<ValueData> baseValues) {
+            this.baseContent = baseContent;
+            this.baseValues = baseValues;
+        }
 
-                // last intermediate key - insert value
-                if (i == temp.length - 1) {
-                    temp_map.put(temp[i], value);
+        @Override
+        public void apply(OutputStream outStream, LanguageBundle languageBundle, FilterOptions options)
+                throws IOException, ResourceFilterException {
+            // Merge translated value
+            Map<String, String> kvMap = Utils.createKeyValueMap(languageBundle.getResourceStrings());
+
+            Writer writer = new OutputStreamWriter(new BufferedOutputStream(outStream), StandardCharsets.UTF_8);
+            int idx = 0;    // current index in baseContent
+            for (ValueData valData : baseValues) {
+                String translatedValue = kvMap.get(valData.getKey());
+                if (translatedValue == null || translatedValue.equals(valData.getValue())) {
+                    // use original value
+                    continue;
                 }
 
-                // still in intermediary key - insert a new map
-                else {
-                    if (!temp_map.containsKey(temp[i])) {
-                        temp_map.put(temp[i], new HashMap<String, Object>());
+                int start = skipNodeProperties(baseContent, valData.getStart(), valData.getEnd());
+                int end = valData.getEnd();
+                char style = baseContent[start];
+                if (style == '|' || style == '>') {
+                    // block scalar includes trailing line breaks
+                    while (end > start && isWhitespace(baseContent[end - 1])) {
+                        end--;
                     }
-                    temp_map = (HashMap<String, Object>) temp_map.get(temp[i]);
                 }
-            }
 
-            // reset map to point to top of HashMap
-            temp_map = new_map;
+                // write out text up to the start of the original value
+                writer.write(baseContent, idx, start - idx);
+                writer.write(formatScalar(translatedValue, style));
+                idx = end;
+            }
+            if (idx < baseContent.length) {
+                writer.write(baseContent, idx, baseContent.length - idx);
+            }
+            writer.flush();
         }
-
-        // Actually write out the file
-        writeFile(outStream, temp_map, 0);
     }
 
-    // Helper function to actually write the file
-    // Assume the difference between depth n and depth n+1 is 1 whitespace
-    @SuppressWarnings("unchecked")
-    private void writeFile(OutputStream writer, Map<String, Object> map, int depth) throws IOException {
-        StringBuilder whiteSpace = new StringBuilder(100);
-        StringBuilder toWrite = new StringBuilder(100);
+    /**
+     * Returns start offsets of lines, using the same line break
+     * characters as the YAML parser.
+     */
+    private static int[] getLineStarts(char[] content) {
+        int[] starts = new int[64];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 0; i < content.length; i++) {
+            char c = content[i];
+            if (c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029'
+                    || (c == '\r' && (i + 1 == content.length || content[i + 1] != '\n'))) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
 
-        for (int i = 0; i < depth; i++) {
-            whiteSpace.append(" ");
+    /**
+     * Converts a parser location to an offset in the content. The parser
+     * reports columns in code points.
+     */
+    private static int toOffset(char[] content, int[] lineStarts, JsonLocation location) {
+        int line = location.getLineNr() - 1;
+        if (line >= lineStarts.length) {
+            return content.length;
         }
+        int lineStart = lineStarts[line];
+        int lineLimit = line + 1 < lineStarts.length ? lineStarts[line + 1] : content.length;
+        return Character.offsetByCodePoints(content, lineStart, lineLimit - lineStart,
+                lineStart, location.getColumnNr() - 1);
+    }
 
-        for (Object key : map.keySet()) {
-            toWrite.append(whiteSpace).append((String) key).append(":");
-            Object value = map.get(key);
+    /**
+     * Skips an anchor and a tag preceding a scalar value.
+     */
+    private static int skipNodeProperties(char[] content, int start, int end) {
+        int idx = start;
+        while (idx < end && (content[idx] == '&' || content[idx] == '!')) {
+            while (idx < end && !isWhitespace(content[idx])) {
+                idx++;
+            }
+            while (idx < end && isWhitespace(content[idx])) {
+                idx++;
+            }
+        }
+        return idx < end ? idx : start;
+    }
 
-            boolean isString = value.getClass().equals(String.class);
-            boolean isMap = value.getClass().equals(HashMap.class);
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
 
-            // only append the value if we know type of value is a string and
-            // append the new line character
-            toWrite.append((isString) ? new StringBuilder((" \"")).append((String) value).append("\"") : "")
-                    .append("\n");
-            writer.write(toWrite.toString().getBytes(Charset.forName("UTF-8")));
+    // plain scalars which would be resolved to other than a string
+    private static final Pattern NON_STRING_PLAIN = Pattern.compile(
+            "~|null|Null|NULL|true|True|TRUE|false|False|FALSE|yes|Yes|YES|no|No|NO|on|On|ON|off|Off|OFF"
+            + "|[-+]?(\\.[0-9]+|[0-9][0-9_]*(\\.[0-9_]*)?)([eE][-+]?[0-9]+)?"
+            + "|0x[0-9a-fA-F_]+|0o?[0-7_]+|[-+]?\\.(inf|Inf|INF)|\\.(nan|NaN|NAN)");
+
+    /**
+     * Formats a value as a YAML scalar, using the original style when possible.
+     */
+    static String formatScalar(String value, char style) {
+        if (style == '\'' && !hasSpecialChar(value)) {
+            return '\'' + value.replace("'", "''") + '\'';
+        }
+        if (style != '"' && style != '\'' && style != '|' && style != '>' && isPlainSafe(value)) {
+            return value;
+        }
 
-            if (isMap) {
-                Map<String, Object> valueMap = (Map<String, Object>) value;
-                writeFile(writer, valueMap, depth + 1);
+        StringBuilder buf = new StringBuilder(value.length() + 2);
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                buf.append("\\\"");
+                break;
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            default:
+                if (isSpecialChar(c)) {
+                    buf.append(String.format("\\u%04X", (int) c));
+                } else {
+                    buf.append(c);
+                }
+                break;
             }
+        }
+        buf.append('"');
+        return buf.toString();
+    }
+
+    private static boolean isSpecialChar(char c) {
+        return c < 0x20 || c == 0x7F || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
 
-            toWrite.replace(0, toWrite.length(), "");
+    private static boolean hasSpecialChar(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (isSpecialChar(value.charAt(i))) {
+                return true;
+            }
         }
-        return;
+        return false;
     }
 
-    // TODO: Implement merge method
-    //
-    // public void merge(InputStream baseStream, OutputStream outStream, LanguageBundle languageBundle,
-    //        Locale textProcessingLocale) throws IOException, ResourceFilterException
+    private static boolean isPlainSafe(String value) {
+        if (value.isEmpty() || hasSpecialChar(value)
+                || isWhitespace(value.charAt(0)) || isWhitespace(value.charAt(value.length() - 1))) {
+            return false;
+        }
+        if ("-?:,[]{}#&*!|>'\"%@`".indexOf(value.charAt(0)) >= 0) {
+            return false;
+        }
+        if (value.contains(": ") || value.contains(" #") || value.endsWith(":")) {
+            return false;
+        }
+        return !NON_STRING_PLAIN.matcher(value).matches();
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.custom;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.g11n.pipeline.resfilter.FilterInfo;
+import com.ibm.g11n.pipeline.resfilter.FilterInfo.Type;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterProvider;
+
+/**
+ * Custom resource filter provider recording class initialization, for testing
+ * lazy loading of providers listed in a filter index.
+ * <p>
+ * This provider is not registered in the test service configuration file. Tests
+ * register it through a class loader serving a service configuration file and
+ * a filter index file.
+ *
+ * @author yoshito_umaoka
+ */
+public class LazyResourceFilterProvider extends ResourceFilterProvider {
+    public static final String LAZY_A = "LAZY_A";
+    public static final String LAZY_B = "LAZY_B";
+
+    /**
+     * Records names of classes initialized so far. Accessing this class does not
+     * initialize the enclosing provider class.
+     */
+    public static final class Initialized {
+        public static final Set<String> NAMES =
+                Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private Initialized() {
+        }
+    }
+
+    static {
+        Initialized.NAMES.add(LazyResourceFilterProvider.class.getSimpleName());
+    }
+
+    @Override
+    public Iterator<FilterInfo> getAvailableResourceFilters() {
+        return Arrays.asList(
+                new FilterInfo(Type.SINGLE, LAZY_A),
+                new FilterInfo(Type.SINGLE, LAZY_B)).iterator();
+    }
+
+    @Override
+    public ResourceFilter getResourceFilter(String id) {
+        switch (id.toUpperCase(Locale.ROOT)) {
+        case LAZY_A:
+            return new LazyFilterA();
+        case LAZY_B:
+            return new LazyFilterB();
+        default:
+            return null;
+        }
+    }
+
+    @Override
+    public MultiBundleResourceFilter getMultiBundleResourceFilter(String id) {
+        return null;
+    }
+
+    public static class LazyFilterA extends MockResourceFilter {
+        static {
+            Initialized.NAMES.add(LazyFilterA.class.getSimpleName());
+        }
+    }
+
+    public static class LazyFilterB extends MockResourceFilter {
+        static {
+            Initialized.NAMES.add(LazyFilterB.class.getSimpleName());
+        }
+    }
+}
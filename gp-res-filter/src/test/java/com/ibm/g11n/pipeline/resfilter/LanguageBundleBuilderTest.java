@@ -0,0 +1,136 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test cases for {@link LanguageBundleBuilder}.
+ *
+ * @author yoshito_umaoka
+ */
+public class LanguageBundleBuilderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static void addResourceStrings(LanguageBundleBuilder builder) {
+        // added in reverse order, with some strings without sequence numbers
+        for (int i = 1000; i > 0; i--) {
+            ResourceString.Builder resb = ResourceString.with("key" + i, "value " + i);
+            if (i % 10 != 0) {
+                resb.sequenceNumber(i);
+            }
+            if (i % 3 == 0) {
+                resb.notes(Arrays.asList("note " + i, ""));
+            }
+            if (i % 7 == 0) {
+                resb.addMetadata("meta", "data " + i).sourceValue("source " + i);
+            }
+            if (i % 11 == 0) {
+                resb.notes(Collections.<String>emptyList());
+            }
+            builder.addResourceString(resb);
+        }
+    }
+
+    @Test
+    public void testSpillThreshold() throws IOException {
+        LanguageBundleBuilder inMemory = new LanguageBundleBuilder(false);
+        addResourceStrings(inMemory);
+        LanguageBundle expected = inMemory.build();
+
+        File spillDir = tempFolder.newFolder();
+        LanguageBundleBuilder spilling = new LanguageBundleBuilder(false)
+                .spillThreshold(64)
+                .spillDirectory(spillDir);
+        addResourceStrings(spilling);
+        spilling.addNote("bundle note");
+        LanguageBundle actual = spilling.build();
+
+        assertTrue("Temporary files", spillDir.list().length > 0);
+        assertEquals("Number of resource strings", expected.getResourceStrings().size(),
+                actual.getResourceStrings().size());
+        assertEquals("Bundle notes", Arrays.asList("bundle note"), actual.getNotes());
+
+        List<ResourceString> expectedSorted = expected.getSortedResourceStrings();
+        assertEquals("Sorted resource strings", expectedSorted, actual.getSortedResourceStrings());
+
+        List<ResourceString> iterated = new ArrayList<>();
+        for (ResourceString resString : actual.getSortedResourceStringsIterable()) {
+            iterated.add(resString);
+        }
+        assertEquals("Sorted resource strings iterable", expectedSorted, iterated);
+
+        // the builder can be reused after build()
+        spilling.addResourceString("key1001", "value 1001", 1001);
+        assertEquals("Number of resource strings in the first bundle", expectedSorted.size(),
+                actual.getSortedResourceStrings().size());
+        assertEquals("Number of resource strings in the second bundle", expectedSorted.size() + 1,
+                spilling.build().getSortedResourceStrings().size());
+    }
+
+    @Test
+    public void testCloseSpilledBundle() throws IOException {
+        File spillDir = tempFolder.newFolder();
+        LanguageBundleBuilder spilling = new LanguageBundleBuilder(false)
+                .spillThreshold(64)
+                .spillDirectory(spillDir);
+        addResourceStrings(spilling);
+        LanguageBundle bundle = spilling.build();
+        assertTrue("Temporary files", spillDir.list().length > 0);
+
+        // abandons an iterator in the middle
+        Iterator<ResourceString> itr = bundle.getSortedResourceStringsIterable().iterator();
+        itr.next();
+        itr.next();
+
+        bundle.close();
+        assertEquals("Temporary files after close", 0, spillDir.list().length);
+        try {
+            bundle.getSortedResourceStringsIterable().iterator();
+            fail("Resource strings must not be available after close");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // closing again does nothing
+        bundle.close();
+    }
+
+    @Test
+    public void testCloseInMemoryBundle() {
+        LanguageBundleBuilder inMemory = new LanguageBundleBuilder(false);
+        addResourceStrings(inMemory);
+        LanguageBundle bundle = inMemory.build();
+        int size = bundle.getResourceStrings().size();
+        bundle.close();
+        assertEquals("Resource strings after close", size, bundle.getSortedResourceStrings().size());
+    }
+}
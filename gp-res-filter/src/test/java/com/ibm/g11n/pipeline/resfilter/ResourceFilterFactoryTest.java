@@ -1,5 +1,5 @@
 /*  
- * Copyright IBM Corp. 2018
+ * Copyright IBM Corp. 2018, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,16 +15,36 @@
  */
 package com.ibm.g11n.pipeline.resfilter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.ibm.g11n.pipeline.custom.LazyResourceFilterProvider;
 import com.ibm.g11n.pipeline.resfilter.FilterInfo.Type;
+import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
 
 /**
  * Test cases for {@link ResourceFilterFactory}.
@@ -33,6 +53,9 @@ import com.ibm.g11n.pipeline.resfilter.FilterInfo.Type;
  */
 public class ResourceFilterFactoryTest {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void testDefaultFactory() {
         Set<String> availableFilters = ResourceFilterFactory.getAvailableFilterIds();
@@ -107,4 +130,105 @@ public class ResourceFilterFactoryTest {
             }
         }
     }
+
+    @Test
+    public void testDefaultFilterIndex() {
+        // The filter index must be consistent with the default provider
+        ResourceFilterFactory factory = ResourceFilterFactory.getDefaultInstance();
+        Set<String> defaultIds = new HashSet<>();
+        Iterator<FilterInfo> filtItr = new DefaultResourceFilterProvider().getAvailableResourceFilters();
+        while (filtItr.hasNext()) {
+            FilterInfo expected = filtItr.next();
+            defaultIds.add(expected.getId());
+            FilterInfo actual = factory.filterInfo(expected.getId());
+            assertNotNull("FilterInfo for " + expected.getId(), actual);
+            assertEquals("Filter ID", expected.getId(), actual.getId());
+            assertEquals("Filter type for " + expected.getId(), expected.getType(), actual.getType());
+        }
+
+        // filters from the custom provider (not indexed) are also available
+        Set<String> customIds = new HashSet<>(factory.availableFilterIds());
+        customIds.removeAll(defaultIds);
+        assertEquals("Filters not provided by the default provider", 1, customIds.size());
+    }
+
+    @Test
+    public void testDefaultFilterIndexEntries() throws IOException {
+        // Entries of the default provider in the filter index resources
+        String providerClass = DefaultResourceFilterProvider.class.getName();
+        Set<String> indexed = new HashSet<>();
+        Enumeration<URL> indexUrls = getClass().getClassLoader()
+                .getResources(ResourceFilterFactory.FILTER_INDEX_RESOURCE);
+        while (indexUrls.hasMoreElements()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    indexUrls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int commentIdx = line.indexOf('#');
+                    if (commentIdx >= 0) {
+                        line = line.substring(0, commentIdx);
+                    }
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] fields = line.split("\\s+");
+                    assertEquals("Fields in line: " + line, 3, fields.length);
+                    if (fields[0].equals(providerClass)) {
+                        assertTrue("Duplicate entry: " + line, indexed.add(fields[1] + " " + fields[2]));
+                    }
+                }
+            }
+        }
+
+        Set<String> provided = new HashSet<>();
+        Iterator<FilterInfo> filtItr = new DefaultResourceFilterProvider().getAvailableResourceFilters();
+        while (filtItr.hasNext()) {
+            FilterInfo filterInfo = filtItr.next();
+            provided.add(filterInfo.getId() + " " + filterInfo.getType().name());
+        }
+        assertEquals("Filter index entries of the default provider", provided, indexed);
+    }
+
+    @Test
+    public void testLazyProviderLoading() throws IOException {
+        // Registers the test provider through the service configuration file
+        // and the filter index file served by a class loader
+        String providerClass = LazyResourceFilterProvider.class.getName();
+        File root = tempFolder.getRoot();
+        writeResource(root, "META-INF/services/" + ResourceFilterProvider.class.getName(),
+                providerClass + "\n");
+        writeResource(root, ResourceFilterFactory.FILTER_INDEX_RESOURCE,
+                "# test index\n"
+                + providerClass + " " + LazyResourceFilterProvider.LAZY_A + " SINGLE\n"
+                + providerClass + " " + LazyResourceFilterProvider.LAZY_B + " SINGLE\n");
+
+        Set<String> initialized = LazyResourceFilterProvider.Initialized.NAMES;
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {root.toURI().toURL()},
+                getClass().getClassLoader())) {
+            ResourceFilterFactory factory = ResourceFilterFactory.getInstance(cl);
+            assertTrue("LAZY_A is available", factory.availableFilterIds().contains("LAZY_A"));
+            assertEquals("Type of LAZY_B", Type.SINGLE, factory.filterInfo("lazy_b").getType());
+            assertTrue("Provider is not initialized by creating a factory", initialized.isEmpty());
+
+            // Requesting a filter of another provider does not initialize the test provider
+            assertNotNull("JSON filter", factory.resourceFilter("JSON"));
+            assertTrue("Provider is not initialized by requesting JSON filter", initialized.isEmpty());
+
+            // Requesting LAZY_A initializes the provider and LAZY_A filter only
+            assertNotNull("LAZY_A filter", factory.resourceFilter("lazy_a"));
+            assertTrue("Provider is initialized", initialized.contains("LazyResourceFilterProvider"));
+            assertTrue("LAZY_A filter is initialized", initialized.contains("LazyFilterA"));
+            assertFalse("LAZY_B filter is not initialized", initialized.contains("LazyFilterB"));
+        }
+    }
+
+    private static void writeResource(File root, String name, String content) throws IOException {
+        File file = new File(root, name);
+        file.getParentFile().mkdirs();
+        try (OutputStream os = Files.newOutputStream(file.toPath());
+                Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
 }
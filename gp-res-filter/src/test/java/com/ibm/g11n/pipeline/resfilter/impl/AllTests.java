@@ -28,6 +28,7 @@ import org.junit.runners.Suite.SuiteClasses;
     IOSStringsResourceTest.class,
     JavaPropertiesResourceTest.class,
     JsonResourceTest.class,
+    MultiBundleXLIFFResourceTest.class,
     POResourceTest.class,
     POTResourceTest.class,
     XLIFFResourceTest.class,
@@ -15,9 +15,11 @@
  */
 package com.ibm.g11n.pipeline.resfilter.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -36,6 +38,7 @@ import org.junit.Test;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
@@ -46,6 +49,7 @@ import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
  */
 public class AmdJsResourceTest {
     private static final File INPUT_FILE = new File("src/test/resource/resfilter/amdjs/input.js");
+    private static final File INPUT_FUNCTION_FILE = new File("src/test/resource/resfilter/amdjs/input-function.js");
 
     private static final File EXPECTED_WRITE_FILE = new File("src/test/resource/resfilter/amdjs/write-output.js");
 
@@ -132,6 +136,19 @@ public class AmdJsResourceTest {
         }
     }
 
+    @Test
+    public void testParseFunction() throws IOException, ResourceFilterException {
+        assertTrue("The input test file <" + INPUT_FUNCTION_FILE + "> does not exist.", INPUT_FUNCTION_FILE.exists());
+
+        // not a simple define({...}) form - parsed by the JavaScript parser
+        try (InputStream is = new FileInputStream(INPUT_FUNCTION_FILE)) {
+            LanguageBundle bundle = res.parse(is, null);
+            List<ResourceString> resStrList = new ArrayList<>(bundle.getResourceStrings());
+            Collections.sort(resStrList, new ResourceStringComparator());
+            assertEquals("ResourceStrings did not match.", EXPECTED_INPUT_RES_LIST, resStrList);
+        }
+    }
+
     @Test
     public void testWrite() throws IOException, ResourceFilterException {
         File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".js");
@@ -178,4 +195,41 @@ public class AmdJsResourceTest {
             assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_3_FILE, tempFile));
         }
     }
+
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        File[][] cases = {
+            {MERGE_INPUT_1_FILE, EXPECTED_MERGE_1_FILE},
+            {MERGE_INPUT_2_FILE, EXPECTED_MERGE_2_FILE},
+            {MERGE_INPUT_3_FILE, EXPECTED_MERGE_3_FILE},
+        };
+        Locale[] locales = {Locale.ENGLISH, Locale.ENGLISH, Locale.JAPANESE};
+
+        for (int i = 0; i < cases.length; i++) {
+            FilterOptions options = new FilterOptions(locales[i]);
+            MergeTemplate template;
+            try (InputStream is = new FileInputStream(cases[i][0])) {
+                template = res.compileMergeTemplate(is, options);
+            }
+
+            // the template is not modified by applying it to another bundle
+            template.apply(new ByteArrayOutputStream(), new LanguageBundleBuilder(false).build(), options);
+
+            File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".js");
+            tempFile.deleteOnExit();
+            try (OutputStream os = new FileOutputStream(tempFile)) {
+                template.apply(os, MERGE_BUNDLE, options);
+            }
+            assertTrue(ResourceTestUtil.compareFiles(cases[i][1], tempFile));
+
+            ByteArrayOutputStream applied = new ByteArrayOutputStream();
+            template.apply(applied, MERGE_BUNDLE, options);
+            ByteArrayOutputStream merged = new ByteArrayOutputStream();
+            try (InputStream is = new FileInputStream(cases[i][0])) {
+                res.merge(is, merged, MERGE_BUNDLE, options);
+            }
+            assertArrayEquals("Template output of " + cases[i][0].getName(),
+                    merged.toByteArray(), applied.toByteArray());
+        }
+    }
 }
@@ -36,6 +36,7 @@ import org.junit.Test;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
@@ -185,4 +186,28 @@ public class AndroidStringsResourceTest {
             assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_2_FILE, tempFile));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        File[] inputs = {MERGE_INPUT_1_FILE, MERGE_INPUT_2_FILE};
+        File[] expected = {EXPECTED_MERGE_1_FILE, EXPECTED_MERGE_2_FILE};
+        Locale[] locales = {Locale.ENGLISH, Locale.JAPANESE};
+
+        for (int i = 0; i < inputs.length; i++) {
+            MergeTemplate template;
+            try (InputStream is = new FileInputStream(inputs[i])) {
+                template = res.compileMergeTemplate(is, new FilterOptions(Locale.ROOT));
+            }
+
+            // the same template can be applied multiple times
+            for (int j = 0; j < 2; j++) {
+                File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xml");
+                tempFile.deleteOnExit();
+                try (OutputStream os = new FileOutputStream(tempFile)) {
+                    template.apply(os, MERGE_BUNDLE, new FilterOptions(locales[i]));
+                }
+                assertTrue(ResourceTestUtil.compareFiles(expected[i], tempFile));
+            }
+        }
+    }
+}
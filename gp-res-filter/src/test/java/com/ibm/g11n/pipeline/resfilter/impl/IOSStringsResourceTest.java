@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2016, 2018
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,12 +18,14 @@ package com.ibm.g11n.pipeline.resfilter.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -36,6 +38,7 @@ import org.junit.Test;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
@@ -147,6 +150,44 @@ public class IOSStringsResourceTest {
         }
     }
 
+    @Test
+    public void testParseEscapes() throws IOException, ResourceFilterException {
+        String input = "// line comment\n"
+                + "\"equation\" = \"a \\\" = \\\" b\"; /* trailing */\n"
+                + "\"semicolon;\"=\"x;\";\n";
+
+        try (InputStream is = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))) {
+            LanguageBundle bundle = res.parse(is, null);
+            List<ResourceString> resStrList = new ArrayList<>(bundle.getResourceStrings());
+            Collections.sort(resStrList, new ResourceStringComparator());
+
+            List<ResourceString> expected = Arrays.asList(
+                    ResourceString.with("equation", "a \\\" = \\\" b").sequenceNumber(1)
+                        .notes(Arrays.asList(" line comment")).build(),
+                    ResourceString.with("semicolon;", "x;").sequenceNumber(2).build());
+            assertEquals("ResourceStrings did not match.", expected, resStrList);
+        }
+    }
+
+    @Test
+    public void testParseSkipsUnquotedLines() throws IOException, ResourceFilterException {
+        String input = "\"first\" = \"1\";\n"
+                + "unquoted = \"ignored\";\n"
+                + "= \"ignored\";\n"
+                + "\"second\" = \"2\"; junk\n";
+
+        try (InputStream is = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))) {
+            LanguageBundle bundle = res.parse(is, null);
+            List<ResourceString> resStrList = new ArrayList<>(bundle.getResourceStrings());
+            Collections.sort(resStrList, new ResourceStringComparator());
+
+            List<ResourceString> expected = Arrays.asList(
+                    ResourceString.with("first", "1").sequenceNumber(1).build(),
+                    ResourceString.with("second", "2").sequenceNumber(2).build());
+            assertEquals("ResourceStrings did not match.", expected, resStrList);
+        }
+    }
+
     @Test
     public void testWrite() throws IOException, ResourceFilterException {
         File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".strings");
@@ -159,6 +200,29 @@ public class IOSStringsResourceTest {
         }
     }
 
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        MergeTemplate template;
+        try (InputStream is = new FileInputStream(MERGE_INPUT_1_FILE)) {
+            template = res.compileMergeTemplate(is, new FilterOptions(Locale.ENGLISH));
+        }
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".strings");
+        tempFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            template.apply(os, MERGE_BUNDLE, new FilterOptions(Locale.ENGLISH));
+        }
+        assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_1_FILE, tempFile));
+
+        // the same template can be applied to another bundle
+        tempFile = File.createTempFile(this.getClass().getSimpleName(), ".strings");
+        tempFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            template.apply(os, new LanguageBundleBuilder(false).build(), new FilterOptions(Locale.ENGLISH));
+        }
+        assertTrue(ResourceTestUtil.compareFiles(MERGE_INPUT_1_FILE, tempFile));
+    }
+
     @Test
     public void testMerge() throws IOException, ResourceFilterException {
         File tempFile;
@@ -1,5 +1,5 @@
 /*
- * Copyright IBM Corp. 2016, 2017
+ * Copyright IBM Corp. 2016, 2020
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -26,6 +27,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,6 +41,7 @@ import org.junit.Test;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
@@ -244,6 +247,86 @@ public class JavaPropertiesResourceTest {
         }
     }
 
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        MergeTemplate template;
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            template = res.compileMergeTemplate(is, new FilterOptions(Locale.ENGLISH));
+        }
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".properties");
+        tempFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            template.apply(os, WRITE_BUNDLE, new FilterOptions(Locale.ENGLISH));
+        }
+        assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+
+        // the same template can be applied to another bundle
+        tempFile = File.createTempFile(this.getClass().getSimpleName(), ".properties");
+        tempFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            template.apply(os, new LanguageBundleBuilder(false).build(), new FilterOptions(Locale.ENGLISH));
+        }
+        assertTrue(ResourceTestUtil.compareFiles(INPUT_FILE, tempFile));
+    }
+
+    @Test
+    public void testParseParallel() throws IOException, ResourceFilterException {
+        StringBuilder text = new StringBuilder();
+        text.append("# global note\n\n");
+        for (int i = 0; i < 20000; i++) {
+            if (i % 7 == 0) {
+                text.append("# note for key").append(i).append("\r\n");
+            }
+            if (i % 11 == 0) {
+                text.append("\n");
+            }
+            if (i % 5 == 0) {
+                text.append("key").append(i).append(" = first line \\\n    second line {0}\\\n");
+                text.append("    third line\n");
+            } else if (i % 3 == 0) {
+                text.append("key").append(i).append(" = crlf first \\\r\n    crlf second\r\n");
+            } else if (i % 13 == 0) {
+                // duplicated key - last one wins
+                text.append("key").append(i - 1).append(" : value \\\\\n");
+            } else {
+                text.append("key").append(i).append("=value ").append(i).append("\n");
+            }
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        LanguageBundle expected;
+        try (InputStream is = new ByteArrayInputStream(bytes)) {
+            expected = res.parse(is, null);
+        }
+
+        FilterOptions options = new FilterOptions(Locale.ENGLISH);
+        options.setCustomParams(Collections.singletonMap(JavaPropertiesResource.PARALLEL_PARSE_PARAM, "true"));
+        LanguageBundle actual;
+        try (InputStream is = new ByteArrayInputStream(bytes)) {
+            actual = res.parse(is, options);
+        }
+
+        assertEquals("Global notes did not match.", expected.getNotes(), actual.getNotes());
+        assertEquals("ResourceStrings did not match.", expected.getSortedResourceStrings(),
+                actual.getSortedResourceStrings());
+
+        // each chunk must end at a logical line boundary
+        List<String> chunks = JavaPropertiesResource.splitChunks(text, 100);
+        assertTrue("Number of chunks", chunks.size() > 1);
+        StringBuilder joined = new StringBuilder();
+        for (String chunk : chunks) {
+            assertTrue("Chunk ends with a continuation line: " + chunk, chunk.endsWith("\n")
+                    && !chunk.endsWith("\\\n") && !chunk.endsWith("\\\r\n") || chunk.endsWith("\\\\\n"));
+            joined.append(chunk);
+        }
+        assertEquals("Joined chunks", text.toString(), joined.toString());
+
+        // a cut point on '\n' of "\r\n" following a continuation backslash
+        assertEquals("CRLF continuation chunks", Arrays.asList("key=a\\\r\n    b\r\n", "k2=c\r\n"),
+                JavaPropertiesResource.splitChunks("key=a\\\r\n    b\r\nk2=c\r\n", 7));
+    }
+
     @Test
     public void testPropDefParseLine() throws IOException {
         assertTrue("The input test file <" + PARSE_TEST_INPUT_FILE + "> does not exist.",
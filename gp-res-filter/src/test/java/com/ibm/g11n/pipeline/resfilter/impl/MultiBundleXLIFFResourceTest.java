@@ -0,0 +1,246 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.resfilter.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xmlunit.matchers.CompareMatcher;
+
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MultiBundleResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * Test cases for {@link MultiBundleXLIFFResource}.
+ *
+ * @author yoshito_umaoka
+ */
+public class MultiBundleXLIFFResourceTest {
+    private static final File INPUT_FILE = new File("src/test/resource/resfilter/xliff/multi-input.xlf");
+    private static final File EXPECTED_WRITE_FILE = new File("src/test/resource/resfilter/xliff/multi-write-output.xlf");
+    private static final File EXPECTED_MERGE_FILE = new File("src/test/resource/resfilter/xliff/multi-merge-output.xlf");
+    private static final File EXPECTED_MERGE_LOOKUP_FILE =
+            new File("src/test/resource/resfilter/xliff/multi-merge-lookup-output.xlf");
+
+    private static final Map<String, LanguageBundle> BUNDLES;
+
+    static {
+        BUNDLES = new LinkedHashMap<>();
+
+        LanguageBundleBuilder greetings = new LanguageBundleBuilder(false);
+        greetings.addResourceString("msg_hello", "こんにちは & <ようこそ>", 1, null, "Hello");
+        greetings.embeddedLanguageCode("ja");
+        BUNDLES.put("greetings", greetings.build());
+
+        LanguageBundleBuilder foods = new LanguageBundleBuilder(false);
+        foods.addResourceString("orange", "オレンジ", 2, null, "Orange");
+        foods.addResourceString("apple", "りんご", 1, null, "Apple");
+        foods.embeddedLanguageCode("ja");
+        BUNDLES.put("foods", foods.build());
+    }
+
+    private static final MultiBundleResourceFilter res =
+            ResourceFilterFactory.getMultiBundleResourceFilter("XLIFF-MULTI");
+
+    @Test
+    public void testFactory() {
+        assertNotNull("Multi-bundle resource filter for XLIFF-MULTI", res);
+        assertEquals("Resource filter class", MultiBundleXLIFFResource.class, res.getClass());
+    }
+
+    @Test
+    public void testParse() throws IOException, ResourceFilterException {
+        assertTrue("The input test file <" + INPUT_FILE + "> does not exist.", INPUT_FILE.exists());
+
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            Map<String, LanguageBundle> bundles = res.parse(is, null);
+            assertEquals("Bundle IDs", Arrays.asList("foods", "greetings", "other"),
+                    Arrays.asList(bundles.keySet().toArray()));
+
+            LanguageBundle foods = bundles.get("foods");
+            assertEquals("Target language of foods", "ja", foods.getEmbeddedLanguageCode());
+            assertEquals("Source language of foods", "en", foods.getEmbeddedSourceLanguageCode());
+            assertEquals("Resource strings of foods", Arrays.asList(
+                    ResourceString.with("apple", "Apple").sequenceNumber(1).build(),
+                    ResourceString.with("orange", "Orange").sequenceNumber(2).build()),
+                    foods.getSortedResourceStrings());
+
+            List<ResourceString> greetings = bundles.get("greetings").getSortedResourceStrings();
+            assertEquals("Resource strings of greetings", Arrays.asList(
+                    ResourceString.with("msg_hello", "Hello").sequenceNumber(1).build(),
+                    ResourceString.with("msg_bye", "Bye").sequenceNumber(2).build()),
+                    greetings);
+
+            assertEquals("Resource strings of other", 1, bundles.get("other").getResourceStrings().size());
+        }
+    }
+
+    @Test
+    public void testParseConsumer() throws IOException, ResourceFilterException {
+        final List<String> bundleIds = new ArrayList<>();
+        final List<ResourceString> resStrings = new ArrayList<>();
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            res.parse(is, new MultiBundleResourceFilter.ResourceStringConsumer() {
+                @Override
+                public void accept(String bundleId, ResourceString resString) {
+                    bundleIds.add(bundleId);
+                    resStrings.add(resString);
+                }
+            }, null);
+        }
+        assertEquals("Bundle IDs in document order",
+                Arrays.asList("foods", "foods", "greetings", "greetings", "other"), bundleIds);
+        assertEquals("Resource strings in document order", Arrays.asList(
+                ResourceString.with("apple", "Apple").sequenceNumber(1).build(),
+                ResourceString.with("orange", "Orange").sequenceNumber(2).build(),
+                ResourceString.with("msg_hello", "Hello").sequenceNumber(1).build(),
+                ResourceString.with("msg_bye", "Bye").sequenceNumber(2).build()),
+                resStrings.subList(0, 4));
+
+        // the same resource strings with the parse result
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            Map<String, LanguageBundle> bundles = res.parse(is, null);
+            assertEquals(bundles.get("other").getSortedResourceStrings(), resStrings.subList(4, 5));
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException, ResourceFilterException {
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
+        tempFile.deleteOnExit();
+
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            res.write(os, BUNDLES, new FilterOptions(Locale.JAPANESE));
+            os.flush();
+            assertThat(EXPECTED_WRITE_FILE, CompareMatcher.isIdenticalTo(tempFile));
+        }
+    }
+
+    @Test
+    public void testMerge() throws IOException, ResourceFilterException {
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
+        tempFile.deleteOnExit();
+
+        try (OutputStream os = new FileOutputStream(tempFile);
+                InputStream is = new FileInputStream(INPUT_FILE)) {
+            res.merge(is, os, BUNDLES, new FilterOptions(Locale.JAPANESE));
+            os.flush();
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+        }
+    }
+
+    @Test
+    public void testMergeLookup() throws IOException, ResourceFilterException {
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
+        tempFile.deleteOnExit();
+
+        final List<String> lookups = new ArrayList<>();
+        try (OutputStream os = new FileOutputStream(tempFile);
+                InputStream is = new FileInputStream(INPUT_FILE)) {
+            res.merge(is, os, new MultiBundleResourceFilter.TranslationLookup() {
+                @Override
+                public String lookup(String bundleId, String key) {
+                    lookups.add(bundleId + ":" + key);
+                    return lookupBundles(bundleId, key);
+                }
+            }, new FilterOptions(Locale.JAPANESE));
+            os.flush();
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_LOOKUP_FILE, tempFile));
+        }
+        assertEquals("Lookups in document order",
+                Arrays.asList("foods:apple", "foods:orange", "greetings:msg_hello", "greetings:msg_bye",
+                        "other:msg_hello"),
+                lookups);
+    }
+
+    @Test
+    public void testMergeLookupDefault() throws IOException, ResourceFilterException {
+        // A filter not overriding merge with TranslationLookup
+        MultiBundleResourceFilter defaultRes = new MultiBundleResourceFilter() {
+            @Override
+            public Map<String, LanguageBundle> parse(InputStream inStream, FilterOptions options)
+                    throws IOException, ResourceFilterException {
+                return res.parse(inStream, options);
+            }
+
+            @Override
+            public void write(OutputStream outStream, Map<String, LanguageBundle> languageBundles,
+                    FilterOptions options) throws IOException, ResourceFilterException {
+                res.write(outStream, languageBundles, options);
+            }
+
+            @Override
+            public void merge(InputStream baseStream, OutputStream outStream,
+                    Map<String, LanguageBundle> languageBundles, FilterOptions options)
+                    throws IOException, ResourceFilterException {
+                // The lookup does not supply target languages
+                for (LanguageBundle languageBundle : languageBundles.values()) {
+                    languageBundle.setEmbeddedLanguageCode("ja");
+                }
+                res.merge(baseStream, outStream, languageBundles, options);
+            }
+        };
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
+        tempFile.deleteOnExit();
+
+        try (OutputStream os = new FileOutputStream(tempFile);
+                InputStream is = new FileInputStream(INPUT_FILE)) {
+            defaultRes.merge(is, os, new MultiBundleResourceFilter.TranslationLookup() {
+                @Override
+                public String lookup(String bundleId, String key) {
+                    return lookupBundles(bundleId, key);
+                }
+            }, new FilterOptions(Locale.JAPANESE));
+            os.flush();
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+        }
+    }
+
+    private static String lookupBundles(String bundleId, String key) {
+        LanguageBundle languageBundle = BUNDLES.get(bundleId);
+        if (languageBundle == null) {
+            return null;
+        }
+        for (ResourceString resString : languageBundle.getResourceStrings()) {
+            if (resString.getKey().equals(key)) {
+                return resString.getValue();
+            }
+        }
+        return null;
+    }
+}
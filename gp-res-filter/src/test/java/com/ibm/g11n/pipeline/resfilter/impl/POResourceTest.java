@@ -18,12 +18,14 @@ package com.ibm.g11n.pipeline.resfilter.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -171,6 +173,36 @@ public class POResourceTest {
         }
     }
 
+    @Test
+    public void testParseContextAndLongString() throws IOException, ResourceFilterException {
+        // continuation lines longer than a typical read ahead buffer
+        StringBuilder longKey = new StringBuilder();
+        StringBuilder po = new StringBuilder();
+        po.append("#, fuzzy, c-format\n");
+        po.append("msgctxt \"menu\"\n");
+        po.append("msgid \"\"\n");
+        for (int i = 0; i < 100; i++) {
+            String fragment = "line " + i + " of a very long message with an \\\"escaped\\\" quote ";
+            longKey.append(fragment);
+            po.append('"').append(fragment).append("\"\n");
+        }
+        po.append("msgstr \"long\"\n");
+        po.append("msgctxt \"button\"\n");
+        po.append("msgid \"Open\"\n");
+        po.append("msgstr \"Ouvrir\"\n");
+
+        try (InputStream is = new ByteArrayInputStream(po.toString().getBytes(StandardCharsets.UTF_8))) {
+            LanguageBundle bundle = res.parse(is, null);
+            List<ResourceString> resStrList = new ArrayList<>(bundle.getResourceStrings());
+            Collections.sort(resStrList, new ResourceStringComparator());
+
+            List<ResourceString> expected = new ArrayList<>();
+            expected.add(ResourceString.with(longKey.toString(), "long").sequenceNumber(1).build());
+            expected.add(ResourceString.with("Open", "Ouvrir").sequenceNumber(2).build());
+            assertEquals("ResourceStrings did not match.", expected, resStrList);
+        }
+    }
+
     @Test
     public void testWrite() throws IOException, ResourceFilterException {
         File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".pot");
@@ -38,6 +38,7 @@ import org.xmlunit.matchers.CompareMatcher;
 import com.ibm.g11n.pipeline.resfilter.FilterOptions;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 import com.ibm.g11n.pipeline.resfilter.ResourceString.ResourceStringComparator;
@@ -53,9 +54,7 @@ public class XLIFFResourceTest {
 
     private static final File MERGE_INPUT_1_FILE = new File("src/test/resource/resfilter/xliff/merge-input-1.xlf");
     private static final File MERGE_INPUT_2_FILE = new File("src/test/resource/resfilter/xliff/merge-input-2.xlf");
-    @SuppressWarnings("unused")
     private static final File EXPECTED_MERGE_1_FILE = new File("src/test/resource/resfilter/xliff/merge-output-1.xlf");
-    @SuppressWarnings("unused")
     private static final File EXPECTED_MERGE_2_FILE = new File("src/test/resource/resfilter/xliff/merge-output-2.xlf");
 
     private static final Collection<ResourceString> EXPECTED_INPUT_RES_LIST;
@@ -122,7 +121,6 @@ public class XLIFFResourceTest {
         }
     }
 
-    @SuppressWarnings("deprecation")
     @Test
     public void testMerge() throws IOException, ResourceFilterException {
         File tempFile;
@@ -134,9 +132,7 @@ public class XLIFFResourceTest {
                 InputStream is = new FileInputStream(MERGE_INPUT_1_FILE)) {
             res.merge(is, os, MERGE_BUNDLE, new FilterOptions(Locale.ENGLISH));
             os.flush();
-            // TODO: Not ready yet
-            // assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_1_FILE,
-            // tempFile));
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_1_FILE, tempFile));
         }
 
         tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
@@ -146,9 +142,31 @@ public class XLIFFResourceTest {
                 InputStream is = new FileInputStream(MERGE_INPUT_2_FILE)) {
             res.merge(is, os, MERGE_BUNDLE, new FilterOptions(Locale.JAPANESE));
             os.flush();
-            // TODO: Not ready yet
-            // assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_2_FILE,
-            // tempFile));
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_2_FILE, tempFile));
+        }
+    }
+
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        File[] inputs = {MERGE_INPUT_1_FILE, MERGE_INPUT_2_FILE};
+        File[] expected = {EXPECTED_MERGE_1_FILE, EXPECTED_MERGE_2_FILE};
+        Locale[] locales = {Locale.ENGLISH, Locale.JAPANESE};
+
+        for (int i = 0; i < inputs.length; i++) {
+            MergeTemplate template;
+            try (InputStream is = new FileInputStream(inputs[i])) {
+                template = res.compileMergeTemplate(is, new FilterOptions(Locale.ROOT));
+            }
+
+            // the same template can be applied multiple times
+            for (int j = 0; j < 2; j++) {
+                File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".xlf");
+                tempFile.deleteOnExit();
+                try (OutputStream os = new FileOutputStream(tempFile)) {
+                    template.apply(os, MERGE_BUNDLE, new FilterOptions(locales[i]));
+                }
+                assertTrue(ResourceTestUtil.compareFiles(expected[i], tempFile));
+            }
         }
     }
 }
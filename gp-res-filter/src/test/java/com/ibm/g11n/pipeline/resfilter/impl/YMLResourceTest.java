@@ -15,21 +15,25 @@
  */
 package com.ibm.g11n.pipeline.resfilter.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.junit.Test;
 
 import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
 import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.MergeTemplate;
 import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
 import com.ibm.g11n.pipeline.resfilter.ResourceString;
 
@@ -40,22 +44,28 @@ import com.ibm.g11n.pipeline.resfilter.ResourceString;
 public class YMLResourceTest {
     private static final File INPUT_FILE = new File("src/test/resource/resfilter/yml/input.yml");
 
-    @SuppressWarnings("unused")
     private static final File EXPECTED_WRITE_FILE = new File("src/test/resource/resfilter/yml/write-output.yml");
 
-    @SuppressWarnings("unused")
     private static final File EXPECTED_MERGE_FILE = new File("src/test/resource/resfilter/yml/merge-output.yml");
 
-    private static Collection<ResourceString> EXPECTED_INPUT_RES_LIST;
+    private static List<ResourceString> EXPECTED_INPUT_RES_LIST;
 
     static {
         EXPECTED_INPUT_RES_LIST = new LinkedList<ResourceString>();
 
-        String key;
-
-        key = "untranslated-string";
-        EXPECTED_INPUT_RES_LIST.add(ResourceString.with(key, key).sequenceNumber(1).build());
-
+        // numbers, aliases and sequences are not extracted
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("receipt", "Oz-Ware Purchase Invoice")
+                .sequenceNumber(1).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("date", "2012-08-06").sequenceNumber(2).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("customer.first_name", "Dorothy").sequenceNumber(3).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("customer.family_name", "Gale").sequenceNumber(4).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("bill-to.street", "123 Tornado Alley\nSuite 16\n")
+                .sequenceNumber(5).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("bill-to.city", "East Centerville").sequenceNumber(6).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("bill-to.state", "KS").sequenceNumber(7).build());
+        EXPECTED_INPUT_RES_LIST.add(ResourceString.with("specialDelivery",
+                "Follow the Yellow Brick Road to the Emerald City. Pay no attention to the man behind the curtain.\n")
+                .sequenceNumber(8).build());
     }
 
     private static LanguageBundle WRITE_BUNDLE;
@@ -63,14 +73,27 @@ public class YMLResourceTest {
     static {
         LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
 
-        String key, value;
-
-        key = "Untranslated Sea Lion 3";
-        value = "TRANSLATED: California Sea Lion";
-        bundleBuilder.addResourceString(key, value, 3);
+        bundleBuilder.addResourceString("animals.sealion", "TRANSLATED: California Sea Lion", 3);
+        bundleBuilder.addResourceString("title", "TRANSLATED: \"Animals\"", 1);
+        bundleBuilder.addResourceString("animals.otter", "TRANSLATED: Sea Otter", 2);
+        bundleBuilder.addResourceString("footer.line1", "TRANSLATED: Line 1\nLine 2", 4);
         WRITE_BUNDLE = bundleBuilder.build();
     }
 
+    private static LanguageBundle MERGE_BUNDLE;
+
+    static {
+        LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(true);
+
+        bundleBuilder.addResourceString("receipt", "Facture: Oz-Ware");
+        bundleBuilder.addResourceString("customer.first_name", "Dorothée");
+        bundleBuilder.addResourceString("bill-to.street", "1 rue des Tornades\nBureau 16");
+        bundleBuilder.addResourceString("bill-to.city", "East Centerville");
+        bundleBuilder.addResourceString("specialDelivery", "Suivez la route de briques jaunes.");
+        bundleBuilder.addResourceString("unknown.key", "Not in the base");
+        MERGE_BUNDLE = bundleBuilder.build();
+    }
+
     private static final YMLResource res = new YMLResource();
 
     @Test
@@ -78,10 +101,8 @@ public class YMLResourceTest {
         assertTrue("The input test file <" + INPUT_FILE + "> does not exist.", INPUT_FILE.exists());
 
         try (InputStream is = new FileInputStream(INPUT_FILE)) {
-            @SuppressWarnings("unused")
             LanguageBundle bundle =  res.parse(is, null);
-            // TODO: Not ready yet
-            // assertEquals("ResourceStrings did not match.", EXPECTED_INPUT_RES_LIST, bundle.getResourceStrings());
+            assertEquals("ResourceStrings did not match.", EXPECTED_INPUT_RES_LIST, bundle.getSortedResourceStrings());
         }
     }
 
@@ -93,8 +114,7 @@ public class YMLResourceTest {
         try (OutputStream os = new FileOutputStream(tempFile)) {
             res.write(os, WRITE_BUNDLE, null);
             os.flush();
-            // TODO: Not ready yet
-            // assertTrue(ResourceTestUtil.compareFiles(EXPECTED_WRITE_FILE, tempFile));
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_WRITE_FILE, tempFile));
         }
     }
 
@@ -104,10 +124,35 @@ public class YMLResourceTest {
         tempFile.deleteOnExit();
 
         try (OutputStream os = new FileOutputStream(tempFile); InputStream is = new FileInputStream(INPUT_FILE)) {
-            res.merge(is, os, WRITE_BUNDLE, null);
+            res.merge(is, os, MERGE_BUNDLE, null);
             os.flush();
-            // TODO: Not ready yet
-            // assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+            assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+        }
+    }
+
+    @Test
+    public void testMergeTemplate() throws IOException, ResourceFilterException {
+        MergeTemplate template;
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            template = res.compileMergeTemplate(is, null);
+        }
+
+        // the template is not modified by applying it to another bundle
+        template.apply(new ByteArrayOutputStream(), new LanguageBundleBuilder(false).build(), null);
+
+        File tempFile = File.createTempFile(this.getClass().getSimpleName(), ".yml");
+        tempFile.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(tempFile)) {
+            template.apply(os, MERGE_BUNDLE, null);
+        }
+        assertTrue(ResourceTestUtil.compareFiles(EXPECTED_MERGE_FILE, tempFile));
+
+        ByteArrayOutputStream applied = new ByteArrayOutputStream();
+        template.apply(applied, MERGE_BUNDLE, null);
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        try (InputStream is = new FileInputStream(INPUT_FILE)) {
+            res.merge(is, merged, MERGE_BUNDLE, null);
         }
+        assertArrayEquals("Template output", merged.toByteArray(), applied.toByteArray());
     }
 }
@@ -0,0 +1,10 @@
+//my/nls/colors.js contents, returned from a factory function:
+define(function() {
+    return {
+        "root": {
+            "bear 1": "Brown Bear",
+            "frog 2": "Red-eyed " + "Tree Frog",
+            "owl 3": "Great Horned Owl"
+        }
+    };
+});
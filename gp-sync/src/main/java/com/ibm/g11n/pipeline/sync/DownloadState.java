@@ -0,0 +1,179 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * The state of bundle files written by the previous executions of
+ * the Maven download goal or the Ant download task, persisted in a JSON file.
+ * <p>
+ * For each output file, the state keeps the fingerprint of the translated
+ * contents fetched from Globalization Pipeline service and the size and the
+ * last modified time of the file written from the contents, so an output
+ * file is not written again when neither of them is changed.
+ *
+ * @author yoshito_umaoka
+ */
+public final class DownloadState {
+    private static final int VERSION = 1;
+
+    /**
+     * The state of a single output file.
+     */
+    static final class OutputState {
+        String fingerprint;
+        long length;
+        long lastModified;
+    }
+
+    private static final class StateData {
+        int version;
+        String service;
+        Map<String, OutputState> outputs;
+    }
+
+    private final File file;
+    private final String service;
+    private final Map<String, OutputState> outputs;
+
+    private DownloadState(File file, String service, Map<String, OutputState> outputs) {
+        this.file = file;
+        this.service = service;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Loads the download state from the file.
+     * <p>
+     * When the file does not exist, or it was created for a different
+     * service instance, this method returns an empty state.
+     *
+     * @param file      The state file.
+     * @param service   The identifier of the service instance.
+     * @return  The download state.
+     * @throws IOException if the file cannot be read or has a bad format.
+     */
+    public static DownloadState load(File file, String service) throws IOException {
+        Map<String, OutputState> outputs = new TreeMap<>();
+        StateData data = StateFiles.read(file, StateData.class);
+        if (data != null && data.version == VERSION && service.equals(data.service)
+                && data.outputs != null) {
+            outputs.putAll(data.outputs);
+        }
+        return new DownloadState(file, service, outputs);
+    }
+
+    /**
+     * Writes out the download state to the file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public synchronized void save() throws IOException {
+        StateData data = new StateData();
+        data.version = VERSION;
+        data.service = service;
+        data.outputs = outputs;
+
+        StateFiles.write(file, data);
+    }
+
+    /**
+     * Returns true if the output file was written from the contents with the
+     * same fingerprint, and the file was not modified after that.
+     *
+     * @param outputFile    The output file.
+     * @param fingerprint   The fingerprint of the contents.
+     * @return  true if the output file is up to date.
+     */
+    public synchronized boolean isUpToDate(File outputFile, String fingerprint) {
+        OutputState state = outputs.get(outputFile.getAbsolutePath());
+        return state != null && fingerprint.equals(state.fingerprint)
+                && outputFile.isFile()
+                && outputFile.length() == state.length
+                && outputFile.lastModified() == state.lastModified;
+    }
+
+    /**
+     * Records the fingerprint of the contents written to the output file.
+     *
+     * @param outputFile    The output file.
+     * @param fingerprint   The fingerprint of the contents.
+     */
+    public synchronized void update(File outputFile, String fingerprint) {
+        OutputState state = new OutputState();
+        state.fingerprint = fingerprint;
+        state.length = outputFile.length();
+        state.lastModified = outputFile.lastModified();
+        outputs.put(outputFile.getAbsolutePath(), state);
+    }
+
+    /**
+     * Returns the fingerprint of the bundle contents and the parameters
+     * used for generating an output file from the contents.
+     *
+     * @param bundle    The bundle contents.
+     * @param params    The parameters.
+     * @return  The fingerprint.
+     */
+    public static String fingerprint(LanguageBundle bundle, String... params) {
+        StringBuilder buf = new StringBuilder();
+        for (String param : params) {
+            buf.append(param).append('\u0000');
+        }
+        buf.append(bundle.getEmbeddedLanguageCode()).append('\u0000');
+        appendNotes(buf, bundle.getNotes());
+        appendMetadata(buf, bundle.getMetadata());
+
+        MessageDigest md = StateFiles.newDigest();
+        md.update(buf.toString().getBytes(StandardCharsets.UTF_8));
+        for (ResourceString resString : bundle.getSortedResourceStringsIterable()) {
+            buf.setLength(0);
+            buf.append(resString.getKey()).append('\u0000');
+            buf.append(resString.getValue()).append('\u0000');
+            buf.append(resString.getSourceValue()).append('\u0000');
+            buf.append(resString.getSequenceNumber()).append('\u0000');
+            appendNotes(buf, resString.getNotes());
+            appendMetadata(buf, resString.getMetadata());
+            md.update(buf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return StateFiles.toHex(md.digest());
+    }
+
+    private static void appendNotes(StringBuilder buf, List<String> notes) {
+        for (String note : notes) {
+            buf.append(note).append('\u0001');
+        }
+        buf.append('\u0000');
+    }
+
+    private static void appendMetadata(StringBuilder buf, Map<String, String> metadata) {
+        for (Entry<String, String> entry : new TreeMap<>(metadata).entrySet()) {
+            buf.append(entry.getKey()).append('\u0002').append(entry.getValue()).append('\u0001');
+        }
+        buf.append('\u0000');
+    }
+}
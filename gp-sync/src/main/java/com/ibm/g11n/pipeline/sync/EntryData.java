@@ -0,0 +1,96 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+
+/**
+ * A resource entry fetched from Globalization Pipeline service, detached
+ * from the service client, so it can be also stored in a local file.
+ *
+ * @author yoshito_umaoka
+ */
+public final class EntryData {
+    private String value;
+    private String sourceValue;
+    private boolean reviewed;
+    private Integer sequenceNumber;
+    private List<String> notes;
+    private Map<String, String> metadata;
+
+    @SuppressWarnings("unused")
+    private EntryData() {
+        // for JSON deserialization
+    }
+
+    public EntryData(String value, String sourceValue, boolean reviewed, Integer sequenceNumber,
+            List<String> notes, Map<String, String> metadata) {
+        this.value = value;
+        this.sourceValue = sourceValue;
+        this.reviewed = reviewed;
+        this.sequenceNumber = sequenceNumber;
+        this.notes = notes;
+        this.metadata = metadata;
+    }
+
+    public EntryData(ResourceEntryData data) {
+        this(data.getValue(), data.getSourceValue(), data.isReviewed(), data.getSequenceNumber(),
+                data.getNotes(), data.getMetadata());
+    }
+
+    /**
+     * Converts resource entries fetched by the service client.
+     *
+     * @param resEntries    The resource entries fetched by the service client.
+     * @return  The resource entries indexed by resource keys.
+     */
+    public static Map<String, EntryData> fromResourceEntries(Map<String, ResourceEntryData> resEntries) {
+        Map<String, EntryData> entries = new TreeMap<>();
+        for (Entry<String, ResourceEntryData> entry : resEntries.entrySet()) {
+            entries.put(entry.getKey(), new EntryData(entry.getValue()));
+        }
+        return entries;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getSourceValue() {
+        return sourceValue;
+    }
+
+    public boolean isReviewed() {
+        return reviewed;
+    }
+
+    public Integer getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public List<String> getNotes() {
+        return notes;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * A sync job exporting resource entries of a bundle in a language to a
+ * resource bundle file.
+ * <p>
+ * Subclasses implement {@link #fetch()} to supply resource entries. This
+ * class assembles a language bundle from the entries, converts it with the
+ * resource filter of the type, optionally merging it into the source bundle
+ * file, and writes out the result to the output file.
+ *
+ * @author yoshito_umaoka
+ */
+public abstract class ExportJob extends SyncJob<Map<String, EntryData>> {
+    private final String bundleId;
+    private final String language;
+    private final String type;
+    private final File outputFile;
+
+    private String embeddedLanguageCode;
+    private boolean reviewedOnly = false;
+    private boolean withFallback = false;
+    private File mergeSource;
+    private List<String> notes;
+    private Map<String, String> metadata;
+    private ResourceFilter filter;
+    private int spillThreshold = 0;
+    private File spillDirectory;
+
+    /**
+     * Constructs an export job.
+     *
+     * @param bundleId      The bundle ID.
+     * @param language      The language of the resource entries.
+     * @param type          The resource filter type.
+     * @param outputFile    The output file.
+     */
+    protected ExportJob(String bundleId, String language, String type, File outputFile) {
+        this.bundleId = bundleId;
+        this.language = language;
+        this.type = type;
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Sets the language code embedded in the output file.
+     */
+    public ExportJob embeddedLanguageCode(String embeddedLanguageCode) {
+        this.embeddedLanguageCode = embeddedLanguageCode;
+        return this;
+    }
+
+    /**
+     * Sets whether only reviewed translations are exported.
+     */
+    public ExportJob reviewedOnly(boolean reviewedOnly) {
+        this.reviewedOnly = reviewedOnly;
+        return this;
+    }
+
+    /**
+     * Sets whether the source value is exported when translation is not available.
+     */
+    public ExportJob withFallback(boolean withFallback) {
+        this.withFallback = withFallback;
+        return this;
+    }
+
+    /**
+     * Sets the source bundle file which translations are merged into.
+     * When null, only resource strings are written.
+     */
+    public ExportJob mergeSource(File mergeSource) {
+        this.mergeSource = mergeSource;
+        return this;
+    }
+
+    /**
+     * Sets the bundle level notes.
+     */
+    public ExportJob notes(List<String> notes) {
+        this.notes = notes;
+        return this;
+    }
+
+    /**
+     * Sets the bundle level metadata.
+     */
+    public ExportJob metadata(Map<String, String> metadata) {
+        this.metadata = metadata;
+        return this;
+    }
+
+    /**
+     * Sets the resource filter instance used for conversion. When not set,
+     * a new instance for the type is obtained from {@link ResourceFilterFactory}.
+     * A filter instance can be shared by multiple jobs.
+     */
+    public ExportJob filter(ResourceFilter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of resource strings held in memory while
+     * assembling a language bundle. When the number of resource strings
+     * exceeds the threshold, they are spilled to temporary files, which are
+     * deleted when the job is completed. 0 (default) disables spilling.
+     *
+     * @see LanguageBundleBuilder#spillThreshold(int)
+     */
+    public ExportJob spillThreshold(int spillThreshold) {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("Negative spill threshold: " + spillThreshold);
+        }
+        this.spillThreshold = spillThreshold;
+        return this;
+    }
+
+    /**
+     * Sets the directory for the temporary files used when the spill threshold
+     * is set. When null (default), the default temporary directory is used.
+     */
+    public ExportJob spillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public String getBundleId() {
+        return bundleId;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    @Override
+    protected LanguageBundle assemble(Map<String, EntryData> entries) throws Exception {
+        LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
+        bundleBuilder.embeddedLanguageCode(embeddedLanguageCode);
+        if (spillThreshold > 0) {
+            if (spillDirectory != null && !spillDirectory.isDirectory()) {
+                spillDirectory.mkdirs();
+            }
+            bundleBuilder.spillThreshold(spillThreshold).spillDirectory(spillDirectory);
+        }
+        if (notes != null) {
+            bundleBuilder.notes(notes);
+        }
+        if (metadata != null) {
+            bundleBuilder.metadata(metadata);
+        }
+
+        for (Entry<String, EntryData> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            EntryData data = entry.getValue();
+            String resVal = data.getValue();
+            String srcVal = data.getSourceValue();
+            Integer seqNum = data.getSequenceNumber();
+
+            if (reviewedOnly && !data.isReviewed()) {
+                resVal = null;
+            }
+            if (resVal == null && withFallback) {
+                resVal = srcVal;
+            }
+
+            if (resVal != null) {
+                ResourceString.Builder resb = ResourceString.with(key, resVal).sourceValue(srcVal);
+                if (seqNum != null) {
+                    resb.sequenceNumber(seqNum.intValue());
+                }
+                if (data.getNotes() != null) {
+                    resb.notes(data.getNotes());
+                }
+                if (data.getMetadata() != null) {
+                    resb.metadata(data.getMetadata());
+                }
+                bundleBuilder.addResourceString(resb);
+            }
+        }
+        return bundleBuilder.build();
+    }
+
+    @Override
+    protected byte[] convert(LanguageBundle bundle) throws Exception {
+        ResourceFilter filter = this.filter;
+        if (filter == null) {
+            filter = ResourceFilterFactory.getResourceFilter(type);
+        }
+        if (filter == null) {
+            throw new SyncException("Unknown resource filter type - " + type);
+        }
+        FilterOptions options = new FilterOptions(Locale.forLanguageTag(language));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        if (mergeSource != null) {
+            try (FileInputStream fis = new FileInputStream(mergeSource)) {
+                filter.merge(fis, bos, bundle, options);
+            } catch (IOException e) {
+                throw new SyncException("I/O error while merging the translated strings to "
+                        + outputFile.getAbsolutePath(), e);
+            } catch (ResourceFilterException e) {
+                throw new SyncException("Resource filter error while merging the translated strings to "
+                        + outputFile.getAbsolutePath(), e);
+            }
+        } else {
+            try {
+                filter.write(bos, bundle, options);
+            } catch (IOException e) {
+                throw new SyncException("I/O error while writing the translated strings to "
+                        + outputFile.getAbsolutePath(), e);
+            } catch (ResourceFilterException e) {
+                throw new SyncException("Resource filter error while writing the translated strings to "
+                        + outputFile.getAbsolutePath(), e);
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    protected void write(byte[] content) throws Exception {
+        File dir = outputFile.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        try (FileOutputStream fos = new FileOutputStream(outputFile)) {
+            fos.write(content);
+        } catch (IOException e) {
+            throw new SyncException("I/O error while writing the translated strings to "
+                    + outputFile.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "bundle:" + bundleId + " language:" + language;
+    }
+}
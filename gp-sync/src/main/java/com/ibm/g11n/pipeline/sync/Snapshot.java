@@ -0,0 +1,244 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.ibm.g11n.pipeline.client.BundleData;
+
+/**
+ * A snapshot of bundles in an instance of Globalization Pipeline service,
+ * stored in a gzip compressed JSON file. The Maven download goal and the Ant
+ * download task can produce translated bundle files from a snapshot without
+ * accessing the service.
+ *
+ * @author yoshito_umaoka
+ */
+public final class Snapshot {
+    private static final int VERSION = 1;
+
+    /**
+     * A bundle in a snapshot.
+     */
+    public static final class BundleSnapshot {
+        String sourceLanguage;
+        List<String> targetLanguages;
+        Long updatedAt;
+        Map<String, Map<String, EntryData>> languages = new TreeMap<>();
+
+        BundleSnapshot() {
+        }
+
+        /**
+         * Constructs a bundle snapshot without resource entries.
+         *
+         * @param bundleData    The bundle data.
+         */
+        public BundleSnapshot(BundleData bundleData) {
+            sourceLanguage = bundleData.getSourceLanguage();
+            targetLanguages = new ArrayList<>();
+            if (bundleData.getTargetLanguages() != null) {
+                targetLanguages.addAll(bundleData.getTargetLanguages());
+                Collections.sort(targetLanguages);
+            }
+            Date date = bundleData.getUpdatedAt();
+            updatedAt = date == null ? null : Long.valueOf(date.getTime());
+        }
+
+        /**
+         * Returns true if this snapshot was created from the bundle with
+         * the same update time and languages. The update time of a bundle
+         * does not change when its resource entries are updated, so this
+         * method cannot detect updated translations.
+         */
+        public boolean isSameBundle(BundleData bundleData) {
+            Date date = bundleData.getUpdatedAt();
+            if (updatedAt == null || date == null || updatedAt.longValue() != date.getTime()) {
+                return false;
+            }
+            return sourceLanguage.equals(bundleData.getSourceLanguage())
+                    && getLanguages().equals(new BundleSnapshot(bundleData).getLanguages());
+        }
+
+        /**
+         * Returns the source language and target languages of the bundle.
+         */
+        public Set<String> getLanguages() {
+            Set<String> langs = new HashSet<>();
+            langs.add(sourceLanguage);
+            if (targetLanguages != null) {
+                langs.addAll(targetLanguages);
+            }
+            return langs;
+        }
+
+        /**
+         * Returns the source language of the bundle.
+         */
+        public String getSourceLanguage() {
+            return sourceLanguage;
+        }
+
+        /**
+         * Returns the resource entries of the language, or null if the
+         * language is not included in this snapshot.
+         */
+        public Map<String, EntryData> getEntries(String language) {
+            return languages.get(language);
+        }
+
+        /**
+         * Sets the resource entries of the language.
+         */
+        public void putEntries(String language, Map<String, EntryData> entries) {
+            languages.put(language, entries);
+        }
+    }
+
+    int version = VERSION;
+    String service;
+    long createdAt;
+    Map<String, Set<String>> mtLanguages;
+    Map<String, BundleSnapshot> bundles = new TreeMap<>();
+
+    Snapshot() {
+    }
+
+    /**
+     * Constructs an empty snapshot.
+     *
+     * @param service   The identifier of the service instance.
+     * @param createdAt The creation time of the snapshot.
+     */
+    public Snapshot(String service, long createdAt) {
+        this.service = service;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Returns the identifier of the service instance.
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * Returns the creation time of the snapshot.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Returns the machine translation languages configured in the service
+     * instance, or null if not available.
+     */
+    public Map<String, Set<String>> getMTLanguages() {
+        return mtLanguages;
+    }
+
+    /**
+     * Sets the machine translation languages configured in the service instance.
+     */
+    public void setMTLanguages(Map<String, Set<String>> mtLanguages) {
+        this.mtLanguages = mtLanguages;
+    }
+
+    /**
+     * Returns the IDs of the bundles in this snapshot.
+     */
+    public Set<String> getBundleIds() {
+        return Collections.unmodifiableSet(bundles.keySet());
+    }
+
+    /**
+     * Returns the bundle in this snapshot, or null if not included.
+     */
+    public BundleSnapshot getBundle(String bundleId) {
+        return bundles.get(bundleId);
+    }
+
+    /**
+     * Adds the bundle to this snapshot.
+     */
+    public void putBundle(String bundleId, BundleSnapshot bundle) {
+        bundles.put(bundleId, bundle);
+    }
+
+    /**
+     * Reads a snapshot from the file.
+     *
+     * @param file  The snapshot file.
+     * @return  The snapshot.
+     * @throws IOException if the file cannot be read, or has a bad format.
+     */
+    public static Snapshot read(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(file))), StandardCharsets.UTF_8)) {
+            Snapshot snapshot = new Gson().fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.version != VERSION
+                    || snapshot.service == null || snapshot.bundles == null) {
+                throw new IOException("Unsupported snapshot file: " + file.getAbsolutePath());
+            }
+            return snapshot;
+        } catch (JsonParseException e) {
+            throw new IOException("Bad snapshot file format: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes out this snapshot to the file.
+     *
+     * @param file  The snapshot file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File tmpFile = new File(dir, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile))), StandardCharsets.UTF_8)) {
+            new Gson().toJson(this, writer);
+        }
+        if (file.exists() && !file.delete() || !tmpFile.renameTo(file)) {
+            throw new IOException("Failed to write the snapshot file: " + file.getAbsolutePath());
+        }
+    }
+}
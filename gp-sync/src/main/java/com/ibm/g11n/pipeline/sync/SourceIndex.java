@@ -0,0 +1,315 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The index of source bundle files, persisted in a JSON file.
+ * <p>
+ * For each source bundle file, the index keeps the digest of the file contents
+ * together with the size and the last modified time of the file, so a digest
+ * is computed again only when the file is modified.
+ * <p>
+ * The index also keeps the result of scanning a file set for source bundle
+ * files, together with the last modified times of the directories scanned,
+ * so a file set is scanned again only when a file is added, removed or renamed
+ * in a directory, or the configuration of the file set is changed.
+ *
+ * @author yoshito_umaoka
+ */
+public final class SourceIndex {
+    private static final int VERSION = 1;
+
+    /**
+     * Digests of files modified within this period are not cached, because
+     * further modifications in the same period might not change the last
+     * modified time of the file.
+     */
+    private static final long MODIFIED_TIME_RESOLUTION = 2000L;
+
+    /**
+     * The index entry of a source bundle file.
+     */
+    static final class FileEntry {
+        long length;
+        long lastModified;
+        String digest;
+    }
+
+    /**
+     * A source bundle file found by scanning a file set.
+     */
+    public static final class ScannedFile {
+        private String relativePath;
+        private String bundleId;
+        private String type;
+
+        public ScannedFile(String relativePath, String bundleId, String type) {
+            this.relativePath = relativePath;
+            this.bundleId = bundleId;
+            this.type = type;
+        }
+
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        public String getBundleId() {
+            return bundleId;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    /**
+     * Scans a file set for source bundle files.
+     */
+    public interface FileScanner {
+        /**
+         * Returns the source bundle files in the file set.
+         *
+         * @return  The source bundle files.
+         */
+        List<ScannedFile> scan();
+    }
+
+    /**
+     * The index entry of a scanned file set.
+     */
+    static final class ScanEntry {
+        Map<String, Long> directories;
+        List<ScannedFile> files;
+    }
+
+    private static final class IndexData {
+        int version;
+        Map<String, FileEntry> files;
+        Map<String, ScanEntry> scans;
+    }
+
+    private final File file;
+    private final Map<String, FileEntry> files;
+    private final Map<String, ScanEntry> scans;
+    private final Set<String> usedPaths = new HashSet<>();
+    private final Set<String> usedScans = new HashSet<>();
+    private boolean modified = false;
+
+    private SourceIndex(File file, Map<String, FileEntry> files, Map<String, ScanEntry> scans) {
+        this.file = file;
+        this.files = files;
+        this.scans = scans;
+    }
+
+    /**
+     * Loads the index from the file. When the file does not exist, this
+     * method returns an empty index.
+     *
+     * @param file  The index file.
+     * @return  The source bundle file index.
+     * @throws IOException if the file cannot be read or has a bad format.
+     */
+    public static SourceIndex load(File file) throws IOException {
+        Map<String, FileEntry> files = new TreeMap<>();
+        Map<String, ScanEntry> scans = new TreeMap<>();
+        IndexData data = StateFiles.read(file, IndexData.class);
+        if (data != null && data.version == VERSION) {
+            if (data.files != null) {
+                files.putAll(data.files);
+            }
+            if (data.scans != null) {
+                scans.putAll(data.scans);
+            }
+        }
+        return new SourceIndex(file, files, scans);
+    }
+
+    /**
+     * Returns an empty index, which will be written to the file.
+     *
+     * @param file  The index file.
+     * @return  An empty source bundle file index.
+     */
+    public static SourceIndex empty(File file) {
+        return new SourceIndex(file, new TreeMap<String, FileEntry>(),
+                new TreeMap<String, ScanEntry>());
+    }
+
+    /**
+     * Writes out the index to the file, if the index was updated. Entries of
+     * files which no longer exist are removed. When any file set was scanned,
+     * entries of file sets not scanned are removed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public synchronized void save() throws IOException {
+        Iterator<Entry<String, FileEntry>> itr = files.entrySet().iterator();
+        while (itr.hasNext()) {
+            String path = itr.next().getKey();
+            if (!usedPaths.contains(path) && !new File(path).isFile()) {
+                itr.remove();
+                modified = true;
+            }
+        }
+        if (!usedScans.isEmpty() && scans.keySet().retainAll(usedScans)) {
+            modified = true;
+        }
+        if (!modified) {
+            return;
+        }
+        IndexData data = new IndexData();
+        data.version = VERSION;
+        data.files = files;
+        data.scans = scans;
+        StateFiles.write(file, data);
+        modified = false;
+    }
+
+    /**
+     * Returns the hex string of SHA-256 digest of the source bundle file.
+     * The digest recorded in the index is returned if the file is not modified.
+     *
+     * @param srcFile   The source bundle file.
+     * @return  The digest.
+     * @throws IOException if an I/O error occurs.
+     */
+    public String getDigest(File srcFile) throws IOException {
+        String path = srcFile.getAbsolutePath();
+        long length = srcFile.length();
+        long lastModified = srcFile.lastModified();
+        synchronized (this) {
+            usedPaths.add(path);
+            FileEntry entry = files.get(path);
+            if (entry != null && entry.digest != null
+                    && entry.length == length && entry.lastModified == lastModified) {
+                return entry.digest;
+            }
+        }
+
+        String digest = StateFiles.digest(srcFile);
+        if (System.currentTimeMillis() - lastModified > MODIFIED_TIME_RESOLUTION
+                && srcFile.lastModified() == lastModified) {
+            synchronized (this) {
+                FileEntry entry = getOrCreateEntry(path);
+                entry.length = length;
+                entry.lastModified = lastModified;
+                entry.digest = digest;
+                modified = true;
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the source bundle files in a file set. The files recorded in the
+     * index are returned if no directories under the base directory of the file
+     * set are modified since the last scan. Otherwise, the file set is scanned
+     * by the scanner, and the result is recorded in the index.
+     *
+     * @param fingerprint       The fingerprint of the file set configuration,
+     *                          including the mapping from a file path to a bundle ID.
+     * @param baseDir           The base directory of the file set.
+     * @param followSymlinks    Whether the scanner follows symbolic links.
+     * @param scanner           The scanner of the file set.
+     * @return  The source bundle files.
+     */
+    public List<ScannedFile> scan(String fingerprint, File baseDir, boolean followSymlinks,
+            FileScanner scanner) {
+        synchronized (this) {
+            usedScans.add(fingerprint);
+            ScanEntry entry = scans.get(fingerprint);
+            if (entry != null && entry.directories != null && entry.files != null
+                    && !isModified(entry.directories)) {
+                return Collections.unmodifiableList(entry.files);
+            }
+        }
+
+        // Directories are listed before the scan, so files added during
+        // the scan modify the directories recorded.
+        Map<String, Long> directories = new TreeMap<>();
+        try {
+            listDirectories(baseDir.getAbsoluteFile(), followSymlinks, new HashSet<String>(), directories);
+        } catch (IOException e) {
+            return scanner.scan();
+        }
+        List<ScannedFile> scannedFiles = scanner.scan();
+
+        long now = System.currentTimeMillis();
+        for (Long lastModified : directories.values()) {
+            if (now - lastModified.longValue() <= MODIFIED_TIME_RESOLUTION) {
+                return scannedFiles;
+            }
+        }
+        ScanEntry entry = new ScanEntry();
+        entry.directories = directories;
+        entry.files = new ArrayList<>(scannedFiles);
+        synchronized (this) {
+            scans.put(fingerprint, entry);
+            modified = true;
+        }
+        return scannedFiles;
+    }
+
+    private static boolean isModified(Map<String, Long> directories) {
+        for (Entry<String, Long> dir : directories.entrySet()) {
+            if (new File(dir.getKey()).lastModified() != dir.getValue().longValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void listDirectories(File dir, boolean followSymlinks, Set<String> visited,
+            Map<String, Long> directories) throws IOException {
+        if (!visited.add(dir.getCanonicalPath())) {
+            // A cycle of symbolic links
+            return;
+        }
+        directories.put(dir.getPath(), Long.valueOf(dir.lastModified()));
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() && (followSymlinks || !Files.isSymbolicLink(child.toPath()))) {
+                listDirectories(child, followSymlinks, visited, directories);
+            }
+        }
+    }
+
+    private FileEntry getOrCreateEntry(String path) {
+        usedPaths.add(path);
+        FileEntry entry = files.get(path);
+        if (entry == null) {
+            entry = new FileEntry();
+            files.put(path, entry);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * Utility methods for state files used for skipping work done by the
+ * previous executions.
+ *
+ * @author yoshito_umaoka
+ */
+public final class StateFiles {
+    private StateFiles() {
+    }
+
+    /**
+     * Reads a JSON state file.
+     *
+     * @param file  The state file.
+     * @param type  The class of the state data.
+     * @return  The state data, or null if the file does not exist.
+     * @throws IOException if the file cannot be read or has a bad format.
+     */
+    public static <T> T read(File file, Class<T> type) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, type);
+        } catch (JsonParseException e) {
+            throw new IOException("Bad state file format: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes out the state data to a JSON state file. The data is written to
+     * a temporary file first, so an interrupted build does not leave a broken
+     * state file.
+     *
+     * @param file  The state file.
+     * @param data  The state data.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void write(File file, Object data) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File tmpFile = new File(dir, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            gson.toJson(data, writer);
+        }
+        if (file.exists() && !file.delete() || !tmpFile.renameTo(file)) {
+            throw new IOException("Failed to update the state file: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the hex string of SHA-256 digest of the file contents.
+     *
+     * @param f The file.
+     * @return  The digest.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static String digest(File f) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[8192];
+        try (InputStream is = new FileInputStream(f)) {
+            int len;
+            while ((len = is.read(buf)) > 0) {
+                md.update(buf, 0, len);
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns a new SHA-256 message digest.
+     *
+     * @return  The message digest.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the lowercase hex string of the bytes.
+     *
+     * @param bytes The bytes.
+     * @return  The hex string.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+            buf.append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+
+/**
+ * Runs {@link SyncJob}s through a pipeline of four stages - network fetch,
+ * bundle assembly, format conversion and file output.
+ * <p>
+ * Each stage has its own thread pool and a bounded queue. When the queue of
+ * a stage is full, the preceding stage waits until the queue has room, so
+ * the number of fetched bundles held in memory is bounded, while a slow
+ * conversion or a slow disk does not stall network requests already queued.
+ * <p>
+ * When a job fails, stages of the jobs following the failed job are skipped,
+ * while the jobs preceding the failed job are run to completion and notified
+ * in order, then {@link #run(List)} throws the failure.
+ *
+ * @author yoshito_umaoka
+ */
+public final class SyncEngine implements Closeable {
+    /**
+     * The capacity of the queue of each stage per thread of the stage.
+     */
+    private static final int QUEUE_CAPACITY_PER_THREAD = 2;
+
+    private final ThreadPoolExecutor fetchPool;
+    private final ThreadPoolExecutor assemblyPool;
+    private final ThreadPoolExecutor conversionPool;
+    private final ThreadPoolExecutor outputPool;
+
+    /**
+     * Constructs a sync engine with the specified number of threads for
+     * network fetch. Bundle assembly and file output use a single thread,
+     * and format conversion uses the number of available processors.
+     *
+     * @param fetchThreads  The number of threads for network fetch.
+     */
+    public SyncEngine(int fetchThreads) {
+        this(fetchThreads, 1, Runtime.getRuntime().availableProcessors(), 1);
+    }
+
+    /**
+     * Constructs a sync engine with the specified number of threads for
+     * each stage.
+     *
+     * @param fetchThreads      The number of threads for network fetch.
+     * @param assemblyThreads   The number of threads for bundle assembly.
+     * @param conversionThreads The number of threads for format conversion.
+     * @param outputThreads     The number of threads for file output.
+     */
+    public SyncEngine(int fetchThreads, int assemblyThreads, int conversionThreads, int outputThreads) {
+        fetchPool = createStagePool("fetch", fetchThreads);
+        assemblyPool = createStagePool("assembly", assemblyThreads);
+        conversionPool = createStagePool("conversion", conversionThreads);
+        outputPool = createStagePool("output", outputThreads);
+    }
+
+    private static ThreadPoolExecutor createStagePool(final String stage, int threads) {
+        threads = Math.max(1, threads);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_CAPACITY_PER_THREAD),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "gp-sync-" + stage + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                WAIT_FOR_ROOM);
+    }
+
+    /**
+     * Makes the submitter wait until the queue of the stage has room.
+     */
+    private static final RejectedExecutionHandler WAIT_FOR_ROOM = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The sync engine is closed.");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the stage queue.", e);
+            }
+        }
+    };
+
+    /**
+     * Runs the jobs, and waits for completion of them.
+     *
+     * @param jobs  The jobs.
+     * @throws SyncException if a job failed.
+     * @throws InterruptedException if the current thread was interrupted while waiting.
+     */
+    public void run(List<? extends SyncJob<?>> jobs) throws SyncException, InterruptedException {
+        Run run = new Run(jobs);
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                start(run, i, jobs.get(i));
+            }
+            run.await();
+        } catch (InterruptedException e) {
+            run.abort();
+            throw e;
+        }
+        if (run.failure != null) {
+            throw run.failure;
+        }
+    }
+
+    /**
+     * Shuts down the thread pools of this engine.
+     */
+    @Override
+    public void close() {
+        discard(fetchPool.shutdownNow());
+        discard(assemblyPool.shutdownNow());
+        discard(conversionPool.shutdownNow());
+        discard(outputPool.shutdownNow());
+    }
+
+    private static void discard(List<Runnable> stages) {
+        for (Runnable stage : stages) {
+            if (stage instanceof Stage) {
+                ((Stage) stage).discard();
+            }
+        }
+    }
+
+    private <T> void start(final Run run, final int index, final SyncJob<T> job) {
+        submit(fetchPool, new Stage(run, index) {
+            @Override
+            void process() throws Exception {
+                final T data = job.fetch();
+                if (data == null) {
+                    run.finish(index);
+                    return;
+                }
+                submit(assemblyPool, new Stage(run, index) {
+                    @Override
+                    void process() throws Exception {
+                        final LanguageBundle bundle = job.assemble(data);
+                        if (bundle == null) {
+                            run.finish(index);
+                            return;
+                        }
+                        submit(conversionPool, new Stage(run, index) {
+                            @Override
+                            void process() throws Exception {
+                                final byte[] content;
+                                try {
+                                    content = job.convert(bundle);
+                                } finally {
+                                    bundle.close();
+                                }
+                                if (content == null) {
+                                    run.finish(index);
+                                    return;
+                                }
+                                submit(outputPool, new Stage(run, index) {
+                                    @Override
+                                    void process() throws Exception {
+                                        job.write(content);
+                                        run.finish(index);
+                                    }
+                                });
+                            }
+
+                            @Override
+                            void discard() {
+                                bundle.close();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private static void submit(ThreadPoolExecutor pool, Stage stage) {
+        try {
+            pool.execute(stage);
+        } catch (RejectedExecutionException e) {
+            stage.discard();
+            stage.run.fail(stage.index, e);
+        }
+    }
+
+    /**
+     * A stage of a job. A stage is skipped when a preceding job has failed.
+     */
+    private static abstract class Stage implements Runnable {
+        final Run run;
+        final int index;
+
+        Stage(Run run, int index) {
+            this.run = run;
+            this.index = index;
+        }
+
+        @Override
+        public final void run() {
+            if (run.isAborted(index)) {
+                discard();
+                run.skip(index);
+                return;
+            }
+            try {
+                process();
+            } catch (Throwable t) {
+                run.fail(index, t);
+            }
+        }
+
+        abstract void process() throws Exception;
+
+        /**
+         * Releases the input of this stage when the stage is not processed.
+         */
+        void discard() {
+        }
+    }
+
+    /**
+     * The state of a single call to {@link SyncEngine#run(List)}.
+     */
+    private static final class Run {
+        private final List<? extends SyncJob<?>> jobs;
+        private final boolean[] finished;
+        private final boolean[] succeeded;
+        private int numFinished = 0;
+        private int numNotified = 0;
+        private SyncException failure = null;
+        private int failedIndex = -1;
+        // stages of jobs after this index are skipped
+        private volatile int abortAfter = Integer.MAX_VALUE;
+
+        Run(List<? extends SyncJob<?>> jobs) {
+            this.jobs = jobs;
+            this.finished = new boolean[jobs.size()];
+            this.succeeded = new boolean[jobs.size()];
+        }
+
+        boolean isAborted(int index) {
+            return index > abortAfter;
+        }
+
+        synchronized void finish(int index) {
+            finish(index, true);
+        }
+
+        synchronized void skip(int index) {
+            finish(index, false);
+        }
+
+        synchronized void fail(int index, Throwable t) {
+            setFailure(index, t);
+            finish(index, false);
+        }
+
+        private void finish(int index, boolean success) {
+            if (finished[index]) {
+                return;
+            }
+            finished[index] = true;
+            succeeded[index] = success;
+            numFinished++;
+            // notifies jobs in order, up to the failed job
+            while (numNotified < finished.length && finished[numNotified] && succeeded[numNotified]
+                    && (failure == null || numNotified < failedIndex)) {
+                int notified = numNotified++;
+                try {
+                    jobs.get(notified).completed();
+                } catch (RuntimeException e) {
+                    setFailure(notified, e);
+                }
+            }
+            notifyAll();
+        }
+
+        private void setFailure(int index, Throwable t) {
+            if (index < abortAfter) {
+                abortAfter = index;
+            }
+            if (failure == null || index < failedIndex) {
+                if (t instanceof SyncException) {
+                    failure = (SyncException) t;
+                } else {
+                    failure = new SyncException(t.getMessage(), t);
+                }
+                failure.setJob(jobs.get(index));
+                failedIndex = index;
+            }
+        }
+
+        void abort() {
+            abortAfter = -1;
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (numFinished < finished.length) {
+                wait();
+            }
+        }
+    }
+}
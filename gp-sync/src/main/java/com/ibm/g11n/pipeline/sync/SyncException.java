@@ -0,0 +1,49 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+/**
+ * The exception thrown when a sync job failed.
+ *
+ * @author yoshito_umaoka
+ */
+public class SyncException extends Exception {
+
+    private static final long serialVersionUID = -3093585829613207455L;
+
+    private SyncJob<?> job;
+
+    public SyncException(String message) {
+        super(message);
+    }
+
+    public SyncException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Returns the job failed with this exception.
+     *
+     * @return The failed job, or null if not available.
+     */
+    public SyncJob<?> getJob() {
+        return job;
+    }
+
+    void setJob(SyncJob<?> job) {
+        this.job = job;
+    }
+}
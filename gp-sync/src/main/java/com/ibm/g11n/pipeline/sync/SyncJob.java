@@ -0,0 +1,78 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+
+/**
+ * A job producing a single output from Globalization Pipeline service, run
+ * by {@link SyncEngine}. Each stage of the job is called on the thread pool
+ * dedicated to the stage, in the order of {@link #fetch()}, {@link #assemble(Object)},
+ * {@link #convert(LanguageBundle)} and {@link #write(byte[])}. When a stage
+ * returns null, the job is completed without running the rest of stages.
+ *
+ * @param <T> The type of data fetched by the job.
+ * @author yoshito_umaoka
+ */
+public abstract class SyncJob<T> {
+
+    /**
+     * Fetches data from Globalization Pipeline service.
+     *
+     * @return The fetched data, or null to skip this job.
+     * @throws Exception on a failure.
+     */
+    protected abstract T fetch() throws Exception;
+
+    /**
+     * Assembles a language bundle from the fetched data.
+     *
+     * @param data  The data returned by {@link #fetch()}.
+     * @return The language bundle, or null to skip the rest of stages. The engine closes
+     *          the returned bundle after {@link #convert(LanguageBundle)}, or when the rest
+     *          of stages are skipped. An implementation discarding a bundle it has built
+     *          should close the bundle.
+     * @throws Exception on a failure.
+     */
+    protected abstract LanguageBundle assemble(T data) throws Exception;
+
+    /**
+     * Converts the language bundle to the output format.
+     *
+     * @param bundle    The language bundle returned by {@link #assemble(Object)}.
+     *                  The bundle is closed by the engine when this method returns.
+     * @return The output contents, or null to skip writing the output.
+     * @throws Exception on a failure.
+     */
+    protected abstract byte[] convert(LanguageBundle bundle) throws Exception;
+
+    /**
+     * Writes out the output contents.
+     *
+     * @param content   The output contents returned by {@link #convert(LanguageBundle)}.
+     * @throws Exception on a failure.
+     */
+    protected abstract void write(byte[] content) throws Exception;
+
+    /**
+     * Called when this job and all jobs preceding this job in the same run
+     * are completed. Calls to this method are serialized, so the implementation
+     * can write out messages buffered by the job without being interleaved
+     * with messages from other jobs. This implementation does nothing.
+     */
+    protected void completed() {
+    }
+}
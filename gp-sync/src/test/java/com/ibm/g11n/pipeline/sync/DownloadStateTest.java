@@ -0,0 +1,90 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+
+/**
+ * DownloadState test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class DownloadStateTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static LanguageBundle createBundle(String value) {
+        return new LanguageBundleBuilder(false)
+                .addResourceString("key1", value, 1)
+                .addResourceString("key2", "value 2", 2)
+                .build();
+    }
+
+    private static void writeFile(File f, String content) throws IOException {
+        try (OutputStream os = new FileOutputStream(f)) {
+            os.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testFingerprint() {
+        String fp1 = DownloadState.fingerprint(createBundle("value 1"), "java", "MERGE_TO_SOURCE");
+        String fp2 = DownloadState.fingerprint(createBundle("value 1"), "java", "MERGE_TO_SOURCE");
+        Assert.assertEquals(fp1, fp2);
+        Assert.assertNotEquals(fp1,
+                DownloadState.fingerprint(createBundle("value 1*"), "java", "MERGE_TO_SOURCE"));
+        Assert.assertNotEquals(fp1,
+                DownloadState.fingerprint(createBundle("value 1"), "java", "TRANSLATED_ONLY"));
+    }
+
+    @Test
+    public void testUpToDate() throws IOException {
+        File stateFile = new File(tempFolder.getRoot(), "gp-download-state.json");
+        File outFile = tempFolder.newFile("Messages_de.properties");
+        writeFile(outFile, "key1=value 1\n");
+        String fp = DownloadState.fingerprint(createBundle("value 1"), "java", "TRANSLATED_ONLY");
+
+        DownloadState state = DownloadState.load(stateFile, "https://gp.example.com#instance1");
+        Assert.assertFalse(state.isUpToDate(outFile, fp));
+        state.update(outFile, fp);
+        state.save();
+
+        DownloadState loaded = DownloadState.load(stateFile, "https://gp.example.com#instance1");
+        Assert.assertTrue(loaded.isUpToDate(outFile, fp));
+        Assert.assertFalse(loaded.isUpToDate(outFile, fp + "0"));
+
+        // modified output file must be written again
+        writeFile(outFile, "key1=modified value\n");
+        Assert.assertFalse(loaded.isUpToDate(outFile, fp));
+
+        // state for another service instance is discarded
+        DownloadState other = DownloadState.load(stateFile, "https://gp.example.com#instance2");
+        Assert.assertFalse(other.isUpToDate(outFile, fp));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Snapshot test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class SnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static EntryData createEntry(String value, String sourceValue, boolean reviewed) {
+        return new EntryData(value, sourceValue, reviewed, 1, Arrays.asList("note 1"),
+                Collections.singletonMap("mkey", "mvalue"));
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.service = "https://gp.example.com#instance1";
+        snapshot.createdAt = 1577836800000L;
+        snapshot.mtLanguages = Collections.<String, Set<String>>singletonMap("en",
+                new HashSet<>(Arrays.asList("de", "fr")));
+
+        Snapshot.BundleSnapshot bundle = new Snapshot.BundleSnapshot();
+        bundle.sourceLanguage = "en";
+        bundle.targetLanguages = Arrays.asList("de", "fr");
+        bundle.updatedAt = 1577836700000L;
+        Map<String, EntryData> deEntries = new TreeMap<>();
+        deEntries.put("key1", createEntry("Wert 1", "value 1", true));
+        deEntries.put("key2", createEntry(null, "value 2", false));
+        bundle.languages.put("de", deEntries);
+        snapshot.bundles.put("com.example.Messages", bundle);
+
+        File file = new File(tempFolder.getRoot(), "gp-snapshot.json.gz");
+        snapshot.write(file);
+
+        Snapshot loaded = Snapshot.read(file);
+        Assert.assertEquals(snapshot.service, loaded.service);
+        Assert.assertEquals(snapshot.createdAt, loaded.createdAt);
+        Assert.assertEquals(snapshot.mtLanguages, loaded.mtLanguages);
+
+        Snapshot.BundleSnapshot loadedBundle = loaded.bundles.get("com.example.Messages");
+        Assert.assertNotNull(loadedBundle);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("en", "de", "fr")), loadedBundle.getLanguages());
+        Assert.assertEquals(bundle.updatedAt, loadedBundle.updatedAt);
+
+        EntryData entry1 = loadedBundle.languages.get("de").get("key1");
+        Assert.assertEquals("Wert 1", entry1.getValue());
+        Assert.assertEquals("value 1", entry1.getSourceValue());
+        Assert.assertTrue(entry1.isReviewed());
+        Assert.assertEquals(Integer.valueOf(1), entry1.getSequenceNumber());
+        Assert.assertEquals(Arrays.asList("note 1"), entry1.getNotes());
+        Assert.assertEquals(Collections.singletonMap("mkey", "mvalue"), entry1.getMetadata());
+
+        EntryData entry2 = loadedBundle.languages.get("de").get("key2");
+        Assert.assertNull(entry2.getValue());
+        Assert.assertFalse(entry2.isReviewed());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadFile() throws IOException {
+        File file = tempFolder.newFile("gp-snapshot.json.gz");
+        try (OutputStream os = new FileOutputStream(file)) {
+            os.write("not a snapshot".getBytes(StandardCharsets.UTF_8));
+        }
+        Snapshot.read(file);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.sync.SourceIndex.ScannedFile;
+
+/**
+ * SourceIndex test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class SourceIndexTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static void writeFile(File f, String content, long lastModified) throws IOException {
+        try (OutputStream os = new FileOutputStream(f)) {
+            os.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        f.setLastModified(lastModified);
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        File indexFile = new File(tempFolder.getRoot(), "gp-source-index.json");
+        File srcFile = tempFolder.newFile("Messages.properties");
+        long lastModified = System.currentTimeMillis() - 60000L;
+        writeFile(srcFile, "key1=value 1\n", lastModified);
+
+        SourceIndex index = SourceIndex.load(indexFile);
+        String digest = index.getDigest(srcFile);
+        Assert.assertEquals(StateFiles.digest(srcFile), digest);
+        index.save();
+
+        SourceIndex loaded = SourceIndex.load(indexFile);
+        Assert.assertEquals(digest, loaded.getDigest(srcFile));
+
+        // modified file
+        writeFile(srcFile, "key1=value 2\n", lastModified + 1000L);
+        String newDigest = loaded.getDigest(srcFile);
+        Assert.assertNotEquals(digest, newDigest);
+        Assert.assertEquals(StateFiles.digest(srcFile), newDigest);
+
+        loaded.save();
+
+        // entries of deleted files are removed
+        srcFile.delete();
+        SourceIndex.load(indexFile).save();
+        String indexContent = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+        Assert.assertFalse(indexContent, indexContent.contains("Messages.properties"));
+    }
+
+    /**
+     * Lists files under the directory, and counts the number of scans.
+     */
+    private static class CountingScanner implements SourceIndex.FileScanner {
+        private final File dir;
+        int count = 0;
+
+        CountingScanner(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public List<ScannedFile> scan() {
+            count++;
+            List<ScannedFile> files = new ArrayList<>();
+            list(dir, "", files);
+            return files;
+        }
+
+        private static void list(File dir, String prefix, List<ScannedFile> files) {
+            for (File f : dir.listFiles()) {
+                if (f.isDirectory()) {
+                    list(f, prefix + f.getName() + "/", files);
+                } else {
+                    files.add(new ScannedFile(prefix + f.getName(), "bundle-" + f.getName(), "JAVA"));
+                }
+            }
+        }
+    }
+
+    private static void setLastModified(File dir, long lastModified) {
+        dir.setLastModified(lastModified);
+        for (File f : dir.listFiles()) {
+            if (f.isDirectory()) {
+                setLastModified(f, lastModified);
+            }
+        }
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        File indexFile = new File(tempFolder.getRoot(), "gp-source-index.json");
+        File srcDir = tempFolder.newFolder("src");
+        File subDir = new File(srcDir, "sub");
+        subDir.mkdir();
+        long lastModified = System.currentTimeMillis() - 60000L;
+        writeFile(new File(subDir, "Messages.properties"), "key1=value 1\n", lastModified);
+        setLastModified(srcDir, lastModified);
+
+        CountingScanner scanner = new CountingScanner(srcDir);
+        SourceIndex index = SourceIndex.load(indexFile);
+        List<ScannedFile> files = index.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(1, scanner.count);
+        Assert.assertEquals(1, files.size());
+        index.save();
+
+        // the result of the last scan is reused
+        SourceIndex loaded = SourceIndex.load(indexFile);
+        files = loaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(1, scanner.count);
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals("sub/Messages.properties", files.get(0).getRelativePath());
+        Assert.assertEquals("bundle-Messages.properties", files.get(0).getBundleId());
+        Assert.assertEquals("JAVA", files.get(0).getType());
+
+        // a different configuration
+        loaded.scan("config2", srcDir, true, scanner);
+        Assert.assertEquals(2, scanner.count);
+
+        // a file added to the sub directory
+        writeFile(new File(subDir, "Errors.properties"), "key1=value 1\n", lastModified);
+        files = loaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(3, scanner.count);
+        Assert.assertEquals(2, files.size());
+
+        // the directory modified just now is not recorded
+        loaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(4, scanner.count);
+        setLastModified(srcDir, lastModified + 1000L);
+        loaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(5, scanner.count);
+        files = loaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(5, scanner.count);
+        Assert.assertEquals(2, files.size());
+        loaded.save();
+
+        // entries of file sets not scanned are removed
+        SourceIndex reloaded = SourceIndex.load(indexFile);
+        reloaded.scan("config1", srcDir, true, scanner);
+        reloaded.save();
+        reloaded = SourceIndex.load(indexFile);
+        reloaded.scan("config1", srcDir, true, scanner);
+        Assert.assertEquals(5, scanner.count);
+        reloaded.scan("config2", srcDir, true, scanner);
+        Assert.assertEquals(6, scanner.count);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright IBM Corp. 2020
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.g11n.pipeline.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+
+/**
+ * SyncEngine test cases
+ *
+ * @author yoshito_umaoka
+ */
+public class SyncEngineTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static class TestJob extends ExportJob {
+        private final Map<String, EntryData> entries;
+        private final List<String> completions;
+
+        TestJob(String language, File outputFile, Map<String, EntryData> entries, List<String> completions) {
+            super("test", language, "JAVA", outputFile);
+            this.entries = entries;
+            this.completions = completions;
+        }
+
+        @Override
+        protected Map<String, EntryData> fetch() throws Exception {
+            if (entries == null) {
+                throw new IOException("fetch failed");
+            }
+            // completes jobs out of order
+            Thread.sleep(entries.size() * 10L);
+            return entries;
+        }
+
+        @Override
+        protected void completed() {
+            completions.add(getLanguage());
+        }
+    }
+
+    private static Map<String, EntryData> createEntries(int size, String prefix) {
+        Map<String, EntryData> entries = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put("key" + i, new EntryData(prefix + i, "value " + i, i % 2 == 0, i, null, null));
+        }
+        return entries;
+    }
+
+    private static Properties read(File f) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        return props;
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        List<String> completions = Collections.synchronizedList(new ArrayList<String>());
+        List<TestJob> jobs = new ArrayList<>();
+        String[] langs = {"de", "es", "fr", "it", "ja", "ko"};
+        for (int i = 0; i < langs.length; i++) {
+            File outFile = new File(tempFolder.getRoot(), "sub/Messages_" + langs[i] + ".properties");
+            jobs.add(new TestJob(langs[i], outFile, createEntries(langs.length - i, langs[i] + " "), completions));
+        }
+        jobs.get(0).reviewedOnly(true);
+
+        try (SyncEngine engine = new SyncEngine(4, 1, 2, 1)) {
+            engine.run(jobs);
+        }
+
+        // completed in the order of the jobs
+        Assert.assertEquals(Arrays.asList(langs), completions);
+
+        Properties de = read(jobs.get(0).getOutputFile());
+        Assert.assertEquals("de 0", de.getProperty("key0"));
+        Assert.assertNull("unreviewed translation", de.getProperty("key1"));
+        Assert.assertEquals("de 2", de.getProperty("key2"));
+
+        Properties ko = read(jobs.get(5).getOutputFile());
+        Assert.assertEquals("ko 0", ko.getProperty("key0"));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        List<String> completions = Collections.synchronizedList(new ArrayList<String>());
+        List<TestJob> jobs = new ArrayList<>();
+        // still in progress when the next job fails
+        jobs.add(new TestJob("de", tempFolder.newFile("Messages_de.properties"),
+                createEntries(20, "de "), completions));
+        TestJob failing = new TestJob("fr", tempFolder.newFile("Messages_fr.properties"), null, completions);
+        jobs.add(failing);
+        File itFile = new File(tempFolder.getRoot(), "Messages_it.properties");
+        jobs.add(new TestJob("it", itFile, createEntries(1, "it "), completions));
+
+        try (SyncEngine engine = new SyncEngine(2)) {
+            engine.run(jobs);
+            Assert.fail("SyncException is expected");
+        } catch (SyncException e) {
+            Assert.assertSame(failing, e.getJob());
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        // the preceding job is completed, the failed job and the following job are not
+        Assert.assertEquals(Collections.singletonList("de"), completions);
+        Assert.assertEquals("de 19", read(jobs.get(0).getOutputFile()).getProperty("key19"));
+        Assert.assertFalse("skipped job", itFile.exists());
+    }
+
+    @Test
+    public void testCloseSpilledBundle() throws Exception {
+        List<String> completions = Collections.synchronizedList(new ArrayList<String>());
+        final File spillDir = tempFolder.newFolder();
+        File outFile = new File(tempFolder.getRoot(), "Messages_de.properties");
+        TestJob job = new TestJob("de", outFile, createEntries(50, "de "), completions) {
+            @Override
+            protected LanguageBundle assemble(Map<String, EntryData> entries) throws Exception {
+                LanguageBundle bundle = super.assemble(entries);
+                Assert.assertTrue("Temporary files", spillDir.list().length > 0);
+                return bundle;
+            }
+        };
+        // assembles a bundle holding resource strings in temporary files
+        job.spillThreshold(8).spillDirectory(spillDir);
+
+        try (SyncEngine engine = new SyncEngine(1)) {
+            engine.run(Collections.singletonList(job));
+        }
+
+        Properties de = read(outFile);
+        Assert.assertEquals(50, de.size());
+        Assert.assertEquals("de 49", de.getProperty("key49"));
+        // temporary files are deleted after conversion
+        Assert.assertEquals(0, spillDir.list().length);
+    }
+}